@@ -0,0 +1,93 @@
+package com.studyplatform.studyplatform.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.studyplatform.studyplatform.TestFiles;
+import com.studyplatform.studyplatform.Service.TextExtractionService;
+
+/**
+ * Documents per minute that {@link TextExtractionService} extracts from a 96-page PDF with 1, 4 and 8
+ * PDF workers, for one request at a time and for four requests at once.
+ */
+@Tag("benchmark")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+public class PdfExtractionJmhBenchmark {
+
+    private static final int PAGES = 96;
+
+    @Param({"1", "4", "8"})
+    public int workers;
+
+    private Path pdf;
+    private TextExtractionService service;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        pdf = Files.createTempFile("extraction-benchmark", ".pdf");
+        TestFiles.writePdf(pdf, PAGES, 42);
+
+        service = new TextExtractionService();
+        ReflectionTestUtils.setField(service, "maxPdfPages", 0);
+        ReflectionTestUtils.setField(service, "maxMainMemoryBytes", 16L * 1024 * 1024);
+        ReflectionTestUtils.setField(service, "tempDir", "");
+        ReflectionTestUtils.setField(service, "pdfWorkers", workers);
+        ReflectionTestUtils.setField(service, "pagesPerTask", 8);
+        ReflectionTestUtils.setField(service, "maxConcurrentDocuments", 8);
+        ReflectionTestUtils.setField(service, "queueTimeoutMs", 60000L);
+        service.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        service.shutdown();
+        Files.deleteIfExists(pdf);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int oneRequest() throws IOException {
+        return service.extractText(pdf, "lecture.pdf").length();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int fourRequests() throws IOException {
+        return service.extractText(pdf, "lecture.pdf").length();
+    }
+
+    @Test
+    void run() throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(PdfExtractionJmhBenchmark.class.getName())
+            .forks(1)
+            .jvmArgs("-Xmx1g")
+            .build()).run();
+    }
+}
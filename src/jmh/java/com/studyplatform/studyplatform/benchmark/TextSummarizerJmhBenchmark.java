@@ -0,0 +1,153 @@
+package com.studyplatform.studyplatform.benchmark;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.studyplatform.studyplatform.TestFiles;
+import com.studyplatform.studyplatform.Service.TextSummarizer;
+
+/**
+ * Throughput and allocation of {@link TextSummarizer} on 1 MB of text, against the regex-based
+ * summarizer it replaced. One operation summarizes the whole megabyte, so ops/s reads as MB/s and the
+ * GC profiler's {@code gc.alloc.rate.norm} as bytes allocated per MB of input.
+ */
+@Tag("benchmark")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TextSummarizerJmhBenchmark {
+
+    private static final int INPUT_CHARS = 1 << 20;
+
+    private String text;
+    private TextSummarizer summarizer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        text = TestFiles.text(INPUT_CHARS, 42).substring(0, INPUT_CHARS);
+        summarizer = new TextSummarizer(30, 4);
+    }
+
+    @Benchmark
+    public String current() {
+        return summarizer.summarize(text);
+    }
+
+    @Benchmark
+    public String previous() {
+        return PreviousSummarizer.summarize(text);
+    }
+
+    @Test
+    void run() throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(TextSummarizerJmhBenchmark.class.getName())
+            .forks(1)
+            .jvmArgs("-Xmx1g")
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+
+    /**
+     * The summarizer as it was in DocumentService before TextSummarizer, kept as the baseline
+     */
+    static final class PreviousSummarizer {
+
+        static String summarize(String text) {
+            if (text == null || text.trim().isEmpty()) {
+                return "This document appears to be empty or contains non-textual content.";
+            }
+
+            String[] sentences = text.split("[.!?]\\s+");
+            if (sentences.length <= 1) {
+                return truncateToWordLimit(text, 30);
+            }
+
+            Map<String, Integer> wordFrequency = new HashMap<>();
+            for (String sentence : sentences) {
+                for (String word : sentence.toLowerCase().split("\\s+")) {
+                    if (word.length() <= 3 || isStopWord(word)) {
+                        continue;
+                    }
+                    wordFrequency.put(word, wordFrequency.getOrDefault(word, 0) + 1);
+                }
+            }
+
+            Map<String, Double> sentenceScores = new HashMap<>();
+            for (String sentence : sentences) {
+                if (sentence.trim().isEmpty()) {
+                    continue;
+                }
+                String[] words = sentence.toLowerCase().split("\\s+");
+                double score = 0;
+                for (String word : words) {
+                    if (wordFrequency.containsKey(word)) {
+                        score += wordFrequency.get(word);
+                    }
+                }
+                sentenceScores.put(sentence, score / Math.max(1, words.length));
+            }
+
+            List<Map.Entry<String, Double>> sortedSentences = new ArrayList<>(sentenceScores.entrySet());
+            sortedSentences.sort(Map.Entry.comparingByValue(Comparator.reverseOrder()));
+
+            StringBuilder summaryBuilder = new StringBuilder();
+            int wordCount = 0;
+            for (Map.Entry<String, Double> entry : sortedSentences) {
+                String sentence = entry.getKey();
+                String[] words = sentence.split("\\s+");
+                if (wordCount + words.length > 30) {
+                    if (wordCount == 0) {
+                        return truncateToWordLimit(sentence, 30);
+                    }
+                    break;
+                }
+                summaryBuilder.append(sentence).append(". ");
+                wordCount += words.length;
+            }
+            return summaryBuilder.toString().trim();
+        }
+
+        private static String truncateToWordLimit(String text, int wordLimit) {
+            String[] words = text.split("\\s+");
+            if (words.length <= wordLimit) {
+                return text;
+            }
+            StringBuilder truncated = new StringBuilder();
+            for (int i = 0; i < wordLimit; i++) {
+                truncated.append(words[i]).append(" ");
+            }
+            return truncated.toString().trim() + "...";
+        }
+
+        private static boolean isStopWord(String word) {
+            Set<String> stopWords = Set.of("the", "and", "a", "an", "in", "on", "at", "to", "for", "with",
+                                           "by", "about", "as", "of", "that", "this", "is", "are", "was", "were");
+            return stopWords.contains(word.toLowerCase());
+        }
+    }
+}
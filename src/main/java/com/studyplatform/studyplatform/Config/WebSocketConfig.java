@@ -1,18 +1,94 @@
 package com.studyplatform.studyplatform.Config;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    // "simple" keeps the in-memory broker (single node); "relay" forwards /topic and /queue
+    // to an external STOMP broker (e.g. ActiveMQ/Artemis) so several app nodes share fan-out
+    @Value("${websocket.broker.mode:simple}")
+    private String brokerMode;
+    
+    @Value("${websocket.broker.relay.host:localhost}")
+    private String relayHost;
+    
+    @Value("${websocket.broker.relay.port:61613}")
+    private int relayPort;
+    
+    @Value("${websocket.broker.relay.client-login:guest}")
+    private String relayClientLogin;
+    
+    @Value("${websocket.broker.relay.client-passcode:guest}")
+    private String relayClientPasscode;
+    
+    @Value("${websocket.broker.relay.system-login:guest}")
+    private String relaySystemLogin;
+    
+    @Value("${websocket.broker.relay.system-passcode:guest}")
+    private String relaySystemPasscode;
+    
+    @Value("${websocket.broker.relay.virtual-host:}")
+    private String relayVirtualHost;
+    
+    @Value("${websocket.transport.inbound.core-pool-size:8}")
+    private int inboundCorePoolSize;
+    
+    @Value("${websocket.transport.inbound.max-pool-size:32}")
+    private int inboundMaxPoolSize;
+    
+    @Value("${websocket.transport.inbound.queue-capacity:10000}")
+    private int inboundQueueCapacity;
+    
+    @Value("${websocket.transport.outbound.core-pool-size:8}")
+    private int outboundCorePoolSize;
+    
+    @Value("${websocket.transport.outbound.max-pool-size:32}")
+    private int outboundMaxPoolSize;
+    
+    @Value("${websocket.transport.outbound.queue-capacity:10000}")
+    private int outboundQueueCapacity;
+    
+    @Value("${websocket.transport.message-size-limit:65536}")
+    private int messageSizeLimit;
+    
+    // Per-session bytes buffered while a send is in progress before the session is closed
+    @Value("${websocket.transport.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit;
+    
+    // Longest a single send to a session may block before the session is closed
+    @Value("${websocket.transport.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs;
+    
+    @Autowired
+    private WebSocketSessionMonitor sessionMonitor;
+    
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic", "/queue");
+        if ("relay".equalsIgnoreCase(brokerMode)) {
+            config.enableStompBrokerRelay("/topic", "/queue")
+                .setRelayHost(relayHost)
+                .setRelayPort(relayPort)
+                .setClientLogin(relayClientLogin)
+                .setClientPasscode(relayClientPasscode)
+                .setSystemLogin(relaySystemLogin)
+                .setSystemPasscode(relaySystemPasscode)
+                .setVirtualHost(relayVirtualHost.isEmpty() ? null : relayVirtualHost)
+                // Share user sessions across nodes so /user destinations resolve on whichever node holds the session
+                .setUserDestinationBroadcast("/topic/unresolved-user-destination")
+                .setUserRegistryBroadcast("/topic/simp-user-registry");
+        } else {
+            config.enableSimpleBroker("/topic", "/queue");
+        }
         config.setApplicationDestinationPrefixes("/app");
     }
 
@@ -22,5 +98,30 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
             .setAllowedOrigins("http://localhost:3000")
             .withSockJS();
     }
+    
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration
+            .setMessageSizeLimit(messageSizeLimit)
+            .setSendBufferSizeLimit(sendBufferSizeLimit)
+            .setSendTimeLimit(sendTimeLimitMs)
+            .addDecoratorFactory(sessionMonitor);
+    }
+    
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor()
+            .corePoolSize(inboundCorePoolSize)
+            .maxPoolSize(inboundMaxPoolSize)
+            .queueCapacity(inboundQueueCapacity);
+    }
+    
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor()
+            .corePoolSize(outboundCorePoolSize)
+            .maxPoolSize(outboundMaxPoolSize)
+            .queueCapacity(outboundQueueCapacity);
+        registration.interceptors(sessionMonitor);
+    }
 }
-
@@ -0,0 +1,159 @@
+package com.studyplatform.studyplatform.Config;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.websocket.Session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+
+/**
+ * Tracks, per WebSocket session, how many outbound messages are queued on the client outbound
+ * channel but not yet written, and disconnects sessions whose backlog exceeds
+ * {@code websocket.transport.max-pending-outbound} so one slow client cannot hold up broadcasts.
+ * Metrics are aggregated over all sessions; session ids are never exposed.
+ */
+@Component
+public class WebSocketSessionMonitor implements ExecutorChannelInterceptor, WebSocketHandlerDecoratorFactory {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebSocketSessionMonitor.class);
+    
+    // Tomcat user property bounding how long one blocking write to a session may take
+    private static final String BLOCKING_SEND_TIMEOUT = "org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT";
+    
+    @Value("${websocket.transport.max-pending-outbound:1000}")
+    private int maxPendingOutbound;
+    
+    @Value("${websocket.transport.send-time-limit-ms:10000}")
+    private long sendTimeLimitMs;
+    
+    private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> pendingBySession = new ConcurrentHashMap<>();
+    private final AtomicLong evictedSessions = new AtomicLong();
+    
+    // Outbound channel: count a message as pending when it is queued for the session...
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId == null) {
+            return message;
+        }
+        
+        AtomicInteger pending = pendingBySession.get(sessionId);
+        if (pending == null) {
+            return message;
+        }
+        
+        if (pending.get() >= maxPendingOutbound) {
+            evict(sessionId, pending.get());
+            return null;
+        }
+        pending.incrementAndGet();
+        return message;
+    }
+    
+    // ...and no longer pending once the outbound thread has handed it to the session...
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        release(message);
+    }
+    
+    // ...or once it is known never to reach that thread, because the executor rejected it or a later
+    // interceptor dropped it
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        if (!sent) {
+            release(message);
+        }
+    }
+    
+    private void release(Message<?> message) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId == null) {
+            return;
+        }
+        AtomicInteger pending = pendingBySession.get(sessionId);
+        if (pending != null) {
+            pending.decrementAndGet();
+        }
+    }
+    
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                // A write blocked on a stalled client gives up at the send time limit instead of
+                // holding an outbound thread for the container default
+                if (session instanceof NativeWebSocketSession) {
+                    Session nativeSession = ((NativeWebSocketSession) session).getNativeSession(Session.class);
+                    if (nativeSession != null) {
+                        nativeSession.getUserProperties().put(BLOCKING_SEND_TIMEOUT, sendTimeLimitMs);
+                    }
+                }
+                sessions.put(session.getId(), session);
+                pendingBySession.put(session.getId(), new AtomicInteger());
+                super.afterConnectionEstablished(session);
+            }
+            
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                sessions.remove(session.getId());
+                pendingBySession.remove(session.getId());
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+    
+    private void evict(String sessionId, int pending) {
+        WebSocketSession session = sessions.remove(sessionId);
+        if (session == null) {
+            return;
+        }
+        evictedSessions.incrementAndGet();
+        logger.warn("Closing slow WebSocket session {} with {} pending outbound messages", sessionId, pending);
+        try {
+            session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException e) {
+            logger.debug("Failed to close WebSocket session {}: {}", sessionId, e.getMessage());
+        }
+    }
+    
+    public Map<String, Object> getMetrics() {
+        int totalPending = 0;
+        int maxPending = 0;
+        int sessionCount = 0;
+        for (AtomicInteger counter : pendingBySession.values()) {
+            int pending = counter.get();
+            totalPending += pending;
+            maxPending = Math.max(maxPending, pending);
+            sessionCount++;
+        }
+        
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("sessions", sessionCount);
+        metrics.put("totalPendingOutbound", totalPending);
+        metrics.put("maxPendingOutbound", maxPending);
+        metrics.put("pendingOutboundLimit", maxPendingOutbound);
+        metrics.put("evictedSessions", evictedSessions.get());
+        return metrics;
+    }
+}
@@ -1,10 +1,23 @@
 package com.studyplatform.studyplatform.Config.security;
 
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
+import org.springframework.web.multipart.MultipartResolver;
+import org.springframework.web.multipart.support.StandardServletMultipartResolver;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.PathResourceResolver;
+
+import com.studyplatform.studyplatform.Service.FileStorageService;
+import com.studyplatform.studyplatform.Service.StreamingUploadService;
 
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
@@ -12,10 +25,46 @@ public class WebConfig implements WebMvcConfigurer {
   @Value("${file.upload-dir:uploads}")
   private String uploadDir;
 
+  @Autowired
+  private FileStorageService fileStorageService;
+
   @Override
   public void addResourceHandlers(ResourceHandlerRegistry registry) {
+      // Not cached, since files move from the flat to the sharded layout while the application runs
       registry.addResourceHandler("/uploads/**")
-              .addResourceLocations("file:" + uploadDir + "/");
+              .addResourceLocations("file:" + uploadDir + "/")
+              .resourceChain(false)
+              .addResolver(new PathResourceResolver() {
+                  @Override
+                  protected Resource getResource(String resourcePath, Resource location) throws IOException {
+                      // Partial chunked uploads are kept under .partial
+                      if (resourcePath.startsWith(".")) {
+                          return null;
+                      }
+                      Resource resource = super.getResource(resourcePath, location);
+                      if (resource != null || resourcePath.indexOf('/') >= 0) {
+                          return resource;
+                      }
+                      // A flat name of a file in its shard directory or in a remote blob store
+                      try {
+                          return fileStorageService.loadFileAsResource(resourcePath);
+                      } catch (RuntimeException e) {
+                          return null;
+                      }
+                  }
+              });
+  }
+  
+  // Streaming uploads parse their own body, which resolving it here would first buffer to disk
+  @Bean
+  public MultipartResolver multipartResolver() {
+      return new StandardServletMultipartResolver() {
+          @Override
+          public boolean isMultipart(HttpServletRequest request) {
+              String path = request.getRequestURI().substring(request.getContextPath().length());
+              return !path.equals(StreamingUploadService.STREAMING_UPLOAD_PATH) && super.isMultipart(request);
+          }
+      };
   }
   
   @Override
@@ -11,8 +11,14 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 
 @RestController
 @RequestMapping("/api")
@@ -50,5 +56,41 @@ public class AIImageController {
                     .body(new TextExtractionResponse(null, "Failed to extract text: " + e.getMessage()));
         }
     }
-}
 
+    /**
+     * Streams the extracted text as plain text while it is being extracted, one page or paragraph at a
+     * time, instead of returning it in a single JSON response.
+     */
+    @PostMapping(value = "/extract-text", params = "stream=true",
+            consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamExtractedText(@RequestParam("document") MultipartFile file) throws IOException {
+        String fileName = file.getOriginalFilename();
+        if (fileName == null || !textExtractionService.isSupported(fileName)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        // The upload is copied first because the response is written after the request has been handled
+        Path tempFile = Files.createTempFile("extract-", "-" + fileName.substring(fileName.lastIndexOf(".") + 1));
+        try (InputStream inputStream = file.getInputStream()) {
+            Files.copy(inputStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+
+        StreamingResponseBody body = outputStream -> {
+            try {
+                textExtractionService.extractText(tempFile, fileName, chunk -> {
+                    outputStream.write(chunk.getBytes(StandardCharsets.UTF_8));
+                    outputStream.flush();
+                    return true;
+                });
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                .body(body);
+    }
+}
@@ -1,10 +1,12 @@
 package com.studyplatform.studyplatform.Controller;
 
+import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -13,14 +15,17 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.studyplatform.studyplatform.Model.User;
 import com.studyplatform.studyplatform.Service.ChatService;
 import com.studyplatform.studyplatform.Service.UserService;
 import com.studyplatform.studyplatform.dto.ChatMessageDTO;
+import com.studyplatform.studyplatform.dto.ChatMessagePageDTO;
 import com.studyplatform.studyplatform.dto.ChatRoomDTO;
 import com.studyplatform.studyplatform.dto.CreateGroupChatRequest;
+import com.studyplatform.studyplatform.dto.ReadReceiptDTO;
 import com.studyplatform.studyplatform.dto.SendMessageRequest;
 
 @RestController
@@ -89,15 +94,42 @@ public class ChatController {
     }
     
     @GetMapping("/rooms/{roomId}/messages")
-    public ResponseEntity<List<ChatMessageDTO>> getChatMessages(@PathVariable Long roomId) {
+    public ResponseEntity<ChatMessagePageDTO> getChatMessages(
+            @PathVariable Long roomId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime beforeSentAt,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(defaultValue = "50") int size) {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         String email = auth.getName();
         User user = userService.getUserByEmail(email);
         
-        List<ChatMessageDTO> messages = chatService.getChatMessages(roomId, user);
+        ChatMessagePageDTO messages = chatService.getChatMessages(roomId, user, beforeSentAt, beforeId, size);
         return ResponseEntity.ok(messages);
     }
     
+    @GetMapping("/rooms/{roomId}/unread-count")
+    public ResponseEntity<Long> getUnreadCount(@PathVariable Long roomId) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        String email = auth.getName();
+        User user = userService.getUserByEmail(email);
+        
+        return ResponseEntity.ok(chatService.getUnreadCount(roomId, user));
+    }
+    
+    @PostMapping("/rooms/{roomId}/read")
+    public ResponseEntity<ReadReceiptDTO> markAsRead(
+            @PathVariable Long roomId,
+            @RequestBody(required = false) ReadReceiptDTO request) {
+        
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        String email = auth.getName();
+        User user = userService.getUserByEmail(email);
+        
+        Long messageId = request != null ? request.getLastReadMessageId() : null;
+        ReadReceiptDTO receipt = chatService.markAsRead(roomId, user.getId(), messageId);
+        return ResponseEntity.ok(receipt);
+    }
+    
     @PostMapping("/rooms/{roomId}/messages")
     public ResponseEntity<ChatMessageDTO> sendMessage(
             @PathVariable Long roomId, 
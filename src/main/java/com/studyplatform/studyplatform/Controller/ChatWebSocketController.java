@@ -1,9 +1,13 @@
 package com.studyplatform.studyplatform.Controller;
 
+import java.io.Serializable;
+import java.util.Map;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
@@ -12,11 +16,15 @@ import com.studyplatform.studyplatform.Model.User;
 import com.studyplatform.studyplatform.Service.ChatService;
 import com.studyplatform.studyplatform.Service.UserService;
 import com.studyplatform.studyplatform.dto.ChatMessageDTO;
+import com.studyplatform.studyplatform.dto.ReadReceiptDTO;
 import com.studyplatform.studyplatform.dto.SendMessageRequest;
 
 @Controller
 public class ChatWebSocketController {
 
+    // Session attribute holding the sender resolved on the first frame of a WebSocket session
+    private static final String SENDER_ATTRIBUTE = "chat.sender";
+    
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
     
@@ -30,15 +38,61 @@ public class ChatWebSocketController {
     public void sendMessage(
             @DestinationVariable Long roomId,
             @Payload SendMessageRequest messageRequest,
-            Authentication authentication) {
+            Authentication authentication,
+            SimpMessageHeaderAccessor headerAccessor) {
         
-        String email = authentication.getName();
-        User sender = userService.getUserByEmail(email);
+        ChatSender sender = resolveSender(authentication, headerAccessor);
         
-        ChatMessageDTO message = chatService.sendMessage(roomId, sender, messageRequest.getContent());
+        ChatMessageDTO message = chatService.sendMessage(roomId, sender.id, sender.name, messageRequest.getContent());
         
         // Broadcast the message to all subscribers of this chat room
         messagingTemplate.convertAndSend("/topic/chat/" + roomId, message);
     }
+    
+    @MessageMapping("/chat/{roomId}/read")
+    public void markAsRead(
+            @DestinationVariable Long roomId,
+            @Payload ReadReceiptDTO readRequest,
+            Authentication authentication,
+            SimpMessageHeaderAccessor headerAccessor) {
+        
+        ChatSender sender = resolveSender(authentication, headerAccessor);
+        
+        ReadReceiptDTO receipt = chatService.markAsRead(roomId, sender.id, readRequest.getLastReadMessageId());
+        
+        // Let the other participants update their read receipts
+        messagingTemplate.convertAndSend("/topic/chat/" + roomId + "/read", receipt);
+    }
+    
+    // Looks the user up once per WebSocket session and keeps the id and display name in the session attributes
+    private ChatSender resolveSender(Authentication authentication, SimpMessageHeaderAccessor headerAccessor) {
+        Map<String, Object> sessionAttributes = headerAccessor.getSessionAttributes();
+        if (sessionAttributes != null) {
+            Object cached = sessionAttributes.get(SENDER_ATTRIBUTE);
+            if (cached instanceof ChatSender && ((ChatSender) cached).email.equals(authentication.getName())) {
+                return (ChatSender) cached;
+            }
+        }
+        
+        User user = userService.getUserByEmail(authentication.getName());
+        ChatSender sender = new ChatSender(user.getId(), user.getEmail(), chatService.getDisplayName(user));
+        if (sessionAttributes != null) {
+            sessionAttributes.put(SENDER_ATTRIBUTE, sender);
+        }
+        return sender;
+    }
+    
+    private static final class ChatSender implements Serializable {
+        private static final long serialVersionUID = 1L;
+        
+        private final Long id;
+        private final String email;
+        private final String name;
+        
+        private ChatSender(Long id, String email, String name) {
+            this.id = id;
+            this.email = email;
+            this.name = name;
+        }
+    }
 }
-
@@ -1,10 +1,16 @@
 package com.studyplatform.studyplatform.Controller;
 
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.servlet.http.HttpServletRequest;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -21,10 +27,21 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.studyplatform.studyplatform.Model.Document;
+import com.studyplatform.studyplatform.Model.DocumentJob;
+import com.studyplatform.studyplatform.Model.UploadSession;
 import com.studyplatform.studyplatform.Model.User;
+import com.studyplatform.studyplatform.Service.ChunkedUploadService;
+import com.studyplatform.studyplatform.Service.DocumentJobService;
 import com.studyplatform.studyplatform.Service.DocumentService;
 import com.studyplatform.studyplatform.Service.FileStorageService;
+import com.studyplatform.studyplatform.Service.StreamingUploadService;
 import com.studyplatform.studyplatform.Service.UserService;
+import com.studyplatform.studyplatform.dto.DocumentJobDTO;
+import com.studyplatform.studyplatform.dto.DocumentListItemDTO;
+import com.studyplatform.studyplatform.dto.DocumentPageDTO;
+import com.studyplatform.studyplatform.dto.PagedResponseDTO;
+import com.studyplatform.studyplatform.dto.UploadSessionDTO;
+import com.studyplatform.studyplatform.exception.UploadLimitExceededException;
 
 @RestController
 @RequestMapping("/api/documents")
@@ -39,6 +56,15 @@ public class DocumentController {
   @Autowired
   private UserService userService;
   
+  @Autowired
+  private DocumentJobService documentJobService;
+  
+  @Autowired
+  private ChunkedUploadService chunkedUploadService;
+  
+  @Autowired
+  private StreamingUploadService streamingUploadService;
+  
   @GetMapping("/test")
   public ResponseEntity<String> testEndpoint() {
       return ResponseEntity.ok("DocumentController is working!");
@@ -57,12 +83,15 @@ public class DocumentController {
   }
   
   @GetMapping
-  public ResponseEntity<List<Document>> getUserDocuments() {
+  public ResponseEntity<DocumentPageDTO> getUserDocuments(
+          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime beforeUploadedAt,
+          @RequestParam(required = false) Long beforeId,
+          @RequestParam(defaultValue = "20") int size) {
       Authentication auth = SecurityContextHolder.getContext().getAuthentication();
       String email = auth.getName();
       User user = userService.getUserByEmail(email);
       
-      List<Document> documents = documentService.getDocumentsByUser(user.getId());
+      DocumentPageDTO documents = documentService.getDocumentsByUser(user.getId(), beforeUploadedAt, beforeId, size);
       return ResponseEntity.ok(documents);
   }
   
@@ -110,6 +139,8 @@ public class DocumentController {
           // Log the received isPublic value
           System.out.println("Received isPublic value: " + isPublic);
           
+          documentService.checkQuota(user.getId(), file.getSize());
+          
           // Store the file
           String fileUrl = fileStorageService.storeFile(file);
           
@@ -123,9 +154,143 @@ public class DocumentController {
           document.setPublic(isPublic); // Set the public flag
           document.setUser(user);
           
-          Document savedDocument = documentService.saveDocument(document);
+          Document savedDocument;
+          try {
+              savedDocument = documentService.saveDocument(document);
+          } catch (RuntimeException e) {
+              // Drop the reference taken by storeFile
+              fileStorageService.deleteFile(fileUrl);
+              throw e;
+          }
+          
+          // Text extraction and the summary are produced in the background
+          documentJobService.enqueueProcessing(savedDocument.getId());
+          
+          return ResponseEntity.ok(savedDocument);
+      } catch (UploadLimitExceededException e) {
+          return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(e.getMessage());
+      } catch (Exception e) {
+          return ResponseEntity.badRequest().body(e.getMessage());
+      }
+  }
+  
+  /**
+   * Upload a document like POST /api/documents, with the multipart body streamed straight to storage
+   * rather than buffered by the container first; see StreamingUploadService
+   */
+  @PostMapping("/stream")
+  public ResponseEntity<?> streamDocument(HttpServletRequest request) {
+      try {
+          Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+          String email = auth.getName();
+          User user = userService.getUserByEmail(email);
+          
+          Document savedDocument = streamingUploadService.storeDocument(request, user);
+          
+          // Text extraction and the summary are produced in the background
+          documentJobService.enqueueProcessing(savedDocument.getId());
+          
+          return ResponseEntity.ok(savedDocument);
+      } catch (UploadLimitExceededException e) {
+          return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(e.getMessage());
+      } catch (Exception e) {
+          return ResponseEntity.badRequest().body(e.getMessage());
+      }
+  }
+  
+  /**
+   * Start a resumable upload of a large document. Its chunks are then sent as application/octet-stream
+   * to PUT /uploads/{uploadId}?offset=N, in any order, and the upload is completed with
+   * POST /uploads/{uploadId}/complete. After an interruption, GET /uploads/{uploadId} reports the
+   * ranges received so far.
+   */
+  @PostMapping("/uploads")
+  public ResponseEntity<?> startChunkedUpload(
+          @RequestParam("fileName") String fileName,
+          @RequestParam("size") long size,
+          @RequestParam(value = "contentType", required = false) String contentType,
+          @RequestParam(value = "description", required = false) String description,
+          @RequestParam(value = "isPublic", required = false, defaultValue = "false") boolean isPublic) {
+      try {
+          Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+          String email = auth.getName();
+          User user = userService.getUserByEmail(email);
+          
+          UploadSession session = chunkedUploadService.startUpload(user, fileName, contentType, size, description, isPublic);
+          return ResponseEntity.ok(toUploadSessionDTO(session));
+      } catch (UploadLimitExceededException e) {
+          return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(e.getMessage());
+      } catch (Exception e) {
+          return ResponseEntity.badRequest().body(e.getMessage());
+      }
+  }
+  
+  @GetMapping("/uploads/{uploadId}")
+  public ResponseEntity<?> getChunkedUpload(@PathVariable String uploadId) {
+      try {
+          Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+          String email = auth.getName();
+          User user = userService.getUserByEmail(email);
+          
+          UploadSession session = chunkedUploadService.getUpload(uploadId, user.getId());
+          return ResponseEntity.ok(toUploadSessionDTO(session));
+      } catch (Exception e) {
+          return ResponseEntity.badRequest().body(e.getMessage());
+      }
+  }
+  
+  @PutMapping("/uploads/{uploadId}")
+  public ResponseEntity<?> uploadChunk(
+          @PathVariable String uploadId,
+          @RequestParam("offset") long offset,
+          HttpServletRequest request) {
+      try {
+          Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+          String email = auth.getName();
+          User user = userService.getUserByEmail(email);
+          
+          long length = request.getContentLengthLong();
+          if (length < 0) {
+              return ResponseEntity.badRequest().body("Content-Length is required");
+          }
+          
+          // Streamed to disk, the body is never read into memory
+          chunkedUploadService.writeChunk(uploadId, user.getId(), offset, length, request.getInputStream());
+          return ResponseEntity.ok(toUploadSessionDTO(chunkedUploadService.getUpload(uploadId, user.getId())));
+      } catch (Exception e) {
+          return ResponseEntity.badRequest().body(e.getMessage());
+      }
+  }
+  
+  @PostMapping("/uploads/{uploadId}/complete")
+  public ResponseEntity<?> completeChunkedUpload(@PathVariable String uploadId) {
+      try {
+          Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+          String email = auth.getName();
+          User user = userService.getUserByEmail(email);
+          
+          Document savedDocument = chunkedUploadService.completeUpload(uploadId, user);
+          
+          // Text extraction and the summary are produced in the background
+          documentJobService.enqueueProcessing(savedDocument.getId());
           
           return ResponseEntity.ok(savedDocument);
+      } catch (UploadLimitExceededException e) {
+          return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(e.getMessage());
+      } catch (Exception e) {
+          return ResponseEntity.badRequest().body(e.getMessage());
+      }
+  }
+  
+  @DeleteMapping("/uploads/{uploadId}")
+  public ResponseEntity<?> abortChunkedUpload(@PathVariable String uploadId) {
+      try {
+          Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+          String email = auth.getName();
+          User user = userService.getUserByEmail(email);
+          
+          chunkedUploadService.abortUpload(uploadId, user.getId());
+          return ResponseEntity.ok().build();
       } catch (Exception e) {
           return ResponseEntity.badRequest().body(e.getMessage());
       }
@@ -210,32 +375,35 @@ public class DocumentController {
   }
 
   @GetMapping("/search")
-  public ResponseEntity<List<Document>> searchDocuments(@RequestParam("q") String query) {
+  public ResponseEntity<PagedResponseDTO<DocumentListItemDTO>> searchDocuments(
+          @RequestParam("q") String query,
+          @RequestParam(defaultValue = "0") int page,
+          @RequestParam(defaultValue = "20") int size) {
       try {
           Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-          // Only return documents that are public or belong to the current user
+          // Only public documents or documents belonging to the current user are returned
           String email = auth.getName();
           User user = userService.getUserByEmail(email);
           
-          List<Document> documents = documentService.searchDocuments(query);
-          // Filter to only include public documents or documents owned by the current user
-          documents.removeIf(doc -> !doc.isPublic() && !doc.getUser().getId().equals(user.getId()));
-          
+          PagedResponseDTO<DocumentListItemDTO> documents = documentService.searchDocuments(query, user.getId(), page, size);
           return ResponseEntity.ok(documents);
       } catch (Exception e) {
-          // Return an empty list instead of null
-          return ResponseEntity.ok(java.util.Collections.emptyList());
+          // Return an empty page instead of null
+          return ResponseEntity.ok(new PagedResponseDTO<>(java.util.Collections.emptyList(), page, size, 0, 0));
       }
   }
 
   @GetMapping("/public")
-  public ResponseEntity<List<Document>> getPublicDocuments() {
+  public ResponseEntity<DocumentPageDTO> getPublicDocuments(
+          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime beforeUploadedAt,
+          @RequestParam(required = false) Long beforeId,
+          @RequestParam(defaultValue = "20") int size) {
       try {
-          List<Document> documents = documentService.getPublicDocuments();
+          DocumentPageDTO documents = documentService.getPublicDocuments(beforeUploadedAt, beforeId, size);
           return ResponseEntity.ok(documents);
       } catch (Exception e) {
-          // Return an empty list instead of null
-          return ResponseEntity.ok(java.util.Collections.emptyList());
+          // Return an empty page instead of null
+          return ResponseEntity.ok(new DocumentPageDTO(java.util.Collections.emptyList(), false, null, null));
       }
   }
 
@@ -260,26 +428,66 @@ public class DocumentController {
       }
   }
   
+  @GetMapping("/{id}/jobs")
+  public ResponseEntity<?> getDocumentJobs(@PathVariable Long id) {
+      try {
+          Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+          String email = auth.getName();
+          User user = userService.getUserByEmail(email);
+      
+          Document document = documentService.getDocumentById(id);
+      
+          // Check if document is accessible to the user
+          if (!document.getUser().getId().equals(user.getId()) && !document.isPublic()) {
+              return ResponseEntity.status(403).body("You don't have permission to access this document");
+          }
+      
+          List<DocumentJobDTO> jobs = documentJobService.getJobs(id).stream()
+              .map(DocumentJobDTO::new)
+              .collect(Collectors.toList());
+          return ResponseEntity.ok(jobs);
+      } catch (Exception e) {
+          return ResponseEntity.badRequest().body(e.getMessage());
+      }
+  }
+  
   /**
-   * Get an auto-generated summary for a document
+   * Get an auto-generated summary for a document. While the summary is still being generated this
+   * answers 202 with the summary job; completion is announced on /topic/documents/{id}/jobs.
    */
   @GetMapping(value = "/{id}/summary", produces = MediaType.APPLICATION_JSON_VALUE)
   public ResponseEntity<?> getDocumentSummary(@PathVariable Long id) {
-      System.out.println("=== Document summary endpoint called for ID: " + id + " ===");
       try {
-          // For development, skip authentication check
+          Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+          String email = auth.getName();
+          User user = userService.getUserByEmail(email);
+      
           Document document = documentService.getDocumentById(id);
-          System.out.println("Document found: " + document.getName());
       
-          Map<String, Object> summary = documentService.getDocumentSummary(id);
-          System.out.println("Summary generated: " + summary);
+          // Check access before a summary job is queued for the document
+          if (!document.getUser().getId().equals(user.getId()) && !document.isPublic()) {
+              return ResponseEntity
+                  .status(403)
+                  .contentType(MediaType.APPLICATION_JSON)
+                  .body(Map.of("error", "You don't have permission to access this document"));
+          }
+      
+          Map<String, Object> summary = documentService.findDocumentSummary(id);
+          if (summary == null) {
+              DocumentJob job = documentJobService.requestJob(id, DocumentJob.Type.SUMMARIZE);
+              if (job.getStatus() != DocumentJob.Status.FAILED) {
+                  return ResponseEntity
+                      .accepted()
+                      .contentType(MediaType.APPLICATION_JSON)
+                      .body(new DocumentJobDTO(job));
+              }
+              summary = documentService.getFallbackSummary(id);
+          }
           return ResponseEntity
               .ok()
               .contentType(MediaType.APPLICATION_JSON)
               .body(summary);
       } catch (Exception e) {
-          System.out.println("Error in summary endpoint: " + e.getMessage());
-          e.printStackTrace();
           return ResponseEntity
               .badRequest()
               .contentType(MediaType.APPLICATION_JSON)
@@ -295,9 +503,20 @@ public class DocumentController {
         @PathVariable Long id,
         @RequestBody Map<String, String> payload) {
     try {
-        // For development, skip authentication check
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        String email = auth.getName();
+        User user = userService.getUserByEmail(email);
+        
         Document document = documentService.getDocumentById(id);
         
+        // Only the owner can replace the summary
+        if (!document.getUser().getId().equals(user.getId())) {
+            return ResponseEntity
+                .status(403)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Map.of("error", "You don't have permission to modify this document"));
+        }
+        
         String summaryText = payload.get("summary");
         if (summaryText == null || summaryText.trim().isEmpty()) {
             return ResponseEntity
@@ -306,12 +525,12 @@ public class DocumentController {
                 .body(Map.of("error", "Summary text cannot be empty"));
         }
         
-        Document updatedDocument = documentService.attachSummary(id, summaryText);
+        Map<String, Object> summary = documentService.attachSummary(id, summaryText);
         
         return ResponseEntity
             .ok()
             .contentType(MediaType.APPLICATION_JSON)
-            .body(updatedDocument);
+            .body(summary);
     } catch (Exception e) {
         return ResponseEntity
             .badRequest()
@@ -319,4 +538,9 @@ public class DocumentController {
             .body(Map.of("error", e.getMessage()));
     }
 }
+
+  private UploadSessionDTO toUploadSessionDTO(UploadSession session) {
+      return new UploadSessionDTO(session, chunkedUploadService.getReceivedRanges(session.getId()),
+          chunkedUploadService.getMaxChunkBytes());
+  }
 }
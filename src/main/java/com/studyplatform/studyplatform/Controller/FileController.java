@@ -2,65 +2,200 @@ package com.studyplatform.studyplatform.Controller;
 
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
 
-import com.studyplatform.studyplatform.Service.FileStorageService;
+import com.studyplatform.studyplatform.Service.BlobResource;
+import com.studyplatform.studyplatform.Service.BlobStore;
 
+/**
+ * Serves stored files.
+ *
+ * Stored files are never modified under the same name, so the file name is used as a strong ETag and
+ * responses may be cached for {@code file.cache-max-age-seconds}. Spring answers conditional requests
+ * ({@code If-None-Match}, {@code If-Modified-Since}) with 304 from these headers, and {@code Range}
+ * requests with 206 partial content, so clients can resume downloads and seek in videos and PDFs.
+ *
+ * Files of at least {@code file.sendfile.min-size-bytes} are handed to Tomcat's sendfile support when
+ * the connector offers it, so their bytes go from the page cache to the socket without passing through
+ * the JVM heap. Requests for several ranges at once still go through Spring.
+ *
+ * Files in a remote {@link BlobStore} are streamed through the application, reading only the requested
+ * range from the store.
+ */
 @RestController
 @RequestMapping("/api/files")
 @CrossOrigin(origins = "http://localhost:3000", allowCredentials = "true")
 public class FileController {
 
+    private static final Logger logger = LoggerFactory.getLogger(FileController.class);
+
+    // Request attributes understood by Tomcat's connector, as used by its DefaultServlet
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
     @Autowired
-    private FileStorageService fileStorageService;
+    private BlobStore blobStore;
 
     @Value("${file.upload-dir:uploads}")
     private String uploadDir;
 
+    @Value("${file.cache-max-age-seconds:31536000}")
+    private long cacheMaxAgeSeconds;
+
+    @Value("${file.sendfile.enabled:true}")
+    private boolean sendfileEnabled;
+
+    @Value("${file.sendfile.min-size-bytes:1048576}")
+    private long sendfileMinSizeBytes;
+
+    // Content types by file extension
+    private final Map<String, MediaType> contentTypes = new ConcurrentHashMap<>();
+
     @GetMapping("/{fileName:.+}")
-    public ResponseEntity<Resource> getFile(@PathVariable String fileName) {
+    public ResponseEntity<Resource> getFile(@PathVariable String fileName,
+                                            HttpServletRequest request, HttpServletResponse response) {
         try {
-            // Get the file path
-            Path filePath = fileStorageService.getFilePath(fileName);
+            String eTag = "\"" + fileName + "\"";
+            long lastModified;
+            Resource resource;
             
-            // Check if file exists
-            if (!Files.exists(filePath)) {
-                return ResponseEntity.notFound().build();
-            }
-            
-            // Create resource
-            Resource resource = new UrlResource(filePath.toUri());
-            
-            // Determine content type
-            String contentType = Files.probeContentType(filePath);
-            if (contentType == null) {
-                contentType = "application/octet-stream";
+            // Get the file path
+            Path filePath = blobStore.getLocalPath(fileName);
+            if (filePath != null) {
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(filePath, BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    return ResponseEntity.notFound().build();
+                }
+                if (!attributes.isRegularFile()) {
+                    return ResponseEntity.notFound().build();
+                }
+                lastModified = attributes.lastModifiedTime().toMillis();
+                
+                if (canSendfile(request, attributes.size())) {
+                    sendfile(filePath, fileName, eTag, lastModified, attributes.size(), request, response);
+                    // The response is complete, or Tomcat writes the file once this handler returns
+                    return null;
+                }
+                resource = new FileSystemResource(filePath);
+            } else {
+                // Remote store: a range response only fetches the requested bytes
+                BlobStore.BlobAttributes attributes = blobStore.getAttributes(fileName);
+                if (attributes == null) {
+                    return ResponseEntity.notFound().build();
+                }
+                lastModified = attributes.getLastModified();
+                resource = new BlobResource(blobStore, fileName, attributes);
             }
             
-            // Log successful file access
-            System.out.println("Serving file: " + fileName + " with content type: " + contentType);
-            
             return ResponseEntity.ok()
                     .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + resource.getFilename() + "\"")
-                    .contentType(MediaType.parseMediaType(contentType))
+                    .contentType(getContentType(fileName))
+                    .eTag(eTag)
+                    .lastModified(lastModified)
+                    .cacheControl(getCacheControl())
                     .body(resource);
         } catch (IOException e) {
-            System.err.println("Error serving file: " + fileName + " - " + e.getMessage());
+            logger.error("Error serving file {}: {}", fileName, e.getMessage());
             return ResponseEntity.internalServerError().build();
         }
     }
-}
 
+    private boolean canSendfile(HttpServletRequest request, long size) {
+        if (!sendfileEnabled || size < sendfileMinSizeBytes || !"GET".equals(request.getMethod())
+                || !Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+            return false;
+        }
+        String range = request.getHeader(HttpHeaders.RANGE);
+        return range == null || range.indexOf(',') < 0;
+    }
+
+    /**
+     * Answers a GET of the whole file or of a single byte range by letting Tomcat send the file.
+     */
+    private void sendfile(Path filePath, String fileName, String eTag, long lastModified, long size,
+                          HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ServletWebRequest webRequest = new ServletWebRequest(request, response);
+        if (webRequest.checkNotModified(eTag, lastModified)) {
+            // 304 or 412 with the validators already set
+            return;
+        }
+
+        long start = 0;
+        long end = size - 1;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        // A stale If-Range validator asks for the whole file
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (rangeHeader != null && (ifRange == null || ifRange.equals(eTag))) {
+            try {
+                List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+                start = ranges.get(0).getRangeStart(size);
+                end = ranges.get(0).getRangeEnd(size);
+                if (start >= size || start > end) {
+                    throw new IllegalArgumentException("Range starts after the end of the file");
+                }
+            } catch (IllegalArgumentException e) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+        }
+
+        response.setHeader(HttpHeaders.ETAG, eTag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, getCacheControl().getHeaderValue());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + fileName + "\"");
+        response.setContentType(getContentType(fileName).toString());
+        response.setContentLengthLong(end - start + 1);
+
+        request.setAttribute(SENDFILE_FILENAME_ATTR, filePath.toAbsolutePath().toString());
+        request.setAttribute(SENDFILE_START_ATTR, start);
+        request.setAttribute(SENDFILE_END_ATTR, end + 1);
+    }
+
+    private CacheControl getCacheControl() {
+        return CacheControl.maxAge(cacheMaxAgeSeconds, TimeUnit.SECONDS).cachePrivate();
+    }
+
+    private MediaType getContentType(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        String extension = dot >= 0 ? fileName.substring(dot + 1).toLowerCase() : "";
+        return contentTypes.computeIfAbsent(extension, ext -> MediaTypeFactory.getMediaType(fileName)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM));
+    }
+}
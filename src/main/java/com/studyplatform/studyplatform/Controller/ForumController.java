@@ -43,7 +43,11 @@ public class ForumController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         
-        PagedResponseDTO<ForumTopicDTO> topics = forumService.getAllTopics(page, size);
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        String email = auth.getName();
+        User currentUser = userService.getUserByEmail(email);
+        
+        PagedResponseDTO<ForumTopicDTO> topics = forumService.getAllTopics(currentUser, page, size);
         return ResponseEntity.ok(topics);
     }
     
@@ -53,8 +57,12 @@ public class ForumController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        String email = auth.getName();
+        User currentUser = userService.getUserByEmail(email);
+        
         User user = userService.getUserById(userId);
-        PagedResponseDTO<ForumTopicDTO> topics = forumService.getTopicsByUser(user, page, size);
+        PagedResponseDTO<ForumTopicDTO> topics = forumService.getTopicsByUser(user, currentUser, page, size);
         return ResponseEntity.ok(topics);
     }
     
@@ -64,7 +72,11 @@ public class ForumController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         
-        PagedResponseDTO<ForumTopicDTO> topics = forumService.searchTopics(query, page, size);
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        String email = auth.getName();
+        User currentUser = userService.getUserByEmail(email);
+        
+        PagedResponseDTO<ForumTopicDTO> topics = forumService.searchTopics(currentUser, query, page, size);
         return ResponseEntity.ok(topics);
     }
     
@@ -74,7 +86,11 @@ public class ForumController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         
-        PagedResponseDTO<ForumTopicDTO> topics = forumService.getTopicsByTag(tag, page, size);
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        String email = auth.getName();
+        User currentUser = userService.getUserByEmail(email);
+        
+        PagedResponseDTO<ForumTopicDTO> topics = forumService.getTopicsByTag(currentUser, tag, page, size);
         return ResponseEntity.ok(topics);
     }
     
@@ -83,7 +99,11 @@ public class ForumController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         
-        PagedResponseDTO<ForumTopicDTO> topics = forumService.getTopRatedTopics(page, size);
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        String email = auth.getName();
+        User currentUser = userService.getUserByEmail(email);
+        
+        PagedResponseDTO<ForumTopicDTO> topics = forumService.getTopRatedTopics(currentUser, page, size);
         return ResponseEntity.ok(topics);
     }
     
@@ -92,7 +112,11 @@ public class ForumController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         
-        PagedResponseDTO<ForumTopicDTO> topics = forumService.getMostViewedTopics(page, size);
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        String email = auth.getName();
+        User currentUser = userService.getUserByEmail(email);
+        
+        PagedResponseDTO<ForumTopicDTO> topics = forumService.getMostViewedTopics(currentUser, page, size);
         return ResponseEntity.ok(topics);
     }
     
@@ -202,7 +226,11 @@ public class ForumController {
     
     @GetMapping("/topics/{topicId}/replies")
     public ResponseEntity<List<ForumReplyDTO>> getRepliesByTopic(@PathVariable Long topicId) {
-        List<ForumReplyDTO> replies = forumService.getRepliesByTopic(topicId);
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        String email = auth.getName();
+        User currentUser = userService.getUserByEmail(email);
+        
+        List<ForumReplyDTO> replies = forumService.getRepliesByTopic(topicId, currentUser);
         return ResponseEntity.ok(replies);
     }
     
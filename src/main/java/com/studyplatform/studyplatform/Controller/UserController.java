@@ -46,8 +46,14 @@ public class UserController {
 
     @PostMapping("/profile/picture")
     public ResponseEntity<String> uploadProfilePicture(@RequestParam("file") MultipartFile file, Principal principal) {
+        String previousUrl = userService.getUserByEmail(principal.getName()).getProfilePictureUrl();
         String fileUrl = fileStorageService.storeFile(file);
         User user = userService.updateProfilePicture(principal.getName(), fileUrl);
+        
+        // Release the replaced picture, which may be shared with other uploads of the same file
+        if (previousUrl != null) {
+            fileStorageService.deleteFile(previousUrl);
+        }
         return ResponseEntity.ok(fileUrl);
     }
     
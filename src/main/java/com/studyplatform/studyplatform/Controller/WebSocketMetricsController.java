@@ -0,0 +1,24 @@
+package com.studyplatform.studyplatform.Controller;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.studyplatform.studyplatform.Config.WebSocketSessionMonitor;
+
+@RestController
+@RequestMapping("/api/websocket")
+public class WebSocketMetricsController {
+
+    @Autowired
+    private WebSocketSessionMonitor sessionMonitor;
+    
+    @GetMapping("/metrics")
+    public ResponseEntity<Map<String, Object>> getMetrics() {
+        return ResponseEntity.ok(sessionMonitor.getMetrics());
+    }
+}
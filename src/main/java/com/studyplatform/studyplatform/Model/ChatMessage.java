@@ -7,6 +7,7 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.PrePersist;
@@ -14,7 +15,10 @@ import javax.persistence.PreUpdate;
 import javax.persistence.Table;
 
 @Entity
-@Table(name = "chat_messages")
+@Table(name = "chat_messages", indexes = {
+    @Index(name = "idx_chat_messages_room_sent", columnList = "chat_room_id, sentAt, id"),
+    @Index(name = "idx_chat_messages_room_id", columnList = "chat_room_id, id, sender_id")
+})
 public class ChatMessage {
 
     @Id
@@ -35,6 +39,8 @@ public class ChatMessage {
     @Column(nullable = false)
     private LocalDateTime sentAt;
     
+    // Legacy global read flag, kept so existing rows and schemas stay valid.
+    // Per-user read state lives in ChatReadMarker.
     @Column(nullable = false)
     private boolean isRead = false;
     
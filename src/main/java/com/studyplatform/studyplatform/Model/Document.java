@@ -7,13 +7,17 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.PrePersist;
 import javax.persistence.Table;
 
 @Entity
-@Table(name = "documents")
+@Table(name = "documents", indexes = {
+    @Index(name = "idx_documents_public_uploaded", columnList = "isPublic, uploadedAt, id"),
+    @Index(name = "idx_documents_user_uploaded", columnList = "user_id, uploadedAt, id")
+})
 public class Document {
 
   @Id
@@ -35,6 +39,10 @@ public class Document {
   @Column
   private String description;
   
+  // SHA-256 of the stored file, filled in the first time it is needed
+  @Column(name = "content_hash", length = 64)
+  private String contentHash;
+  
   @Column(nullable = false)
   private LocalDateTime uploadedAt;
 
@@ -113,6 +121,14 @@ public class Document {
       this.uploadedAt = uploadedAt;
   }
 
+  public String getContentHash() {
+      return contentHash;
+  }
+
+  public void setContentHash(String contentHash) {
+      this.contentHash = contentHash;
+  }
+
   public User getUser() {
       return user;
   }
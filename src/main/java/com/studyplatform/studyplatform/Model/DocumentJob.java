@@ -0,0 +1,205 @@
+package com.studyplatform.studyplatform.Model;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+/**
+ * A unit of background processing for an uploaded document, queued in the database so that pending
+ * work survives restarts.
+ */
+@Entity
+@Table(name = "document_jobs", indexes = {
+    @Index(name = "idx_document_jobs_status_run_after", columnList = "status, run_after"),
+    @Index(name = "idx_document_jobs_document", columnList = "document_id")
+}, uniqueConstraints = {
+    @UniqueConstraint(name = "uk_document_jobs_active", columnNames = {"document_id", "type", "active"})
+})
+public class DocumentJob {
+
+    public enum Type {
+        EXTRACT_TEXT,
+        SUMMARIZE
+    }
+    
+    public enum Status {
+        PENDING,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "document_id", nullable = false)
+    private Long documentId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Type type;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status = Status.PENDING;
+    
+    // Also identifies the current claim: only the worker that made this attempt may finish it
+    @Column(nullable = false)
+    private int attempts;
+    
+    // TRUE while pending or running and NULL once finished, so the unique key allows one unfinished job
+    // per document and type
+    @Column(name = "active")
+    private Boolean active = Boolean.TRUE;
+    
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+    
+    // Earliest time the job may be picked up, pushed back after a failed attempt
+    @Column(name = "run_after", nullable = false)
+    private LocalDateTime runAfter;
+    
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+    
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = createdAt;
+        if (runAfter == null) {
+            runAfter = createdAt;
+        }
+    }
+    
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+    
+    public DocumentJob() {
+    }
+    
+    public DocumentJob(Long documentId, Type type) {
+        this.documentId = documentId;
+        this.type = type;
+    }
+    
+    // Getters and Setters
+    
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public Long getDocumentId() {
+        return documentId;
+    }
+    
+    public void setDocumentId(Long documentId) {
+        this.documentId = documentId;
+    }
+    
+    public Type getType() {
+        return type;
+    }
+    
+    public void setType(Type type) {
+        this.type = type;
+    }
+    
+    public Status getStatus() {
+        return status;
+    }
+    
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+    
+    public int getAttempts() {
+        return attempts;
+    }
+    
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+    
+    public Boolean getActive() {
+        return active;
+    }
+    
+    public void setActive(Boolean active) {
+        this.active = active;
+    }
+    
+    public String getLastError() {
+        return lastError;
+    }
+    
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+    
+    public LocalDateTime getRunAfter() {
+        return runAfter;
+    }
+    
+    public void setRunAfter(LocalDateTime runAfter) {
+        this.runAfter = runAfter;
+    }
+    
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+    
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+    
+    public LocalDateTime getCompletedAt() {
+        return completedAt;
+    }
+    
+    public void setCompletedAt(LocalDateTime completedAt) {
+        this.completedAt = completedAt;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,107 @@
+package com.studyplatform.studyplatform.Model;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+/**
+ * A document summary. Generated summaries are keyed by the SHA-256 of the file content, so identical
+ * files share one row and a file is only summarized once; custom summaries attached by a user are
+ * keyed by document and take precedence over the generated one.
+ */
+@Entity
+@Table(name = "document_summaries", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_document_summaries_content_hash", columnNames = {"content_hash"}),
+    @UniqueConstraint(name = "uk_document_summaries_document", columnNames = {"document_id"})
+})
+public class DocumentSummary {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    // Set for generated summaries
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+    
+    // Set for custom summaries
+    @Column(name = "document_id")
+    private Long documentId;
+    
+    @Column(name = "summary_text", nullable = false, columnDefinition = "TEXT")
+    private String summaryText;
+    
+    @Column(name = "word_count", nullable = false)
+    private int wordCount;
+    
+    @Column(name = "generated_at", nullable = false)
+    private LocalDateTime generatedAt;
+    
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        generatedAt = LocalDateTime.now();
+    }
+    
+    public boolean isCustom() {
+        return documentId != null;
+    }
+    
+    // Getters and Setters
+    
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public Long getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(Long documentId) {
+        this.documentId = documentId;
+    }
+
+    public String getSummaryText() {
+        return summaryText;
+    }
+
+    public void setSummaryText(String summaryText) {
+        this.summaryText = summaryText;
+    }
+
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    public void setWordCount(int wordCount) {
+        this.wordCount = wordCount;
+    }
+
+    public LocalDateTime getGeneratedAt() {
+        return generatedAt;
+    }
+
+    public void setGeneratedAt(LocalDateTime generatedAt) {
+        this.generatedAt = generatedAt;
+    }
+}
@@ -0,0 +1,90 @@
+package com.studyplatform.studyplatform.Model;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import javax.persistence.Table;
+
+/**
+ * Plain text extracted from an uploaded document's file, kept so that the search index can be
+ * rebuilt without extracting every file again.
+ */
+@Entity
+@Table(name = "document_texts")
+public class DocumentText {
+
+    public enum Status {
+        EXTRACTED,
+        UNSUPPORTED,
+        FAILED
+    }
+    
+    @Id
+    @Column(name = "document_id")
+    private Long documentId;
+    
+    @Column(columnDefinition = "LONGTEXT")
+    private String content;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status;
+    
+    @Column(name = "extracted_at", nullable = false)
+    private LocalDateTime extractedAt;
+    
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        extractedAt = LocalDateTime.now();
+    }
+    
+    public DocumentText() {
+    }
+    
+    public DocumentText(Long documentId, String content, Status status) {
+        this.documentId = documentId;
+        this.content = content;
+        this.status = status;
+    }
+    
+    // Getters and Setters
+    
+    public Long getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(Long documentId) {
+        this.documentId = documentId;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public LocalDateTime getExtractedAt() {
+        return extractedAt;
+    }
+
+    public void setExtractedAt(LocalDateTime extractedAt) {
+        this.extractedAt = extractedAt;
+    }
+}
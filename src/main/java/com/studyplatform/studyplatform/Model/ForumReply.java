@@ -1,11 +1,8 @@
 package com.studyplatform.studyplatform.Model;
 
 import java.time.LocalDateTime;
-import java.util.HashSet;
-import java.util.Set;
 
 import javax.persistence.Column;
-import javax.persistence.ElementCollection;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
@@ -45,11 +42,16 @@ public class ForumReply {
     @Column(nullable = false)
     private boolean isAcceptedAnswer = false;
     
-    @ElementCollection
-    private Set<Long> upvotedBy = new HashSet<>();
+    // Vote counters, maintained atomically by ForumService alongside the forum_votes rows. They are
+    // not updatable through the entity, so saving an edited reply cannot write back stale values
+    @Column(nullable = false, updatable = false)
+    private int upvotes = 0;
     
-    @ElementCollection
-    private Set<Long> downvotedBy = new HashSet<>();
+    @Column(nullable = false, updatable = false)
+    private int downvotes = 0;
+    
+    @Column(nullable = false, updatable = false)
+    private int score = 0;
     
     @PrePersist
     protected void onCreate() {
@@ -120,46 +122,28 @@ public class ForumReply {
         this.isAcceptedAnswer = isAcceptedAnswer;
     }
 
-    public Set<Long> getUpvotedBy() {
-        return upvotedBy;
-    }
-
-    public void setUpvotedBy(Set<Long> upvotedBy) {
-        this.upvotedBy = upvotedBy;
-    }
-    
     public int getUpvotes() {
-        return this.upvotedBy.size();
-    }
-    
-    public void addUpvote(Long userId) {
-        this.downvotedBy.remove(userId); // Remove downvote if exists
-        this.upvotedBy.add(userId);
-    }
-    
-    public void removeUpvote(Long userId) {
-        this.upvotedBy.remove(userId);
+        return upvotes;
     }
 
-    public Set<Long> getDownvotedBy() {
-        return downvotedBy;
+    public void setUpvotes(int upvotes) {
+        this.upvotes = upvotes;
     }
 
-    public void setDownvotedBy(Set<Long> downvotedBy) {
-        this.downvotedBy = downvotedBy;
-    }
-    
     public int getDownvotes() {
-        return this.downvotedBy.size();
+        return downvotes;
     }
-    
-    public void addDownvote(Long userId) {
-        this.upvotedBy.remove(userId); // Remove upvote if exists
-        this.downvotedBy.add(userId);
+
+    public void setDownvotes(int downvotes) {
+        this.downvotes = downvotes;
     }
-    
-    public void removeDownvote(Long userId) {
-        this.downvotedBy.remove(userId);
+
+    public int getScore() {
+        return score;
+    }
+
+    public void setScore(int score) {
+        this.score = score;
     }
 }
 
@@ -12,6 +12,7 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.PrePersist;
@@ -19,7 +20,9 @@ import javax.persistence.PreUpdate;
 import javax.persistence.Table;
 
 @Entity
-@Table(name = "forum_topics")
+@Table(name = "forum_topics", indexes = {
+    @Index(name = "idx_forum_topics_score", columnList = "score, id")
+})
 public class ForumTopic {
 
     @Id
@@ -42,17 +45,28 @@ public class ForumTopic {
     @Column(nullable = false)
     private LocalDateTime updatedAt;
     
-    @Column(nullable = false)
+    // Counters below are only changed by UPDATE statements, never by saving the entity,
+    // so an edit saved from a loaded topic cannot write back stale values
+    @Column(nullable = false, updatable = false)
     private int viewCount = 0;
     
+    // Denormalized number of replies, maintained by ForumService when replies are created or deleted
+    @Column(nullable = false, updatable = false)
+    private int replyCount = 0;
+    
     @ElementCollection
     private Set<String> tags = new HashSet<>();
     
-    @ElementCollection
-    private Set<Long> upvotedBy = new HashSet<>();
+    // Vote counters, maintained atomically by ForumService alongside the forum_votes rows
+    @Column(nullable = false, updatable = false)
+    private int upvotes = 0;
     
-    @ElementCollection
-    private Set<Long> downvotedBy = new HashSet<>();
+    @Column(nullable = false, updatable = false)
+    private int downvotes = 0;
+    
+    // upvotes - downvotes, indexed for top-rated ordering
+    @Column(nullable = false, updatable = false)
+    private int score = 0;
     
     @PrePersist
     protected void onCreate() {
@@ -123,8 +137,12 @@ public class ForumTopic {
         this.viewCount = viewCount;
     }
     
-    public void incrementViewCount() {
-        this.viewCount++;
+    public int getReplyCount() {
+        return replyCount;
+    }
+    
+    public void setReplyCount(int replyCount) {
+        this.replyCount = replyCount;
     }
 
     public Set<String> getTags() {
@@ -143,46 +161,28 @@ public class ForumTopic {
         this.tags.remove(tag);
     }
 
-    public Set<Long> getUpvotedBy() {
-        return upvotedBy;
-    }
-
-    public void setUpvotedBy(Set<Long> upvotedBy) {
-        this.upvotedBy = upvotedBy;
-    }
-    
     public int getUpvotes() {
-        return this.upvotedBy.size();
-    }
-    
-    public void addUpvote(Long userId) {
-        this.downvotedBy.remove(userId); // Remove downvote if exists
-        this.upvotedBy.add(userId);
-    }
-    
-    public void removeUpvote(Long userId) {
-        this.upvotedBy.remove(userId);
+        return upvotes;
     }
 
-    public Set<Long> getDownvotedBy() {
-        return downvotedBy;
+    public void setUpvotes(int upvotes) {
+        this.upvotes = upvotes;
     }
 
-    public void setDownvotedBy(Set<Long> downvotedBy) {
-        this.downvotedBy = downvotedBy;
-    }
-    
     public int getDownvotes() {
-        return this.downvotedBy.size();
+        return downvotes;
     }
-    
-    public void addDownvote(Long userId) {
-        this.upvotedBy.remove(userId); // Remove upvote if exists
-        this.downvotedBy.add(userId);
+
+    public void setDownvotes(int downvotes) {
+        this.downvotes = downvotes;
     }
-    
-    public void removeDownvote(Long userId) {
-        this.downvotedBy.remove(userId);
+
+    public int getScore() {
+        return score;
+    }
+
+    public void setScore(int score) {
+        this.score = score;
     }
 }
 
@@ -0,0 +1,77 @@
+package com.studyplatform.studyplatform.Model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/**
+ * A range of bytes of an {@link UploadSession} that has been written to its partial file. Ranges of
+ * retried chunks may overlap.
+ */
+@Entity
+@Table(name = "upload_chunks", indexes = {
+    @Index(name = "idx_upload_chunks_upload", columnList = "upload_id")
+})
+public class UploadChunk {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "upload_id", nullable = false, length = 36)
+    private String uploadId;
+
+    // "offset" is a reserved word in some databases
+    @Column(name = "chunk_offset", nullable = false)
+    private long offset;
+
+    @Column(nullable = false)
+    private long length;
+
+    public UploadChunk() {
+    }
+
+    public UploadChunk(String uploadId, long offset, long length) {
+        this.uploadId = uploadId;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    // Getters and Setters
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public void setUploadId(String uploadId) {
+        this.uploadId = uploadId;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public void setOffset(long offset) {
+        this.offset = offset;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public void setLength(long length) {
+        this.length = length;
+    }
+}
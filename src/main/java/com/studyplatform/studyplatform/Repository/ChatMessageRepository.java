@@ -1,5 +1,7 @@
 package com.studyplatform.studyplatform.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.domain.Page;
@@ -21,9 +23,44 @@ public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long>
     // Find messages by chat room ordered by sent time
     List<ChatMessage> findByChatRoomOrderBySentAtAsc(ChatRoom chatRoom);
     
-    // Count unread messages for a user in a chat room - renamed to match your service
-    @Query("SELECT COUNT(m) FROM ChatMessage m WHERE m.chatRoom = :chatRoom AND m.sender != :user AND m.isRead = false")
-    long countUnreadMessagesInRoom(@Param("chatRoom") ChatRoom chatRoom, @Param("user") User user);
+    // Newest page of a room's history (keyset pagination, newest first)
+    @Query("SELECT m FROM ChatMessage m JOIN FETCH m.sender WHERE m.chatRoom = :chatRoom " +
+           "ORDER BY m.sentAt DESC, m.id DESC")
+    List<ChatMessage> findNewestInRoom(@Param("chatRoom") ChatRoom chatRoom, Pageable pageable);
+    
+    // Page of a room's history strictly older than the (sentAt, id) cursor, newest first
+    @Query("SELECT m FROM ChatMessage m JOIN FETCH m.sender WHERE m.chatRoom = :chatRoom " +
+           "AND (m.sentAt < :sentAt OR (m.sentAt = :sentAt AND m.id < :id)) " +
+           "ORDER BY m.sentAt DESC, m.id DESC")
+    List<ChatMessage> findInRoomBefore(@Param("chatRoom") ChatRoom chatRoom,
+                                       @Param("sentAt") LocalDateTime sentAt,
+                                       @Param("id") Long id,
+                                       Pageable pageable);
+    
+    // Messages in a room above a read watermark that were not sent by the user (index range on chat_room_id, id)
+    @Query("SELECT COUNT(m) FROM ChatMessage m " +
+           "WHERE m.chatRoom.id = :roomId AND m.sender.id != :userId AND m.id > :afterId")
+    long countUnreadAfter(@Param("roomId") Long roomId, @Param("userId") Long userId, @Param("afterId") Long afterId);
+    
+    // Unread counts for a batch of rooms as [roomId, count] rows, measured against the user's read watermark
+    // in each room; rooms without unread messages are absent
+    @Query("SELECT m.chatRoom.id, COUNT(m) FROM ChatMessage m " +
+           "LEFT JOIN ChatReadMarker r ON r.chatRoom = m.chatRoom AND r.user = :user " +
+           "WHERE m.chatRoom.id IN :roomIds AND m.sender != :user " +
+           "AND m.id > COALESCE(r.lastReadMessageId, 0) " +
+           "GROUP BY m.chatRoom.id")
+    List<Object[]> countUnreadMessagesByRoomIds(@Param("roomIds") Collection<Long> roomIds, @Param("user") User user);
+    
+    // Highest message id in a room not above the given id, used to clamp read watermarks to real messages
+    @Query("SELECT MAX(m.id) FROM ChatMessage m WHERE m.chatRoom.id = :roomId AND m.id <= :upToId")
+    Long findLatestMessageIdUpTo(@Param("roomId") Long roomId, @Param("upToId") Long upToId);
+    
+    // Latest message of each room in a batch, with the sender fetched in the same query.
+    // Ids are generated in insert order, so the highest id per room is also the latest sentAt.
+    @Query("SELECT DISTINCT m FROM ChatMessage m " +
+           "JOIN FETCH m.sender s LEFT JOIN FETCH s.academicInterests " +
+           "WHERE m.id IN (SELECT MAX(m2.id) FROM ChatMessage m2 WHERE m2.chatRoom.id IN :roomIds GROUP BY m2.chatRoom.id)")
+    List<ChatMessage> findLatestMessagesByRoomIds(@Param("roomIds") Collection<Long> roomIds);
     
     // Find latest messages in room with pagination (replace the LIMIT query)
     @Query("SELECT cm FROM ChatMessage cm WHERE cm.chatRoom = :chatRoom ORDER BY cm.sentAt DESC")
@@ -0,0 +1,35 @@
+package com.studyplatform.studyplatform.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.studyplatform.studyplatform.Model.ChatReadMarker;
+
+@Repository
+public interface ChatReadMarkerRepository extends JpaRepository<ChatReadMarker, Long> {
+    
+    // Current watermark of a user in a room, or null if the user never read the room
+    @Query("SELECT r.lastReadMessageId FROM ChatReadMarker r WHERE r.chatRoom.id = :roomId AND r.user.id = :userId")
+    Long findLastReadMessageId(@Param("roomId") Long roomId, @Param("userId") Long userId);
+    
+    // Watermarks of a user for a batch of rooms as [roomId, lastReadMessageId] rows
+    @Query("SELECT r.chatRoom.id, r.lastReadMessageId FROM ChatReadMarker r " +
+           "WHERE r.user.id = :userId AND r.chatRoom.id IN :roomIds")
+    List<Object[]> findLastReadMessageIds(@Param("roomIds") Collection<Long> roomIds, @Param("userId") Long userId);
+    
+    // Single-row upsert; the watermark only ever moves forward
+    @Modifying
+    @Query(value = "INSERT INTO chat_read_markers (chat_room_id, user_id, last_read_message_id, updated_at) " +
+                   "VALUES (:roomId, :userId, :messageId, NOW()) " +
+                   "ON DUPLICATE KEY UPDATE " +
+                   "last_read_message_id = GREATEST(last_read_message_id, VALUES(last_read_message_id)), " +
+                   "updated_at = VALUES(updated_at)",
+           nativeQuery = true)
+    int advance(@Param("roomId") Long roomId, @Param("userId") Long userId, @Param("messageId") Long messageId);
+}
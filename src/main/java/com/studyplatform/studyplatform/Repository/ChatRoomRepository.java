@@ -1,5 +1,6 @@
 package com.studyplatform.studyplatform.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,6 +18,20 @@ public interface ChatRoomRepository extends JpaRepository<ChatRoom, Long> {
     // Find chat rooms where a user is a participant
     List<ChatRoom> findByParticipantsContaining(User user);
     
+    // Find a user's chat rooms with the creator fetched in the same query (inbox listing)
+    @Query("SELECT DISTINCT cr FROM ChatRoom cr " +
+           "JOIN FETCH cr.createdBy c LEFT JOIN FETCH c.academicInterests " +
+           "JOIN cr.participants p WHERE p = :user")
+    List<ChatRoom> findInboxRoomsForUser(@Param("user") User user);
+    
+    // Participant ids of a single room, without loading the users
+    @Query("SELECT p.id FROM ChatRoom cr JOIN cr.participants p WHERE cr.id = :roomId")
+    List<Long> findParticipantIdsByRoomId(@Param("roomId") Long roomId);
+    
+    // Participant ids for a batch of rooms as [roomId, userId] rows
+    @Query("SELECT cr.id, p.id FROM ChatRoom cr JOIN cr.participants p WHERE cr.id IN :roomIds")
+    List<Object[]> findParticipantIdsByRoomIds(@Param("roomIds") Collection<Long> roomIds);
+    
     // Find private chat between two users
     @Query("SELECT cr FROM ChatRoom cr WHERE cr.isGroupChat = false " +
            "AND :user1 MEMBER OF cr.participants " +
@@ -0,0 +1,99 @@
+package com.studyplatform.studyplatform.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.studyplatform.studyplatform.Model.DocumentJob;
+import com.studyplatform.studyplatform.Model.DocumentJob.Status;
+import com.studyplatform.studyplatform.Model.DocumentJob.Type;
+
+@Repository
+public interface DocumentJobRepository extends JpaRepository<DocumentJob, Long> {
+    
+    List<DocumentJob> findByDocumentIdOrderByIdAsc(Long documentId);
+    
+    Optional<DocumentJob> findFirstByDocumentIdAndTypeOrderByIdDesc(Long documentId, Type type);
+    
+    // Due jobs as [id, attempts] rows
+    @Query("SELECT j.id, j.attempts FROM DocumentJob j WHERE j.status = :status AND j.runAfter <= :now ORDER BY j.id")
+    List<Object[]> findDue(@Param("status") Status status, @Param("now") LocalDateTime now, Pageable pageable);
+    
+    // Succeeds for exactly one caller, so a job is never run twice even with several instances polling.
+    // The claimed attempt is attempts + 1, which the transitions below must name.
+    @Transactional
+    @Modifying
+    @Query("UPDATE DocumentJob j SET j.status = 'RUNNING', j.attempts = j.attempts + 1, j.startedAt = :now, " +
+           "j.updatedAt = :now WHERE j.id = :id AND j.status = 'PENDING' AND j.attempts = :attempts")
+    int claim(@Param("id") Long id, @Param("attempts") int attempts, @Param("now") LocalDateTime now);
+    
+    // Keeps a running job from being requeued as stale; 0 when the claim has been lost
+    @Transactional
+    @Modifying
+    @Query("UPDATE DocumentJob j SET j.updatedAt = :now " +
+           "WHERE j.id = :id AND j.status = 'RUNNING' AND j.attempts = :attempt")
+    int renewClaim(@Param("id") Long id, @Param("attempt") int attempt, @Param("now") LocalDateTime now);
+    
+    // The transitions below only apply to the claim that is still current and return 0 otherwise, so a
+    // worker whose job was requeued and claimed again cannot overwrite the newer attempt
+    
+    @Transactional
+    @Modifying
+    @Query("UPDATE DocumentJob j SET j.status = 'COMPLETED', j.active = NULL, j.lastError = NULL, " +
+           "j.completedAt = :now, j.updatedAt = :now " +
+           "WHERE j.id = :id AND j.status = 'RUNNING' AND j.attempts = :attempt")
+    int markCompleted(@Param("id") Long id, @Param("attempt") int attempt, @Param("now") LocalDateTime now);
+    
+    @Transactional
+    @Modifying
+    @Query("UPDATE DocumentJob j SET j.status = 'PENDING', j.lastError = :error, j.runAfter = :runAfter, " +
+           "j.updatedAt = :now WHERE j.id = :id AND j.status = 'RUNNING' AND j.attempts = :attempt")
+    int markForRetry(@Param("id") Long id, @Param("attempt") int attempt, @Param("error") String error,
+                     @Param("runAfter") LocalDateTime runAfter, @Param("now") LocalDateTime now);
+    
+    @Transactional
+    @Modifying
+    @Query("UPDATE DocumentJob j SET j.status = 'FAILED', j.active = NULL, j.lastError = :error, " +
+           "j.completedAt = :now, j.updatedAt = :now " +
+           "WHERE j.id = :id AND j.status = 'RUNNING' AND j.attempts = :attempt")
+    int markFailed(@Param("id") Long id, @Param("attempt") int attempt, @Param("error") String error,
+                   @Param("now") LocalDateTime now);
+    
+    // Jobs whose claim has not been renewed, left running by an instance that stopped or crashed
+    @Transactional
+    @Modifying
+    @Query("UPDATE DocumentJob j SET j.status = 'PENDING', j.runAfter = :now, j.updatedAt = :now " +
+           "WHERE j.status = 'RUNNING' AND j.updatedAt < :renewedBefore")
+    int requeueStale(@Param("renewedBefore") LocalDateTime renewedBefore, @Param("now") LocalDateTime now);
+    
+    // Queues a job unless the document already has an unfinished one of this type; 0 in that case
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO document_jobs (document_id, type, status, attempts, active, run_after, created_at, updated_at) " +
+                   "VALUES (:documentId, :type, 'PENDING', 0, TRUE, :now, :now, :now)",
+           nativeQuery = true)
+    int insertIfNoneActive(@Param("documentId") Long documentId, @Param("type") String type, @Param("now") LocalDateTime now);
+    
+    // Queues text extraction for documents uploaded before the job queue existed
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO document_jobs (document_id, type, status, attempts, active, run_after, created_at, updated_at) " +
+                   "SELECT d.id, 'EXTRACT_TEXT', 'PENDING', 0, TRUE, NOW(), NOW(), NOW() FROM documents d " +
+                   "WHERE NOT EXISTS (SELECT 1 FROM document_texts t WHERE t.document_id = d.id) " +
+                   "AND NOT EXISTS (SELECT 1 FROM document_jobs j WHERE j.document_id = d.id AND j.type = 'EXTRACT_TEXT')",
+           nativeQuery = true)
+    int enqueueMissingTextExtraction();
+    
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM DocumentJob j WHERE j.documentId = :documentId")
+    int deleteByDocumentId(@Param("documentId") Long documentId);
+}
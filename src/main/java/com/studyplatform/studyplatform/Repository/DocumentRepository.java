@@ -1,29 +1,80 @@
 package com.studyplatform.studyplatform.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.studyplatform.studyplatform.Model.Document;
+import com.studyplatform.studyplatform.dto.DocumentListItemDTO;
 
 @Repository
 public interface DocumentRepository extends JpaRepository<Document, Long> {
     
+    String LIST_ITEM = "new com.studyplatform.studyplatform.dto.DocumentListItemDTO(" +
+        "d.id, d.name, d.fileUrl, d.fileType, d.fileSize, d.description, d.uploadedAt, d.isPublic, u.id, u.firstName, u.lastName)";
+    
     List<Document> findByUserId(Long userId);
     
-    List<Document> findByUserIdOrderByUploadedAtDesc(Long userId);
-
-    @Query("SELECT d FROM Document d WHERE LOWER(d.name) LIKE LOWER(CONCAT('%', :query, '%')) OR LOWER(d.description) LIKE LOWER(CONCAT('%', :query, '%'))")
-    List<Document> findByNameContainingIgnoreCaseOrDescriptionContainingIgnoreCase(@Param("query") String query);
-
-    List<Document> findByIsPublicTrue();
+    // Listings select DocumentListItemDTO rows directly and page by the (uploadedAt, id) keyset, newest first
+    
+    @Query("SELECT " + LIST_ITEM + " FROM Document d JOIN d.user u WHERE d.isPublic = true " +
+           "ORDER BY d.uploadedAt DESC, d.id DESC")
+    List<DocumentListItemDTO> findNewestPublic(Pageable pageable);
+    
+    @Query("SELECT " + LIST_ITEM + " FROM Document d JOIN d.user u WHERE d.isPublic = true " +
+           "AND (d.uploadedAt < :uploadedAt OR (d.uploadedAt = :uploadedAt AND d.id < :id)) " +
+           "ORDER BY d.uploadedAt DESC, d.id DESC")
+    List<DocumentListItemDTO> findPublicBefore(@Param("uploadedAt") LocalDateTime uploadedAt,
+                                               @Param("id") Long id,
+                                               Pageable pageable);
+    
+    @Query("SELECT " + LIST_ITEM + " FROM Document d JOIN d.user u WHERE u.id = :userId " +
+           "ORDER BY d.uploadedAt DESC, d.id DESC")
+    List<DocumentListItemDTO> findNewestByUser(@Param("userId") Long userId, Pageable pageable);
+    
+    @Query("SELECT " + LIST_ITEM + " FROM Document d JOIN d.user u WHERE u.id = :userId " +
+           "AND (d.uploadedAt < :uploadedAt OR (d.uploadedAt = :uploadedAt AND d.id < :id)) " +
+           "ORDER BY d.uploadedAt DESC, d.id DESC")
+    List<DocumentListItemDTO> findByUserBefore(@Param("userId") Long userId,
+                                               @Param("uploadedAt") LocalDateTime uploadedAt,
+                                               @Param("id") Long id,
+                                               Pageable pageable);
+    
+    @Query("SELECT " + LIST_ITEM + " FROM Document d JOIN d.user u WHERE d.id IN :ids")
+    List<DocumentListItemDTO> findListItemsByIdIn(@Param("ids") Collection<Long> ids);
 
+    // Database fallback for content search while the search index is not ready; covers name and
+    // description only, restricted to public documents and the caller's own
+    @Query(value = "SELECT d.id FROM Document d WHERE (d.isPublic = true OR d.user.id = :userId) " +
+                   "AND (LOWER(d.name) LIKE LOWER(CONCAT('%', :query, '%')) OR LOWER(d.description) LIKE LOWER(CONCAT('%', :query, '%'))) " +
+                   "ORDER BY d.uploadedAt DESC, d.id DESC",
+           countQuery = "SELECT COUNT(d) FROM Document d WHERE (d.isPublic = true OR d.user.id = :userId) " +
+                        "AND (LOWER(d.name) LIKE LOWER(CONCAT('%', :query, '%')) OR LOWER(d.description) LIKE LOWER(CONCAT('%', :query, '%')))")
+    Page<Long> searchVisibleIds(@Param("query") String query, @Param("userId") Long userId, Pageable pageable);
+    
+    // Index input for the next documents after afterId as [id, name, description, ownerId, isPublic,
+    // textDocumentId, textContent] rows; the text columns are null when nothing was extracted yet
+    @Query("SELECT d.id, d.name, d.description, d.user.id, d.isPublic, t.documentId, t.content " +
+           "FROM Document d LEFT JOIN DocumentText t ON t.documentId = d.id " +
+           "WHERE d.id > :afterId ORDER BY d.id")
+    List<Object[]> findSearchRowsAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
+    // Documents in id order, for jobs that walk through all of them
+    List<Document> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+    
     // These methods would normally be implemented with actual view/download tracking tables
     // For now, we'll return dummy data in the service
+    @Query("SELECT COALESCE(SUM(d.fileSize), 0) FROM Document d WHERE d.user.id = :userId")
+    long sumFileSizeByUserId(@Param("userId") Long userId);
+    
     @Query("SELECT COUNT(d) FROM Document d WHERE d.id = :documentId")
     int getDocumentViews(@Param("documentId") Long documentId);
 
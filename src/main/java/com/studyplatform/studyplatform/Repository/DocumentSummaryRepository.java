@@ -0,0 +1,16 @@
+package com.studyplatform.studyplatform.Repository;
+
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.studyplatform.studyplatform.Model.DocumentSummary;
+
+@Repository
+public interface DocumentSummaryRepository extends JpaRepository<DocumentSummary, Long> {
+    
+    Optional<DocumentSummary> findByContentHash(String contentHash);
+    
+    Optional<DocumentSummary> findByDocumentId(Long documentId);
+}
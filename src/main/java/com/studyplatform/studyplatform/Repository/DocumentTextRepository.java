@@ -0,0 +1,10 @@
+package com.studyplatform.studyplatform.Repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.studyplatform.studyplatform.Model.DocumentText;
+
+@Repository
+public interface DocumentTextRepository extends JpaRepository<DocumentText, Long> {
+}
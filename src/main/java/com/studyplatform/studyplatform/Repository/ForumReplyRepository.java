@@ -4,6 +4,7 @@ import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -23,5 +24,22 @@ public interface ForumReplyRepository extends JpaRepository<ForumReply, Long> {
     long countRepliesByTopic(@Param("topic") ForumTopic topic);
     
     Optional<ForumReply> findByTopicAndIsAcceptedAnswerTrue(ForumTopic topic);
+    
+    @Query("SELECT r.id FROM ForumReply r WHERE r.topic = :topic")
+    List<Long> findIdsByTopic(@Param("topic") ForumTopic topic);
+    
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE ForumReply r SET r.upvotes = r.upvotes + :upDelta, r.downvotes = r.downvotes + :downDelta, " +
+           "r.score = r.score + :upDelta - :downDelta WHERE r.id = :id")
+    int adjustVotes(@Param("id") Long id, @Param("upDelta") int upDelta, @Param("downDelta") int downDelta);
+    
+    // Recomputes every vote counter from forum_votes, used after importing legacy votes
+    @Modifying
+    @Query(value = "UPDATE forum_replies r SET " +
+                   "r.upvotes = (SELECT COUNT(*) FROM forum_votes v WHERE v.target_type = 'REPLY' AND v.target_id = r.id AND v.value = 1), " +
+                   "r.downvotes = (SELECT COUNT(*) FROM forum_votes v WHERE v.target_type = 'REPLY' AND v.target_id = r.id AND v.value = -1), " +
+                   "r.score = r.upvotes - r.downvotes",
+           nativeQuery = true)
+    int recountVotes();
 }
 
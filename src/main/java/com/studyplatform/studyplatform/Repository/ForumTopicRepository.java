@@ -1,10 +1,12 @@
 package com.studyplatform.studyplatform.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -15,23 +17,68 @@ import com.studyplatform.studyplatform.Model.User;
 @Repository
 public interface ForumTopicRepository extends JpaRepository<ForumTopic, Long> {
     
-    Page<ForumTopic> findAllByOrderByCreatedAtDesc(Pageable pageable);
+    // Listing queries return only the ids of one page; the topics themselves are then
+    // loaded in a single query with findWithDetailsByIdIn
     
-    Page<ForumTopic> findByUserOrderByCreatedAtDesc(User user, Pageable pageable);
+    @Query(value = "SELECT t.id FROM ForumTopic t ORDER BY t.createdAt DESC",
+           countQuery = "SELECT COUNT(t) FROM ForumTopic t")
+    Page<Long> findIdsOrderByCreatedAtDesc(Pageable pageable);
     
-    @Query("SELECT t FROM ForumTopic t WHERE LOWER(t.title) LIKE LOWER(CONCAT('%', :query, '%')) OR LOWER(t.content) LIKE LOWER(CONCAT('%', :query, '%'))")
-    Page<ForumTopic> searchTopics(@Param("query") String query, Pageable pageable);
+    @Query(value = "SELECT t.id FROM ForumTopic t WHERE t.user = :user ORDER BY t.createdAt DESC",
+           countQuery = "SELECT COUNT(t) FROM ForumTopic t WHERE t.user = :user")
+    Page<Long> findIdsByUserOrderByCreatedAtDesc(@Param("user") User user, Pageable pageable);
     
-    @Query("SELECT t FROM ForumTopic t WHERE :tag MEMBER OF t.tags")
-    Page<ForumTopic> findByTag(@Param("tag") String tag, Pageable pageable);
+    @Query(value = "SELECT t.id FROM ForumTopic t WHERE LOWER(t.title) LIKE LOWER(CONCAT('%', :query, '%')) OR LOWER(t.content) LIKE LOWER(CONCAT('%', :query, '%'))",
+           countQuery = "SELECT COUNT(t) FROM ForumTopic t WHERE LOWER(t.title) LIKE LOWER(CONCAT('%', :query, '%')) OR LOWER(t.content) LIKE LOWER(CONCAT('%', :query, '%'))")
+    Page<Long> searchTopicIds(@Param("query") String query, Pageable pageable);
     
-    @Query("SELECT t FROM ForumTopic t ORDER BY SIZE(t.upvotedBy) - SIZE(t.downvotedBy) DESC")
-    Page<ForumTopic> findTopRated(Pageable pageable);
+    @Query(value = "SELECT t.id FROM ForumTopic t WHERE :tag MEMBER OF t.tags",
+           countQuery = "SELECT COUNT(t) FROM ForumTopic t WHERE :tag MEMBER OF t.tags")
+    Page<Long> findIdsByTag(@Param("tag") String tag, Pageable pageable);
     
-    @Query("SELECT t FROM ForumTopic t ORDER BY t.viewCount DESC")
-    Page<ForumTopic> findMostViewed(Pageable pageable);
+    @Query(value = "SELECT t.id FROM ForumTopic t ORDER BY t.score DESC, t.id DESC",
+           countQuery = "SELECT COUNT(t) FROM ForumTopic t")
+    Page<Long> findTopRatedIds(Pageable pageable);
+    
+    @Query(value = "SELECT t.id FROM ForumTopic t ORDER BY t.viewCount DESC",
+           countQuery = "SELECT COUNT(t) FROM ForumTopic t")
+    Page<Long> findMostViewedIds(Pageable pageable);
+    
+    // Id, title and content of the next topics after afterId, used to build the search index in batches
+    @Query("SELECT t.id, t.title, t.content FROM ForumTopic t WHERE t.id > :afterId ORDER BY t.id")
+    List<Object[]> findSearchRowsAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
+    // One page worth of topics with author and tags fetched in the same query
+    @Query("SELECT DISTINCT t FROM ForumTopic t " +
+           "JOIN FETCH t.user u LEFT JOIN FETCH u.academicInterests " +
+           "LEFT JOIN FETCH t.tags " +
+           "WHERE t.id IN :ids")
+    List<ForumTopic> findWithDetailsByIdIn(@Param("ids") Collection<Long> ids);
+    
+    @Modifying
+    @Query("UPDATE ForumTopic t SET t.replyCount = t.replyCount + :delta WHERE t.id = :id")
+    int adjustReplyCount(@Param("id") Long id, @Param("delta") int delta);
+    
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE ForumTopic t SET t.upvotes = t.upvotes + :upDelta, t.downvotes = t.downvotes + :downDelta, " +
+           "t.score = t.score + :upDelta - :downDelta WHERE t.id = :id")
+    int adjustVotes(@Param("id") Long id, @Param("upDelta") int upDelta, @Param("downDelta") int downDelta);
+    
+    // Recomputes every vote counter from forum_votes, used after importing legacy votes
+    @Modifying
+    @Query(value = "UPDATE forum_topics t SET " +
+                   "t.upvotes = (SELECT COUNT(*) FROM forum_votes v WHERE v.target_type = 'TOPIC' AND v.target_id = t.id AND v.value = 1), " +
+                   "t.downvotes = (SELECT COUNT(*) FROM forum_votes v WHERE v.target_type = 'TOPIC' AND v.target_id = t.id AND v.value = -1), " +
+                   "t.score = t.upvotes - t.downvotes",
+           nativeQuery = true)
+    int recountVotes();
+    
+    // Recomputes every denormalized reply count from forum_replies, used to backfill existing data
+    @Modifying
+    @Query("UPDATE ForumTopic t SET t.replyCount = (SELECT COUNT(r) FROM ForumReply r WHERE r.topic = t)")
+    int recountReplies();
     
     // Fix for the error - use JOIN to flatten the collection
     @Query("SELECT DISTINCT tag FROM ForumTopic t JOIN t.tags tag")
     List<String> findAllTags();
-}
\ No newline at end of file
+}
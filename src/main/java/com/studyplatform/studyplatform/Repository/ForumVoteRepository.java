@@ -0,0 +1,82 @@
+package com.studyplatform.studyplatform.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import javax.persistence.LockModeType;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.studyplatform.studyplatform.Model.ForumVote;
+import com.studyplatform.studyplatform.Model.ForumVote.TargetType;
+
+@Repository
+public interface ForumVoteRepository extends JpaRepository<ForumVote, Long> {
+    
+    Optional<ForumVote> findByTargetTypeAndTargetIdAndUserId(TargetType targetType, Long targetId, Long userId);
+    
+    // A user's votes on a batch of targets as [targetId, value] rows
+    @Query("SELECT v.targetId, v.value FROM ForumVote v " +
+           "WHERE v.targetType = :targetType AND v.userId = :userId AND v.targetId IN :targetIds")
+    List<Object[]> findUserVotes(@Param("targetType") TargetType targetType,
+                                 @Param("userId") Long userId,
+                                 @Param("targetIds") Collection<Long> targetIds);
+    
+    // Locking read, so it sees a vote committed after this transaction started
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT v.value FROM ForumVote v WHERE v.targetType = :targetType AND v.targetId = :targetId AND v.userId = :userId")
+    Optional<Integer> findValueForUpdate(@Param("targetType") TargetType targetType,
+                                         @Param("targetId") Long targetId,
+                                         @Param("userId") Long userId);
+    
+    // Switches an existing vote to the other side; 0 when there is no vote or it already has this value
+    @Modifying
+    @Query("UPDATE ForumVote v SET v.value = :value, v.updatedAt = :updatedAt " +
+           "WHERE v.targetType = :targetType AND v.targetId = :targetId AND v.userId = :userId AND v.value <> :value")
+    int changeValue(@Param("targetType") TargetType targetType,
+                    @Param("targetId") Long targetId,
+                    @Param("userId") Long userId,
+                    @Param("value") int value,
+                    @Param("updatedAt") LocalDateTime updatedAt);
+    
+    // 0 when the user already has a vote on the target, without failing the transaction
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO forum_votes (target_type, target_id, user_id, value, updated_at) " +
+                   "VALUES (:targetType, :targetId, :userId, :value, :updatedAt)",
+           nativeQuery = true)
+    int insertIfAbsent(@Param("targetType") String targetType,
+                       @Param("targetId") Long targetId,
+                       @Param("userId") Long userId,
+                       @Param("value") int value,
+                       @Param("updatedAt") LocalDateTime updatedAt);
+    
+    // 0 when there is no vote or it has the other value
+    @Modifying
+    @Query("DELETE FROM ForumVote v " +
+           "WHERE v.targetType = :targetType AND v.targetId = :targetId AND v.userId = :userId AND v.value = :value")
+    int deleteWithValue(@Param("targetType") TargetType targetType,
+                        @Param("targetId") Long targetId,
+                        @Param("userId") Long userId,
+                        @Param("value") int value);
+    
+    @Modifying
+    @Query("DELETE FROM ForumVote v WHERE v.targetType = :targetType AND v.targetId IN :targetIds")
+    int deleteByTargets(@Param("targetType") TargetType targetType, @Param("targetIds") Collection<Long> targetIds);
+    
+    // One-off copy of the voter sets stored by earlier versions in element collection tables
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO forum_votes (target_type, target_id, user_id, value, updated_at) " +
+                   "SELECT 'TOPIC', forum_topic_id, upvoted_by, 1, NOW() FROM forum_topic_upvoted_by WHERE upvoted_by IS NOT NULL " +
+                   "UNION ALL SELECT 'TOPIC', forum_topic_id, downvoted_by, -1, NOW() FROM forum_topic_downvoted_by WHERE downvoted_by IS NOT NULL " +
+                   "UNION ALL SELECT 'REPLY', forum_reply_id, upvoted_by, 1, NOW() FROM forum_reply_upvoted_by WHERE upvoted_by IS NOT NULL " +
+                   "UNION ALL SELECT 'REPLY', forum_reply_id, downvoted_by, -1, NOW() FROM forum_reply_downvoted_by WHERE downvoted_by IS NOT NULL",
+           nativeQuery = true)
+    int importLegacyVotes();
+}
@@ -0,0 +1,38 @@
+package com.studyplatform.studyplatform.Repository;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.studyplatform.studyplatform.Model.StoredFile;
+
+/**
+ * Reference counts change in single statements, which lock the row until the end of the transaction and
+ * work on its latest committed count, so counting a reference and deleting the last one cannot interleave.
+ */
+@Repository
+public interface StoredFileRepository extends JpaRepository<StoredFile, String> {
+
+    // Leaves the last reference, which goes with the file
+    @Modifying
+    @Query("UPDATE StoredFile f SET f.referenceCount = f.referenceCount - 1 " +
+           "WHERE f.fileName = :fileName AND f.referenceCount > 1")
+    int decrementReferenceCount(@Param("fileName") String fileName);
+
+    @Modifying
+    @Query("DELETE FROM StoredFile f WHERE f.fileName = :fileName AND f.referenceCount <= 1")
+    int deleteLastReference(@Param("fileName") String fileName);
+
+    // Counts one more reference, adding the row for the first one. ON DUPLICATE KEY UPDATE is MySQL
+    // syntax, which the tests get from H2's MySQL mode; another database needs its own upsert here.
+    @Modifying
+    @Query(value = "INSERT INTO stored_files (file_name, content_hash, size, reference_count, created_at) " +
+                   "VALUES (:fileName, :contentHash, :size, 1, :createdAt) " +
+                   "ON DUPLICATE KEY UPDATE reference_count = reference_count + 1", nativeQuery = true)
+    int addReference(@Param("fileName") String fileName, @Param("contentHash") String contentHash,
+                     @Param("size") long size, @Param("createdAt") LocalDateTime createdAt);
+}
@@ -1,4 +1,5 @@
 package com.studyplatform.studyplatform.Repository;
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -10,4 +11,5 @@ import com.studyplatform.studyplatform.Model.User;
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     boolean existsByEmail(String email);
+    List<User> findByProfilePictureUrlIsNotNull();
 }
@@ -0,0 +1,104 @@
+package com.studyplatform.studyplatform.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.core.io.AbstractResource;
+
+/**
+ * A blob of a {@link BlobStore} that is not on the local filesystem, as a Spring {@link org.springframework.core.io.Resource}.
+ *
+ * Its streams open the blob on the first read, from the position reached by any {@code skip} before
+ * it, so a Spring range response over this resource only fetches the requested bytes.
+ */
+public class BlobResource extends AbstractResource {
+
+    private final BlobStore blobStore;
+    private final String name;
+    private final BlobStore.BlobAttributes attributes;
+
+    public BlobResource(BlobStore blobStore, String name, BlobStore.BlobAttributes attributes) {
+        this.blobStore = blobStore;
+        this.name = name;
+        this.attributes = attributes;
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public long contentLength() {
+        return attributes.getSize();
+    }
+
+    @Override
+    public long lastModified() {
+        return attributes.getLastModified();
+    }
+
+    @Override
+    public String getFilename() {
+        return name;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Blob [" + name + "]";
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return new LazyBlobInputStream();
+    }
+
+    private final class LazyBlobInputStream extends InputStream {
+        private InputStream delegate;
+        private long position;
+
+        @Override
+        public int read() throws IOException {
+            int read = open().read();
+            if (read != -1) {
+                position++;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = open().read(buffer, offset, length);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (delegate != null) {
+                long skipped = delegate.skip(n);
+                position += skipped;
+                return skipped;
+            }
+            long skipped = Math.max(0, Math.min(n, attributes.getSize() - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (delegate != null) {
+                delegate.close();
+            }
+        }
+
+        private InputStream open() throws IOException {
+            if (delegate == null) {
+                delegate = blobStore.open(name, position);
+            }
+            return delegate;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.studyplatform.studyplatform.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Where the bytes of stored files live. {@link FileStorageService} decides the names and keeps the
+ * reference counts; a blob store only puts, reads and deletes blobs by name.
+ *
+ * The implementation is chosen with {@code file.storage.backend}: {@code local} (the default) keeps
+ * blobs in {@code file.upload-dir}, {@code s3} in an S3-compatible bucket, so that several application
+ * nodes can share them.
+ */
+public interface BlobStore {
+
+    /**
+     * Creates an empty temporary file from which {@link #put} can store a blob cheaply
+     */
+    Path createTempFile() throws IOException;
+
+    /**
+     * Stores the content of a local file under the name, replacing any blob stored under it. The source
+     * may be moved away, so callers must not use it afterwards.
+     */
+    void put(String name, Path source) throws IOException;
+
+    /**
+     * Size and modification time of a blob, or null if there is none under the name
+     */
+    BlobAttributes getAttributes(String name) throws IOException;
+
+    default boolean exists(String name) throws IOException {
+        return getAttributes(name) != null;
+    }
+
+    /**
+     * Reads a blob from the given offset to its end
+     * @throws java.nio.file.NoSuchFileException if there is no blob under the name
+     */
+    InputStream open(String name, long offset) throws IOException;
+
+    /**
+     * Copies a blob to a local file, replacing it
+     */
+    default void download(String name, Path target) throws IOException {
+        try (InputStream inputStream = open(name, 0)) {
+            Files.copy(inputStream, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Deletes a blob if it exists
+     */
+    void delete(String name) throws IOException;
+
+    /**
+     * The local file holding a blob, for readers that need random access or zero-copy transfers, or null
+     * if the store is not on the local filesystem
+     */
+    Path getLocalPath(String name);
+
+    final class BlobAttributes {
+        private final long size;
+        private final long lastModified;
+
+        public BlobAttributes(long size, long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        // Milliseconds since the epoch
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.studyplatform.studyplatform.Service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.studyplatform.studyplatform.Repository.ChatRoomRepository;
+
+/**
+ * In-memory chat room membership, keyed by room id and holding each room's participant ids as a
+ * sorted {@code long[]}. Loaded on first use with a single id-only query and evicted by
+ * {@link ChatService} whenever a room is created or its participants change.
+ */
+@Service
+public class ChatMembershipCache {
+
+    private static final long[] NO_PARTICIPANTS = new long[0];
+    
+    @Autowired
+    private ChatRoomRepository chatRoomRepository;
+    
+    private final Map<Long, long[]> participantsByRoom = new ConcurrentHashMap<>();
+    
+    public boolean isParticipant(Long chatRoomId, Long userId) {
+        if (chatRoomId == null || userId == null) {
+            return false;
+        }
+        return Arrays.binarySearch(getParticipantIds(chatRoomId), userId) >= 0;
+    }
+    
+    public long[] getParticipantIds(Long chatRoomId) {
+        long[] cached = participantsByRoom.get(chatRoomId);
+        if (cached != null) {
+            return cached;
+        }
+        
+        List<Long> ids = chatRoomRepository.findParticipantIdsByRoomId(chatRoomId);
+        if (ids.isEmpty()) {
+            // Unknown rooms are not cached so that probing random ids cannot grow the map
+            return NO_PARTICIPANTS;
+        }
+        
+        long[] participantIds = ids.stream().mapToLong(Long::longValue).sorted().toArray();
+        participantsByRoom.put(chatRoomId, participantIds);
+        return participantIds;
+    }
+    
+    public void evict(Long chatRoomId) {
+        if (chatRoomId != null) {
+            participantsByRoom.remove(chatRoomId);
+        }
+    }
+    
+    public void clear() {
+        participantsByRoom.clear();
+    }
+}
@@ -0,0 +1,355 @@
+package com.studyplatform.studyplatform.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Write-behind persistence for chat messages, used when {@code chat.persistence.mode=batched}.
+ *
+ * Message ids are assigned in memory so a message can be broadcast before it is stored; a single
+ * writer thread drains a bounded queue and inserts into {@code chat_messages} in JDBC batches, one
+ * transaction per batch. When the queue is full, callers block for up to the offer timeout and are
+ * then rejected. On shutdown intake is closed first, then the writer drains and flushes the queue before
+ * the data source goes away.
+ *
+ * A batch that still fails after {@value #MAX_FLUSH_ATTEMPTS} attempts is parked and retried every
+ * {@code chat.persistence.parked-retry-interval-ms} while newer batches keep flowing. When the database
+ * refused rows of the batch, such as a message for a room deleted since it was sent, the batch is halved
+ * until those rows are isolated, so only they are parked and the rest is stored. Parked messages are only
+ * given up when they would exceed the queue capacity or at shutdown, and every message given up is logged
+ * in full so it can be replayed.
+ *
+ * Ids continue from the highest stored id, so only one application instance may run in batched mode
+ * against a database at a time.
+ */
+@Service
+public class ChatMessageBatchWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatMessageBatchWriter.class);
+    
+    private static final String INSERT_SQL =
+        "INSERT INTO chat_messages (id, chat_room_id, sender_id, content, sent_at, is_read) VALUES (?, ?, ?, ?, ?, false)";
+    
+    private static final int MAX_FLUSH_ATTEMPTS = 5;
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long offerTimeoutMs;
+    private final long parkedRetryIntervalMs;
+    private final int maxParkedMessages;
+    private final BlockingQueue<PendingMessage> queue;
+    private final AtomicLong lastId = new AtomicLong(-1);
+    
+    // Enqueuers hold the read lock while they check running and offer; shutdown takes the write lock to
+    // close intake, so nothing can be queued once the writer has been told to drain and stop
+    private final ReadWriteLock intakeLock = new ReentrantReadWriteLock();
+    
+    // Only touched by the writer thread
+    private final Deque<List<PendingMessage>> parked = new ArrayDeque<>();
+    private final AtomicInteger parkedCount = new AtomicInteger();
+    private long nextParkedRetry;
+    
+    private volatile boolean running;
+    private Thread writerThread;
+    
+    public ChatMessageBatchWriter(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${chat.persistence.mode:sync}") String mode,
+            @Value("${chat.persistence.batch-size:500}") int batchSize,
+            @Value("${chat.persistence.queue-capacity:10000}") int queueCapacity,
+            @Value("${chat.persistence.flush-interval-ms:50}") long flushIntervalMs,
+            @Value("${chat.persistence.offer-timeout-ms:1000}") long offerTimeoutMs,
+            @Value("${chat.persistence.parked-retry-interval-ms:10000}") long parkedRetryIntervalMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = "batched".equalsIgnoreCase(mode);
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.parkedRetryIntervalMs = parkedRetryIntervalMs;
+        this.maxParkedMessages = queueCapacity;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        
+        if (enabled) {
+            running = true;
+            writerThread = new Thread(this::runWriter, "chat-message-writer");
+            writerThread.setDaemon(true);
+            writerThread.start();
+            logger.info("Chat messages are persisted write-behind (batch size {}, queue capacity {})", batchSize, queueCapacity);
+        }
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Reserves the id for a new message. Ids continue from the highest id already stored.
+     */
+    public long nextId() {
+        if (lastId.get() < 0) {
+            synchronized (lastId) {
+                if (lastId.get() < 0) {
+                    Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM chat_messages", Long.class);
+                    lastId.set(maxId != null ? maxId : 0L);
+                }
+            }
+        }
+        return lastId.incrementAndGet();
+    }
+    
+    /**
+     * Queues a message for insertion, waiting for space if the writer is behind.
+     *
+     * @throws RuntimeException if the queue stays full for longer than the offer timeout
+     */
+    public void enqueue(long id, Long chatRoomId, Long senderId, String content, LocalDateTime sentAt) {
+        PendingMessage message = new PendingMessage(id, chatRoomId, senderId, content, sentAt);
+        intakeLock.readLock().lock();
+        try {
+            if (!running) {
+                throw new RuntimeException("Chat message writer is not running");
+            }
+            if (!queue.offer(message, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new RuntimeException("Chat is busy, please try again");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while queueing chat message", e);
+        } finally {
+            intakeLock.readLock().unlock();
+        }
+    }
+    
+    public int getQueueSize() {
+        return queue.size();
+    }
+    
+    /**
+     * Number of messages in batches that failed and are waiting to be retried.
+     */
+    public int getParkedCount() {
+        return parkedCount.get();
+    }
+    
+    private void runWriter() {
+        while (running || !queue.isEmpty()) {
+            try {
+                retryParked(false);
+                PendingMessage first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<PendingMessage> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                List<PendingMessage> failed = store(batch, MAX_FLUSH_ATTEMPTS);
+                if (!failed.isEmpty()) {
+                    park(failed);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        
+        // Only left when the writer was interrupted
+        List<PendingMessage> left = new ArrayList<>();
+        queue.drainTo(left);
+        if (!left.isEmpty()) {
+            giveUp(left, "because the writer was interrupted");
+        }
+        
+        // Intake is closed and the queue is empty: give parked batches a last try
+        retryParked(true);
+        for (List<PendingMessage> batch : parked) {
+            giveUp(batch, "at shutdown");
+        }
+        parked.clear();
+        parkedCount.set(0);
+    }
+    
+    /**
+     * Stores a batch, or as much of it as the database accepts
+     * @return The messages that could not be stored
+     */
+    private List<PendingMessage> store(List<PendingMessage> batch, int maxAttempts) {
+        RuntimeException failure = flush(batch, maxAttempts);
+        if (failure == null) {
+            return new ArrayList<>();
+        }
+        List<PendingMessage> failed = storeHalves(batch, failure);
+        if (failed.size() < batch.size()) {
+            logger.warn("Stored {} of {} chat messages around {} that were refused",
+                batch.size() - failed.size(), batch.size(), failed.size());
+        }
+        return failed;
+    }
+    
+    /**
+     * Halves a batch whose rows were refused until the refused ones are isolated, storing the rest
+     * @return The messages that could not be stored
+     */
+    private List<PendingMessage> storeHalves(List<PendingMessage> batch, RuntimeException failure) {
+        // Anything else, such as the database being down, would fail every half too
+        if (batch.size() == 1 || !(failure instanceof DataIntegrityViolationException)) {
+            return new ArrayList<>(batch);
+        }
+        List<PendingMessage> failed = new ArrayList<>();
+        int middle = batch.size() / 2;
+        for (List<PendingMessage> half : Arrays.asList(batch.subList(0, middle), batch.subList(middle, batch.size()))) {
+            RuntimeException halfFailure = flush(half, 1);
+            if (halfFailure != null) {
+                failed.addAll(storeHalves(half, halfFailure));
+            }
+        }
+        return failed;
+    }
+    
+    /**
+     * @return null once the batch is stored, otherwise the last failure
+     */
+    private RuntimeException flush(List<PendingMessage> batch, int maxAttempts) {
+        boolean interrupted = false;
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    transactionTemplate.executeWithoutResult(status ->
+                        jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, message) -> {
+                            ps.setLong(1, message.id);
+                            ps.setLong(2, message.chatRoomId);
+                            ps.setLong(3, message.senderId);
+                            ps.setString(4, message.content);
+                            ps.setTimestamp(5, Timestamp.valueOf(message.sentAt));
+                        }));
+                    return null;
+                } catch (RuntimeException e) {
+                    if (attempt >= maxAttempts) {
+                        logger.error("Failed to persist {} chat messages (ids {}..{}) after {} attempts: {}",
+                            batch.size(), batch.get(0).id, batch.get(batch.size() - 1).id, attempt, e.getMessage());
+                        return e;
+                    }
+                    logger.warn("Failed to persist {} chat messages, retrying: {}", batch.size(), e.getMessage());
+                    try {
+                        Thread.sleep(100L * attempt);
+                    } catch (InterruptedException ie) {
+                        // Keep retrying during shutdown so the batch is not lost
+                        interrupted = true;
+                    }
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    private void park(List<PendingMessage> batch) {
+        parked.addLast(batch);
+        parkedCount.addAndGet(batch.size());
+        if (parked.size() == 1) {
+            nextParkedRetry = System.currentTimeMillis() + parkedRetryIntervalMs;
+        }
+        // Parked messages are bounded like the queue; past that the oldest are given up
+        while (parkedCount.get() > maxParkedMessages) {
+            List<PendingMessage> oldest = parked.removeFirst();
+            parkedCount.addAndGet(-oldest.size());
+            giveUp(oldest, "because too many messages are parked");
+        }
+        logger.warn("Parked {} chat messages (ids {}..{}); {} parked in total, retrying in {} ms",
+            batch.size(), batch.get(0).id, batch.get(batch.size() - 1).id, parkedCount.get(), parkedRetryIntervalMs);
+    }
+    
+    private void retryParked(boolean force) {
+        if (parked.isEmpty() || (!force && System.currentTimeMillis() < nextParkedRetry)) {
+            return;
+        }
+        for (int i = parked.size(); i > 0; i--) {
+            List<PendingMessage> batch = parked.removeFirst();
+            parkedCount.addAndGet(-batch.size());
+            List<PendingMessage> failed = store(batch, 1);
+            if (failed.size() < batch.size()) {
+                logger.info("Persisted {} parked chat messages (ids {}..{})",
+                    batch.size() - failed.size(), batch.get(0).id, batch.get(batch.size() - 1).id);
+            }
+            if (!failed.isEmpty()) {
+                parked.addLast(failed);
+                parkedCount.addAndGet(failed.size());
+            }
+        }
+        nextParkedRetry = System.currentTimeMillis() + parkedRetryIntervalMs;
+    }
+    
+    private void giveUp(List<PendingMessage> batch, String reason) {
+        for (PendingMessage message : batch) {
+            logger.error("Chat message not persisted {}: id={} chatRoomId={} senderId={} sentAt={} content={}",
+                reason, message.id, message.chatRoomId, message.senderId, message.sentAt, message.content);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        // Close intake; enqueues already past the running check finish their offer before this returns
+        intakeLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            intakeLock.writeLock().unlock();
+        }
+        
+        // The writer keeps going until the queue is empty and parked batches have had a last try
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted while flushing chat messages; {} still queued", queue.size());
+        }
+    }
+    
+    private static final class PendingMessage {
+        private final long id;
+        private final Long chatRoomId;
+        private final Long senderId;
+        private final String content;
+        private final LocalDateTime sentAt;
+        
+        private PendingMessage(long id, Long chatRoomId, Long senderId, String content, LocalDateTime sentAt) {
+            this.id = id;
+            this.chatRoomId = chatRoomId;
+            this.senderId = senderId;
+            this.content = content;
+            this.sentAt = sentAt;
+        }
+    }
+}
@@ -1,11 +1,17 @@
 package com.studyplatform.studyplatform.Service;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -13,36 +19,83 @@ import com.studyplatform.studyplatform.Model.ChatMessage;
 import com.studyplatform.studyplatform.Model.ChatRoom;
 import com.studyplatform.studyplatform.Model.User;
 import com.studyplatform.studyplatform.Repository.ChatMessageRepository;
+import com.studyplatform.studyplatform.Repository.ChatReadMarkerRepository;
 import com.studyplatform.studyplatform.Repository.ChatRoomRepository;
+import com.studyplatform.studyplatform.Repository.UserRepository;
 import com.studyplatform.studyplatform.dto.ChatMessageDTO;
+import com.studyplatform.studyplatform.dto.ChatMessagePageDTO;
 import com.studyplatform.studyplatform.dto.ChatRoomDTO;
+import com.studyplatform.studyplatform.dto.ReadReceiptDTO;
 
 @Service
 public class ChatService {
 
+    private static final int MAX_MESSAGE_PAGE_SIZE = 200;
+    
     @Autowired
     private ChatRoomRepository chatRoomRepository;
     
     @Autowired
     private ChatMessageRepository chatMessageRepository;
     
+    @Autowired
+    private ChatReadMarkerRepository chatReadMarkerRepository;
+    
+    @Autowired
+    private ChatMessageBatchWriter chatMessageBatchWriter;
+    
+    @Autowired
+    private ChatMembershipCache chatMembershipCache;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
     @Autowired
     private UserService userService;
     
+    @Transactional(readOnly = true)
     public List<ChatRoomDTO> getUserChatRooms(User user) {
-        List<ChatRoom> chatRooms = chatRoomRepository.findByParticipantsContaining(user);
+        // Inbox is loaded in a fixed number of queries regardless of how many rooms the user is in:
+        // rooms, participant ids, unread counts, read watermarks and latest messages are each fetched for all rooms at once
+        List<ChatRoom> chatRooms = chatRoomRepository.findInboxRoomsForUser(user);
+        if (chatRooms.isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        List<Long> roomIds = chatRooms.stream()
+            .map(ChatRoom::getId)
+            .collect(Collectors.toList());
+        
+        Map<Long, Set<Long>> participantsByRoom = new HashMap<>();
+        for (Object[] row : chatRoomRepository.findParticipantIdsByRoomIds(roomIds)) {
+            participantsByRoom.computeIfAbsent((Long) row[0], id -> new HashSet<>()).add((Long) row[1]);
+        }
+        
+        Map<Long, Long> unreadByRoom = new HashMap<>();
+        for (Object[] row : chatMessageRepository.countUnreadMessagesByRoomIds(roomIds, user)) {
+            unreadByRoom.put((Long) row[0], (Long) row[1]);
+        }
+        
+        Map<Long, Long> lastReadByRoom = new HashMap<>();
+        for (Object[] row : chatReadMarkerRepository.findLastReadMessageIds(roomIds, user.getId())) {
+            lastReadByRoom.put((Long) row[0], (Long) row[1]);
+        }
+        
+        Map<Long, ChatMessage> latestByRoom = new HashMap<>();
+        for (ChatMessage message : chatMessageRepository.findLatestMessagesByRoomIds(roomIds)) {
+            latestByRoom.put(message.getChatRoom().getId(), message);
+        }
         
         return chatRooms.stream().map(room -> {
-            ChatRoomDTO dto = convertToDTO(room);
+            ChatRoomDTO dto = convertToDTO(room, participantsByRoom.getOrDefault(room.getId(), new HashSet<>()));
+            dto.setUnreadCount(unreadByRoom.getOrDefault(room.getId(), 0L));
             
-            // Get unread message count
-            long unreadCount = chatMessageRepository.countUnreadMessagesInRoom(room, user);
-            dto.setUnreadCount(unreadCount);
+            Long lastReadMessageId = lastReadByRoom.get(room.getId());
+            dto.setLastReadMessageId(lastReadMessageId);
             
-            // Get latest message
-            ChatMessage latestMessage = chatMessageRepository.findLatestMessageInRoom(room);
+            ChatMessage latestMessage = latestByRoom.get(room.getId());
             if (latestMessage != null) {
-                dto.setLatestMessage(convertToDTO(latestMessage));
+                dto.setLatestMessage(convertToDTO(latestMessage, isReadBy(latestMessage, user, lastReadMessageId)));
             }
             
             return dto;
@@ -71,6 +124,7 @@ public class ChatService {
         chatRoom.setParticipants(participants);
         
         ChatRoom savedChatRoom = chatRoomRepository.save(chatRoom);
+        chatMembershipCache.evict(savedChatRoom.getId());
         return convertToDTO(savedChatRoom);
     }
     
@@ -92,63 +146,142 @@ public class ChatService {
         chatRoom.getParticipants().add(user2);
         
         ChatRoom savedChatRoom = chatRoomRepository.save(chatRoom);
+        chatMembershipCache.evict(savedChatRoom.getId());
         return convertToDTO(savedChatRoom);
     }
     
     @Transactional
     public ChatMessageDTO sendMessage(Long chatRoomId, User sender, String content) {
-        Optional<ChatRoom> chatRoomOpt = chatRoomRepository.findById(chatRoomId);
-        if (!chatRoomOpt.isPresent()) {
-            throw new RuntimeException("Chat room not found with id: " + chatRoomId);
-        }
-        
-        ChatRoom chatRoom = chatRoomOpt.get();
-        
-        // Verify sender is a participant
-        if (!chatRoom.getParticipants().contains(sender)) {
-            throw new RuntimeException("User is not a participant in this chat room");
-        }
+        return sendMessage(chatRoomId, sender.getId(), getDisplayName(sender), content);
+    }
+    
+    /**
+     * Sends a message on behalf of an already resolved sender. Membership is checked against
+     * {@link ChatMembershipCache} and the room and sender are only referenced by id, so a send
+     * costs a single insert.
+     */
+    @Transactional
+    public ChatMessageDTO sendMessage(Long chatRoomId, Long senderId, String senderName, String content) {
+        verifyParticipant(chatRoomId, senderId);
         
         ChatMessage message = new ChatMessage();
-        message.setChatRoom(chatRoom);
-        message.setSender(sender);
+        message.setChatRoom(chatRoomRepository.getById(chatRoomId));
+        message.setSender(userRepository.getById(senderId));
         message.setContent(content);
         
-        ChatMessage savedMessage = chatMessageRepository.save(message);
-        return convertToDTO(savedMessage);
+        // Write-behind mode: the id is assigned here and the insert happens later in a JDBC batch
+        if (chatMessageBatchWriter.isEnabled()) {
+            message.setId(chatMessageBatchWriter.nextId());
+            message.setSentAt(LocalDateTime.now());
+            chatMessageBatchWriter.enqueue(message.getId(), chatRoomId, senderId, content, message.getSentAt());
+        } else {
+            message = chatMessageRepository.save(message);
+        }
+        
+        ChatMessageDTO dto = new ChatMessageDTO();
+        dto.setId(message.getId());
+        dto.setChatRoomId(chatRoomId);
+        dto.setSenderId(senderId);
+        dto.setSenderName(senderName);
+        dto.setContent(content);
+        dto.setSentAt(message.getSentAt());
+        dto.setRead(false);
+        return dto;
     }
     
-    public List<ChatMessageDTO> getChatMessages(Long chatRoomId, User user) {
-        Optional<ChatRoom> chatRoomOpt = chatRoomRepository.findById(chatRoomId);
-        if (!chatRoomOpt.isPresent()) {
-            throw new RuntimeException("Chat room not found with id: " + chatRoomId);
+    @Transactional
+    public ChatMessagePageDTO getChatMessages(Long chatRoomId, User user, LocalDateTime beforeSentAt, Long beforeId, int size) {
+        verifyParticipant(chatRoomId, user.getId());
+        // Only referenced by id in the queries below, so the room and its participants are not loaded
+        ChatRoom chatRoom = chatRoomRepository.getById(chatRoomId);
+        
+        int pageSize = Math.max(1, Math.min(size, MAX_MESSAGE_PAGE_SIZE));
+        boolean firstPage = beforeSentAt == null || beforeId == null;
+        
+        // Fetch one extra row to know whether an older page exists
+        PageRequest pageRequest = PageRequest.of(0, pageSize + 1);
+        List<ChatMessage> messages = firstPage
+            ? chatMessageRepository.findNewestInRoom(chatRoom, pageRequest)
+            : chatMessageRepository.findInRoomBefore(chatRoom, beforeSentAt, beforeId, pageRequest);
+        
+        // Opening the room advances the user's read watermark to the newest message with a single upsert
+        if (firstPage && !messages.isEmpty()) {
+            chatReadMarkerRepository.advance(chatRoomId, user.getId(), messages.get(0).getId());
         }
+        Long lastReadMessageId = chatReadMarkerRepository.findLastReadMessageId(chatRoomId, user.getId());
         
-        ChatRoom chatRoom = chatRoomOpt.get();
+        boolean hasMore = messages.size() > pageSize;
+        if (hasMore) {
+            messages = messages.subList(0, pageSize);
+        }
         
-        // Verify user is a participant
-        if (!chatRoom.getParticipants().contains(user)) {
-            throw new RuntimeException("User is not a participant in this chat room");
+        List<ChatMessageDTO> dtos = new ArrayList<>(messages.size());
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            ChatMessage message = messages.get(i);
+            dtos.add(convertToDTO(message, isReadBy(message, user, lastReadMessageId)));
         }
         
-        List<ChatMessage> messages = chatMessageRepository.findByChatRoomOrderBySentAtAsc(chatRoom);
+        ChatMessage oldest = messages.isEmpty() ? null : messages.get(messages.size() - 1);
+        return new ChatMessagePageDTO(
+            dtos,
+            hasMore,
+            hasMore ? oldest.getSentAt() : null,
+            hasMore ? oldest.getId() : null
+        );
+    }
+    
+    /**
+     * Moves the user's read watermark in a room forward to {@code messageId}, or to the newest
+     * message when no id is given. The watermark never moves backwards.
+     */
+    @Transactional
+    public ReadReceiptDTO markAsRead(Long chatRoomId, Long userId, Long messageId) {
+        verifyParticipant(chatRoomId, userId);
+        
+        Long upToId = chatMessageRepository.findLatestMessageIdUpTo(
+            chatRoomId, messageId != null ? messageId : Long.MAX_VALUE);
+        if (upToId != null) {
+            chatReadMarkerRepository.advance(chatRoomId, userId, upToId);
+        }
         
-        // Mark messages as read
-        messages.stream()
-            .filter(msg -> !msg.getSender().equals(user) && !msg.isRead())
-            .forEach(msg -> {
-                msg.setRead(true);
-                chatMessageRepository.save(msg);
-            });
+        ReadReceiptDTO receipt = new ReadReceiptDTO();
+        receipt.setChatRoomId(chatRoomId);
+        receipt.setUserId(userId);
+        receipt.setLastReadMessageId(chatReadMarkerRepository.findLastReadMessageId(chatRoomId, userId));
+        return receipt;
+    }
+    
+    public long getUnreadCount(Long chatRoomId, User user) {
+        verifyParticipant(chatRoomId, user.getId());
         
-        return messages.stream()
-            .map(this::convertToDTO)
-            .collect(Collectors.toList());
+        Long lastReadMessageId = chatReadMarkerRepository.findLastReadMessageId(chatRoomId, user.getId());
+        return chatMessageRepository.countUnreadAfter(
+            chatRoomId, user.getId(), lastReadMessageId != null ? lastReadMessageId : 0L);
+    }
+    
+    public String getDisplayName(User user) {
+        return user.getFirstName() + " " + user.getLastName();
+    }
+    
+    private void verifyParticipant(Long chatRoomId, Long userId) {
+        if (!chatMembershipCache.isParticipant(chatRoomId, userId)) {
+            // Only the failure path pays for telling a missing room apart from a non-member
+            if (!chatRoomRepository.existsById(chatRoomId)) {
+                throw new RuntimeException("Chat room not found with id: " + chatRoomId);
+            }
+            throw new RuntimeException("User is not a participant in this chat room");
+        }
     }
     
     // Helper methods to convert entities to DTOs
     
     private ChatRoomDTO convertToDTO(ChatRoom chatRoom) {
+        return convertToDTO(chatRoom, chatRoom.getParticipants().stream()
+            .map(User::getId)
+            .collect(Collectors.toSet()));
+    }
+    
+    private ChatRoomDTO convertToDTO(ChatRoom chatRoom, Set<Long> participantIds) {
         ChatRoomDTO dto = new ChatRoomDTO();
         dto.setId(chatRoom.getId());
         dto.setName(chatRoom.getName());
@@ -156,25 +289,27 @@ public class ChatService {
         dto.setGroupChat(chatRoom.isGroupChat());
         dto.setCreatedBy(chatRoom.getCreatedBy().getId());
         
-        dto.setParticipants(chatRoom.getParticipants().stream()
-            .map(User::getId)
-            .collect(Collectors.toSet()));
-        
+        dto.setParticipants(participantIds);
         dto.setCreatedAt(chatRoom.getCreatedAt());
         dto.setUpdatedAt(chatRoom.getUpdatedAt());
         
         return dto;
     }
     
-    private ChatMessageDTO convertToDTO(ChatMessage message) {
+    private boolean isReadBy(ChatMessage message, User user, Long lastReadMessageId) {
+        return message.getSender().getId().equals(user.getId())
+            || (lastReadMessageId != null && message.getId() <= lastReadMessageId);
+    }
+    
+    private ChatMessageDTO convertToDTO(ChatMessage message, boolean read) {
         ChatMessageDTO dto = new ChatMessageDTO();
         dto.setId(message.getId());
         dto.setChatRoomId(message.getChatRoom().getId());
         dto.setSenderId(message.getSender().getId());
-        dto.setSenderName(message.getSender().getFirstName() + " " + message.getSender().getLastName());
+        dto.setSenderName(getDisplayName(message.getSender()));
         dto.setContent(message.getContent());
         dto.setSentAt(message.getSentAt());
-        dto.setRead(message.isRead());
+        dto.setRead(read);
         
         return dto;
     }
@@ -0,0 +1,364 @@
+package com.studyplatform.studyplatform.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.studyplatform.studyplatform.Model.Document;
+import com.studyplatform.studyplatform.Model.UploadChunk;
+import com.studyplatform.studyplatform.Model.UploadSession;
+import com.studyplatform.studyplatform.Model.User;
+import com.studyplatform.studyplatform.Repository.UploadChunkRepository;
+import com.studyplatform.studyplatform.Repository.UploadSessionRepository;
+
+/**
+ * Resumable uploads of large documents in chunks.
+ *
+ * A client starts an upload with the file's name and size, PUTs chunks at any offsets, in any order and
+ * in parallel, and then completes the upload into a {@link Document}. Each chunk is streamed from the
+ * request straight to its offset in a sparse partial file, so nothing is buffered in memory and there is
+ * no assembly step: completing hashes the partial file and hands it to {@link FileStorageService}, which
+ * for the local blob store is a rename. Ranges are recorded in {@code upload_chunks} once they are synced
+ * to disk, including the part of a chunk received before its connection dropped, so a client resumes
+ * from what the upload reports as received.
+ *
+ * Partial files are kept in {@code <file.upload-dir>/.partial} on the node that started the upload, so
+ * with several nodes the chunks of an upload must be routed to the same one. Uploads that receive no
+ * chunk for {@code file.chunked-upload.expiry-hours} are deleted by a periodic cleanup, together with
+ * partial files left without an upload.
+ */
+@Service
+public class ChunkedUploadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkedUploadService.class);
+
+    private static final String PARTIAL_DIR = ".partial";
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final UploadChunkRepository uploadChunkRepository;
+    private final FileStorageService fileStorageService;
+    private final DocumentService documentService;
+    private final TransactionTemplate transactionTemplate;
+    private final Path partialPath;
+    private final long maxSizeBytes;
+    private final long maxChunkBytes;
+    private final long expiryHours;
+    private final ScheduledExecutorService scheduler;
+
+    public ChunkedUploadService(
+            UploadSessionRepository uploadSessionRepository,
+            UploadChunkRepository uploadChunkRepository,
+            FileStorageService fileStorageService,
+            DocumentService documentService,
+            PlatformTransactionManager transactionManager,
+            @Value("${file.upload-dir}") String uploadDir,
+            @Value("${file.chunked-upload.max-size-bytes:4294967296}") long maxSizeBytes,
+            @Value("${file.chunked-upload.max-chunk-bytes:67108864}") long maxChunkBytes,
+            @Value("${file.chunked-upload.expiry-hours:24}") long expiryHours,
+            @Value("${file.chunked-upload.cleanup-interval-ms:600000}") long cleanupIntervalMs) {
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.uploadChunkRepository = uploadChunkRepository;
+        this.fileStorageService = fileStorageService;
+        this.documentService = documentService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Next to the stored files, so that storing a completed upload locally is a rename
+        this.partialPath = Paths.get(uploadDir).toAbsolutePath().normalize().resolve(PARTIAL_DIR);
+        this.maxSizeBytes = maxSizeBytes;
+        this.maxChunkBytes = maxChunkBytes;
+        this.expiryHours = expiryHours;
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chunked-upload-cleanup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::deleteExpiredQuietly, cleanupIntervalMs, cleanupIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    public long getMaxChunkBytes() {
+        return maxChunkBytes;
+    }
+
+    public UploadSession startUpload(User user, String fileName, String contentType, long size,
+                                     String description, boolean isPublic) {
+        if (fileName == null || fileName.trim().isEmpty()) {
+            throw new RuntimeException("File name is required");
+        }
+        if (size <= 0 || size > maxSizeBytes) {
+            throw new RuntimeException("File size must be between 1 and " + maxSizeBytes + " bytes");
+        }
+        documentService.checkQuota(user.getId(), size);
+
+        UploadSession session = new UploadSession();
+        session.setId(UUID.randomUUID().toString());
+        session.setUserId(user.getId());
+        session.setFileName(fileName);
+        session.setContentType(contentType);
+        session.setSize(size);
+        session.setDescription(description);
+        session.setPublic(isPublic);
+        session.setExpiresAt(LocalDateTime.now().plusHours(expiryHours));
+        // Saved before the partial file exists, so the cleanup never takes the file for a leftover
+        session = uploadSessionRepository.save(session);
+
+        try {
+            Files.createDirectories(partialPath);
+            // Sized up front, since chunks may arrive beyond the end of what was written so far; the
+            // file stays sparse until they do
+            try (RandomAccessFile file = new RandomAccessFile(getPartialFile(session.getId()).toFile(), "rw")) {
+                file.setLength(size);
+            }
+        } catch (IOException e) {
+            uploadSessionRepository.delete(session);
+            throw new RuntimeException("Could not start upload of " + fileName, e);
+        }
+        return session;
+    }
+
+    public UploadSession getUpload(String uploadId, Long userId) {
+        return uploadSessionRepository.findById(uploadId)
+            .filter(session -> session.getUserId().equals(userId))
+            .orElseThrow(() -> new RuntimeException("Upload not found: " + uploadId));
+    }
+
+    /**
+     * The byte ranges of an upload received so far
+     * @param uploadId The id of the upload
+     * @return {@code [start, end)} pairs, merged and in order
+     */
+    public List<long[]> getReceivedRanges(String uploadId) {
+        List<long[]> ranges = new ArrayList<>();
+        long[] current = null;
+        for (UploadChunk chunk : uploadChunkRepository.findByUploadIdOrderByOffsetAsc(uploadId)) {
+            long end = chunk.getOffset() + chunk.getLength();
+            if (current != null && chunk.getOffset() <= current[1]) {
+                current[1] = Math.max(current[1], end);
+            } else {
+                current = new long[] { chunk.getOffset(), end };
+                ranges.add(current);
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Writes a chunk of an upload at its offset, straight from the request body
+     * @param uploadId The id of the upload
+     * @param userId The user the upload belongs to
+     * @param offset Where the chunk starts in the file
+     * @param length The length of the chunk
+     * @param body The chunk's content
+     * @return The number of bytes written, which is {@code length} unless this throws
+     */
+    public long writeChunk(String uploadId, Long userId, long offset, long length, InputStream body) {
+        UploadSession session = getUpload(uploadId, userId);
+        if (session.getStatus() != UploadSession.Status.UPLOADING) {
+            throw new RuntimeException("Upload " + uploadId + " is being completed");
+        }
+        if (offset < 0 || length <= 0 || length > maxChunkBytes || offset + length > session.getSize()) {
+            throw new RuntimeException("A chunk must lie within the file and be at most " + maxChunkBytes + " bytes");
+        }
+
+        long written = 0;
+        IOException failure = null;
+        try (FileChannel channel = FileChannel.open(getPartialFile(uploadId), StandardOpenOption.WRITE)) {
+            ReadableByteChannel source = Channels.newChannel(body);
+            try {
+                while (written < length) {
+                    long transferred = channel.transferFrom(source, offset + written, length - written);
+                    if (transferred == 0) {
+                        break;
+                    }
+                    written += transferred;
+                }
+            } catch (IOException e) {
+                // Usually the client went away; what arrived before is kept
+                failure = e;
+            }
+            if (written > 0) {
+                channel.force(false);
+            }
+        } catch (NoSuchFileException e) {
+            throw new RuntimeException("Upload " + uploadId + " was not started on this server", e);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write chunk of upload " + uploadId, e);
+        }
+
+        if (written > 0) {
+            recordChunk(uploadId, offset, written);
+        }
+        if (written < length) {
+            throw new RuntimeException("Chunk ended after " + written + " of " + length + " bytes", failure);
+        }
+        return written;
+    }
+
+    /**
+     * Stores a fully received upload and creates its document
+     * @param uploadId The id of the upload
+     * @param user The user the upload belongs to
+     * @return The saved document
+     */
+    public Document completeUpload(String uploadId, User user) {
+        UploadSession session = transactionTemplate.execute(status -> {
+            UploadSession locked = uploadSessionRepository.findForUpdate(uploadId)
+                .filter(candidate -> candidate.getUserId().equals(user.getId()))
+                .orElseThrow(() -> new RuntimeException("Upload not found: " + uploadId));
+            if (locked.getStatus() != UploadSession.Status.UPLOADING) {
+                throw new RuntimeException("Upload " + uploadId + " is already being completed");
+            }
+            List<long[]> ranges = getReceivedRanges(uploadId);
+            if (ranges.size() != 1 || ranges.get(0)[0] != 0 || ranges.get(0)[1] != locked.getSize()) {
+                long missingFrom = !ranges.isEmpty() && ranges.get(0)[0] == 0 ? ranges.get(0)[1] : 0;
+                throw new RuntimeException("Upload " + uploadId + " is missing bytes from offset " + missingFrom);
+            }
+            // Checked again, as the user may have stored other documents since the upload started
+            documentService.checkQuota(user.getId(), locked.getSize());
+            locked.setStatus(UploadSession.Status.COMPLETING);
+            locked.setExpiresAt(LocalDateTime.now().plusHours(expiryHours));
+            return uploadSessionRepository.save(locked);
+        });
+
+        Path partialFile = getPartialFile(uploadId);
+        String fileUrl;
+        try {
+            fileUrl = fileStorageService.storeLocalFile(partialFile, session.getFileName());
+        } catch (RuntimeException e) {
+            // Still complete on disk unless it was moved, so completing can be retried
+            if (Files.exists(partialFile)) {
+                transactionTemplate.executeWithoutResult(status -> uploadSessionRepository.findForUpdate(uploadId)
+                    .ifPresent(locked -> locked.setStatus(UploadSession.Status.UPLOADING)));
+            } else {
+                deleteUpload(uploadId);
+            }
+            throw e;
+        }
+
+        try {
+            Document document = new Document();
+            document.setName(session.getFileName());
+            document.setFileUrl(fileUrl);
+            document.setFileType(session.getContentType() != null ? session.getContentType() : "application/octet-stream");
+            document.setFileSize(session.getSize());
+            document.setDescription(session.getDescription());
+            document.setPublic(session.isPublic());
+            document.setUser(user);
+            return documentService.saveDocument(document);
+        } catch (RuntimeException e) {
+            // Drop the reference taken by storeLocalFile
+            fileStorageService.deleteFile(fileUrl);
+            throw e;
+        } finally {
+            deleteUpload(uploadId);
+        }
+    }
+
+    public void abortUpload(String uploadId, Long userId) {
+        getUpload(uploadId, userId);
+        deleteUpload(uploadId);
+    }
+
+    /**
+     * Deletes uploads that have expired, and partial files of this node that have no upload
+     * @return The number of uploads deleted
+     */
+    public int deleteExpired() {
+        int deleted = 0;
+        LocalDateTime now = LocalDateTime.now();
+        List<String> expiredIds;
+        do {
+            expiredIds = uploadSessionRepository.findExpiredIds(now, PageRequest.of(0, 100));
+            for (String uploadId : expiredIds) {
+                deleteUpload(uploadId);
+                deleted++;
+            }
+        } while (!expiredIds.isEmpty());
+
+        if (Files.isDirectory(partialPath)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(partialPath, "upload-*.tmp")) {
+                for (Path file : files) {
+                    String fileName = file.getFileName().toString();
+                    String uploadId = fileName.substring("upload-".length(), fileName.length() - ".tmp".length());
+                    if (!uploadSessionRepository.existsById(uploadId)) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("Could not clean up {}: {}", partialPath, e.getMessage());
+            }
+        }
+        if (deleted > 0) {
+            logger.info("Deleted {} expired chunked uploads", deleted);
+        }
+        return deleted;
+    }
+
+    private void deleteExpiredQuietly() {
+        try {
+            deleteExpired();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to delete expired chunked uploads, will retry: {}", e.getMessage());
+        }
+    }
+
+    private void recordChunk(String uploadId, long offset, long length) {
+        transactionTemplate.executeWithoutResult(status -> {
+            UploadSession session = uploadSessionRepository.findForUpdate(uploadId)
+                .orElseThrow(() -> new RuntimeException("Upload " + uploadId + " was aborted or has expired"));
+            if (session.getStatus() != UploadSession.Status.UPLOADING) {
+                throw new RuntimeException("Upload " + uploadId + " is being completed");
+            }
+            uploadChunkRepository.save(new UploadChunk(uploadId, offset, length));
+            session.setExpiresAt(LocalDateTime.now().plusHours(expiryHours));
+        });
+    }
+
+    private void deleteUpload(String uploadId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            uploadSessionRepository.findForUpdate(uploadId).ifPresent(uploadSessionRepository::delete);
+            uploadChunkRepository.deleteByUploadId(uploadId);
+        });
+        try {
+            Files.deleteIfExists(getPartialFile(uploadId));
+        } catch (IOException e) {
+            // Picked up by the next cleanup
+            logger.warn("Could not delete partial file of upload {}: {}", uploadId, e.getMessage());
+        }
+    }
+
+    // Named like other files being written, which the upload directory scans skip
+    private Path getPartialFile(String uploadId) {
+        return partialPath.resolve("upload-" + uploadId + ".tmp");
+    }
+}
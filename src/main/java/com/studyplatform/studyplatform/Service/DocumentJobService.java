@@ -0,0 +1,271 @@
+package com.studyplatform.studyplatform.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import com.studyplatform.studyplatform.Model.DocumentJob;
+import com.studyplatform.studyplatform.Repository.DocumentJobRepository;
+import com.studyplatform.studyplatform.Repository.DocumentRepository;
+import com.studyplatform.studyplatform.dto.DocumentJobDTO;
+
+/**
+ * Runs text extraction and summary generation for uploaded documents in the background.
+ *
+ * Jobs are rows in {@code document_jobs}. A poller claims due jobs with a conditional update, so each
+ * job runs once even with several instances, and hands them to a fixed pool of workers. Failed jobs
+ * are retried with exponential backoff up to {@code documents.jobs.max-attempts} times. The poller
+ * renews the claims of the jobs its workers are running; jobs whose claim has not been renewed for
+ * {@code documents.jobs.stale-after-ms}, left by a stopped instance, are picked up again. A claim is
+ * identified by the job's attempt number, and a worker's result is only recorded while its attempt is
+ * still the current one. When a job finishes, its status is sent to
+ * {@code /topic/documents/{documentId}/jobs}.
+ */
+@Service
+public class DocumentJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentJobService.class);
+    
+    private static final int MAX_ERROR_LENGTH = 1000;
+    
+    @Autowired
+    private DocumentJobRepository jobRepository;
+    
+    @Autowired
+    private DocumentRepository documentRepository;
+    
+    @Autowired
+    private DocumentSearchIndex documentSearchIndex;
+    
+    @Autowired
+    private DocumentService documentService;
+    
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+    
+    @Value("${documents.jobs.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${documents.jobs.workers:2}")
+    private int workers;
+    
+    @Value("${documents.jobs.poll-interval-ms:2000}")
+    private long pollIntervalMs;
+    
+    @Value("${documents.jobs.max-attempts:3}")
+    private int maxAttempts;
+    
+    @Value("${documents.jobs.retry-delay-ms:10000}")
+    private long retryDelayMs;
+    
+    @Value("${documents.jobs.stale-after-ms:900000}")
+    private long staleAfterMs;
+    
+    private ScheduledExecutorService poller;
+    private ExecutorService workerPool;
+    private Semaphore idleWorkers;
+    private volatile boolean started;
+    
+    // Attempt claimed by this instance for each job its workers are running
+    private final Map<Long, Integer> runningClaims = new ConcurrentHashMap<>();
+    
+    @PostConstruct
+    public void init() {
+        poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "document-job-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger threadCount = new AtomicInteger();
+        workerPool = Executors.newFixedThreadPool(Math.max(1, workers), runnable -> {
+            Thread thread = new Thread(runnable, "document-job-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        idleWorkers = new Semaphore(Math.max(1, workers));
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        int queued = jobRepository.enqueueMissingTextExtraction();
+        if (queued > 0) {
+            logger.info("Queued text extraction for {} documents without extracted text", queued);
+        }
+        started = true;
+        poller.scheduleWithFixedDelay(this::pollQuietly, 0, pollIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        started = false;
+        poller.shutdownNow();
+        workerPool.shutdown();
+        try {
+            // Jobs still running after this are picked up again once they are stale
+            workerPool.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workerPool.shutdownNow();
+    }
+    
+    /**
+     * Queues the processing of a newly uploaded document.
+     */
+    public List<DocumentJob> enqueueProcessing(Long documentId) {
+        List<DocumentJob> jobs = jobRepository.saveAll(Arrays.asList(
+            new DocumentJob(documentId, DocumentJob.Type.EXTRACT_TEXT),
+            new DocumentJob(documentId, DocumentJob.Type.SUMMARIZE)));
+        wakeUp();
+        return jobs;
+    }
+    
+    /**
+     * Returns the latest job of the given type for a document if it has not completed yet or has failed,
+     * otherwise queues a new one. Concurrent requests queue at most one job.
+     */
+    public DocumentJob requestJob(Long documentId, DocumentJob.Type type) {
+        DocumentJob latest = jobRepository.findFirstByDocumentIdAndTypeOrderByIdDesc(documentId, type).orElse(null);
+        if (latest != null && latest.getStatus() != DocumentJob.Status.COMPLETED) {
+            return latest;
+        }
+        // Ignored when a concurrent request has just queued one, which is then the latest
+        if (jobRepository.insertIfNoneActive(documentId, type.name(), LocalDateTime.now()) > 0) {
+            wakeUp();
+        }
+        return jobRepository.findFirstByDocumentIdAndTypeOrderByIdDesc(documentId, type).get();
+    }
+    
+    public List<DocumentJob> getJobs(Long documentId) {
+        return jobRepository.findByDocumentIdOrderByIdAsc(documentId);
+    }
+    
+    private void wakeUp() {
+        if (started) {
+            poller.execute(this::pollQuietly);
+        }
+    }
+    
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to poll document jobs, will retry: {}", e.getMessage());
+        }
+    }
+    
+    // Only runs on the poller thread
+    private void poll() {
+        LocalDateTime now = LocalDateTime.now();
+        runningClaims.forEach((jobId, attempt) -> {
+            if (jobRepository.renewClaim(jobId, attempt, now) == 0 && runningClaims.containsKey(jobId)) {
+                logger.warn("Document job {} was taken over while attempt {} was running, its result will be ignored",
+                    jobId, attempt);
+            }
+        });
+        int requeued = jobRepository.requeueStale(now.minus(Duration.ofMillis(staleAfterMs)), now);
+        if (requeued > 0) {
+            logger.warn("Requeued {} stale document jobs", requeued);
+        }
+    
+        int idle = idleWorkers.availablePermits();
+        if (idle == 0) {
+            return;
+        }
+        for (Object[] due : jobRepository.findDue(DocumentJob.Status.PENDING, now, PageRequest.of(0, idle))) {
+            Long jobId = (Long) due[0];
+            int attempt = (Integer) due[1] + 1;
+            if (!idleWorkers.tryAcquire()) {
+                return;
+            }
+            if (jobRepository.claim(jobId, attempt - 1, LocalDateTime.now()) == 0) {
+                // Claimed by another instance
+                idleWorkers.release();
+                continue;
+            }
+            runningClaims.put(jobId, attempt);
+            workerPool.execute(() -> {
+                try {
+                    run(jobId, attempt);
+                } finally {
+                    runningClaims.remove(jobId);
+                    idleWorkers.release();
+                    wakeUp();
+                }
+            });
+        }
+    }
+    
+    private void run(Long jobId, int attempt) {
+        DocumentJob job = jobRepository.findById(jobId).orElse(null);
+        if (job == null) {
+            return;
+        }
+        Long documentId = job.getDocumentId();
+        if (!documentRepository.existsById(documentId)) {
+            jobRepository.deleteById(jobId);
+            return;
+        }
+    
+        int recorded;
+        try {
+            switch (job.getType()) {
+                case EXTRACT_TEXT:
+                    documentSearchIndex.extractAndIndex(documentId);
+                    break;
+                case SUMMARIZE:
+                    documentService.generateDocumentSummary(documentId);
+                    break;
+            }
+            recorded = jobRepository.markCompleted(jobId, attempt, LocalDateTime.now());
+        } catch (Exception e) {
+            String error = e.getMessage() != null ? e.getMessage() : e.getClass().getName();
+            if (error.length() > MAX_ERROR_LENGTH) {
+                error = error.substring(0, MAX_ERROR_LENGTH);
+            }
+            LocalDateTime now = LocalDateTime.now();
+            if (attempt >= maxAttempts) {
+                logger.warn("Document job {} ({} for document {}) failed after {} attempts: {}",
+                    jobId, job.getType(), documentId, attempt, error);
+                recorded = jobRepository.markFailed(jobId, attempt, error, now);
+            } else {
+                long delayMs = retryDelayMs << Math.min(attempt - 1, 20);
+                recorded = jobRepository.markForRetry(jobId, attempt, error, now.plus(Duration.ofMillis(delayMs)), now);
+            }
+        }
+        if (recorded == 0) {
+            // Requeued as stale and claimed again meanwhile, so the newer attempt reports its own result
+            logger.warn("Ignoring the result of attempt {} of document job {}, it is no longer the current one",
+                attempt, jobId);
+            return;
+        }
+    
+        jobRepository.findById(jobId).ifPresent(finished ->
+            messagingTemplate.convertAndSend("/topic/documents/" + documentId + "/jobs", new DocumentJobDTO(finished)));
+    }
+}
@@ -0,0 +1,269 @@
+package com.studyplatform.studyplatform.Service;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.studyplatform.studyplatform.Model.Document;
+import com.studyplatform.studyplatform.Model.DocumentText;
+import com.studyplatform.studyplatform.Repository.DocumentRepository;
+import com.studyplatform.studyplatform.Repository.DocumentTextRepository;
+
+/**
+ * Full-text search over document names, descriptions and file contents.
+ *
+ * Text is extracted from each uploaded file by an {@code EXTRACT_TEXT} job of {@link DocumentJobService}
+ * and stored in {@code document_texts}, so it is extracted once per document. An {@link InvertedIndex}
+ * is built from the stored text after startup. Owner and visibility of every indexed document are kept
+ * next to the index, so results are limited to public documents and the caller's own before they are
+ * scored. Until the index is ready, and when it is disabled with
+ * {@code documents.search.index.enabled=false}, searches fall back to a name/description query.
+ *
+ * The index lives on the heap and is rebuilt at every start. A document keeps at most
+ * {@code documents.search.index.max-terms-per-document} distinct terms, its most frequent ones. Measured
+ * with {@code DocumentIndexHeapBenchmark}, a document of a few thousand words takes about 40 KB, and one
+ * at the default limit of 20,000 terms, most of them found in no other document, about 800 KB. The heap
+ * the index takes is logged after each rebuild.
+ */
+@Service
+public class DocumentSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentSearchIndex.class);
+    
+    @Autowired
+    private DocumentRepository documentRepository;
+    
+    @Autowired
+    private DocumentTextRepository documentTextRepository;
+    
+    @Autowired
+    private TextExtractionService textExtractionService;
+    
+    @Autowired
+    private FileStorageService fileStorageService;
+    
+    @Value("${documents.search.index.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${documents.search.index.rebuild-batch-size:500}")
+    private int rebuildBatchSize;
+    
+    @Value("${documents.search.max-text-chars:1000000}")
+    private int maxTextChars;
+    
+    @Value("${documents.search.index.max-terms-per-document:20000}")
+    private int maxTermsPerDocument;
+    
+    private InvertedIndex index;
+    private final Map<Long, Access> accessById = new ConcurrentHashMap<>();
+    
+    // Documents changed while a rebuild is running; the rebuild must not overwrite them with older rows
+    private final Set<Long> changedDuringRebuild = ConcurrentHashMap.newKeySet();
+    
+    private volatile boolean ready;
+    private volatile boolean rebuilding;
+    
+    @PostConstruct
+    public void init() {
+        index = new InvertedIndex(maxTermsPerDocument);
+    }
+    
+    public boolean isReady() {
+        return ready;
+    }
+    
+    /**
+     * One page of ids of documents matching the query that are public or owned by the user.
+     */
+    public Page<Long> search(String query, Long userId, Pageable pageable) {
+        if (!ready || InvertedIndex.tokenize(query).isEmpty()) {
+            return documentRepository.searchVisibleIds(query, userId, pageable);
+        }
+        return index.search(query, id -> {
+            Access access = accessById.get(id);
+            return access != null && (access.isPublic || access.ownerId == userId);
+        }, pageable);
+    }
+    
+    /**
+     * Called after a document is saved. New documents are indexed by name and description until their
+     * text has been extracted; changed documents are re-indexed from the stored text with their current
+     * visibility.
+     */
+    public void documentSaved(Document document, boolean isNew) {
+        afterCommit(() -> {
+            if (isNew) {
+                put(document, null);
+            } else {
+                reindex(document);
+            }
+        });
+    }
+    
+    public void documentDeleted(Long id) {
+        afterCommit(() -> {
+            markChanged(id);
+            accessById.remove(id);
+            index.remove(id);
+        });
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildInBackground() {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(this::rebuild, "document-search-indexer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Reloads every document and its stored text into the index. Searches use the database until it
+     * completes.
+     */
+    public synchronized void rebuild() {
+        ready = false;
+        index.clear();
+        accessById.clear();
+        changedDuringRebuild.clear();
+        rebuilding = true;
+        try {
+            long start = System.currentTimeMillis();
+            Long afterId = 0L;
+            Pageable batch = PageRequest.of(0, rebuildBatchSize);
+            List<Object[]> rows;
+            do {
+                rows = documentRepository.findSearchRowsAfter(afterId, batch);
+                for (Object[] row : rows) {
+                    Long id = (Long) row[0];
+                    afterId = id;
+                    if (changedDuringRebuild.contains(id)) {
+                        continue;
+                    }
+                    accessById.put(id, new Access((Long) row[3], (Boolean) row[4]));
+                    index.put(id, (String) row[1], joinText((String) row[2], (String) row[6]));
+                }
+            } while (rows.size() == rebuildBatchSize);
+    
+            ready = true;
+            int size = index.size();
+            long heapBytes = index.estimateHeapBytes();
+            logger.info("Document search index built with {} documents in {} ms, about {} MB of heap ({} bytes per document)",
+                size, System.currentTimeMillis() - start, heapBytes / (1024 * 1024), size == 0 ? 0 : heapBytes / size);
+        } catch (RuntimeException e) {
+            logger.error("Failed to build the document search index, searches keep using the database", e);
+        } finally {
+            rebuilding = false;
+            changedDuringRebuild.clear();
+        }
+    }
+    
+    /**
+     * Extracts and stores the text of a document's file and adds it to the index. Throws if the file
+     * could not be read, so that the job is retried, after recording the failure in {@code document_texts}.
+     */
+    public void extractAndIndex(Long documentId) {
+        Optional<Document> documentOpt = documentRepository.findById(documentId);
+        if (!documentOpt.isPresent()) {
+            return;
+        }
+        Document document = documentOpt.get();
+    
+        DocumentText text;
+        IOException failure = null;
+        if (!textExtractionService.isSupported(document.getName())) {
+            text = new DocumentText(documentId, null, DocumentText.Status.UNSUPPORTED);
+        } else {
+            try {
+                String fileUrl = document.getFileUrl();
+                String fileName = fileUrl.substring(fileUrl.lastIndexOf("/") + 1);
+                String content = fileStorageService.readLocally(fileName,
+                    path -> textExtractionService.extractText(path, document.getName(), maxTextChars));
+                text = new DocumentText(documentId, content, DocumentText.Status.EXTRACTED);
+            } catch (IOException e) {
+                failure = e;
+                text = new DocumentText(documentId, null, DocumentText.Status.FAILED);
+            }
+        }
+        documentTextRepository.save(text);
+    
+        if (!documentRepository.existsById(documentId)) {
+            // Deleted while its text was being extracted
+            documentTextRepository.deleteById(documentId);
+            return;
+        }
+        if (failure != null) {
+            throw new RuntimeException("Could not extract text from document " + documentId + ": " + failure.getMessage(), failure);
+        }
+        put(document, text.getContent());
+    }
+    
+    private void reindex(Document document) {
+        String content = documentTextRepository.findById(document.getId()).map(DocumentText::getContent).orElse(null);
+        put(document, content);
+    }
+    
+    private void put(Document document, String content) {
+        markChanged(document.getId());
+        accessById.put(document.getId(), new Access(document.getUser().getId(), document.isPublic()));
+        index.put(document.getId(), document.getName(), joinText(document.getDescription(), content));
+    }
+    
+    private void markChanged(Long id) {
+        if (rebuilding) {
+            changedDuringRebuild.add(id);
+        }
+    }
+    
+    private static String joinText(String description, String content) {
+        if (content == null) {
+            return description;
+        }
+        return description == null ? content : description + "\n" + content;
+    }
+    
+    private void afterCommit(Runnable action) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+    
+    private static final class Access {
+        private final long ownerId;
+        private final boolean isPublic;
+    
+        private Access(long ownerId, boolean isPublic) {
+            this.ownerId = ownerId;
+            this.isPublic = isPublic;
+        }
+    }
+}
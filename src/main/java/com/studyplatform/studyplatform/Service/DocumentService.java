@@ -1,31 +1,103 @@
 package com.studyplatform.studyplatform.Service;
 
+import java.io.IOException;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
-import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import com.studyplatform.studyplatform.Model.Document;
+import com.studyplatform.studyplatform.Model.DocumentSummary;
+import com.studyplatform.studyplatform.Model.DocumentText;
+import com.studyplatform.studyplatform.Repository.DocumentJobRepository;
 import com.studyplatform.studyplatform.Repository.DocumentRepository;
+import com.studyplatform.studyplatform.Repository.DocumentTextRepository;
+import com.studyplatform.studyplatform.dto.DocumentListItemDTO;
+import com.studyplatform.studyplatform.dto.DocumentPageDTO;
+import com.studyplatform.studyplatform.dto.PagedResponseDTO;
+import com.studyplatform.studyplatform.exception.UploadLimitExceededException;
 
 @Service
 public class DocumentService {
 
+    private static final int MAX_DOCUMENT_PAGE_SIZE = 100;
+    
     @Autowired
     private DocumentRepository documentRepository;
 
     @Autowired
     private FileStorageService fileStorageService;
     
-    public List<Document> getDocumentsByUser(Long userId) {
-        return documentRepository.findByUserIdOrderByUploadedAtDesc(userId);
+    @Autowired
+    private DocumentTextRepository documentTextRepository;
+    
+    @Autowired
+    private DocumentSearchIndex documentSearchIndex;
+    
+    @Autowired
+    private DocumentSummaryStore documentSummaryStore;
+    
+    @Autowired
+    private DocumentJobRepository documentJobRepository;
+    
+    @Autowired
+    private TextExtractionService textExtractionService;
+    
+    @Autowired
+    private TextSummarizer textSummarizer;
+    
+    @Value("${documents.summary.max-text-chars:200000}")
+    private int summaryMaxTextChars;
+    
+    // Total size of a user's documents; 0 for no limit
+    @Value("${file.upload.user-quota-bytes:0}")
+    private long userQuotaBytes;
+    
+    /**
+     * One page of a user's documents, newest first
+     * @param beforeUploadedAt Upload time of the last document of the previous page, or null for the first page
+     * @param beforeId ID of the last document of the previous page, or null for the first page
+     */
+    public DocumentPageDTO getDocumentsByUser(Long userId, LocalDateTime beforeUploadedAt, Long beforeId, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_DOCUMENT_PAGE_SIZE));
+        
+        // Fetch one extra row to know whether another page exists
+        PageRequest pageRequest = PageRequest.of(0, pageSize + 1);
+        List<DocumentListItemDTO> documents = beforeUploadedAt == null || beforeId == null
+            ? documentRepository.findNewestByUser(userId, pageRequest)
+            : documentRepository.findByUserBefore(userId, beforeUploadedAt, beforeId, pageRequest);
+        return toDocumentPage(documents, pageSize);
+    }
+    
+    /**
+     * How many more bytes of documents a user may upload
+     * @return The bytes left under {@code file.upload.user-quota-bytes}, or Long.MAX_VALUE without a quota
+     */
+    public long getRemainingQuota(Long userId) {
+        if (userQuotaBytes <= 0) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, userQuotaBytes - documentRepository.sumFileSizeByUserId(userId));
+    }
+    
+    /**
+     * Check that a user may upload a file of the given size
+     * @throws UploadLimitExceededException if it does not fit in the user's quota
+     */
+    public void checkQuota(Long userId, long size) {
+        long remaining = getRemainingQuota(userId);
+        if (size > remaining) {
+            throw new UploadLimitExceededException("Upload exceeds your storage quota, " + remaining + " bytes left");
+        }
     }
     
     public Document getDocumentById(Long id) {
@@ -38,11 +110,20 @@ public class DocumentService {
     }
     
     public Document saveDocument(Document document) {
-        return documentRepository.save(document);
+        boolean isNew = document.getId() == null;
+        Document savedDocument = documentRepository.save(document);
+        documentSearchIndex.documentSaved(savedDocument, isNew);
+        return savedDocument;
     }
     
     public void deleteDocument(Long id) {
+        if (documentTextRepository.existsById(id)) {
+            documentTextRepository.deleteById(id);
+        }
+        documentSummaryStore.deleteCustom(id);
+        documentJobRepository.deleteByDocumentId(id);
         documentRepository.deleteById(id);
+        documentSearchIndex.documentDeleted(id);
     }
     
     public Map<String, Integer> getDocumentStatsByUser(Long userId) {
@@ -74,12 +155,65 @@ public class DocumentService {
         return stats;
     }
 
-    public List<Document> searchDocuments(String query) {
-        return documentRepository.findByNameContainingIgnoreCaseOrDescriptionContainingIgnoreCase(query);
+    /**
+     * Searches names, descriptions and extracted file text of the documents visible to the user
+     * @param query The search text
+     * @param userId The ID of the user searching; their private documents are included
+     * @return One page of matching documents, best match first
+     */
+    public PagedResponseDTO<DocumentListItemDTO> searchDocuments(String query, Long userId, int page, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_DOCUMENT_PAGE_SIZE));
+        Page<Long> documentIds = documentSearchIndex.search(query, userId, PageRequest.of(page, pageSize));
+        
+        List<DocumentListItemDTO> documents = new ArrayList<>();
+        if (documentIds.hasContent()) {
+            Map<Long, DocumentListItemDTO> documentsById = new HashMap<>();
+            for (DocumentListItemDTO document : documentRepository.findListItemsByIdIn(documentIds.getContent())) {
+                documentsById.put(document.getId(), document);
+            }
+            for (Long id : documentIds.getContent()) {
+                DocumentListItemDTO document = documentsById.get(id);
+                if (document != null) {
+                    documents.add(document);
+                }
+            }
+        }
+        
+        return new PagedResponseDTO<>(
+            documents,
+            documentIds.getNumber(),
+            documentIds.getSize(),
+            documentIds.getTotalElements(),
+            documentIds.getTotalPages()
+        );
     }
 
-    public List<Document> getPublicDocuments() {
-        return documentRepository.findByIsPublicTrue();
+    /**
+     * One page of the public catalogue, newest first, continuing after the given cursor if any
+     */
+    public DocumentPageDTO getPublicDocuments(LocalDateTime beforeUploadedAt, Long beforeId, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_DOCUMENT_PAGE_SIZE));
+        
+        PageRequest pageRequest = PageRequest.of(0, pageSize + 1);
+        List<DocumentListItemDTO> documents = beforeUploadedAt == null || beforeId == null
+            ? documentRepository.findNewestPublic(pageRequest)
+            : documentRepository.findPublicBefore(beforeUploadedAt, beforeId, pageRequest);
+        return toDocumentPage(documents, pageSize);
+    }
+    
+    private DocumentPageDTO toDocumentPage(List<DocumentListItemDTO> documents, int pageSize) {
+        boolean hasMore = documents.size() > pageSize;
+        if (hasMore) {
+            documents = documents.subList(0, pageSize);
+        }
+        
+        DocumentListItemDTO last = documents.isEmpty() ? null : documents.get(documents.size() - 1);
+        return new DocumentPageDTO(
+            documents,
+            hasMore,
+            hasMore ? last.getUploadedAt() : null,
+            hasMore ? last.getId() : null
+        );
     }
 
     public Map<String, Object> getDocumentActivityStats(Long documentId) {
@@ -97,247 +231,108 @@ public class DocumentService {
         
         return stats;
     }
-    public Map<String, Object> getDocumentSummary(Long documentId) {
-        Document document = getDocumentById(documentId);
-        
-        // Get the file path from the document URL
-        String fileUrl = document.getFileUrl();
-        String fileName = fileUrl.substring(fileUrl.lastIndexOf("/") + 1); // Extract the file name
-        
-        // Get the actual file path from the file storage service
-        String fullFilePath = fileStorageService.getFilePathAsString(fileName);
-        
-        String summaryText;
-        
-        try {
-            if (document.getFileType().toLowerCase().contains("pdf")) {
-                // Extract text from PDF
-                String extractedText = extractTextFromPdf(fullFilePath);
-                
-                // Generate summary from extracted text
-                summaryText = generateSummaryFromText(extractedText);
-            } else if (document.getFileType().toLowerCase().contains("doc") || 
-                      document.getFileType().toLowerCase().contains("word")) {
-                // Extract text from Word document
-                String extractedText = extractTextFromWord(fullFilePath);
-                
-                // Generate summary from extracted text
-                summaryText = generateSummaryFromText(extractedText);
-            } else {
-                // Fallback for unsupported file types
-                summaryText = "This " + document.getFileType() + " document contains " + 
-                             (document.getFileSize() / 1024) + " KB of content.";
+    /**
+     * Returns the summary of a document if one is available: the custom summary if one was attached,
+     * otherwise the summary generated from the file content. Generated summaries are produced in the
+     * background by {@link #generateDocumentSummary(Long)}.
+     * @param documentId The ID of the document
+     * @return The summary text, its word count and when it was produced, or null if it is not generated yet
+     */
+    public Map<String, Object> findDocumentSummary(Long documentId) {
+        DocumentSummary summary = documentSummaryStore.getCached(documentId);
+        if (summary == null) {
+            Document document = getDocumentById(documentId);
+            summary = documentSummaryStore.findCustom(documentId);
+            if (summary == null && document.getContentHash() != null) {
+                summary = documentSummaryStore.findGenerated(document.getContentHash());
+            }
+            if (summary == null) {
+                return null;
             }
-        } catch (Exception e) {
-            e.printStackTrace();
-            // Fallback if text extraction fails
-            summaryText = "This document appears to be a " + document.getFileType() + 
-                         " file containing approximately " + (document.getFileSize() / 1024) + 
-                         " KB of content.";
+            documentSummaryStore.cache(documentId, summary);
         }
         
-        // Count words in the summary text, not the original document
-        int wordCount = countWords(summaryText);
-        
-        Map<String, Object> summary = new HashMap<>();
-        summary.put("documentId", documentId);
-        summary.put("summaryText", summaryText);
-        summary.put("generatedAt", java.time.LocalDateTime.now().toString());
-        summary.put("wordCount", wordCount);
-        
-        return summary;
+        return toSummaryResponse(documentId, summary.getSummaryText(), summary.getWordCount(), summary.getGeneratedAt());
     }
     
     /**
-     * Attaches a custom summary to a document
+     * Generates and stores the summary of a document's file content unless one is stored already.
+     * Summaries are computed once per distinct file content.
      * @param documentId The ID of the document
-     * @param summaryText The custom summary text
-     * @return The updated document with the summary
      */
-    public Document attachSummary(Long documentId, String summaryText) {
+    public void generateDocumentSummary(Long documentId) {
         Document document = getDocumentById(documentId);
-        
-        // In a real implementation, you would:
-        // 1. Create or update a summary entity in the database
-        // 2. Associate it with the document
-        
-        // For this example, we'll update the document description to include the summary
-        String currentDescription = document.getDescription();
-        String updatedDescription;
-        
-        if (currentDescription == null || currentDescription.isEmpty()) {
-            updatedDescription = "Summary: " + summaryText;
-        } else if (currentDescription.contains("Summary:")) {
-            // Replace existing summary
-            updatedDescription = currentDescription.replaceAll("Summary:.*", "Summary: " + summaryText);
-        } else {
-            // Append summary to existing description
-            updatedDescription = currentDescription + "\n\nSummary: " + summaryText;
-        }
-        
-        document.setDescription(updatedDescription);
-        return documentRepository.save(document);
+        documentSummaryStore.getOrGenerate(getContentHash(document), () -> generateSummary(document));
     }
     
     /**
-     * Extract text from a PDF file
-     * @param filePath Path to the PDF file
-     * @return Extracted text content
+     * Describes the document by type and size, for when no summary could be generated from its file
+     * @param documentId The ID of the document
      */
-    private String extractTextFromPdf(String filePath) {
-        StringBuilder textBuilder = new StringBuilder();
-        
-        try {
-            org.apache.pdfbox.pdmodel.PDDocument document = org.apache.pdfbox.pdmodel.PDDocument.load(new java.io.File(filePath));
-            org.apache.pdfbox.text.PDFTextStripper stripper = new org.apache.pdfbox.text.PDFTextStripper();
-            String text = stripper.getText(document);
-            textBuilder.append(text);
-            document.close();
-        } catch (Exception e) {
-            e.printStackTrace();
-            textBuilder.append("Error extracting text from PDF: ").append(e.getMessage());
-        }
-        
-        return textBuilder.toString();
+    public Map<String, Object> getFallbackSummary(Long documentId) {
+        Document document = getDocumentById(documentId);
+        String summaryText = "This document appears to be a " + document.getFileType() + 
+                             " file containing approximately " + (document.getFileSize() / 1024) + 
+                             " KB of content.";
+        return toSummaryResponse(documentId, summaryText, textSummarizer.countWords(summaryText), LocalDateTime.now());
     }
     
-    /**
-     * Extract text from a Word document
-     * @param filePath Path to the Word document
-     * @return Extracted text content
-     */
-    private String extractTextFromWord(String filePath) {
-        StringBuilder textBuilder = new StringBuilder();
-        
-        try {
-            java.io.FileInputStream fis = new java.io.FileInputStream(filePath);
-            org.apache.poi.xwpf.extractor.XWPFWordExtractor extractor = 
-                new org.apache.poi.xwpf.extractor.XWPFWordExtractor(
-                    new org.apache.poi.xwpf.usermodel.XWPFDocument(fis));
-            String text = extractor.getText();
-            textBuilder.append(text);
-            extractor.close();
-            fis.close();
-        } catch (Exception e) {
-            e.printStackTrace();
-            textBuilder.append("Error extracting text from Word document: ").append(e.getMessage());
-        }
-        
-        return textBuilder.toString();
+    private Map<String, Object> toSummaryResponse(Long documentId, String summaryText, int wordCount, LocalDateTime generatedAt) {
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("documentId", documentId);
+        summary.put("summaryText", summaryText);
+        summary.put("generatedAt", generatedAt.toString());
+        summary.put("wordCount", wordCount);
+        return summary;
     }
     
-    /**
-     * Generate a summary from the extracted text
-     * @param text The extracted text content
-     * @return A summary of the text limited to 30 words
-     */
-    private String generateSummaryFromText(String text) {
-        // Simple summarization algorithm:
-        // 1. Split text into sentences
-        // 2. Score sentences based on word frequency
-        // 3. Select top sentences for the summary
-        // 4. Limit to 30 words
-        
-        if (text == null || text.trim().isEmpty()) {
-            return "This document appears to be empty or contains non-textual content.";
+    private String getContentHash(Document document) {
+        if (document.getContentHash() == null) {
+            String fileUrl = document.getFileUrl();
+            String fileName = fileUrl.substring(fileUrl.lastIndexOf("/") + 1);
+            document.setContentHash(fileStorageService.computeContentHash(fileName));
+            documentRepository.save(document);
         }
-        
-        // Split text into sentences
-        String[] sentences = text.split("[.!?]\\s+");
-        
-        // If there are very few sentences, return a truncated version
-        if (sentences.length <= 1) {
-            return truncateToWordLimit(text, 30);
-        }
-        
-        // Count word frequency
-        Map<String, Integer> wordFrequency = new HashMap<>();
-        for (String sentence : sentences) {
-            String[] words = sentence.toLowerCase().split("\\s+");
-            for (String word : words) {
-                // Skip short words and common stop words
-                if (word.length() <= 3 || isStopWord(word)) {
-                    continue;
-                }
-                wordFrequency.put(word, wordFrequency.getOrDefault(word, 0) + 1);
-            }
-        }
-        
-        // Score sentences based on word frequency
-        Map<String, Double> sentenceScores = new HashMap<>();
-        for (String sentence : sentences) {
-            if (sentence.trim().isEmpty()) continue;
-            
-            String[] words = sentence.toLowerCase().split("\\s+");
-            double score = 0;
-            for (String word : words) {
-                if (wordFrequency.containsKey(word)) {
-                    score += wordFrequency.get(word);
-                }
-            }
-            // Normalize by sentence length to avoid bias towards longer sentences
-            score = score / Math.max(1, words.length);
-            sentenceScores.put(sentence, score);
-        }
-        
-        // Sort sentences by score
-        List<Map.Entry<String, Double>> sortedSentences = new ArrayList<>(sentenceScores.entrySet());
-        sortedSentences.sort(Map.Entry.comparingByValue(Comparator.reverseOrder()));
-        
-        // Build summary with word count limit
-        StringBuilder summaryBuilder = new StringBuilder();
-        int wordCount = 0;
-        
-        for (Map.Entry<String, Double> entry : sortedSentences) {
-            String sentence = entry.getKey();
-            String[] words = sentence.split("\\s+");
-            
-            // Check if adding this sentence would exceed the word limit
-            if (wordCount + words.length > 30) {
-                // If we haven't added any sentences yet, add a truncated version of the first one
-                if (wordCount == 0) {
-                    return truncateToWordLimit(sentence, 30);
-                }
-                // Otherwise, stop adding sentences
-                break;
-            }
-            
-            // Add the sentence to the summary
-            summaryBuilder.append(sentence).append(". ");
-            wordCount += words.length;
-        }
-        
-        return summaryBuilder.toString().trim();
+        return document.getContentHash();
     }
     
-    private String truncateToWordLimit(String text, int wordLimit) {
-        String[] words = text.split("\\s+");
-        if (words.length <= wordLimit) {
-            return text;
+    private String generateSummary(Document document) {
+        if (!textExtractionService.isSupported(document.getName())) {
+            // Fallback for unsupported file types
+            return "This " + document.getFileType() + " document contains " + 
+                   (document.getFileSize() / 1024) + " KB of content.";
         }
         
-        StringBuilder truncated = new StringBuilder();
-        for (int i = 0; i < wordLimit; i++) {
-            truncated.append(words[i]).append(" ");
+        // Reuse the text already extracted for search when there is one
+        Optional<DocumentText> storedText = documentTextRepository.findById(document.getId());
+        if (storedText.isPresent() && storedText.get().getStatus() == DocumentText.Status.EXTRACTED) {
+            String text = storedText.get().getContent();
+            return textSummarizer.summarize(text.length() > summaryMaxTextChars ? text.substring(0, summaryMaxTextChars) : text);
         }
         
-        return truncated.toString().trim() + "...";
-    }
-
-    private boolean isStopWord(String word) {
-        Set<String> stopWords = Set.of("the", "and", "a", "an", "in", "on", "at", "to", "for", "with", 
-                                      "by", "about", "as", "of", "that", "this", "is", "are", "was", "were");
-        return stopWords.contains(word.toLowerCase());
+        // Get the file path from the document URL
+        String fileUrl = document.getFileUrl();
+        String fileName = fileUrl.substring(fileUrl.lastIndexOf("/") + 1); // Extract the file name
+        
+        try {
+            // Extraction stops once enough text for the summary has been read
+            return textSummarizer.summarize(fileStorageService.readLocally(fileName,
+                path -> textExtractionService.extractText(path, document.getName(), summaryMaxTextChars)));
+        } catch (IOException e) {
+            throw new RuntimeException("Could not extract text from document " + document.getId(), e);
+        }
     }
     
-    private int countWords(String text) {
-        if (text == null || text.trim().isEmpty()) {
-            return 0;
-        }
-        
-        String[] words = text.split("\\s+");
-        return words.length;
+    /**
+     * Attaches a custom summary to a document, replacing any previous custom summary
+     * @param documentId The ID of the document
+     * @param summaryText The custom summary text
+     * @return The stored summary
+     */
+    public Map<String, Object> attachSummary(Long documentId, String summaryText) {
+        Document document = getDocumentById(documentId);
+        DocumentSummary summary = documentSummaryStore.saveCustom(document.getId(), summaryText);
+        return toSummaryResponse(documentId, summary.getSummaryText(), summary.getWordCount(), summary.getGeneratedAt());
     }
     
-
 }
\ No newline at end of file
@@ -0,0 +1,112 @@
+package com.studyplatform.studyplatform.Service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import com.studyplatform.studyplatform.Model.DocumentSummary;
+import com.studyplatform.studyplatform.Repository.DocumentSummaryRepository;
+
+/**
+ * Persisted document summaries behind a bounded in-memory LRU keyed by document id.
+ *
+ * Generated summaries are stored once per file content hash and generated at most once at a time per
+ * hash in this instance; a concurrent insert from another instance is resolved by the unique key.
+ */
+@Service
+public class DocumentSummaryStore {
+
+    private final DocumentSummaryRepository summaryRepository;
+    private final Map<Long, DocumentSummary> summariesByDocument;
+    private final Map<String, Object> generationLocks = new ConcurrentHashMap<>();
+
+    public DocumentSummaryStore(
+            DocumentSummaryRepository summaryRepository,
+            @Value("${documents.summary.cache-size:1000}") int cacheSize) {
+        this.summaryRepository = summaryRepository;
+        this.summariesByDocument = Collections.synchronizedMap(new LinkedHashMap<Long, DocumentSummary>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, DocumentSummary> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    public DocumentSummary getCached(Long documentId) {
+        return summariesByDocument.get(documentId);
+    }
+
+    public void cache(Long documentId, DocumentSummary summary) {
+        summariesByDocument.put(documentId, summary);
+    }
+
+    public void evict(Long documentId) {
+        summariesByDocument.remove(documentId);
+    }
+
+    public DocumentSummary findCustom(Long documentId) {
+        return summaryRepository.findByDocumentId(documentId).orElse(null);
+    }
+    
+    public DocumentSummary findGenerated(String contentHash) {
+        return summaryRepository.findByContentHash(contentHash).orElse(null);
+    }
+
+    /**
+     * Returns the stored summary for a file content hash, generating and storing it first if there is none.
+     */
+    public DocumentSummary getOrGenerate(String contentHash, Supplier<String> generator) {
+        Optional<DocumentSummary> existing = summaryRepository.findByContentHash(contentHash);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+
+        synchronized (generationLocks.computeIfAbsent(contentHash, hash -> new Object())) {
+            try {
+                existing = summaryRepository.findByContentHash(contentHash);
+                if (existing.isPresent()) {
+                    return existing.get();
+                }
+
+                DocumentSummary summary = new DocumentSummary();
+                summary.setContentHash(contentHash);
+                setText(summary, generator.get());
+                try {
+                    return summaryRepository.save(summary);
+                } catch (DataIntegrityViolationException e) {
+                    // Stored by another instance in the meantime
+                    return summaryRepository.findByContentHash(contentHash).orElseThrow(() -> e);
+                }
+            } finally {
+                generationLocks.remove(contentHash);
+            }
+        }
+    }
+
+    public DocumentSummary saveCustom(Long documentId, String summaryText) {
+        DocumentSummary summary = summaryRepository.findByDocumentId(documentId).orElseGet(DocumentSummary::new);
+        summary.setDocumentId(documentId);
+        setText(summary, summaryText);
+
+        DocumentSummary savedSummary = summaryRepository.save(summary);
+        summariesByDocument.put(documentId, savedSummary);
+        return savedSummary;
+    }
+
+    public void deleteCustom(Long documentId) {
+        summaryRepository.findByDocumentId(documentId).ifPresent(summaryRepository::delete);
+        summariesByDocument.remove(documentId);
+    }
+
+    private void setText(DocumentSummary summary, String summaryText) {
+        summary.setSummaryText(summaryText);
+        summary.setWordCount(summaryText.trim().isEmpty() ? 0 : summaryText.trim().split("\\s+").length);
+    }
+}
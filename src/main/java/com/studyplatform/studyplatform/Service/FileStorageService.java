@@ -1,50 +1,164 @@
 package com.studyplatform.studyplatform.Service;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Optional;
 import java.util.UUID;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
+import org.springframework.dao.PessimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import com.studyplatform.studyplatform.Model.StoredFile;
+import com.studyplatform.studyplatform.Repository.StoredFileRepository;
+
+/**
+ * Stores uploaded files in the configured {@link BlobStore}.
+ *
+ * By default storage is content-addressed: an upload is hashed while it is copied to a temporary file
+ * and kept under {@code <sha256><extension>}, so identical uploads share one blob. Each such blob has a
+ * row in {@code stored_files} counting the documents and profile pictures that refer to it, and
+ * {@link #deleteFile} only removes the blob with its last reference. Files stored under random names,
+ * by earlier versions or with {@code file.storage.deduplicate=false}, are deleted directly; see
+ * {@link StoredFileMigration} for moving them to the content-addressed layout.
+ */
 @Service
 public class FileStorageService {
 
-    @Value("${file.upload-dir}")
-    private String uploadDir;
+    // Each failed attempt waited for a concurrent delete of the row to finish, so a few are plenty
+    private static final int MAX_ADD_REFERENCE_ATTEMPTS = 5;
+
+    @Value("${file.storage.deduplicate:true}")
+    private boolean deduplicate;
+
+    private final BlobStore blobStore;
+    private final StoredFileRepository storedFileRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public FileStorageService(BlobStore blobStore, StoredFileRepository storedFileRepository,
+                              PlatformTransactionManager transactionManager) {
+        this.blobStore = blobStore;
+        this.storedFileRepository = storedFileRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Reads a local copy of a stored file
+     */
+    @FunctionalInterface
+    public interface LocalFileReader<T> {
+        T read(Path file) throws IOException;
+    }
 
     public String storeFile(MultipartFile file) {
+        try (InputStream inputStream = file.getInputStream()) {
+            return storeStream(inputStream, file.getOriginalFilename());
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not store file " + file.getOriginalFilename(), ex);
+        }
+    }
+    
+    /**
+     * Stores a file while it is read, hashing it on the way, so its content is written to disk only once
+     * @param inputStream The content, read to its end
+     * @param originalFilename The name it was uploaded under
+     * @return The URL of the stored file
+     */
+    public String storeStream(InputStream inputStream, String originalFilename) {
         try {
-            Path uploadPath = Paths.get(uploadDir).toAbsolutePath().normalize();
-            Files.createDirectories(uploadPath);
+            String fileExtension = getFileExtension(originalFilename);
             
-            String originalFilename = file.getOriginalFilename();
-            String fileExtension = "";
-            if (originalFilename != null && originalFilename.contains(".")) {
-                fileExtension = originalFilename.substring(originalFilename.lastIndexOf("."));
+            Path tempFile = blobStore.createTempFile();
+            try {
+                MessageDigest digest = newDigest();
+                long size = Files.copy(new DigestInputStream(inputStream, digest), tempFile, StandardCopyOption.REPLACE_EXISTING);
+                
+                if (!deduplicate) {
+                    String fileName = UUID.randomUUID().toString() + fileExtension;
+                    blobStore.put(fileName, tempFile);
+                    return toFileUrl(fileName);
+                }
+                
+                String contentHash = toHex(digest.digest());
+                String fileName = contentHash + fileExtension.toLowerCase();
+                addReference(fileName, contentHash, size, tempFile);
+                return toFileUrl(fileName);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (IOException | UncheckedIOException ex) {
+            throw new RuntimeException("Could not store file " + originalFilename, ex);
+        }
+    }
+    
+    /**
+     * Stores a complete local file, such as an upload assembled from chunks
+     * @param file The file, which may be moved away
+     * @param originalFilename The name it was uploaded under
+     * @return The URL of the stored file
+     */
+    public String storeLocalFile(Path file, String originalFilename) {
+        try {
+            String fileExtension = getFileExtension(originalFilename);
+            if (!deduplicate) {
+                String fileName = UUID.randomUUID().toString() + fileExtension;
+                blobStore.put(fileName, file);
+                return toFileUrl(fileName);
             }
             
-            String fileName = UUID.randomUUID().toString() + fileExtension;
-            Path targetLocation = uploadPath.resolve(fileName);
-            
-            Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
-            
-            String fileUrl = ServletUriComponentsBuilder.fromCurrentContextPath()
-                    .path("/api/files/")
-                    .path(fileName)
-                    .toUriString();
-
-            return fileUrl;
-        } catch (IOException ex) {
-            throw new RuntimeException("Could not store file " + file.getOriginalFilename(), ex);
+            String contentHash;
+            try (InputStream inputStream = Files.newInputStream(file)) {
+                contentHash = computeHash(inputStream);
+            }
+            String fileName = contentHash + fileExtension.toLowerCase();
+            addReference(fileName, contentHash, Files.size(file), file);
+            return toFileUrl(fileName);
+        } catch (IOException | UncheckedIOException ex) {
+            throw new RuntimeException("Could not store file " + originalFilename, ex);
+        }
+    }
+    
+    /**
+     * Adds a file stored under another name to the content-addressed store, leaving the original in place
+     * @param fileName The name of the file
+     * @return The content-addressed name it is now stored under, with one more reference
+     */
+    public String storeExistingFile(String fileName) {
+        try {
+            return readLocally(fileName, source -> {
+                String contentHash;
+                try (InputStream inputStream = Files.newInputStream(source)) {
+                    contentHash = computeHash(inputStream);
+                }
+                int dot = fileName.lastIndexOf('.');
+                String storedName = contentHash + (dot >= 0 ? fileName.substring(dot).toLowerCase() : "");
+                
+                // The store may move its source away
+                Path tempFile = linkOrCopy(source);
+                try {
+                    addReference(storedName, contentHash, Files.size(source), tempFile);
+                } finally {
+                    Files.deleteIfExists(tempFile);
+                }
+                return storedName;
+            });
+        } catch (IOException | UncheckedIOException ex) {
+            throw new RuntimeException("Could not store file " + fileName, ex);
         }
     }
     
@@ -53,17 +167,38 @@ public class FileStorageService {
             // Extract the file name from the URL
             String fileName = fileUrl.substring(fileUrl.lastIndexOf("/") + 1);
             
-            // Delete the file
-            Path filePath = Paths.get(uploadDir).resolve(fileName);
-            Files.deleteIfExists(filePath);
-        } catch (IOException ex) {
+            // Delete the file, or one reference to it if it is shared
+            transactionTemplate.executeWithoutResult(status -> {
+                while (storedFileRepository.decrementReferenceCount(fileName) == 0) {
+                    // The last reference, or a file stored under a random name; otherwise another
+                    // reference was added since the decrement and the loop tries again
+                    if (storedFileRepository.deleteLastReference(fileName) > 0 || !storedFileRepository.existsById(fileName)) {
+                        // The deleted row stays locked until commit, so a concurrent upload of the same
+                        // content waits and stores the blob again
+                        try {
+                            blobStore.delete(fileName);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        return;
+                    }
+                }
+            });
+        } catch (UncheckedIOException ex) {
             throw new RuntimeException("Could not delete file. Please try again!", ex);
         }
     }
     
     public Resource loadFileAsResource(String fileName) {
         try {
-            Path filePath = getFilePath(fileName);
+            Path filePath = blobStore.getLocalPath(fileName);
+            if (filePath == null) {
+                BlobStore.BlobAttributes attributes = blobStore.getAttributes(fileName);
+                if (attributes == null) {
+                    throw new RuntimeException("File not found: " + fileName);
+                }
+                return new BlobResource(blobStore, fileName, attributes);
+            }
             Resource resource = new UrlResource(filePath.toUri());
             
             if (resource.exists()) {
@@ -73,24 +208,166 @@ public class FileStorageService {
             }
         } catch (MalformedURLException ex) {
             throw new RuntimeException("File not found: " + fileName, ex);
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not read file " + fileName, ex);
         }
     }
     
     /**
-     * Get the full file path for a stored file
+     * Runs a reader on a stored file as a local file: the stored file itself when the blob store is
+     * local, otherwise a temporary copy that is deleted afterwards
      * @param fileName The name of the file
-     * @return The full path to the file as a Path object
+     * @param reader Reads the file
+     * @return What the reader returned
      */
-    public Path getFilePath(String fileName) {
-        return Paths.get(uploadDir).toAbsolutePath().normalize().resolve(fileName);
+    public <T> T readLocally(String fileName, LocalFileReader<T> reader) throws IOException {
+        Path localPath = blobStore.getLocalPath(fileName);
+        if (localPath != null) {
+            return reader.read(localPath);
+        }
+        Path tempFile = Files.createTempFile("download-", ".tmp");
+        try {
+            blobStore.download(fileName, tempFile);
+            return reader.read(tempFile);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
     }
     
     /**
-     * Get the full file path for a stored file as a string
+     * Compute the SHA-256 of a stored file's content
      * @param fileName The name of the file
-     * @return The full path to the file as a String
+     * @return The hash as 64 lower-case hex characters
      */
-    public String getFilePathAsString(String fileName) {
-        return getFilePath(fileName).toString();
+    public String computeContentHash(String fileName) {
+        // Content-addressed files were hashed when they were stored
+        Optional<StoredFile> storedFile = storedFileRepository.findById(fileName);
+        if (storedFile.isPresent()) {
+            return storedFile.get().getContentHash();
+        }
+        try (InputStream inputStream = blobStore.open(fileName, 0)) {
+            return computeHash(inputStream);
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not read file " + fileName, ex);
+        }
+    }
+    
+    /**
+     * Whether a file is kept in the content-addressed store
+     * @param fileName The name of the file
+     */
+    public boolean isStored(String fileName) {
+        return storedFileRepository.existsById(fileName);
+    }
+    
+    /**
+     * Whether a file exists in the blob store, whether or not it is content-addressed
+     * @param fileName The name of the file
+     */
+    public boolean fileExists(String fileName) {
+        try {
+            return blobStore.exists(fileName);
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not read file " + fileName, ex);
+        }
+    }
+    
+    private static String getFileExtension(String originalFilename) {
+        if (originalFilename != null && originalFilename.contains(".")) {
+            return originalFilename.substring(originalFilename.lastIndexOf("."));
+        }
+        return "";
+    }
+    
+    private String toFileUrl(String fileName) {
+        return ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/api/files/")
+                .path(fileName)
+                .toUriString();
+    }
+    
+    /**
+     * Counts one more reference to a content-addressed file, storing {@code source} as that file if it
+     * is not stored yet.
+     */
+    private void addReference(String fileName, String contentHash, long size, Path source) throws IOException {
+        // Uploaded before taking the lock, which would otherwise be held for the whole transfer. A link is
+        // put so the source stays, as the blob may go with its last reference before the lock is taken.
+        if (!storedFileRepository.existsById(fileName)) {
+            Path link = linkOrCopy(source);
+            try {
+                blobStore.put(fileName, link);
+            } finally {
+                Files.deleteIfExists(link);
+            }
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> addReferenceLocked(fileName, contentHash, size, source));
+        } catch (PessimisticLockingFailureException e) {
+            // Deadlocked or timed out waiting for a concurrent transaction on the same row
+            transactionTemplate.executeWithoutResult(status -> addReferenceLocked(fileName, contentHash, size, source));
+        }
+    }
+    
+    private void addReferenceLocked(String fileName, String contentHash, long size, Path source) {
+        int attempts = 1;
+        while (storedFileRepository.addReference(fileName, contentHash, size, LocalDateTime.now()) == 0) {
+            // H2 counts nothing when it waited for the row while its last reference was deleted, where
+            // MySQL inserts it again; the next try does, once that delete has committed
+            if (++attempts > MAX_ADD_REFERENCE_ATTEMPTS) {
+                throw new IllegalStateException("Could not count a reference to " + fileName
+                    + " after " + MAX_ADD_REFERENCE_ATTEMPTS + " attempts");
+            }
+        }
+        try {
+            // Deleted with its last reference since it was put, or lost; the source has the same content
+            if (!blobStore.exists(fileName)) {
+                blobStore.put(fileName, source);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * A temporary file with the content of the source: a hard link to it where the filesystem allows,
+     * otherwise a copy
+     */
+    private Path linkOrCopy(Path source) throws IOException {
+        Path tempFile = blobStore.createTempFile();
+        try {
+            Files.delete(tempFile);
+            Files.createLink(tempFile, source);
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.copy(source, tempFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return tempFile;
+    }
+    
+    private static String computeHash(InputStream inputStream) throws IOException {
+        MessageDigest digest = newDigest();
+        try (InputStream digestStream = new DigestInputStream(inputStream, digest)) {
+            byte[] buffer = new byte[64 * 1024];
+            while (digestStream.read(buffer) != -1) {
+                // Hashed by the digest as it is read
+            }
+        }
+        return toHex(digest.digest());
+    }
+    
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
     }
 }
@@ -0,0 +1,141 @@
+package com.studyplatform.studyplatform.Service;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.studyplatform.studyplatform.Repository.ForumTopicRepository;
+
+/**
+ * Full-text search over forum topic titles and content, answered from an in-process {@link InvertedIndex}.
+ *
+ * The index is built in the background after startup; until it is ready, and when it is disabled with
+ * {@code forum.search.index.enabled=false}, searches fall back to the {@code LIKE} query. Topic changes
+ * made through {@link ForumService} are applied once their transaction commits. Each application
+ * instance keeps its own index, so topics written by another instance only show up after a restart.
+ */
+@Service
+public class ForumSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(ForumSearchIndex.class);
+    
+    @Autowired
+    private ForumTopicRepository topicRepository;
+    
+    @Value("${forum.search.index.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${forum.search.index.rebuild-batch-size:1000}")
+    private int rebuildBatchSize;
+    
+    private final InvertedIndex index = new InvertedIndex();
+    
+    // Topics changed while a rebuild is running; the rebuild must not overwrite them with older rows
+    private final Set<Long> changedDuringRebuild = ConcurrentHashMap.newKeySet();
+    
+    private volatile boolean ready;
+    private volatile boolean rebuilding;
+    
+    public boolean isReady() {
+        return ready;
+    }
+    
+    public Page<Long> search(String query, Pageable pageable) {
+        if (!ready || InvertedIndex.tokenize(query).isEmpty()) {
+            // Single letters and symbols are not indexed, so they still get substring matching
+            return topicRepository.searchTopicIds(query, pageable);
+        }
+        return index.search(query, pageable);
+    }
+    
+    public void indexTopic(Long id, String title, String content) {
+        afterCommit(() -> {
+            if (rebuilding) {
+                changedDuringRebuild.add(id);
+            }
+            index.put(id, title, content);
+        });
+    }
+    
+    public void removeTopic(Long id) {
+        afterCommit(() -> {
+            if (rebuilding) {
+                changedDuringRebuild.add(id);
+            }
+            index.remove(id);
+        });
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildInBackground() {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(this::rebuild, "forum-search-indexer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Reloads every topic into the index. Searches use the LIKE query until it completes.
+     */
+    public synchronized void rebuild() {
+        ready = false;
+        index.clear();
+        changedDuringRebuild.clear();
+        rebuilding = true;
+        try {
+            long start = System.currentTimeMillis();
+            Long afterId = 0L;
+            Pageable batch = PageRequest.of(0, rebuildBatchSize);
+            List<Object[]> rows;
+            do {
+                rows = topicRepository.findSearchRowsAfter(afterId, batch);
+                for (Object[] row : rows) {
+                    Long id = (Long) row[0];
+                    if (!changedDuringRebuild.contains(id)) {
+                        index.put(id, (String) row[1], (String) row[2]);
+                    }
+                    afterId = id;
+                }
+            } while (rows.size() == rebuildBatchSize);
+    
+            ready = true;
+            logger.info("Forum search index built with {} topics in {} ms", index.size(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            logger.error("Failed to build the forum search index, searches keep using the database", e);
+        } finally {
+            rebuilding = false;
+            changedDuringRebuild.clear();
+        }
+    }
+    
+    private void afterCommit(Runnable action) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
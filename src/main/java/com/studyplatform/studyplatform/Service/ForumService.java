@@ -1,10 +1,18 @@
 package com.studyplatform.studyplatform.Service;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -13,9 +21,12 @@ import org.springframework.transaction.annotation.Transactional;
 
 import com.studyplatform.studyplatform.Model.ForumReply;
 import com.studyplatform.studyplatform.Model.ForumTopic;
+import com.studyplatform.studyplatform.Model.ForumVote;
+import com.studyplatform.studyplatform.Model.ForumVote.TargetType;
 import com.studyplatform.studyplatform.Model.User;
 import com.studyplatform.studyplatform.Repository.ForumReplyRepository;
 import com.studyplatform.studyplatform.Repository.ForumTopicRepository;
+import com.studyplatform.studyplatform.Repository.ForumVoteRepository;
 import com.studyplatform.studyplatform.dto.ForumReplyDTO;
 import com.studyplatform.studyplatform.dto.ForumTopicDTO;
 import com.studyplatform.studyplatform.dto.PagedResponseDTO;
@@ -23,121 +34,100 @@ import com.studyplatform.studyplatform.dto.PagedResponseDTO;
 @Service
 public class ForumService {
 
+    // A vote is only retried while a concurrent vote by the same user changes it in between
+    private static final int MAX_VOTE_ATTEMPTS = 5;
+
     @Autowired
     private ForumTopicRepository topicRepository;
     
     @Autowired
     private ForumReplyRepository replyRepository;
     
+    @Autowired
+    private ForumVoteRepository voteRepository;
+    
+    @Autowired
+    private ForumViewCounter viewCounter;
+    
+    @Autowired
+    private ForumSearchIndex searchIndex;
+    
+    @Value("${forum.reply-count.backfill-on-startup:false}")
+    private boolean backfillReplyCountsOnStartup;
+    
+    @Value("${forum.votes.import-legacy-on-startup:false}")
+    private boolean importLegacyVotesOnStartup;
+    
+    // Fills the denormalized reply counts for topics created before the column existed
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfillReplyCounts() {
+        if (backfillReplyCountsOnStartup) {
+            topicRepository.recountReplies();
+        }
+    }
+    
+    // Copies voter sets from the element collection tables of earlier versions into forum_votes
+    // and recomputes the vote counters from it
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void importLegacyVotes() {
+        if (importLegacyVotesOnStartup) {
+            voteRepository.importLegacyVotes();
+            topicRepository.recountVotes();
+            replyRepository.recountVotes();
+        }
+    }
+    
     // Topic methods
     
-    public PagedResponseDTO<ForumTopicDTO> getAllTopics(int page, int size) {
+    @Transactional(readOnly = true)
+    public PagedResponseDTO<ForumTopicDTO> getAllTopics(User currentUser, int page, int size) {
         Pageable pageable = PageRequest.of(page, size);
-        Page<ForumTopic> topicsPage = topicRepository.findAllByOrderByCreatedAtDesc(pageable);
-        
-        List<ForumTopicDTO> topics = topicsPage.getContent().stream()
-            .map(this::convertToTopicDTO)
-            .collect(Collectors.toList());
-        
-        return new PagedResponseDTO<>(
-            topics,
-            topicsPage.getNumber(),
-            topicsPage.getSize(),
-            topicsPage.getTotalElements(),
-            topicsPage.getTotalPages()
-        );
+        Page<Long> topicIds = topicRepository.findIdsOrderByCreatedAtDesc(pageable);
+        return toTopicPage(topicIds, currentUser);
     }
     
-    public PagedResponseDTO<ForumTopicDTO> getTopicsByUser(User user, int page, int size) {
+    @Transactional(readOnly = true)
+    public PagedResponseDTO<ForumTopicDTO> getTopicsByUser(User user, User currentUser, int page, int size) {
         Pageable pageable = PageRequest.of(page, size);
-        Page<ForumTopic> topicsPage = topicRepository.findByUserOrderByCreatedAtDesc(user, pageable);
-        
-        List<ForumTopicDTO> topics = topicsPage.getContent().stream()
-            .map(this::convertToTopicDTO)
-            .collect(Collectors.toList());
-        
-        return new PagedResponseDTO<>(
-            topics,
-            topicsPage.getNumber(),
-            topicsPage.getSize(),
-            topicsPage.getTotalElements(),
-            topicsPage.getTotalPages()
-        );
+        Page<Long> topicIds = topicRepository.findIdsByUserOrderByCreatedAtDesc(user, pageable);
+        return toTopicPage(topicIds, currentUser);
     }
     
-    public PagedResponseDTO<ForumTopicDTO> searchTopics(String query, int page, int size) {
+    @Transactional(readOnly = true)
+    public PagedResponseDTO<ForumTopicDTO> searchTopics(User currentUser, String query, int page, int size) {
         Pageable pageable = PageRequest.of(page, size);
-        Page<ForumTopic> topicsPage = topicRepository.searchTopics(query, pageable);
-        
-        List<ForumTopicDTO> topics = topicsPage.getContent().stream()
-            .map(this::convertToTopicDTO)
-            .collect(Collectors.toList());
-        
-        return new PagedResponseDTO<>(
-            topics,
-            topicsPage.getNumber(),
-            topicsPage.getSize(),
-            topicsPage.getTotalElements(),
-            topicsPage.getTotalPages()
-        );
+        Page<Long> topicIds = searchIndex.search(query, pageable);
+        return toTopicPage(topicIds, currentUser);
     }
     
-    public PagedResponseDTO<ForumTopicDTO> getTopicsByTag(String tag, int page, int size) {
+    @Transactional(readOnly = true)
+    public PagedResponseDTO<ForumTopicDTO> getTopicsByTag(User currentUser, String tag, int page, int size) {
         Pageable pageable = PageRequest.of(page, size);
-        Page<ForumTopic> topicsPage = topicRepository.findByTag(tag, pageable);
-        
-        List<ForumTopicDTO> topics = topicsPage.getContent().stream()
-            .map(this::convertToTopicDTO)
-            .collect(Collectors.toList());
-        
-        return new PagedResponseDTO<>(
-            topics,
-            topicsPage.getNumber(),
-            topicsPage.getSize(),
-            topicsPage.getTotalElements(),
-            topicsPage.getTotalPages()
-        );
+        Page<Long> topicIds = topicRepository.findIdsByTag(tag, pageable);
+        return toTopicPage(topicIds, currentUser);
     }
     
-    public PagedResponseDTO<ForumTopicDTO> getTopRatedTopics(int page, int size) {
+    @Transactional(readOnly = true)
+    public PagedResponseDTO<ForumTopicDTO> getTopRatedTopics(User currentUser, int page, int size) {
         Pageable pageable = PageRequest.of(page, size);
-        Page<ForumTopic> topicsPage = topicRepository.findTopRated(pageable);
-        
-        List<ForumTopicDTO> topics = topicsPage.getContent().stream()
-            .map(this::convertToTopicDTO)
-            .collect(Collectors.toList());
-        
-        return new PagedResponseDTO<>(
-            topics,
-            topicsPage.getNumber(),
-            topicsPage.getSize(),
-            topicsPage.getTotalElements(),
-            topicsPage.getTotalPages()
-        );
+        Page<Long> topicIds = topicRepository.findTopRatedIds(pageable);
+        return toTopicPage(topicIds, currentUser);
     }
     
-    public PagedResponseDTO<ForumTopicDTO> getMostViewedTopics(int page, int size) {
+    @Transactional(readOnly = true)
+    public PagedResponseDTO<ForumTopicDTO> getMostViewedTopics(User currentUser, int page, int size) {
         Pageable pageable = PageRequest.of(page, size);
-        Page<ForumTopic> topicsPage = topicRepository.findMostViewed(pageable);
-        
-        List<ForumTopicDTO> topics = topicsPage.getContent().stream()
-            .map(this::convertToTopicDTO)
-            .collect(Collectors.toList());
-        
-        return new PagedResponseDTO<>(
-            topics,
-            topicsPage.getNumber(),
-            topicsPage.getSize(),
-            topicsPage.getTotalElements(),
-            topicsPage.getTotalPages()
-        );
+        Page<Long> topicIds = topicRepository.findMostViewedIds(pageable);
+        return toTopicPage(topicIds, currentUser);
     }
     
     public List<String> getAllTags() {
         return topicRepository.findAllTags();
     }
     
-    @Transactional
+    @Transactional(readOnly = true)
     public ForumTopicDTO getTopicById(Long id, User currentUser) {
         Optional<ForumTopic> topicOpt = topicRepository.findById(id);
         if (!topicOpt.isPresent()) {
@@ -146,11 +136,10 @@ public class ForumService {
         
         ForumTopic topic = topicOpt.get();
         
-        // Increment view count
-        topic.incrementViewCount();
-        topicRepository.save(topic);
+        // Views are buffered and written to the topic row by ForumViewCounter
+        viewCounter.recordView(id);
         
-        return convertToTopicDTO(topic);
+        return convertToTopicDTO(topic, getUserVote(TargetType.TOPIC, id, currentUser));
     }
     
     @Transactional
@@ -165,7 +154,8 @@ public class ForumService {
         }
         
         ForumTopic savedTopic = topicRepository.save(topic);
-        return convertToTopicDTO(savedTopic);
+        searchIndex.indexTopic(savedTopic.getId(), title, content);
+        return convertToTopicDTO(savedTopic, 0);
     }
     
     @Transactional
@@ -192,7 +182,8 @@ public class ForumService {
         }
         
         ForumTopic updatedTopic = topicRepository.save(topic);
-        return convertToTopicDTO(updatedTopic);
+        searchIndex.indexTopic(id, title, content);
+        return convertToTopicDTO(updatedTopic, getUserVote(TargetType.TOPIC, id, user));
     }
     
     @Transactional
@@ -209,55 +200,54 @@ public class ForumService {
             throw new RuntimeException("You are not authorized to delete this topic");
         }
         
-        // Delete all replies first
+        // Delete votes on the topic and its replies, then the replies themselves
+        List<Long> replyIds = replyRepository.findIdsByTopic(topic);
+        if (!replyIds.isEmpty()) {
+            voteRepository.deleteByTargets(TargetType.REPLY, replyIds);
+        }
+        voteRepository.deleteByTargets(TargetType.TOPIC, Collections.singletonList(id));
+        
         List<ForumReply> replies = replyRepository.findByTopicOrderByCreatedAtAsc(topic);
         replyRepository.deleteAll(replies);
         
         // Delete the topic
         topicRepository.delete(topic);
+        searchIndex.removeTopic(id);
     }
     
     @Transactional
     public ForumTopicDTO voteTopic(Long id, User user, boolean isUpvote) {
-        Optional<ForumTopic> topicOpt = topicRepository.findById(id);
-        if (!topicOpt.isPresent()) {
+        if (!topicRepository.existsById(id)) {
             throw new RuntimeException("Topic not found with id: " + id);
         }
         
-        ForumTopic topic = topicOpt.get();
-        
-        if (isUpvote) {
-            topic.addUpvote(user.getId());
-        } else {
-            topic.addDownvote(user.getId());
+        int value = isUpvote ? ForumVote.UPVOTE : ForumVote.DOWNVOTE;
+        int[] delta = castVote(TargetType.TOPIC, id, user.getId(), value);
+        if (delta[0] != 0 || delta[1] != 0) {
+            topicRepository.adjustVotes(id, delta[0], delta[1]);
         }
         
-        ForumTopic updatedTopic = topicRepository.save(topic);
-        return convertToTopicDTO(updatedTopic);
+        return convertToTopicDTO(topicRepository.findById(id).get(), value);
     }
     
     @Transactional
     public ForumTopicDTO removeVoteTopic(Long id, User user, boolean isUpvote) {
-        Optional<ForumTopic> topicOpt = topicRepository.findById(id);
-        if (!topicOpt.isPresent()) {
+        if (!topicRepository.existsById(id)) {
             throw new RuntimeException("Topic not found with id: " + id);
         }
         
-        ForumTopic topic = topicOpt.get();
-        
-        if (isUpvote) {
-            topic.removeUpvote(user.getId());
-        } else {
-            topic.removeDownvote(user.getId());
+        int[] delta = retractVote(TargetType.TOPIC, id, user.getId(), isUpvote ? ForumVote.UPVOTE : ForumVote.DOWNVOTE);
+        if (delta[0] != 0 || delta[1] != 0) {
+            topicRepository.adjustVotes(id, delta[0], delta[1]);
         }
         
-        ForumTopic updatedTopic = topicRepository.save(topic);
-        return convertToTopicDTO(updatedTopic);
+        return convertToTopicDTO(topicRepository.findById(id).get(), getUserVote(TargetType.TOPIC, id, user));
     }
     
     // Reply methods
     
-    public List<ForumReplyDTO> getRepliesByTopic(Long topicId) {
+    @Transactional(readOnly = true)
+    public List<ForumReplyDTO> getRepliesByTopic(Long topicId, User currentUser) {
         Optional<ForumTopic> topicOpt = topicRepository.findById(topicId);
         if (!topicOpt.isPresent()) {
             throw new RuntimeException("Topic not found with id: " + topicId);
@@ -266,8 +256,11 @@ public class ForumService {
         ForumTopic topic = topicOpt.get();
         List<ForumReply> replies = replyRepository.findByTopicOrderByCreatedAtAsc(topic);
         
+        Map<Long, Integer> userVotes = getUserVotes(TargetType.REPLY,
+            replies.stream().map(ForumReply::getId).collect(Collectors.toList()), currentUser);
+        
         return replies.stream()
-            .map(this::convertToReplyDTO)
+            .map(reply -> convertToReplyDTO(reply, userVotes.getOrDefault(reply.getId(), 0)))
             .collect(Collectors.toList());
     }
     
@@ -286,7 +279,8 @@ public class ForumService {
         reply.setUser(user);
         
         ForumReply savedReply = replyRepository.save(reply);
-        return convertToReplyDTO(savedReply);
+        topicRepository.adjustReplyCount(topicId, 1);
+        return convertToReplyDTO(savedReply, 0);
     }
     
     @Transactional
@@ -306,7 +300,7 @@ public class ForumService {
         reply.setContent(content);
         
         ForumReply updatedReply = replyRepository.save(reply);
-        return convertToReplyDTO(updatedReply);
+        return convertToReplyDTO(updatedReply, getUserVote(TargetType.REPLY, replyId, user));
     }
     
     @Transactional
@@ -323,7 +317,9 @@ public class ForumService {
             throw new RuntimeException("You are not authorized to delete this reply");
         }
         
+        voteRepository.deleteByTargets(TargetType.REPLY, Collections.singletonList(replyId));
         replyRepository.delete(reply);
+        topicRepository.adjustReplyCount(reply.getTopic().getId(), -1);
     }
     
     @Transactional
@@ -353,50 +349,120 @@ public class ForumService {
         reply.setAcceptedAnswer(true);
         ForumReply updatedReply = replyRepository.save(reply);
         
-        return convertToReplyDTO(updatedReply);
+        return convertToReplyDTO(updatedReply, getUserVote(TargetType.REPLY, replyId, user));
     }
     
     @Transactional
     public ForumReplyDTO voteReply(Long replyId, User user, boolean isUpvote) {
-        Optional<ForumReply> replyOpt = replyRepository.findById(replyId);
-        if (!replyOpt.isPresent()) {
+        if (!replyRepository.existsById(replyId)) {
             throw new RuntimeException("Reply not found with id: " + replyId);
         }
         
-        ForumReply reply = replyOpt.get();
-        
-        if (isUpvote) {
-            reply.addUpvote(user.getId());
-        } else {
-            reply.addDownvote(user.getId());
+        int value = isUpvote ? ForumVote.UPVOTE : ForumVote.DOWNVOTE;
+        int[] delta = castVote(TargetType.REPLY, replyId, user.getId(), value);
+        if (delta[0] != 0 || delta[1] != 0) {
+            replyRepository.adjustVotes(replyId, delta[0], delta[1]);
         }
         
-        ForumReply updatedReply = replyRepository.save(reply);
-        return convertToReplyDTO(updatedReply);
+        return convertToReplyDTO(replyRepository.findById(replyId).get(), value);
     }
     
     @Transactional
     public ForumReplyDTO removeVoteReply(Long replyId, User user, boolean isUpvote) {
-        Optional<ForumReply> replyOpt = replyRepository.findById(replyId);
-        if (!replyOpt.isPresent()) {
+        if (!replyRepository.existsById(replyId)) {
             throw new RuntimeException("Reply not found with id: " + replyId);
         }
         
-        ForumReply reply = replyOpt.get();
-        
-        if (isUpvote) {
-            reply.removeUpvote(user.getId());
-        } else {
-            reply.removeDownvote(user.getId());
+        int[] delta = retractVote(TargetType.REPLY, replyId, user.getId(), isUpvote ? ForumVote.UPVOTE : ForumVote.DOWNVOTE);
+        if (delta[0] != 0 || delta[1] != 0) {
+            replyRepository.adjustVotes(replyId, delta[0], delta[1]);
         }
         
-        ForumReply updatedReply = replyRepository.save(reply);
-        return convertToReplyDTO(updatedReply);
+        return convertToReplyDTO(replyRepository.findById(replyId).get(), getUserVote(TargetType.REPLY, replyId, user));
+    }
+    
+    // Vote helpers
+    
+    // Records the user's vote and returns the resulting [upvotes, downvotes] counter deltas. Each step
+    // is a single conditional statement whose row count decides the delta, so concurrent votes by the
+    // same user cannot both count.
+    private int[] castVote(TargetType targetType, Long targetId, Long userId, int value) {
+        for (int attempt = 1; attempt <= MAX_VOTE_ATTEMPTS; attempt++) {
+            LocalDateTime now = LocalDateTime.now();
+            // Switching sides moves one vote from the other counter
+            if (voteRepository.changeValue(targetType, targetId, userId, value, now) == 1) {
+                return value == ForumVote.UPVOTE ? new int[] {1, -1} : new int[] {-1, 1};
+            }
+            if (voteRepository.insertIfAbsent(targetType.name(), targetId, userId, value, now) == 1) {
+                return value == ForumVote.UPVOTE ? new int[] {1, 0} : new int[] {0, 1};
+            }
+            // Neither: the vote is already cast this way, or a concurrent vote by the same user is not
+            // visible yet or has just changed it, in which case the statements are tried again
+            Optional<Integer> existing = voteRepository.findValueForUpdate(targetType, targetId, userId);
+            if (existing.isPresent() && existing.get() == value) {
+                return new int[] {0, 0};
+            }
+        }
+        throw new RuntimeException("Could not record the vote, please try again");
+    }
+    
+    // Removes the user's vote if it has the given value and returns the resulting counter deltas
+    private int[] retractVote(TargetType targetType, Long targetId, Long userId, int value) {
+        if (voteRepository.deleteWithValue(targetType, targetId, userId, value) == 0) {
+            return new int[] {0, 0};
+        }
+        return value == ForumVote.UPVOTE ? new int[] {-1, 0} : new int[] {0, -1};
+    }
+    
+    private int getUserVote(TargetType targetType, Long targetId, User user) {
+        if (user == null) {
+            return 0;
+        }
+        return voteRepository.findByTargetTypeAndTargetIdAndUserId(targetType, targetId, user.getId())
+            .map(ForumVote::getValue)
+            .orElse(0);
+    }
+    
+    private Map<Long, Integer> getUserVotes(TargetType targetType, List<Long> targetIds, User user) {
+        Map<Long, Integer> votes = new HashMap<>();
+        if (user == null || targetIds.isEmpty()) {
+            return votes;
+        }
+        for (Object[] row : voteRepository.findUserVotes(targetType, user.getId(), targetIds)) {
+            votes.put((Long) row[0], (Integer) row[1]);
+        }
+        return votes;
     }
     
     // Helper methods to convert entities to DTOs
     
-    private ForumTopicDTO convertToTopicDTO(ForumTopic topic) {
+    // Loads a page of topics by id with one fetch query, keeping the order of the id page
+    private PagedResponseDTO<ForumTopicDTO> toTopicPage(Page<Long> topicIds, User currentUser) {
+        List<ForumTopicDTO> topics = new ArrayList<>();
+        if (topicIds.hasContent()) {
+            Map<Long, Integer> userVotes = getUserVotes(TargetType.TOPIC, topicIds.getContent(), currentUser);
+            Map<Long, ForumTopic> topicsById = new HashMap<>();
+            for (ForumTopic topic : topicRepository.findWithDetailsByIdIn(topicIds.getContent())) {
+                topicsById.put(topic.getId(), topic);
+            }
+            for (Long id : topicIds.getContent()) {
+                ForumTopic topic = topicsById.get(id);
+                if (topic != null) {
+                    topics.add(convertToTopicDTO(topic, userVotes.getOrDefault(id, 0)));
+                }
+            }
+        }
+        
+        return new PagedResponseDTO<>(
+            topics,
+            topicIds.getNumber(),
+            topicIds.getSize(),
+            topicIds.getTotalElements(),
+            topicIds.getTotalPages()
+        );
+    }
+    
+    private ForumTopicDTO convertToTopicDTO(ForumTopic topic, int userVote) {
         ForumTopicDTO dto = new ForumTopicDTO();
         dto.setId(topic.getId());
         dto.setTitle(topic.getTitle());
@@ -404,20 +470,20 @@ public class ForumService {
         dto.setUser(topic.getUser());
         dto.setCreatedAt(topic.getCreatedAt());
         dto.setUpdatedAt(topic.getUpdatedAt());
-        dto.setViewCount(topic.getViewCount());
+        dto.setViewCount(topic.getViewCount() + (int) viewCounter.getPendingViews(topic.getId()));
         
-        // Get reply count
-        long replyCount = replyRepository.countRepliesByTopic(topic);
-        dto.setReplyCount((int) replyCount);
+        dto.setReplyCount(topic.getReplyCount());
         
         dto.setUpvotes(topic.getUpvotes());
         dto.setDownvotes(topic.getDownvotes());
+        dto.setScore(topic.getScore());
+        dto.setUserVote(userVote);
         dto.setTags(topic.getTags());
         
         return dto;
     }
     
-    private ForumReplyDTO convertToReplyDTO(ForumReply reply) {
+    private ForumReplyDTO convertToReplyDTO(ForumReply reply, int userVote) {
         ForumReplyDTO dto = new ForumReplyDTO();
         dto.setId(reply.getId());
         dto.setContent(reply.getContent());
@@ -427,6 +493,8 @@ public class ForumService {
         dto.setUpdatedAt(reply.getUpdatedAt());
         dto.setUpvotes(reply.getUpvotes());
         dto.setDownvotes(reply.getDownvotes());
+        dto.setScore(reply.getScore());
+        dto.setUserVote(userVote);
         dto.setAcceptedAnswer(reply.isAcceptedAnswer());
         
         return dto;
@@ -0,0 +1,133 @@
+package com.studyplatform.studyplatform.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Buffers forum topic views in memory and adds them to {@code forum_topics.view_count} in periodic
+ * batched updates, so reading a topic never takes a row lock.
+ *
+ * Each topic gets its own {@link LongAdder}; a flush subtracts exactly the amount it wrote, so views
+ * recorded while a flush is running are carried over to the next one. Idle topics are dropped from
+ * the map under the same per-key lock that recording takes, so no view is lost to the removal.
+ * Pending views are flushed once more on shutdown. Stored counts lag behind by at most one flush interval.
+ */
+@Service
+public class ForumViewCounter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ForumViewCounter.class);
+    
+    private static final String UPDATE_SQL = "UPDATE forum_topics SET view_count = view_count + ? WHERE id = ?";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Map<Long, LongAdder> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    
+    public ForumViewCounter(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${forum.views.flush-interval-ms:5000}") long flushIntervalMs,
+            @Value("${forum.views.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+    
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "forum-view-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    public void recordView(Long topicId) {
+        // Incremented inside compute so flush cannot remove the adder between lookup and increment
+        pending.compute(topicId, (id, adder) -> {
+            if (adder == null) {
+                adder = new LongAdder();
+            }
+            adder.increment();
+            return adder;
+        });
+    }
+    
+    /**
+     * Views recorded for a topic that have not been written to the database yet.
+     */
+    public long getPendingViews(Long topicId) {
+        LongAdder adder = pending.get(topicId);
+        return adder != null ? adder.sum() : 0;
+    }
+    
+    /**
+     * Writes all pending views to the database. Counts that fail to write stay pending.
+     */
+    public synchronized void flush() {
+        // Rows are updated in id order so flushes from several instances do not deadlock
+        List<Long> topicIds = new ArrayList<>();
+        List<Long> views = new ArrayList<>();
+        List<LongAdder> adders = new ArrayList<>();
+        for (Map.Entry<Long, LongAdder> entry : new TreeMap<>(pending).entrySet()) {
+            LongAdder adder = entry.getValue();
+            long count = adder.sum();
+            if (count == 0) {
+                // Idle since the last flush; removed only if no view arrived before the entry was locked
+                pending.compute(entry.getKey(), (id, current) -> current == null || current.sum() == 0 ? null : current);
+                continue;
+            }
+            topicIds.add(entry.getKey());
+            views.add(count);
+            adders.add(adder);
+        }
+        
+        for (int from = 0; from < topicIds.size(); from += batchSize) {
+            int to = Math.min(from + batchSize, topicIds.size());
+            List<Object[]> args = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                args.add(new Object[] { views.get(i), topicIds.get(i) });
+            }
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(UPDATE_SQL, args));
+            for (int i = from; i < to; i++) {
+                adders.get(i).add(-views.get(i));
+            }
+        }
+    }
+    
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to flush forum view counts, will retry: {}", e.getMessage());
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+    }
+}
@@ -0,0 +1,441 @@
+package com.studyplatform.studyplatform.Service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * Thread-safe in-memory inverted index over documents identified by a {@code long} id, ranked with BM25.
+ *
+ * Text is split on anything that is not a letter or digit, lower-cased and stripped of accents. Every
+ * term keeps its postings as parallel sorted arrays of ids and weighted term frequencies, so an index
+ * over many documents stays a few primitive arrays per term. Removed documents are only marked in the
+ * arrays, which are compacted once half of their entries are marked, so removing many documents does
+ * not shift the arrays once per document. A query matches documents containing all of its terms; the
+ * last term also matches as a prefix so results follow the user while typing.
+ *
+ * Documents with more distinct terms than the index's limit keep only their most frequent ones, which
+ * bounds the heap a single large document can take; {@link #estimateHeapBytes()} reports the total.
+ */
+public class InvertedIndex {
+
+    private static final int MIN_TERM_LENGTH = 2;
+    private static final int MAX_TERM_LENGTH = 64;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    private static final int TITLE_WEIGHT = 3;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    
+    private final int maxTermsPerDocument;
+    private final NavigableMap<String, Postings> postingsByTerm = new TreeMap<>();
+    private final Map<Long, Document> documents = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private long totalLength;
+    
+    public InvertedIndex() {
+        this(Integer.MAX_VALUE);
+    }
+    
+    public InvertedIndex(int maxTermsPerDocument) {
+        this.maxTermsPerDocument = maxTermsPerDocument;
+    }
+    
+    /**
+     * Splits text into index terms, in order and with duplicates.
+     */
+    public static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return terms;
+        }
+    
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD).toLowerCase(Locale.ROOT);
+        StringBuilder term = new StringBuilder();
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                term.append(c);
+            } else if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                addTerm(terms, term);
+            }
+        }
+        addTerm(terms, term);
+        return terms;
+    }
+    
+    private static void addTerm(List<String> terms, StringBuilder term) {
+        if (term.length() >= MIN_TERM_LENGTH && term.length() <= MAX_TERM_LENGTH) {
+            terms.add(term.toString());
+        }
+        term.setLength(0);
+    }
+    
+    /**
+     * Adds or replaces a document. Title terms count {@value #TITLE_WEIGHT} times as much as body terms.
+     * Beyond the limit of distinct terms, the least frequent ones are left out; the document's length
+     * still counts them.
+     */
+    public void put(long id, String title, String body) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        int length = 0;
+        for (String term : tokenize(title)) {
+            frequencies.merge(term, TITLE_WEIGHT, Integer::sum);
+            length += TITLE_WEIGHT;
+        }
+        for (String term : tokenize(body)) {
+            frequencies.merge(term, 1, Integer::sum);
+            length++;
+        }
+        
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            if (frequencies.isEmpty()) {
+                return;
+            }
+            String[] terms = frequencies.keySet().toArray(new String[0]);
+            if (terms.length > maxTermsPerDocument) {
+                Arrays.sort(terms, (a, b) -> {
+                    int byFrequency = frequencies.get(b) - frequencies.get(a);
+                    return byFrequency != 0 ? byFrequency : a.compareTo(b);
+                });
+                terms = Arrays.copyOf(terms, maxTermsPerDocument);
+            }
+            for (int i = 0; i < terms.length; i++) {
+                Postings postings = postingsByTerm.computeIfAbsent(terms[i], Postings::new);
+                postings.put(id, frequencies.get(terms[i]));
+                // The index's own copy, so a document does not keep another string per term
+                terms[i] = postings.term;
+            }
+            documents.put(id, new Document(terms, length));
+            totalLength += length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private void removeLocked(long id) {
+        Document document = documents.remove(id);
+        if (document == null) {
+            return;
+        }
+        for (String term : document.terms) {
+            Postings postings = postingsByTerm.get(term);
+            if (postings != null && postings.remove(id) && postings.count() == 0) {
+                postingsByTerm.remove(term);
+            }
+        }
+        totalLength -= document.length;
+    }
+    
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postingsByTerm.clear();
+            documents.clear();
+            totalLength = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Approximate heap used by the index, counted from its terms, postings arrays and documents for a
+     * 64-bit JVM with compressed references.
+     */
+    public long estimateHeapBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = 0;
+            for (Postings postings : postingsByTerm.values()) {
+                // Tree map entry, string with its Latin-1 bytes, postings and their two arrays
+                bytes += 40 + 24 + align(16 + postings.term.length()) + 32
+                    + align(16 + 8L * postings.ids.length) + align(16 + 4L * postings.frequencies.length);
+            }
+            for (Document document : documents.values()) {
+                // Hash map node, boxed id, document and its term array
+                bytes += 32 + 16 + 24 + align(16 + 4L * document.terms.length);
+            }
+            // Hash map table
+            return bytes + 4L * Integer.highestOneBit(Math.max(1, documents.size()) * 2);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+    
+    /**
+     * Returns one page of matching ids, best match first and newest (highest id) first among equal scores.
+     * A query without any index terms matches nothing.
+     */
+    public Page<Long> search(String query, Pageable pageable) {
+        return search(query, null, pageable);
+    }
+    
+    /**
+     * Same as {@link #search(String, Pageable)}, restricted to ids accepted by the filter. The filter is
+     * checked before scoring, so restrictive filters also make the search cheaper.
+     */
+    public Page<Long> search(String query, LongPredicate filter, Pageable pageable) {
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty()) {
+            return new PageImpl<>(new ArrayList<>(), pageable, 0);
+        }
+        boolean prefixLast = !Character.isWhitespace(query.charAt(query.length() - 1));
+    
+        lock.readLock().lock();
+        try {
+            int documentCount = documents.size();
+            if (documentCount == 0) {
+                return new PageImpl<>(new ArrayList<>(), pageable, 0);
+            }
+            double averageLength = (double) totalLength / documentCount;
+    
+            // Each query term becomes a group of index terms; a document must match every group
+            List<List<Postings>> groups = new ArrayList<>();
+            for (int i = 0; i < terms.size(); i++) {
+                List<Postings> group = new ArrayList<>();
+                String term = terms.get(i);
+                if (prefixLast && i == terms.size() - 1) {
+                    for (Postings postings : postingsByTerm.subMap(term, true, term + Character.MAX_VALUE, false).values()) {
+                        group.add(postings);
+                        if (group.size() >= MAX_PREFIX_EXPANSIONS) {
+                            break;
+                        }
+                    }
+                } else {
+                    Postings postings = postingsByTerm.get(term);
+                    if (postings != null) {
+                        group.add(postings);
+                    }
+                }
+                if (group.isEmpty()) {
+                    return new PageImpl<>(new ArrayList<>(), pageable, 0);
+                }
+                groups.add(group);
+            }
+    
+            // Drive the intersection from the group with the fewest postings
+            List<Postings> driver = groups.get(0);
+            for (List<Postings> group : groups) {
+                if (postingCount(group) < postingCount(driver)) {
+                    driver = group;
+                }
+            }
+    
+            // Keep only the best offset + size matches in a min-heap instead of sorting every match
+            long wanted = pageable.getOffset() + pageable.getPageSize();
+            int limit = (int) Math.min(wanted, Integer.MAX_VALUE - 8);
+            PriorityQueue<ScoredId> best = new PriorityQueue<>();
+            // Best score of each document within the driving group, then the remaining groups are probed
+            Map<Long, Double> driverScores = new HashMap<>();
+            for (Postings postings : driver) {
+                for (int i = 0; i < postings.size; i++) {
+                    long id = postings.ids[i];
+                    if (postings.frequencies[i] == 0 || (filter != null && !filter.test(id))) {
+                        continue;
+                    }
+                    double score = bm25(postings.count(), documentCount, postings.frequencies[i], documents.get(id).length, averageLength);
+                    driverScores.merge(id, score, Math::max);
+                }
+            }
+            groups.remove(driver);
+            
+            int total = 0;
+            for (Map.Entry<Long, Double> entry : driverScores.entrySet()) {
+                long id = entry.getKey();
+                double rest = score(id, groups, documentCount, averageLength);
+                if (rest < 0) {
+                    continue;
+                }
+                ScoredId scored = new ScoredId(id, entry.getValue() + rest);
+                total++;
+                if (best.size() < limit) {
+                    best.add(scored);
+                } else if (limit > 0 && best.peek().compareTo(scored) < 0) {
+                    best.poll();
+                    best.add(scored);
+                }
+            }
+            
+            List<ScoredId> ranked = new ArrayList<>(best);
+            ranked.sort(Collections.reverseOrder());
+            List<Long> pageIds = new ArrayList<>();
+            for (long i = pageable.getOffset(); i < ranked.size(); i++) {
+                pageIds.add(ranked.get((int) i).id);
+            }
+            return new PageImpl<>(pageIds, pageable, total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Sum of the best BM25 score per query term, or -1 if some term does not match the document
+    private double score(long id, List<List<Postings>> groups, int documentCount, double averageLength) {
+        int length = documents.get(id).length;
+        double score = 0;
+        for (List<Postings> group : groups) {
+            double best = -1;
+            for (Postings candidate : group) {
+                int frequency = candidate.frequency(id);
+                if (frequency > 0) {
+                    best = Math.max(best, bm25(candidate.count(), documentCount, frequency, length, averageLength));
+                }
+            }
+            if (best < 0) {
+                return -1;
+            }
+            score += best;
+        }
+        return score;
+    }
+    
+    private static int postingCount(List<Postings> group) {
+        int count = 0;
+        for (Postings postings : group) {
+            count += postings.count();
+        }
+        return count;
+    }
+    
+    private static double bm25(int documentFrequency, int documentCount, int frequency, int length, double averageLength) {
+        double idf = Math.log(1 + (documentCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+        return idf * frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * length / averageLength));
+    }
+    
+    // Orders by score, then by id so that newer documents win ties
+    private static final class ScoredId implements Comparable<ScoredId> {
+        private final long id;
+        private final double score;
+        
+        private ScoredId(long id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+        
+        @Override
+        public int compareTo(ScoredId other) {
+            int byScore = Double.compare(score, other.score);
+            return byScore != 0 ? byScore : Long.compare(id, other.id);
+        }
+    }
+    
+    private static final class Document {
+        private final String[] terms;
+        private final int length;
+    
+        private Document(String[] terms, int length) {
+            this.terms = terms;
+            this.length = length;
+        }
+    }
+    
+    // Ids in ascending order with their weighted frequency; new documents usually append at the end.
+    // A frequency of 0 marks a removed id that is still in the arrays.
+    private static final class Postings {
+        private static final int MIN_COMPACTED = 16;
+        
+        private final String term;
+        private long[] ids = new long[2];
+        private int[] frequencies = new int[2];
+        private int size;
+        private int removed;
+    
+        private Postings(String term) {
+            this.term = term;
+        }
+    
+        private int count() {
+            return size - removed;
+        }
+    
+        private void put(long id, int frequency) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                if (frequencies[index] == 0) {
+                    removed--;
+                }
+                frequencies[index] = frequency;
+                return;
+            }
+            index = -index - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            System.arraycopy(frequencies, index, frequencies, index + 1, size - index);
+            ids[index] = id;
+            frequencies[index] = frequency;
+            size++;
+        }
+    
+        private boolean remove(long id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index < 0 || frequencies[index] == 0) {
+                return false;
+            }
+            frequencies[index] = 0;
+            removed++;
+            if (removed >= MIN_COMPACTED && removed * 2 >= size) {
+                compact();
+            }
+            return true;
+        }
+    
+        // Drops the removed ids in one pass
+        private void compact() {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (frequencies[i] != 0) {
+                    ids[kept] = ids[i];
+                    frequencies[kept] = frequencies[i];
+                    kept++;
+                }
+            }
+            size = kept;
+            removed = 0;
+        }
+    
+        private int frequency(long id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            return index >= 0 ? frequencies[index] : 0;
+        }
+    }
+}
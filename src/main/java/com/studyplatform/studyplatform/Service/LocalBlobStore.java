@@ -0,0 +1,155 @@
+package com.studyplatform.studyplatform.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps blobs as files in {@code file.upload-dir}.
+ *
+ * Files are spread over two levels of subdirectories named after the first four hex characters of the
+ * name (content-addressed names start with the content hash) or of the name's hash for other names,
+ * e.g. {@code ab/cd/abcd...pdf}, so no directory grows past a few thousand entries. Names are resolved
+ * to the flat location used by earlier versions until {@link UploadLayoutMigration} has moved those
+ * files.
+ */
+@Service
+@ConditionalOnProperty(name = "file.storage.backend", havingValue = "local", matchIfMissing = true)
+public class LocalBlobStore implements BlobStore {
+
+    private static final String TEMP_FILE_PREFIX = "upload-";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    @Value("${file.upload-dir}")
+    private String uploadDir;
+
+    @Value("${file.storage.sharded:true}")
+    private boolean sharded;
+
+    // Created next to the stored files, so that putting a blob is a rename
+    @Override
+    public Path createTempFile() throws IOException {
+        Path uploadPath = getUploadPath();
+        Files.createDirectories(uploadPath);
+        return Files.createTempFile(uploadPath, TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX);
+    }
+
+    @Override
+    public void put(String name, Path source) throws IOException {
+        Path path = sharded ? getShardedPath(name) : getUploadPath().resolve(name);
+        Files.createDirectories(path.getParent());
+        Files.move(source, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public BlobAttributes getAttributes(String name) throws IOException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(getFilePath(name), BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return null;
+            }
+            return new BlobAttributes(attributes.size(), attributes.lastModifiedTime().toMillis());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public InputStream open(String name, long offset) throws IOException {
+        SeekableByteChannel channel = Files.newByteChannel(getFilePath(name));
+        try {
+            channel.position(offset);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return Channels.newInputStream(channel);
+    }
+
+    @Override
+    public void download(String name, Path target) throws IOException {
+        Files.copy(getFilePath(name), target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Both locations are tried in case the file is being moved
+    @Override
+    public void delete(String name) throws IOException {
+        Files.deleteIfExists(getUploadPath().resolve(name));
+        if (sharded) {
+            Files.deleteIfExists(getShardedPath(name));
+        }
+    }
+
+    @Override
+    public Path getLocalPath(String name) {
+        return getFilePath(name);
+    }
+
+    /**
+     * Get the upload directory
+     * @return The absolute path of {@code file.upload-dir}
+     */
+    public Path getUploadPath() {
+        return Paths.get(uploadDir).toAbsolutePath().normalize();
+    }
+
+    /**
+     * Get the full file path for a stored file
+     * @param fileName The name of the file
+     * @return The full path to the file as a Path object
+     */
+    public Path getFilePath(String fileName) {
+        Path flatPath = getUploadPath().resolve(fileName);
+        if (!sharded) {
+            return flatPath;
+        }
+        Path shardedPath = getShardedPath(fileName);
+        if (Files.exists(shardedPath)) {
+            return shardedPath;
+        }
+        // Stored flat and not moved yet; if it is missing there too, it was moved after the first check
+        return Files.exists(flatPath) ? flatPath : shardedPath;
+    }
+
+    /**
+     * Get the location of a file in the sharded layout, whether or not it is stored there yet
+     * @param fileName The name of the file
+     * @return The path under the two shard directories for the name
+     */
+    public Path getShardedPath(String fileName) {
+        String key = isHexPrefixed(fileName) ? fileName.toLowerCase() : DigestUtils.sha256Hex(fileName);
+        return getUploadPath().resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(fileName);
+    }
+
+    /**
+     * Whether a name in the upload directory is a file still being written
+     * @param fileName The name of the file
+     */
+    public boolean isTemporaryFile(String fileName) {
+        return fileName.startsWith(TEMP_FILE_PREFIX) && fileName.endsWith(TEMP_FILE_SUFFIX);
+    }
+
+    private static boolean isHexPrefixed(String fileName) {
+        if (fileName.length() < 4) {
+            return false;
+        }
+        for (int i = 0; i < 4; i++) {
+            if (Character.digit(fileName.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,379 @@
+package com.studyplatform.studyplatform.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+/**
+ * Keeps blobs in an S3-compatible bucket, so that several application nodes can share them.
+ *
+ * Files of at least {@code file.storage.s3.multipart-threshold-bytes} are uploaded as multipart uploads
+ * whose parts are sent in parallel, each read straight from its slice of the file, and are downloaded
+ * the same way with ranged GETs written to their position in the target file. Reads from an offset use
+ * a ranged GET, so serving a byte range only transfers that range. {@code file.storage.s3.endpoint}
+ * points the client at another S3 implementation such as MinIO.
+ */
+@Service
+@ConditionalOnProperty(name = "file.storage.backend", havingValue = "s3")
+public class S3BlobStore implements BlobStore {
+
+    // S3 rejects parts smaller than this, except the last one
+    private static final long MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    private final S3Client s3;
+    private final String bucket;
+    private final String keyPrefix;
+    private final long partSize;
+    private final long multipartThreshold;
+    private final ExecutorService transferPool;
+
+    public S3BlobStore(
+            @Value("${file.storage.s3.bucket}") String bucket,
+            @Value("${file.storage.s3.region:us-east-1}") String region,
+            @Value("${file.storage.s3.endpoint:}") String endpoint,
+            @Value("${file.storage.s3.path-style-access:false}") boolean pathStyleAccess,
+            @Value("${file.storage.s3.access-key:}") String accessKey,
+            @Value("${file.storage.s3.secret-key:}") String secretKey,
+            @Value("${file.storage.s3.key-prefix:uploads/}") String keyPrefix,
+            @Value("${file.storage.s3.part-size-bytes:8388608}") long partSize,
+            @Value("${file.storage.s3.multipart-threshold-bytes:16777216}") long multipartThreshold,
+            @Value("${file.storage.s3.transfer-threads:8}") int transferThreads) {
+        this.bucket = bucket;
+        this.keyPrefix = keyPrefix;
+        this.partSize = Math.max(MIN_PART_SIZE, partSize);
+        this.multipartThreshold = Math.max(this.partSize, multipartThreshold);
+
+        int threads = Math.max(1, transferThreads);
+        S3ClientBuilder builder = S3Client.builder()
+                .region(Region.of(region))
+                // Whole-object GETs would otherwise ask for a trailing MD5 (x-amz-te), which most
+                // S3-compatible servers reject
+                .serviceConfiguration(S3Configuration.builder()
+                        .pathStyleAccessEnabled(pathStyleAccess)
+                        .checksumValidationEnabled(endpoint.isEmpty())
+                        .build())
+                // Parallel part transfers of concurrent uploads and downloads share these connections
+                .httpClientBuilder(ApacheHttpClient.builder().maxConnections(threads * 2));
+        if (!endpoint.isEmpty()) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        if (!accessKey.isEmpty()) {
+            builder.credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey)));
+        } else {
+            builder.credentialsProvider(DefaultCredentialsProvider.create());
+        }
+        this.s3 = builder.build();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.transferPool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "s3-transfer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        transferPool.shutdownNow();
+        s3.close();
+    }
+
+    @Override
+    public Path createTempFile() throws IOException {
+        return Files.createTempFile("blob-", ".tmp");
+    }
+
+    @Override
+    public void put(String name, Path source) throws IOException {
+        long size = Files.size(source);
+        try {
+            if (size < multipartThreshold) {
+                s3.putObject(request -> request.bucket(bucket).key(key(name)), RequestBody.fromFile(source));
+                return;
+            }
+            putMultipart(name, source, size);
+        } catch (SdkException e) {
+            throw new IOException("Could not upload " + name + " to S3: " + e.getMessage(), e);
+        }
+    }
+
+    private void putMultipart(String name, Path source, long size) throws IOException {
+        String uploadId = s3.createMultipartUpload(request -> request.bucket(bucket).key(key(name))).uploadId();
+        List<Future<CompletedPart>> parts = new ArrayList<>();
+        try {
+            int partNumber = 1;
+            for (long offset = 0; offset < size; offset += partSize, partNumber++) {
+                long start = offset;
+                long length = Math.min(partSize, size - offset);
+                int number = partNumber;
+                parts.add(transferPool.submit(() -> {
+                    String eTag = s3.uploadPart(request -> request.bucket(bucket).key(key(name)).uploadId(uploadId)
+                                    .partNumber(number).contentLength(length),
+                            RequestBody.fromContentProvider(() -> new FileSliceInputStream(source, start, length),
+                                    length, "application/octet-stream"))
+                            .eTag();
+                    return CompletedPart.builder().partNumber(number).eTag(eTag).build();
+                }));
+            }
+
+            List<CompletedPart> completedParts = new ArrayList<>(parts.size());
+            for (Future<CompletedPart> part : parts) {
+                completedParts.add(await(part));
+            }
+            s3.completeMultipartUpload(request -> request.bucket(bucket).key(key(name)).uploadId(uploadId)
+                    .multipartUpload(upload -> upload.parts(completedParts)));
+        } catch (IOException | RuntimeException e) {
+            parts.forEach(part -> part.cancel(true));
+            try {
+                s3.abortMultipartUpload(request -> request.bucket(bucket).key(key(name)).uploadId(uploadId));
+            } catch (SdkException abortFailure) {
+                e.addSuppressed(abortFailure);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public BlobAttributes getAttributes(String name) throws IOException {
+        try {
+            HeadObjectResponse head = s3.headObject(request -> request.bucket(bucket).key(key(name)));
+            return new BlobAttributes(head.contentLength(), head.lastModified().toEpochMilli());
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                return null;
+            }
+            throw new IOException("Could not read " + name + " from S3: " + e.getMessage(), e);
+        } catch (SdkException e) {
+            throw new IOException("Could not read " + name + " from S3: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public InputStream open(String name, long offset) throws IOException {
+        GetObjectRequest.Builder request = GetObjectRequest.builder().bucket(bucket).key(key(name));
+        if (offset > 0) {
+            request.range("bytes=" + offset + "-");
+        }
+        try {
+            return new AbortOnCloseInputStream(s3.getObject(request.build()));
+        } catch (NoSuchKeyException e) {
+            throw new NoSuchFileException(name);
+        } catch (S3Exception e) {
+            if (e.statusCode() == 416) {
+                // Offset at or past the end
+                return new ByteArrayInputStream(new byte[0]);
+            }
+            throw new IOException("Could not read " + name + " from S3: " + e.getMessage(), e);
+        } catch (SdkException e) {
+            throw new IOException("Could not read " + name + " from S3: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void download(String name, Path target) throws IOException {
+        BlobAttributes attributes = getAttributes(name);
+        if (attributes == null) {
+            throw new NoSuchFileException(name);
+        }
+        long size = attributes.getSize();
+        if (size < multipartThreshold) {
+            BlobStore.super.download(name, target);
+            return;
+        }
+
+        List<Future<Void>> parts = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (long offset = 0; offset < size; offset += partSize) {
+                long start = offset;
+                long end = Math.min(offset + partSize, size) - 1;
+                parts.add(transferPool.submit(() -> {
+                    downloadRange(name, start, end, channel);
+                    return null;
+                }));
+            }
+            for (Future<Void> part : parts) {
+                await(part);
+            }
+        } catch (IOException | RuntimeException e) {
+            parts.forEach(part -> part.cancel(true));
+            throw e;
+        }
+    }
+
+    private void downloadRange(String name, long start, long end, FileChannel channel) throws IOException {
+        GetObjectRequest request = GetObjectRequest.builder().bucket(bucket).key(key(name))
+                .range("bytes=" + start + "-" + end).build();
+        try (InputStream inputStream = s3.getObject(request)) {
+            byte[] buffer = new byte[64 * 1024];
+            long position = start;
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+                while (bytes.hasRemaining()) {
+                    position += channel.write(bytes, position);
+                }
+            }
+            if (position != end + 1) {
+                throw new IOException("Short read of " + name + " at " + position);
+            }
+        } catch (SdkException e) {
+            throw new IOException("Could not read " + name + " from S3: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void delete(String name) throws IOException {
+        try {
+            s3.deleteObject(request -> request.bucket(bucket).key(key(name)));
+        } catch (SdkException e) {
+            throw new IOException("Could not delete " + name + " from S3: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Path getLocalPath(String name) {
+        return null;
+    }
+
+    private String key(String name) {
+        return keyPrefix + name;
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during S3 transfer");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof SdkException) {
+                throw new IOException("S3 transfer failed: " + cause.getMessage(), cause);
+            }
+            throw new IOException("S3 transfer failed", cause);
+        }
+    }
+
+    /**
+     * Reads {@code length} bytes of a file from {@code offset}, for sending one part of it.
+     */
+    private static final class FileSliceInputStream extends InputStream {
+        private final FileChannel channel;
+        private long position;
+        private final long end;
+
+        private FileSliceInputStream(Path file, long offset, long length) {
+            try {
+                this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.position = offset;
+            this.end = offset + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int read = channel.read(ByteBuffer.wrap(buffer, offset, (int) Math.min(length, end - position)), position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Drops the connection when closed before the end of the object; closing it normally would read
+     * the rest of the object first.
+     */
+    private static final class AbortOnCloseInputStream extends FilterInputStream {
+        private final ResponseInputStream<GetObjectResponse> response;
+        private boolean finished;
+
+        private AbortOnCloseInputStream(ResponseInputStream<GetObjectResponse> response) {
+            super(response);
+            this.response = response;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            finished = read == -1;
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            finished = read == -1;
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!finished) {
+                response.abort();
+            }
+            super.close();
+        }
+    }
+}
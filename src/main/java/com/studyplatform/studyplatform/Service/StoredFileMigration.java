@@ -0,0 +1,184 @@
+package com.studyplatform.studyplatform.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.studyplatform.studyplatform.Model.Document;
+import com.studyplatform.studyplatform.Model.User;
+import com.studyplatform.studyplatform.Repository.DocumentRepository;
+import com.studyplatform.studyplatform.Repository.UserRepository;
+
+/**
+ * Moves files stored under random names by earlier versions into the content-addressed layout of
+ * {@link FileStorageService}.
+ *
+ * Runs after startup with {@code file.storage.migrate-on-startup=true}. Each document file and profile
+ * picture is added to the store, and the reference is rewritten to the new name in the same transaction
+ * that counts it, so an interrupted run can simply be started again. Old files are removed once every
+ * reference to them has moved; files nothing refers to are left in place and only counted.
+ */
+@Service
+public class StoredFileMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(StoredFileMigration.class);
+
+    private final FileStorageService fileStorageService;
+    private final BlobStore blobStore;
+    private final DocumentRepository documentRepository;
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${file.storage.deduplicate:true}")
+    private boolean deduplicate;
+
+    @Value("${file.storage.migrate-on-startup:false}")
+    private boolean migrateOnStartup;
+
+    @Value("${file.storage.migration-batch-size:500}")
+    private int batchSize;
+
+    public StoredFileMigration(FileStorageService fileStorageService, BlobStore blobStore,
+                               DocumentRepository documentRepository, UserRepository userRepository,
+                               PlatformTransactionManager transactionManager) {
+        this.fileStorageService = fileStorageService;
+        this.blobStore = blobStore;
+        this.documentRepository = documentRepository;
+        this.userRepository = userRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateOnStartup() {
+        if (migrateOnStartup && deduplicate) {
+            migrate();
+        }
+    }
+
+    /**
+     * Moves every referenced file that is not content-addressed yet into the store.
+     * @return The number of references rewritten
+     */
+    public synchronized int migrate() {
+        long start = System.currentTimeMillis();
+        Set<String> migratedFiles = new HashSet<>();
+        // Still referenced under their old names, so they must stay
+        Set<String> failedFiles = new HashSet<>();
+        int references = 0;
+        int failures = 0;
+
+        Long afterId = 0L;
+        List<Document> documents;
+        do {
+            documents = documentRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, batchSize));
+            for (Document document : documents) {
+                afterId = document.getId();
+                String fileName = toFileName(document.getFileUrl());
+                if (!needsMigration(fileName)) {
+                    continue;
+                }
+                try {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        String storedName = fileStorageService.storeExistingFile(fileName);
+                        document.setFileUrl(replaceFileName(document.getFileUrl(), storedName));
+                        document.setContentHash(fileStorageService.computeContentHash(storedName));
+                        documentRepository.save(document);
+                    });
+                    migratedFiles.add(fileName);
+                    references++;
+                } catch (RuntimeException e) {
+                    logger.warn("Could not migrate file {} of document {}: {}", fileName, document.getId(), e.getMessage());
+                    failedFiles.add(fileName);
+                    failures++;
+                }
+            }
+        } while (documents.size() == batchSize);
+
+        for (User user : userRepository.findByProfilePictureUrlIsNotNull()) {
+            String fileName = toFileName(user.getProfilePictureUrl());
+            if (!needsMigration(fileName)) {
+                continue;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    String storedName = fileStorageService.storeExistingFile(fileName);
+                    user.setProfilePictureUrl(replaceFileName(user.getProfilePictureUrl(), storedName));
+                    userRepository.save(user);
+                });
+                migratedFiles.add(fileName);
+                references++;
+            } catch (RuntimeException e) {
+                logger.warn("Could not migrate profile picture {} of user {}: {}", fileName, user.getId(), e.getMessage());
+                failedFiles.add(fileName);
+                failures++;
+            }
+        }
+
+        // All references to these have moved to the content-addressed copies, unless one failed
+        for (String fileName : migratedFiles) {
+            if (failedFiles.contains(fileName)) {
+                logger.warn("Keeping file {}, which is still referenced under its old name", fileName);
+                continue;
+            }
+            try {
+                blobStore.delete(fileName);
+            } catch (IOException e) {
+                logger.warn("Could not delete migrated file {}: {}", fileName, e.getMessage());
+            }
+        }
+
+        logger.info("Migrated {} file references ({} files) to content-addressed storage in {} ms, {} failed",
+            references, migratedFiles.size(), System.currentTimeMillis() - start, failures);
+        if (blobStore instanceof LocalBlobStore) {
+            logger.info("{} unreferenced files left in the upload directory", countUnreferencedFiles((LocalBlobStore) blobStore));
+        }
+        return references;
+    }
+
+    private boolean needsMigration(String fileName) {
+        return fileName != null && !fileName.isEmpty()
+            && !fileStorageService.isStored(fileName)
+            && fileStorageService.fileExists(fileName);
+    }
+
+    private int countUnreferencedFiles(LocalBlobStore localBlobStore) {
+        Path uploadPath = localBlobStore.getUploadPath();
+        if (!Files.isDirectory(uploadPath)) {
+            return 0;
+        }
+        // The upload directory itself and the two levels of shard directories
+        try (Stream<Path> files = Files.walk(uploadPath, 3)) {
+            return (int) files
+                .filter(file -> Files.isRegularFile(file))
+                .map(file -> file.getFileName().toString())
+                .filter(fileName -> !localBlobStore.isTemporaryFile(fileName) && !fileStorageService.isStored(fileName))
+                .count();
+        } catch (IOException | UncheckedIOException e) {
+            logger.warn("Could not list {}: {}", uploadPath, e.getMessage());
+            return 0;
+        }
+    }
+
+    private static String toFileName(String fileUrl) {
+        return fileUrl == null ? null : fileUrl.substring(fileUrl.lastIndexOf("/") + 1);
+    }
+
+    private static String replaceFileName(String fileUrl, String fileName) {
+        return fileUrl.substring(0, fileUrl.lastIndexOf("/") + 1) + fileName;
+    }
+}
@@ -0,0 +1,170 @@
+package com.studyplatform.studyplatform.Service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.studyplatform.studyplatform.Model.Document;
+import com.studyplatform.studyplatform.Model.User;
+import com.studyplatform.studyplatform.exception.UploadLimitExceededException;
+
+/**
+ * Takes document uploads straight from the multipart request body.
+ *
+ * For a regular upload the servlet container writes every file part to a temporary file before the
+ * controller runs, and storing it writes it again. Here the body is parsed while it arrives with the
+ * commons-fileupload streaming API, and the file part goes through
+ * {@link FileStorageService#storeStream}, which hashes it on the way into the blob store's temporary file.
+ * For the local store that file is then renamed into place, so the content is written to disk once. The
+ * size is checked against {@code file.streaming-upload.max-file-bytes} and the user's quota as bytes
+ * arrive, so an upload that does not fit is refused when it crosses the limit rather than once it has
+ * been received in full.
+ *
+ * The multipart resolver leaves requests to {@link #STREAMING_UPLOAD_PATH} unparsed for this.
+ */
+@Service
+public class StreamingUploadService {
+
+    public static final String STREAMING_UPLOAD_PATH = "/api/documents/stream";
+
+    private static final int MAX_FIELD_BYTES = 10000;
+
+    private final FileStorageService fileStorageService;
+    private final DocumentService documentService;
+
+    @Value("${file.streaming-upload.max-file-bytes:4294967296}")
+    private long maxFileBytes;
+
+    public StreamingUploadService(FileStorageService fileStorageService, DocumentService documentService) {
+        this.fileStorageService = fileStorageService;
+        this.documentService = documentService;
+    }
+
+    /**
+     * Stores the file part of a multipart upload and creates its document. Takes the same fields as a
+     * regular upload: {@code file}, {@code description} and {@code isPublic}, in any order.
+     * @param request The request, with its body not read yet
+     * @param user The uploading user
+     * @return The saved document
+     * @throws UploadLimitExceededException if the file is larger than the limit or the user's quota
+     */
+    public Document storeDocument(HttpServletRequest request, User user) throws IOException {
+        if (!ServletFileUpload.isMultipartContent(request)) {
+            throw new RuntimeException("Expected a multipart/form-data request");
+        }
+        long limit = Math.min(maxFileBytes, documentService.getRemainingQuota(user.getId()));
+
+        ServletFileUpload upload = new ServletFileUpload();
+        upload.setHeaderEncoding(StandardCharsets.UTF_8.name());
+
+        Document document = new Document();
+        document.setUser(user);
+        String fileUrl = null;
+        try {
+            FileItemIterator items = upload.getItemIterator(request);
+            while (items.hasNext()) {
+                FileItemStream item = items.next();
+                if (item.isFormField()) {
+                    String value = readField(item);
+                    if ("description".equals(item.getFieldName())) {
+                        document.setDescription(value);
+                    } else if ("isPublic".equals(item.getFieldName())) {
+                        document.setPublic(Boolean.parseBoolean(value.trim()));
+                    }
+                } else if ("file".equals(item.getFieldName()) && fileUrl == null) {
+                    try (SizeLimitInputStream content = new SizeLimitInputStream(item.openStream(), limit)) {
+                        fileUrl = fileStorageService.storeStream(content, item.getName());
+                        document.setFileSize(content.getCount());
+                    }
+                    document.setName(item.getName());
+                    document.setFileUrl(fileUrl);
+                    document.setFileType(item.getContentType() != null ? item.getContentType() : "application/octet-stream");
+                }
+                // Any other part is skipped when the iterator moves on
+            }
+        } catch (FileUploadException e) {
+            deleteQuietly(fileUrl);
+            throw new IOException("Could not read upload: " + e.getMessage(), e);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(fileUrl);
+            throw e;
+        }
+
+        if (fileUrl == null) {
+            throw new RuntimeException("The request has no file part");
+        }
+        try {
+            return documentService.saveDocument(document);
+        } catch (RuntimeException e) {
+            // Drop the reference taken by storeStream
+            fileStorageService.deleteFile(fileUrl);
+            throw e;
+        }
+    }
+
+    private void deleteQuietly(String fileUrl) {
+        if (fileUrl != null) {
+            fileStorageService.deleteFile(fileUrl);
+        }
+    }
+
+    private static String readField(FileItemStream item) throws IOException {
+        try (InputStream inputStream = item.openStream()) {
+            byte[] value = inputStream.readNBytes(MAX_FIELD_BYTES + 1);
+            if (value.length > MAX_FIELD_BYTES) {
+                throw new RuntimeException("Field " + item.getFieldName() + " is too long");
+            }
+            return new String(value, StandardCharsets.UTF_8);
+        }
+    }
+
+    // Counts the bytes read and fails as soon as they pass the limit
+    private static final class SizeLimitInputStream extends FilterInputStream {
+        private final long limit;
+        private long count;
+
+        SizeLimitInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read != -1) {
+                count(1);
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        private void count(long read) {
+            count += read;
+            if (count > limit) {
+                throw new UploadLimitExceededException("Upload exceeds the limit of " + limit + " bytes");
+            }
+        }
+    }
+}
@@ -1,64 +1,387 @@
 package com.studyplatform.studyplatform.Service;
 
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.text.PDFTextStripper;
-import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
-import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.BufferedReader;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 @Service
 public class TextExtractionService {
 
+    private static final int TEXT_CHUNK_SIZE = 8192;
+
+    private static final String DOCX_MAIN_PART = "word/document.xml";
+    private static final String WORDPROCESSING_NS = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+
+    /**
+     * Receives extracted text one chunk at a time: a PDF page, a DOCX paragraph, or a block of
+     * a plain text file.
+     */
+    @FunctionalInterface
+    public interface TextChunkConsumer {
+        /**
+         * @return false to stop the extraction after this chunk
+         */
+        boolean accept(String chunk) throws IOException;
+    }
+
+    // Pages after this are skipped; 0 extracts every page
+    @Value("${text-extraction.pdf.max-pages:0}")
+    private int maxPdfPages;
+
+    // PDFBox keeps up to this many bytes of parsed PDF in memory and the rest in a scratch file
+    @Value("${text-extraction.pdf.max-main-memory-bytes:16777216}")
+    private long maxMainMemoryBytes;
+
+    @Value("${text-extraction.pdf.temp-dir:}")
+    private String tempDir;
+
+    // PDF pages are extracted on this many dedicated threads, separate from the request threads
+    @Value("${text-extraction.pdf.workers:4}")
+    private int pdfWorkers;
+
+    @Value("${text-extraction.pdf.pages-per-task:16}")
+    private int pagesPerTask;
+
+    // PDFs extracted at the same time; further requests wait up to the queue timeout, then fail
+    @Value("${text-extraction.pdf.max-concurrent-documents:8}")
+    private int maxConcurrentDocuments;
+
+    @Value("${text-extraction.pdf.queue-timeout-ms:30000}")
+    private long queueTimeoutMs;
+
+    private ExecutorService pdfExecutor;
+    private Semaphore pdfPermits;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadCount = new AtomicInteger();
+        pdfExecutor = Executors.newFixedThreadPool(Math.max(1, pdfWorkers), runnable -> {
+            Thread thread = new Thread(runnable, "pdf-text-extractor-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pdfPermits = new Semaphore(Math.max(1, maxConcurrentDocuments), true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pdfExecutor.shutdownNow();
+    }
+
     public String extractText(MultipartFile file) throws IOException {
         String fileName = file.getOriginalFilename();
         if (fileName == null) {
             throw new IOException("Invalid file name");
         }
 
-        String fileExtension = fileName.substring(fileName.lastIndexOf(".") + 1).toLowerCase();
+        StringBuilder text = new StringBuilder();
+        try (InputStream inputStream = file.getInputStream()) {
+            extractText(inputStream, fileName, chunk -> {
+                text.append(chunk);
+                return true;
+            });
+        }
+        return text.toString();
+    }
+
+    /**
+     * Extracts text from a stored file, using the original file name to pick the format.
+     */
+    public String extractText(Path file, String fileName) throws IOException {
+        return extractText(file, fileName, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Extracts at most {@code maxChars} characters of text from a stored file; extraction stops as soon
+     * as the limit is reached.
+     */
+    public String extractText(Path file, String fileName, int maxChars) throws IOException {
+        StringBuilder text = new StringBuilder();
+        extractText(file, fileName, chunk -> {
+            text.append(chunk, 0, Math.min(chunk.length(), maxChars - text.length()));
+            return text.length() < maxChars;
+        });
+        return text.toString();
+    }
+
+    /**
+     * Streams the text of a stored file to the consumer chunk by chunk.
+     */
+    public void extractText(Path file, String fileName, TextChunkConsumer consumer) throws IOException {
+        if ("pdf".equals(getExtension(fileName))) {
+            extractTextFromPdf(file.toFile(), consumer);
+            return;
+        }
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            extractText(inputStream, fileName, consumer);
+        }
+    }
+
+    /**
+     * Streams the text read from an input stream to the consumer chunk by chunk.
+     */
+    public void extractText(InputStream inputStream, String fileName, TextChunkConsumer consumer) throws IOException {
+        String fileExtension = getExtension(fileName);
 
         switch (fileExtension) {
             case "pdf":
-                return extractTextFromPdf(file.getInputStream());
+                // Page ranges are read by several workers at once, so they need the PDF as a file
+                Path tempFile = Files.createTempFile(getTempDir(), "extract-", ".pdf");
+                try {
+                    Files.copy(inputStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
+                    extractTextFromPdf(tempFile.toFile(), consumer);
+                } finally {
+                    Files.deleteIfExists(tempFile);
+                }
+                break;
             case "docx":
-                return extractTextFromDocx(file.getInputStream());
+                extractTextFromDocx(inputStream, consumer);
+                break;
             case "txt":
-                return extractTextFromTxt(file.getInputStream());
+                extractTextFromTxt(inputStream, consumer);
+                break;
             default:
                 throw new IOException("Unsupported file type: " + fileExtension);
         }
     }
 
-    private String extractTextFromPdf(InputStream inputStream) throws IOException {
-        try (PDDocument document = PDDocument.load(inputStream)) {
+    public boolean isSupported(String fileName) {
+        String fileExtension = getExtension(fileName);
+        return "pdf".equals(fileExtension) || "docx".equals(fileExtension) || "txt".equals(fileExtension);
+    }
+
+    private String getExtension(String fileName) {
+        if (fileName == null) {
+            return "";
+        }
+        return fileName.substring(fileName.lastIndexOf(".") + 1).toLowerCase();
+    }
+
+    private MemoryUsageSetting getMemoryUsageSetting() {
+        MemoryUsageSetting setting = MemoryUsageSetting.setupMixed(maxMainMemoryBytes);
+        if (!tempDir.isEmpty()) {
+            setting.setTempDir(new File(tempDir));
+        }
+        return setting;
+    }
+
+    private Path getTempDir() {
+        return Path.of(tempDir.isEmpty() ? System.getProperty("java.io.tmpdir") : tempDir);
+    }
+
+    /**
+     * Splits the PDF into ranges of {@code pagesPerTask} pages that the workers extract in parallel, each
+     * from its own copy of the document since PDFBox documents are not thread-safe. Pages are passed to
+     * the consumer in order; at most one range per worker is in flight for each document, so a slow
+     * consumer does not make finished pages pile up in memory.
+     */
+    private void extractTextFromPdf(File file, TextChunkConsumer consumer) throws IOException {
+        acquirePermit();
+        Deque<Future<List<String>>> inFlight = new ArrayDeque<>();
+        try {
+            int lastPage;
+            try (PDDocument document = PDDocument.load(file, getMemoryUsageSetting())) {
+                lastPage = document.getNumberOfPages();
+            }
+            if (maxPdfPages > 0) {
+                lastPage = Math.min(lastPage, maxPdfPages);
+            }
+
+            int rangeSize = Math.max(1, pagesPerTask);
+            int window = Math.max(1, pdfWorkers);
+            int nextPage = 1;
+            while (nextPage <= lastPage || !inFlight.isEmpty()) {
+                while (nextPage <= lastPage && inFlight.size() < window) {
+                    int startPage = nextPage;
+                    int endPage = Math.min(lastPage, startPage + rangeSize - 1);
+                    inFlight.add(pdfExecutor.submit(() -> extractPdfPages(file, startPage, endPage)));
+                    nextPage = endPage + 1;
+                }
+                for (String pageText : awaitPages(inFlight.poll())) {
+                    if (!consumer.accept(pageText)) {
+                        return;
+                    }
+                }
+            }
+        } finally {
+            for (Future<List<String>> future : inFlight) {
+                future.cancel(true);
+            }
+            pdfPermits.release();
+        }
+    }
+
+    private List<String> extractPdfPages(File file, int startPage, int endPage) throws IOException {
+        try (PDDocument document = PDDocument.load(file, getMemoryUsageSetting())) {
             PDFTextStripper stripper = new PDFTextStripper();
-            return stripper.getText(document);
+            List<String> pages = new ArrayList<>(endPage - startPage + 1);
+            for (int page = startPage; page <= endPage; page++) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("PDF text extraction cancelled");
+                }
+                stripper.setStartPage(page);
+                stripper.setEndPage(page);
+                pages.add(stripper.getText(document));
+            }
+            return pages;
+        }
+    }
+
+    private void acquirePermit() throws IOException {
+        try {
+            if (!pdfPermits.tryAcquire(queueTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new IOException("Too many PDF extractions in progress, try again later");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to extract PDF text");
         }
     }
 
-    private String extractTextFromDocx(InputStream inputStream) throws IOException {
-        try (XWPFDocument document = new XWPFDocument(inputStream)) {
-            XWPFWordExtractor extractor = new XWPFWordExtractor(document);
-            return extractor.getText();
+    private List<String> awaitPages(Future<List<String>> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while extracting PDF text");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Could not extract PDF text", e.getCause());
         }
     }
 
-    private String extractTextFromTxt(InputStream inputStream) throws IOException {
-        StringBuilder textBuilder = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                textBuilder.append(line).append("\n");
+    /**
+     * Reads the document body straight from the zip with StAX instead of loading it with POI, which
+     * builds the whole document in memory. Each paragraph is passed on as soon as it ends, including
+     * the paragraphs of table cells.
+     */
+    private void extractTextFromDocx(InputStream inputStream, TextChunkConsumer consumer) throws IOException {
+        ZipInputStream zip = new ZipInputStream(inputStream);
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            if (DOCX_MAIN_PART.equals(entry.getName())) {
+                try {
+                    extractTextFromDocxBody(zip, consumer);
+                } catch (XMLStreamException e) {
+                    throw new IOException("Could not read DOCX text: " + e.getMessage(), e);
+                }
+                return;
             }
         }
-        return textBuilder.toString();
+        throw new IOException("Not a DOCX file, " + DOCX_MAIN_PART + " is missing");
+    }
+
+    private void extractTextFromDocxBody(InputStream body, TextChunkConsumer consumer) throws IOException, XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        XMLStreamReader reader = factory.createXMLStreamReader(body);
+        try {
+            // Paragraphs can nest inside text boxes, so each open paragraph keeps its own text
+            Deque<StringBuilder> paragraphs = new ArrayDeque<>();
+            int openRuns = 0;
+            boolean inText = false;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                    if (inText && !paragraphs.isEmpty()) {
+                        paragraphs.peek().append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    }
+                } else if (event == XMLStreamConstants.START_ELEMENT && WORDPROCESSING_NS.equals(reader.getNamespaceURI())) {
+                    switch (reader.getLocalName()) {
+                        case "p":
+                            paragraphs.push(new StringBuilder());
+                            break;
+                        case "r":
+                            openRuns++;
+                            break;
+                        case "t":
+                            inText = true;
+                            break;
+                        case "tab":
+                            // Tab stops in paragraph properties use the same element name
+                            appendInRun(paragraphs, openRuns, '\t');
+                            break;
+                        case "br":
+                        case "cr":
+                            appendInRun(paragraphs, openRuns, '\n');
+                            break;
+                        default:
+                            break;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && WORDPROCESSING_NS.equals(reader.getNamespaceURI())) {
+                    switch (reader.getLocalName()) {
+                        case "p":
+                            if (!consumer.accept(paragraphs.pop().append('\n').toString())) {
+                                return;
+                            }
+                            break;
+                        case "r":
+                            openRuns--;
+                            break;
+                        case "t":
+                            inText = false;
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static void appendInRun(Deque<StringBuilder> paragraphs, int openRuns, char c) {
+        if (openRuns > 0 && !paragraphs.isEmpty()) {
+            paragraphs.peek().append(c);
+        }
     }
-}
 
+    private void extractTextFromTxt(InputStream inputStream, TextChunkConsumer consumer) throws IOException {
+        try (Reader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
+            char[] buffer = new char[TEXT_CHUNK_SIZE];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                if (!consumer.accept(new String(buffer, 0, read))) {
+                    return;
+                }
+            }
+        }
+    }
+}
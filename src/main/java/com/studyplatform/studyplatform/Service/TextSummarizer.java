@@ -0,0 +1,320 @@
+package com.studyplatform.studyplatform.Service;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Extractive summarizer: scores every sentence by how often its words occur in the whole text,
+ * normalized by sentence length, and keeps the best sentences up to a word limit.
+ *
+ * The text is read in a single pass without creating a string per word. Words are looked up in an
+ * open-addressing table by their lowercased characters and counted in {@code int} arrays; sentences are
+ * kept as offsets into the text.
+ */
+@Service
+public class TextSummarizer {
+
+    private static final Set<String> STOP_WORDS = Set.of("the", "and", "a", "an", "in", "on", "at", "to", "for", "with",
+                                                         "by", "about", "as", "of", "that", "this", "is", "are", "was", "were");
+
+    private static final String EMPTY_TEXT_SUMMARY = "This document appears to be empty or contains non-textual content.";
+
+    private final int maxWords;
+    private final int minTermLength;
+
+    public TextSummarizer(
+            @Value("${documents.summary.max-words:30}") int maxWords,
+            @Value("${documents.summary.min-term-length:4}") int minTermLength) {
+        this.maxWords = Math.max(1, maxWords);
+        this.minTermLength = Math.max(1, minTermLength);
+    }
+
+    /**
+     * Summarizes the text in at most {@code documents.summary.max-words} words
+     */
+    public String summarize(String text) {
+        if (text == null || countWords(text) == 0) {
+            return EMPTY_TEXT_SUMMARY;
+        }
+
+        // Sentences end at '.', '!' or '?' followed by whitespace; the punctuation is not part of them
+        IntArray sentenceStarts = new IntArray();
+        IntArray sentenceEnds = new IntArray();
+        IntArray sentenceFirstWords = new IntArray();
+        // Term of every word, or -1 for words that are too short or stop words
+        IntArray wordTerms = new IntArray();
+        TermTable terms = new TermTable();
+
+        int length = text.length();
+        int sentenceStart = 0;
+        sentenceFirstWords.add(0);
+        int i = 0;
+        while (i < length) {
+            if (isSpace(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            int wordStart = i;
+            while (i < length && !isSpace(text.charAt(i))) {
+                i++;
+            }
+            int wordEnd = i;
+            boolean endsSentence = wordEnd < length && isSentenceEnd(text.charAt(wordEnd - 1));
+            if (endsSentence) {
+                wordEnd--;
+            }
+
+            if (wordEnd > wordStart) {
+                int term = -1;
+                if (wordEnd - wordStart >= minTermLength) {
+                    term = terms.add(text, wordStart, wordEnd);
+                    if (terms.isStopWord(term)) {
+                        term = -1;
+                    }
+                }
+                wordTerms.add(term);
+            }
+
+            if (endsSentence) {
+                sentenceStarts.add(sentenceStart);
+                sentenceEnds.add(wordEnd);
+                sentenceFirstWords.add(wordTerms.size());
+                while (i < length && isSpace(text.charAt(i))) {
+                    i++;
+                }
+                sentenceStart = i;
+            }
+        }
+        if (sentenceStart < length) {
+            sentenceStarts.add(sentenceStart);
+            sentenceEnds.add(length);
+            sentenceFirstWords.add(wordTerms.size());
+        }
+
+        int sentenceCount = sentenceStarts.size();
+        if (sentenceCount <= 1) {
+            return truncateToWordLimit(text, 0, length);
+        }
+
+        // Score sentences and order them by score, ties in text order, without boxing the scores
+        long[] ranking = new long[sentenceCount];
+        int ranked = 0;
+        for (int s = 0; s < sentenceCount; s++) {
+            int firstWord = sentenceFirstWords.get(s);
+            int wordCount = sentenceFirstWords.get(s + 1) - firstWord;
+            if (wordCount == 0) {
+                continue;
+            }
+            long frequencySum = 0;
+            for (int w = firstWord; w < firstWord + wordCount; w++) {
+                int term = wordTerms.get(w);
+                if (term >= 0) {
+                    frequencySum += terms.count(term);
+                }
+            }
+            float score = (float) frequencySum / wordCount;
+            ranking[ranked++] = ((long) Float.floatToIntBits(score) << 32) | (Integer.MAX_VALUE - s);
+        }
+        Arrays.sort(ranking, 0, ranked);
+
+        // Build summary with word count limit
+        StringBuilder summaryBuilder = new StringBuilder();
+        IntArray selected = new IntArray();
+        int summaryWords = 0;
+        for (int r = ranked - 1; r >= 0; r--) {
+            int s = Integer.MAX_VALUE - (int) ranking[r];
+            int start = sentenceStarts.get(s);
+            int end = sentenceEnds.get(s);
+            if (isRepeated(text, start, end, selected, sentenceStarts, sentenceEnds)) {
+                continue;
+            }
+
+            int wordCount = sentenceFirstWords.get(s + 1) - sentenceFirstWords.get(s);
+            if (summaryWords + wordCount > maxWords) {
+                // If we haven't added any sentences yet, add a truncated version of the first one
+                if (summaryWords == 0) {
+                    return truncateToWordLimit(text, start, end);
+                }
+                break;
+            }
+
+            summaryBuilder.append(text, start, end).append(". ");
+            summaryWords += wordCount;
+            selected.add(s);
+        }
+
+        return summaryBuilder.toString().trim();
+    }
+
+    public int countWords(String text) {
+        if (text == null) {
+            return 0;
+        }
+        int words = 0;
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); i++) {
+            boolean space = isSpace(text.charAt(i));
+            if (!space && !inWord) {
+                words++;
+            }
+            inWord = !space;
+        }
+        return words;
+    }
+
+    private String truncateToWordLimit(String text, int start, int end) {
+        StringBuilder truncated = new StringBuilder();
+        int words = 0;
+        int i = start;
+        while (i < end) {
+            if (isSpace(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            if (words == maxWords) {
+                return truncated.append("...").toString();
+            }
+            int wordStart = i;
+            while (i < end && !isSpace(text.charAt(i))) {
+                i++;
+            }
+            if (words > 0) {
+                truncated.append(' ');
+            }
+            truncated.append(text, wordStart, i);
+            words++;
+        }
+        return text.substring(start, end);
+    }
+
+    // Identical sentences score the same, so a repeated sentence is only used once
+    private static boolean isRepeated(String text, int start, int end, IntArray selected,
+                                      IntArray sentenceStarts, IntArray sentenceEnds) {
+        for (int i = 0; i < selected.size(); i++) {
+            int otherStart = sentenceStarts.get(selected.get(i));
+            if (sentenceEnds.get(selected.get(i)) - otherStart == end - start
+                    && text.regionMatches(start, text, otherStart, end - start)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Same characters as the \s regex class
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isSentenceEnd(char c) {
+        return c == '.' || c == '!' || c == '?';
+    }
+
+    private static final class IntArray {
+        private int[] values = new int[64];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Distinct words of one text, compared case-insensitively and stored as offsets into the text.
+     */
+    private static final class TermTable {
+        private int[] slots = new int[1024];
+        private int[] starts = new int[256];
+        private int[] lengths = new int[256];
+        private int[] hashes = new int[256];
+        private int[] counts = new int[256];
+        private boolean[] stopWords = new boolean[256];
+        private int size;
+
+        /**
+         * Counts one occurrence of the word and returns its term id
+         */
+        int add(String text, int start, int end) {
+            int length = end - start;
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + Character.toLowerCase(text.charAt(i));
+            }
+            hash ^= hash >>> 16;
+
+            int mask = slots.length - 1;
+            int slot = hash & mask;
+            while (slots[slot] != 0) {
+                int term = slots[slot] - 1;
+                if (hashes[term] == hash && lengths[term] == length
+                        && text.regionMatches(true, starts[term], text, start, length)) {
+                    counts[term]++;
+                    return term;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            int term = size++;
+            if (term == starts.length) {
+                int capacity = term * 2;
+                starts = Arrays.copyOf(starts, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+                hashes = Arrays.copyOf(hashes, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+                stopWords = Arrays.copyOf(stopWords, capacity);
+            }
+            starts[term] = start;
+            lengths[term] = length;
+            hashes[term] = hash;
+            counts[term] = 1;
+            stopWords[term] = matchesStopWord(text, start, length);
+            slots[slot] = term + 1;
+            if (size * 2 > slots.length) {
+                rehash();
+            }
+            return term;
+        }
+
+        int count(int term) {
+            return counts[term];
+        }
+
+        boolean isStopWord(int term) {
+            return stopWords[term];
+        }
+
+        private static boolean matchesStopWord(String text, int start, int length) {
+            for (String stopWord : STOP_WORDS) {
+                if (stopWord.length() == length && stopWord.regionMatches(true, 0, text, start, length)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            int mask = slots.length - 1;
+            for (int term = 0; term < size; term++) {
+                int slot = hashes[term] & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = term + 1;
+            }
+        }
+    }
+}
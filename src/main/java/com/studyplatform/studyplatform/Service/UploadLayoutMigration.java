@@ -0,0 +1,137 @@
+package com.studyplatform.studyplatform.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * Moves files stored flat in the upload directory by earlier versions into the sharded layout of
+ * {@link LocalBlobStore}, in the background while the application serves requests.
+ *
+ * Each file is moved with an atomic rename and lookups that miss in the sharded layout check the flat
+ * location, so files stay available throughout. Progress is not recorded: whatever is still flat after a
+ * restart is simply moved by the next run. Moves are paced in batches of
+ * {@code file.storage.shard-migration.batch-size} files with a pause in between, to leave disk
+ * bandwidth for requests.
+ */
+@Service
+public class UploadLayoutMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadLayoutMigration.class);
+
+    private final FileStorageService fileStorageService;
+    private final BlobStore blobStore;
+
+    @Value("${file.storage.sharded:true}")
+    private boolean sharded;
+
+    @Value("${file.storage.shard-migration.enabled:true}")
+    private boolean enabled;
+
+    @Value("${file.storage.shard-migration.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${file.storage.shard-migration.pause-ms:100}")
+    private long pauseMs;
+
+    private volatile boolean stopped;
+
+    public UploadLayoutMigration(FileStorageService fileStorageService, BlobStore blobStore) {
+        this.fileStorageService = fileStorageService;
+        this.blobStore = blobStore;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateInBackground() {
+        if (!sharded || !enabled || !(blobStore instanceof LocalBlobStore)) {
+            return;
+        }
+        Thread thread = new Thread(this::migrate, "upload-layout-migration");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Moves every flat file in the upload directory into its shard directory.
+     * @return The number of files moved
+     */
+    public synchronized int migrate() {
+        if (!(blobStore instanceof LocalBlobStore)) {
+            return 0;
+        }
+        LocalBlobStore localBlobStore = (LocalBlobStore) blobStore;
+        Path uploadPath = localBlobStore.getUploadPath();
+        if (!Files.isDirectory(uploadPath)) {
+            return 0;
+        }
+
+        long start = System.currentTimeMillis();
+        int moved = 0;
+        int failed = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(uploadPath)) {
+            for (Path file : files) {
+                if (stopped) {
+                    logger.info("Stopped moving uploads to the sharded layout after {} files, the rest are moved on the next start", moved);
+                    return moved;
+                }
+                String fileName = file.getFileName().toString();
+                if (!Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS) || localBlobStore.isTemporaryFile(fileName)) {
+                    continue;
+                }
+                try {
+                    moveToShard(localBlobStore, file, fileName);
+                } catch (IOException e) {
+                    logger.warn("Could not move {} to the sharded layout: {}", fileName, e.getMessage());
+                    failed++;
+                    continue;
+                }
+                if (++moved % batchSize == 0) {
+                    logger.info("Moved {} uploads to the sharded layout", moved);
+                    Thread.sleep(pauseMs);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Could not list {}, uploads stay in the flat layout", uploadPath, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return moved;
+        }
+
+        if (moved > 0 || failed > 0) {
+            logger.info("Moved {} uploads to the sharded layout in {} ms, {} failed",
+                moved, System.currentTimeMillis() - start, failed);
+        }
+        return moved;
+    }
+
+    private void moveToShard(LocalBlobStore localBlobStore, Path file, String fileName) throws IOException {
+        Path target = localBlobStore.getShardedPath(fileName);
+        Files.createDirectories(target.getParent());
+        if (Files.exists(target)) {
+            if (fileStorageService.isStored(fileName)) {
+                // A content-addressed copy stored again after the flat one; both have the same content
+                Files.delete(file);
+                return;
+            }
+            throw new IOException("a different file is already stored at " + target);
+        }
+        Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,52 @@
+package com.studyplatform.studyplatform.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class ChatMessagePageDTO {
+    private List<ChatMessageDTO> messages;
+    private boolean hasMore;
+    private LocalDateTime nextBeforeSentAt;
+    private Long nextBeforeId;
+    
+    public ChatMessagePageDTO(List<ChatMessageDTO> messages, boolean hasMore, LocalDateTime nextBeforeSentAt, Long nextBeforeId) {
+        this.messages = messages;
+        this.hasMore = hasMore;
+        this.nextBeforeSentAt = nextBeforeSentAt;
+        this.nextBeforeId = nextBeforeId;
+    }
+    
+    // Getters and Setters
+    
+    public List<ChatMessageDTO> getMessages() {
+        return messages;
+    }
+    
+    public void setMessages(List<ChatMessageDTO> messages) {
+        this.messages = messages;
+    }
+    
+    public boolean isHasMore() {
+        return hasMore;
+    }
+    
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+    
+    public LocalDateTime getNextBeforeSentAt() {
+        return nextBeforeSentAt;
+    }
+    
+    public void setNextBeforeSentAt(LocalDateTime nextBeforeSentAt) {
+        this.nextBeforeSentAt = nextBeforeSentAt;
+    }
+    
+    public Long getNextBeforeId() {
+        return nextBeforeId;
+    }
+    
+    public void setNextBeforeId(Long nextBeforeId) {
+        this.nextBeforeId = nextBeforeId;
+    }
+}
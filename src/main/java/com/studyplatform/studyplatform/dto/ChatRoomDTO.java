@@ -13,6 +13,7 @@ public class ChatRoomDTO {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     private long unreadCount;
+    private Long lastReadMessageId;
     private ChatMessageDTO latestMessage;
     
     // Getters and Setters
@@ -89,6 +90,14 @@ public class ChatRoomDTO {
         this.unreadCount = unreadCount;
     }
     
+    public Long getLastReadMessageId() {
+        return lastReadMessageId;
+    }
+    
+    public void setLastReadMessageId(Long lastReadMessageId) {
+        this.lastReadMessageId = lastReadMessageId;
+    }
+    
     public ChatMessageDTO getLatestMessage() {
         return latestMessage;
     }
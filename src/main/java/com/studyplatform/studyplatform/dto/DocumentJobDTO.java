@@ -0,0 +1,103 @@
+package com.studyplatform.studyplatform.dto;
+
+import java.time.LocalDateTime;
+
+import com.studyplatform.studyplatform.Model.DocumentJob;
+
+public class DocumentJobDTO {
+    private Long id;
+    private Long documentId;
+    private String type;
+    private String status;
+    private int attempts;
+    private String lastError;
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime completedAt;
+    
+    public DocumentJobDTO(DocumentJob job) {
+        this.id = job.getId();
+        this.documentId = job.getDocumentId();
+        this.type = job.getType().name();
+        this.status = job.getStatus().name();
+        this.attempts = job.getAttempts();
+        this.lastError = job.getLastError();
+        this.createdAt = job.getCreatedAt();
+        this.startedAt = job.getStartedAt();
+        this.completedAt = job.getCompletedAt();
+    }
+    
+    // Getters and Setters
+    
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public Long getDocumentId() {
+        return documentId;
+    }
+    
+    public void setDocumentId(Long documentId) {
+        this.documentId = documentId;
+    }
+    
+    public String getType() {
+        return type;
+    }
+    
+    public void setType(String type) {
+        this.type = type;
+    }
+    
+    public String getStatus() {
+        return status;
+    }
+    
+    public void setStatus(String status) {
+        this.status = status;
+    }
+    
+    public int getAttempts() {
+        return attempts;
+    }
+    
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+    
+    public String getLastError() {
+        return lastError;
+    }
+    
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+    
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+    
+    public LocalDateTime getCompletedAt() {
+        return completedAt;
+    }
+    
+    public void setCompletedAt(LocalDateTime completedAt) {
+        this.completedAt = completedAt;
+    }
+}
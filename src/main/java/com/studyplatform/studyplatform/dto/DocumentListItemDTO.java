@@ -0,0 +1,120 @@
+package com.studyplatform.studyplatform.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Listing view of a document: the document's own columns plus the owner's id and display name,
+ * selected directly by the listing queries instead of serializing the owner entity.
+ */
+public class DocumentListItemDTO {
+    private Long id;
+    private String name;
+    private String fileUrl;
+    private String fileType;
+    private Long fileSize;
+    private String description;
+    private LocalDateTime uploadedAt;
+    private boolean isPublic;
+    private Long ownerId;
+    private String ownerName;
+    
+    public DocumentListItemDTO() {
+    }
+    
+    // Used by JPQL constructor expressions in DocumentRepository
+    public DocumentListItemDTO(Long id, String name, String fileUrl, String fileType, Long fileSize, String description,
+                               LocalDateTime uploadedAt, boolean isPublic, Long ownerId, String ownerFirstName, String ownerLastName) {
+        this.id = id;
+        this.name = name;
+        this.fileUrl = fileUrl;
+        this.fileType = fileType;
+        this.fileSize = fileSize;
+        this.description = description;
+        this.uploadedAt = uploadedAt;
+        this.isPublic = isPublic;
+        this.ownerId = ownerId;
+        this.ownerName = ownerLastName == null ? ownerFirstName : ownerFirstName + " " + ownerLastName;
+    }
+    
+    // Getters and Setters
+    
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public void setName(String name) {
+        this.name = name;
+    }
+    
+    public String getFileUrl() {
+        return fileUrl;
+    }
+    
+    public void setFileUrl(String fileUrl) {
+        this.fileUrl = fileUrl;
+    }
+    
+    public String getFileType() {
+        return fileType;
+    }
+    
+    public void setFileType(String fileType) {
+        this.fileType = fileType;
+    }
+    
+    public Long getFileSize() {
+        return fileSize;
+    }
+    
+    public void setFileSize(Long fileSize) {
+        this.fileSize = fileSize;
+    }
+    
+    public String getDescription() {
+        return description;
+    }
+    
+    public void setDescription(String description) {
+        this.description = description;
+    }
+    
+    public LocalDateTime getUploadedAt() {
+        return uploadedAt;
+    }
+    
+    public void setUploadedAt(LocalDateTime uploadedAt) {
+        this.uploadedAt = uploadedAt;
+    }
+    
+    public boolean isPublic() {
+        return isPublic;
+    }
+    
+    public void setPublic(boolean isPublic) {
+        this.isPublic = isPublic;
+    }
+    
+    public Long getOwnerId() {
+        return ownerId;
+    }
+    
+    public void setOwnerId(Long ownerId) {
+        this.ownerId = ownerId;
+    }
+    
+    public String getOwnerName() {
+        return ownerName;
+    }
+    
+    public void setOwnerName(String ownerName) {
+        this.ownerName = ownerName;
+    }
+}
@@ -0,0 +1,52 @@
+package com.studyplatform.studyplatform.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class DocumentPageDTO {
+    private List<DocumentListItemDTO> documents;
+    private boolean hasMore;
+    private LocalDateTime nextBeforeUploadedAt;
+    private Long nextBeforeId;
+    
+    public DocumentPageDTO(List<DocumentListItemDTO> documents, boolean hasMore, LocalDateTime nextBeforeUploadedAt, Long nextBeforeId) {
+        this.documents = documents;
+        this.hasMore = hasMore;
+        this.nextBeforeUploadedAt = nextBeforeUploadedAt;
+        this.nextBeforeId = nextBeforeId;
+    }
+    
+    // Getters and Setters
+    
+    public List<DocumentListItemDTO> getDocuments() {
+        return documents;
+    }
+    
+    public void setDocuments(List<DocumentListItemDTO> documents) {
+        this.documents = documents;
+    }
+    
+    public boolean isHasMore() {
+        return hasMore;
+    }
+    
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+    
+    public LocalDateTime getNextBeforeUploadedAt() {
+        return nextBeforeUploadedAt;
+    }
+    
+    public void setNextBeforeUploadedAt(LocalDateTime nextBeforeUploadedAt) {
+        this.nextBeforeUploadedAt = nextBeforeUploadedAt;
+    }
+    
+    public Long getNextBeforeId() {
+        return nextBeforeId;
+    }
+    
+    public void setNextBeforeId(Long nextBeforeId) {
+        this.nextBeforeId = nextBeforeId;
+    }
+}
@@ -13,6 +13,9 @@ public class ForumReplyDTO {
     private LocalDateTime updatedAt;
     private int upvotes;
     private int downvotes;
+    private int score;
+    // The requesting user's own vote: 1 (up), -1 (down) or 0 (none)
+    private int userVote;
     private boolean isAcceptedAnswer;
     
     // Getters and Setters
@@ -81,6 +84,22 @@ public class ForumReplyDTO {
         this.downvotes = downvotes;
     }
     
+    public int getScore() {
+        return score;
+    }
+    
+    public void setScore(int score) {
+        this.score = score;
+    }
+    
+    public int getUserVote() {
+        return userVote;
+    }
+    
+    public void setUserVote(int userVote) {
+        this.userVote = userVote;
+    }
+    
     public boolean isAcceptedAnswer() {
         return isAcceptedAnswer;
     }
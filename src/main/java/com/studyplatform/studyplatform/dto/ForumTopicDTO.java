@@ -16,6 +16,9 @@ public class ForumTopicDTO {
     private int replyCount;
     private int upvotes;
     private int downvotes;
+    private int score;
+    // The requesting user's own vote: 1 (up), -1 (down) or 0 (none)
+    private int userVote;
     private Set<String> tags;
     
     // Getters and Setters
@@ -100,6 +103,22 @@ public class ForumTopicDTO {
         this.downvotes = downvotes;
     }
     
+    public int getScore() {
+        return score;
+    }
+    
+    public void setScore(int score) {
+        this.score = score;
+    }
+    
+    public int getUserVote() {
+        return userVote;
+    }
+    
+    public void setUserVote(int userVote) {
+        this.userVote = userVote;
+    }
+    
     public Set<String> getTags() {
         return tags;
     }
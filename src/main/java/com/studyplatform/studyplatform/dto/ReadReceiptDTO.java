@@ -0,0 +1,33 @@
+package com.studyplatform.studyplatform.dto;
+
+public class ReadReceiptDTO {
+    private Long chatRoomId;
+    private Long userId;
+    private Long lastReadMessageId;
+    
+    // Getters and Setters
+    
+    public Long getChatRoomId() {
+        return chatRoomId;
+    }
+    
+    public void setChatRoomId(Long chatRoomId) {
+        this.chatRoomId = chatRoomId;
+    }
+    
+    public Long getUserId() {
+        return userId;
+    }
+    
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+    
+    public Long getLastReadMessageId() {
+        return lastReadMessageId;
+    }
+    
+    public void setLastReadMessageId(Long lastReadMessageId) {
+        this.lastReadMessageId = lastReadMessageId;
+    }
+}
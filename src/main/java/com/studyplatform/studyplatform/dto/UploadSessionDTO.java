@@ -0,0 +1,108 @@
+package com.studyplatform.studyplatform.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.studyplatform.studyplatform.Model.UploadSession;
+
+public class UploadSessionDTO {
+    private String id;
+    private String fileName;
+    private long size;
+    private String status;
+    // Received byte ranges as [start, end) pairs, merged and in order
+    private List<long[]> receivedRanges;
+    private long receivedBytes;
+    // The first byte not received yet, where a sequential client resumes
+    private long nextOffset;
+    private long maxChunkSize;
+    private LocalDateTime expiresAt;
+    
+    public UploadSessionDTO(UploadSession session, List<long[]> receivedRanges, long maxChunkSize) {
+        this.id = session.getId();
+        this.fileName = session.getFileName();
+        this.size = session.getSize();
+        this.status = session.getStatus().name();
+        this.receivedRanges = receivedRanges;
+        for (long[] range : receivedRanges) {
+            this.receivedBytes += range[1] - range[0];
+        }
+        this.nextOffset = !receivedRanges.isEmpty() && receivedRanges.get(0)[0] == 0 ? receivedRanges.get(0)[1] : 0;
+        this.maxChunkSize = maxChunkSize;
+        this.expiresAt = session.getExpiresAt();
+    }
+    
+    // Getters and Setters
+    
+    public String getId() {
+        return id;
+    }
+    
+    public void setId(String id) {
+        this.id = id;
+    }
+    
+    public String getFileName() {
+        return fileName;
+    }
+    
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+    
+    public long getSize() {
+        return size;
+    }
+    
+    public void setSize(long size) {
+        this.size = size;
+    }
+    
+    public String getStatus() {
+        return status;
+    }
+    
+    public void setStatus(String status) {
+        this.status = status;
+    }
+    
+    public List<long[]> getReceivedRanges() {
+        return receivedRanges;
+    }
+    
+    public void setReceivedRanges(List<long[]> receivedRanges) {
+        this.receivedRanges = receivedRanges;
+    }
+    
+    public long getReceivedBytes() {
+        return receivedBytes;
+    }
+    
+    public void setReceivedBytes(long receivedBytes) {
+        this.receivedBytes = receivedBytes;
+    }
+    
+    public long getNextOffset() {
+        return nextOffset;
+    }
+    
+    public void setNextOffset(long nextOffset) {
+        this.nextOffset = nextOffset;
+    }
+    
+    public long getMaxChunkSize() {
+        return maxChunkSize;
+    }
+    
+    public void setMaxChunkSize(long maxChunkSize) {
+        this.maxChunkSize = maxChunkSize;
+    }
+    
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+    
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
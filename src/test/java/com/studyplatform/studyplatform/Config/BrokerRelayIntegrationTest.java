@@ -0,0 +1,159 @@
+package com.studyplatform.studyplatform.Config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.lang.reflect.Type;
+import java.net.ServerSocket;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompBrokerRelayMessageHandler;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import com.studyplatform.studyplatform.StudyplatformApplication;
+import com.studyplatform.studyplatform.TestData;
+import com.studyplatform.studyplatform.Config.security.JwtTokenProvider;
+import com.studyplatform.studyplatform.Model.User;
+import com.studyplatform.studyplatform.Repository.UserRepository;
+
+/**
+ * Runs two application instances in relay mode against one embedded STOMP broker and checks that a
+ * broadcast made on either instance reaches a subscriber connected to the other.
+ */
+class BrokerRelayIntegrationTest {
+
+    private static EmbeddedActiveMQ broker;
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+    private static ThreadPoolTaskScheduler receiptScheduler;
+
+    @BeforeAll
+    static void startBrokerAndNodes() throws Exception {
+        int stompPort = freePort();
+        broker = new EmbeddedActiveMQ();
+        broker.setConfiguration(new ConfigurationImpl()
+            .setPersistenceEnabled(false)
+            .setSecurityEnabled(false)
+            .setJournalDirectory("target/artemis/journal")
+            .addAcceptorConfiguration("stomp", "tcp://127.0.0.1:" + stompPort
+                + "?protocols=STOMP;anycastPrefix=/queue/;multicastPrefix=/topic/"));
+        broker.start();
+        receiptScheduler = new ThreadPoolTaskScheduler();
+        receiptScheduler.initialize();
+
+        nodeA = startNode("a", stompPort);
+        nodeB = startNode("b", stompPort);
+        awaitBrokerAvailable(nodeA);
+        awaitBrokerAvailable(nodeB);
+    }
+
+    @AfterAll
+    static void stopNodesAndBroker() throws Exception {
+        if (nodeA != null) {
+            nodeA.close();
+        }
+        if (nodeB != null) {
+            nodeB.close();
+        }
+        if (broker != null) {
+            broker.stop();
+        }
+        if (receiptScheduler != null) {
+            receiptScheduler.shutdown();
+        }
+    }
+
+    @Test
+    void broadcastOnOneNodeReachesSubscribersOnTheOther() throws Exception {
+        BlockingQueue<Map<?, ?>> receivedOnA = subscribe(nodeA, "/topic/chat/41");
+        BlockingQueue<Map<?, ?>> receivedOnB = subscribe(nodeB, "/topic/chat/41");
+
+        nodeB.getBean(SimpMessagingTemplate.class).convertAndSend("/topic/chat/41", Map.of("content", "from b"));
+        assertEquals("from b", receivedOnA.poll(10, TimeUnit.SECONDS).get("content"));
+        assertEquals("from b", receivedOnB.poll(10, TimeUnit.SECONDS).get("content"));
+
+        nodeA.getBean(SimpMessagingTemplate.class).convertAndSend("/topic/chat/41", Map.of("content", "from a"));
+        assertEquals("from a", receivedOnA.poll(10, TimeUnit.SECONDS).get("content"));
+        assertEquals("from a", receivedOnB.poll(10, TimeUnit.SECONDS).get("content"));
+    }
+
+    private static ConfigurableApplicationContext startNode(String name, int stompPort) {
+        return new SpringApplicationBuilder(StudyplatformApplication.class)
+            .properties(
+                "server.port=0",
+                "spring.datasource.url=jdbc:h2:mem:relay-" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1",
+                "websocket.broker.mode=relay",
+                "websocket.broker.relay.host=127.0.0.1",
+                "websocket.broker.relay.port=" + stompPort)
+            .run();
+    }
+
+    private static void awaitBrokerAvailable(ConfigurableApplicationContext node) throws InterruptedException {
+        StompBrokerRelayMessageHandler relay = node.getBean(StompBrokerRelayMessageHandler.class);
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (!relay.isBrokerAvailable()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Relay did not connect to the broker");
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    // Connects a STOMP client to the node's /ws endpoint and waits for the broker to confirm the subscription
+    private static BlockingQueue<Map<?, ?>> subscribe(ConfigurableApplicationContext node, String destination) throws Exception {
+        User user = TestData.newUser(node.getBean(UserRepository.class), "Subscriber");
+        WebSocketHttpHeaders headers = new WebSocketHttpHeaders();
+        headers.add("Authorization", "Bearer " + node.getBean(JwtTokenProvider.class).generateToken(user.getEmail()));
+        headers.setOrigin("http://localhost:3000");
+
+        WebSocketStompClient client = new WebSocketStompClient(new StandardWebSocketClient());
+        client.setMessageConverter(new MappingJackson2MessageConverter());
+        client.setTaskScheduler(receiptScheduler);
+        int port = ((ServletWebServerApplicationContext) node).getWebServer().getPort();
+        StompSession session = client.connect("ws://127.0.0.1:" + port + "/ws/websocket", headers,
+            new StompSessionHandlerAdapter() { }).get(10, TimeUnit.SECONDS);
+
+        BlockingQueue<Map<?, ?>> received = new LinkedBlockingQueue<>();
+        session.setAutoReceipt(true);
+        CompletableFuture<Void> subscribed = new CompletableFuture<>();
+        session.subscribe(destination, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders stompHeaders) {
+                return Map.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders stompHeaders, Object payload) {
+                received.add((Map<?, ?>) payload);
+            }
+        }).addReceiptTask(() -> subscribed.complete(null));
+        subscribed.get(10, TimeUnit.SECONDS);
+        return received;
+    }
+
+    private static int freePort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.studyplatform.studyplatform.Config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import com.studyplatform.studyplatform.TestData;
+import com.studyplatform.studyplatform.Config.security.JwtTokenProvider;
+import com.studyplatform.studyplatform.Repository.UserRepository;
+
+/**
+ * Broadcasts to a room with a few subscribers that stop reading. The slow sessions must be closed, and
+ * the others must keep receiving every message while it happens. The broadcast lasts
+ * {@code -Dsoak.duration-ms} (5 seconds by default) and can be run longer by hand.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "websocket.transport.max-pending-outbound=200",
+    "websocket.transport.send-time-limit-ms=2000"
+})
+@Import(SlowSubscriberSoakTest.SmallSendBufferConfig.class)
+class SlowSubscriberSoakTest {
+
+    private static final String DESTINATION = "/topic/chat/soak";
+    private static final int FAST_SUBSCRIBERS = 4;
+    private static final int SLOW_SUBSCRIBERS = 2;
+    private static final int RATE_PER_SECOND = 200;
+    private static final String PAYLOAD = "x".repeat(4096);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private WebSocketSessionMonitor sessionMonitor;
+
+    @Autowired
+    private JwtTokenProvider jwtTokenProvider;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    // A fixed, small socket send buffer stops the kernel from absorbing megabytes for a stalled client.
+    // Imported rather than annotated, so applications started from the test classpath do not scan it.
+    static class SmallSendBufferConfig {
+        @Bean
+        WebServerFactoryCustomizer<TomcatServletWebServerFactory> smallSendBuffer() {
+            return factory -> factory.addConnectorCustomizers(connector -> connector.setProperty("socket.txBufSize", "32768"));
+        }
+    }
+
+    private final List<StompSession> sessions = new ArrayList<>();
+    private final List<Socket> slowSockets = new ArrayList<>();
+    private ThreadPoolTaskScheduler scheduler;
+
+    @AfterEach
+    void disconnect() throws IOException {
+        sessions.stream().filter(StompSession::isConnected).forEach(StompSession::disconnect);
+        for (Socket socket : slowSockets) {
+            socket.close();
+        }
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    void slowSubscribersAreEvictedWithoutHoldingUpTheRoom() throws Exception {
+        long durationMs = Long.getLong("soak.duration-ms", 5000);
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.initialize();
+
+        List<AtomicInteger> fastCounts = new ArrayList<>();
+        for (int i = 0; i < FAST_SUBSCRIBERS; i++) {
+            AtomicInteger count = new AtomicInteger();
+            fastCounts.add(count);
+            sessions.add(subscribe(count));
+        }
+        // Warm up the broadcast path so the fast clients are not judged on a cold JVM
+        long warmUp = publish(2000, fastCounts);
+        awaitAll(fastCounts, warmUp);
+        assertEquals(FAST_SUBSCRIBERS, sessionCount());
+        for (AtomicInteger count : fastCounts) {
+            count.set(0);
+        }
+
+        for (int i = 0; i < SLOW_SUBSCRIBERS; i++) {
+            slowSockets.add(subscribeAndStopReading());
+        }
+        long connectDeadline = System.currentTimeMillis() + 5000;
+        while (sessionCount() < FAST_SUBSCRIBERS + SLOW_SUBSCRIBERS && System.currentTimeMillis() < connectDeadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(FAST_SUBSCRIBERS + SLOW_SUBSCRIBERS, sessionCount());
+        // Let the inbound channel register the raw clients' subscriptions
+        Thread.sleep(200);
+
+        long sent = publish(durationMs, fastCounts);
+        awaitAll(fastCounts, sent);
+        for (AtomicInteger count : fastCounts) {
+            assertEquals(sent, count.get());
+        }
+        for (StompSession fast : sessions) {
+            assertTrue(fast.isConnected());
+        }
+        long closeDeadline = System.currentTimeMillis() + 10_000;
+        while (sessionCount() > FAST_SUBSCRIBERS && System.currentTimeMillis() < closeDeadline) {
+            Thread.sleep(50);
+        }
+
+        assertEquals(FAST_SUBSCRIBERS, sessionCount());
+        assertTrue(((Number) sessionMonitor.getMetrics().get("maxPendingOutbound")).intValue() <= 200);
+    }
+
+    private int sessionCount() {
+        return ((Number) sessionMonitor.getMetrics().get("sessions")).intValue();
+    }
+
+    // Broadcasts at a fixed rate for the given time and returns how many messages were sent
+    private long publish(long durationMs, List<AtomicInteger> fastCounts) {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / RATE_PER_SECOND;
+        long sent = 0;
+        long start = System.nanoTime();
+        long next = start;
+        while (System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(durationMs)) {
+            LockSupport.parkNanos(next - System.nanoTime());
+            messagingTemplate.convertAndSend(DESTINATION, PAYLOAD);
+            sent++;
+            next += intervalNanos;
+        }
+        return sent;
+    }
+
+    private static void awaitAll(List<AtomicInteger> counts, long sent) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (System.currentTimeMillis() < deadline && !counts.stream().allMatch(count -> count.get() >= sent)) {
+            Thread.sleep(50);
+        }
+    }
+
+    private StompSession subscribe(AtomicInteger received) throws Exception {
+        WebSocketHttpHeaders headers = new WebSocketHttpHeaders();
+        String email = TestData.newUser(userRepository, "Subscriber").getEmail();
+        headers.add("Authorization", "Bearer " + jwtTokenProvider.generateToken(email));
+        headers.setOrigin("http://localhost:3000");
+
+        WebSocketStompClient client = new WebSocketStompClient(new StandardWebSocketClient());
+        client.setMessageConverter(new StringMessageConverter());
+        client.setTaskScheduler(scheduler);
+        StompSession session = client.connect("ws://127.0.0.1:" + port + "/ws/websocket", headers,
+            new StompSessionHandlerAdapter() { }).get(10, TimeUnit.SECONDS);
+
+        session.setAutoReceipt(true);
+        CompletableFuture<Void> subscribed = new CompletableFuture<>();
+        session.subscribe(DESTINATION, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders stompHeaders) {
+                return String.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders stompHeaders, Object payload) {
+                received.incrementAndGet();
+            }
+        }).addReceiptTask(() -> subscribed.complete(null));
+        // The simple broker does not send receipts for subscriptions, so a short wait stands in for one
+        try {
+            subscribed.get(500, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // The subscription is registered once the inbound channel has processed the frame
+        }
+        return session;
+    }
+
+    /**
+     * Opens a WebSocket over a plain socket with a small receive buffer, connects and subscribes over
+     * STOMP, and then never reads again, like a client on a stalled connection.
+     */
+    private Socket subscribeAndStopReading() throws Exception {
+        String email = TestData.newUser(userRepository, "Slow").getEmail();
+        Socket socket = new Socket();
+        socket.setReceiveBufferSize(4096);
+        socket.connect(new InetSocketAddress("127.0.0.1", port), 5000);
+        socket.setSoTimeout(5000);
+
+        byte[] key = new byte[16];
+        ThreadLocalRandom.current().nextBytes(key);
+        OutputStream out = socket.getOutputStream();
+        out.write(("GET /ws/websocket HTTP/1.1\r\n"
+            + "Host: 127.0.0.1:" + port + "\r\n"
+            + "Upgrade: websocket\r\n"
+            + "Connection: Upgrade\r\n"
+            + "Sec-WebSocket-Key: " + Base64.getEncoder().encodeToString(key) + "\r\n"
+            + "Sec-WebSocket-Version: 13\r\n"
+            + "Sec-WebSocket-Protocol: v12.stomp\r\n"
+            + "Origin: http://localhost:3000\r\n"
+            + "Authorization: Bearer " + jwtTokenProvider.generateToken(email) + "\r\n"
+            + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        String response = readHeaders(socket.getInputStream());
+        assertTrue(response.startsWith("HTTP/1.1 101"), response);
+
+        writeTextFrame(out, "CONNECT\naccept-version:1.2\nhost:127.0.0.1\nheart-beat:0,0\n\n\0");
+        writeTextFrame(out, "SUBSCRIBE\nid:slow\ndestination:" + DESTINATION + "\n\n\0");
+        out.flush();
+        return socket;
+    }
+
+    private static String readHeaders(InputStream in) throws IOException {
+        ByteArrayOutputStream headers = new ByteArrayOutputStream();
+        while (!headers.toString(StandardCharsets.US_ASCII).endsWith("\r\n\r\n")) {
+            int b = in.read();
+            if (b < 0) {
+                break;
+            }
+            headers.write(b);
+        }
+        return headers.toString(StandardCharsets.US_ASCII);
+    }
+
+    // Client frames must be masked; payloads here are short enough for a single length byte
+    private static void writeTextFrame(OutputStream out, String text) throws IOException {
+        byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+        byte[] mask = new byte[4];
+        ThreadLocalRandom.current().nextBytes(mask);
+        out.write(0x81);
+        out.write(0x80 | payload.length);
+        out.write(mask);
+        for (int i = 0; i < payload.length; i++) {
+            out.write(payload[i] ^ mask[i % 4]);
+        }
+    }
+}
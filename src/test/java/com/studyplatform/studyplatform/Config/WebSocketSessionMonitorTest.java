@@ -0,0 +1,61 @@
+package com.studyplatform.studyplatform.Config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+class WebSocketSessionMonitorTest {
+
+    private static final String SESSION_ID = "session-1";
+    private static final int MAX_PENDING = 2;
+
+    @Test
+    void messagesTheExecutorRejectsAreNotLeftPending() throws Exception {
+        WebSocketSessionMonitor monitor = new WebSocketSessionMonitor();
+        ReflectionTestUtils.setField(monitor, "maxPendingOutbound", MAX_PENDING);
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(SESSION_ID);
+        monitor.decorate(new TextWebSocketHandler()).afterConnectionEstablished(session);
+
+        Executor rejecting = task -> {
+            throw new RejectedExecutionException("Outbound pool is full");
+        };
+        ExecutorSubscribableChannel outbound = new ExecutorSubscribableChannel(rejecting);
+        outbound.addInterceptor(monitor);
+        outbound.subscribe(message -> { });
+
+        // Past the limit, so a leaked count would get the session evicted
+        for (int i = 0; i < MAX_PENDING * 3; i++) {
+            assertThrows(MessageDeliveryException.class, () -> outbound.send(messageTo(SESSION_ID)));
+        }
+
+        assertEquals(0, monitor.getMetrics().get("totalPendingOutbound"));
+        assertEquals(0L, monitor.getMetrics().get("evictedSessions"));
+        verify(session, never()).close(any(CloseStatus.class));
+    }
+
+    private static Message<byte[]> messageTo(String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,222 @@
+package com.studyplatform.studyplatform.Controller;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.jayway.jsonpath.JsonPath;
+import com.studyplatform.studyplatform.TestData;
+import com.studyplatform.studyplatform.Config.security.JwtTokenProvider;
+import com.studyplatform.studyplatform.Model.User;
+import com.studyplatform.studyplatform.Repository.UserRepository;
+import com.studyplatform.studyplatform.Service.ChunkedUploadService;
+
+@SpringBootTest(properties = "file.upload.user-quota-bytes=" + ChunkedUploadControllerTest.QUOTA_BYTES)
+@AutoConfigureMockMvc
+class ChunkedUploadControllerTest {
+
+    static final int QUOTA_BYTES = 1_000_000;
+    private static final int FILE_BYTES = 300_017;
+    private static final int CHUNK_BYTES = 64 * 1024;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ChunkedUploadService chunkedUploadService;
+
+    @Autowired
+    private JwtTokenProvider jwtTokenProvider;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${file.upload-dir}")
+    private String uploadDir;
+
+    @Test
+    void chunksInAnyOrderAndAResumedChunkMakeTheDocument() throws Exception {
+        User owner = TestData.newUser(userRepository, "Owner");
+        byte[] content = randomBytes(FILE_BYTES);
+        String uploadId = startUpload(owner, "Lecture.mp4", FILE_BYTES);
+        assertEquals(FILE_BYTES, Files.size(partialFile(uploadId)));
+
+        // Backwards, leaving out the second chunk
+        for (int offset = FILE_BYTES / CHUNK_BYTES * CHUNK_BYTES; offset >= 0; offset -= CHUNK_BYTES) {
+            if (offset != CHUNK_BYTES) {
+                putChunk(owner, uploadId, content, offset, Math.min(CHUNK_BYTES, FILE_BYTES - offset));
+            }
+        }
+        mockMvc.perform(post("/api/documents/uploads/{uploadId}/complete", uploadId).header(HttpHeaders.AUTHORIZATION, bearer(owner)))
+            .andExpect(status().isBadRequest());
+
+        // The connection drops halfway through the missing chunk, and what arrived is kept
+        int received = CHUNK_BYTES / 2 + 1000;
+        InputStream dropping = new DroppingInputStream(Arrays.copyOfRange(content, CHUNK_BYTES, CHUNK_BYTES + received));
+        assertThrows(RuntimeException.class,
+            () -> chunkedUploadService.writeChunk(uploadId, owner.getId(), CHUNK_BYTES, CHUNK_BYTES, dropping));
+        MvcResult progress = mockMvc.perform(get("/api/documents/uploads/{uploadId}", uploadId).header(HttpHeaders.AUTHORIZATION, bearer(owner)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.receivedBytes").value(FILE_BYTES - CHUNK_BYTES + received))
+            .andReturn();
+        int resumeAt = JsonPath.read(progress.getResponse().getContentAsString(), "$.nextOffset");
+        assertEquals(CHUNK_BYTES + received, resumeAt);
+
+        putChunk(owner, uploadId, content, resumeAt, 2 * CHUNK_BYTES - resumeAt);
+        MvcResult completed = mockMvc.perform(post("/api/documents/uploads/{uploadId}/complete", uploadId)
+                .header(HttpHeaders.AUTHORIZATION, bearer(owner)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.fileSize").value(FILE_BYTES))
+            .andReturn();
+
+        String fileUrl = JsonPath.read(completed.getResponse().getContentAsString(), "$.fileUrl");
+        MvcResult stored = mockMvc.perform(get(fileUrl.substring(fileUrl.indexOf("/api/files/"))))
+            .andExpect(status().isOk())
+            .andReturn();
+        assertArrayEquals(content, stored.getResponse().getContentAsByteArray());
+        assertFalse(Files.exists(partialFile(uploadId)));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM upload_chunks WHERE upload_id = ?", Integer.class, uploadId));
+    }
+
+    @Test
+    void completingIsRefusedWhenOtherDocumentsHaveUsedTheQuotaSinceStarting() throws Exception {
+        User owner = TestData.newUser(userRepository, "Owner");
+        byte[] content = randomBytes(FILE_BYTES);
+        String uploadId = startUpload(owner, "notes.pdf", FILE_BYTES);
+        for (int offset = 0; offset < FILE_BYTES; offset += CHUNK_BYTES) {
+            putChunk(owner, uploadId, content, offset, Math.min(CHUNK_BYTES, FILE_BYTES - offset));
+        }
+        insertDocument(owner, QUOTA_BYTES - FILE_BYTES + 1);
+
+        mockMvc.perform(post("/api/documents/uploads/{uploadId}/complete", uploadId).header(HttpHeaders.AUTHORIZATION, bearer(owner)))
+            .andExpect(status().isPayloadTooLarge());
+
+        // Kept as it was, to be aborted or completed once space is freed
+        mockMvc.perform(get("/api/documents/uploads/{uploadId}", uploadId).header(HttpHeaders.AUTHORIZATION, bearer(owner)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.status").value("UPLOADING"))
+            .andExpect(jsonPath("$.receivedBytes").value(FILE_BYTES));
+        mockMvc.perform(delete("/api/documents/uploads/{uploadId}", uploadId).header(HttpHeaders.AUTHORIZATION, bearer(owner)))
+            .andExpect(status().isOk());
+        assertFalse(Files.exists(partialFile(uploadId)));
+    }
+
+    @Test
+    void expiredUploadsAndPartialFilesWithoutAnUploadAreDeleted() throws Exception {
+        User owner = TestData.newUser(userRepository, "Owner");
+        String expired = startUpload(owner, "old.pdf", 100);
+        String active = startUpload(owner, "new.pdf", 100);
+        jdbcTemplate.update("UPDATE upload_sessions SET expires_at = ? WHERE id = ?",
+            Timestamp.valueOf(LocalDateTime.now().minusMinutes(1)), expired);
+        Path orphan = partialFile("orphan");
+        Files.write(orphan, new byte[3]);
+
+        assertTrue(chunkedUploadService.deleteExpired() >= 1);
+
+        assertFalse(Files.exists(partialFile(expired)));
+        assertFalse(Files.exists(orphan));
+        assertTrue(Files.exists(partialFile(active)));
+        mockMvc.perform(get("/api/documents/uploads/{uploadId}", expired).header(HttpHeaders.AUTHORIZATION, bearer(owner)))
+            .andExpect(status().isBadRequest());
+    }
+
+    private String startUpload(User owner, String fileName, long size) throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/documents/uploads")
+                .header(HttpHeaders.AUTHORIZATION, bearer(owner))
+                .param("fileName", fileName)
+                .param("size", Long.toString(size)))
+            .andExpect(status().isOk())
+            .andReturn();
+        return JsonPath.read(result.getResponse().getContentAsString(), "$.id");
+    }
+
+    private void putChunk(User owner, String uploadId, byte[] content, int offset, int length) throws Exception {
+        mockMvc.perform(put("/api/documents/uploads/{uploadId}", uploadId)
+                .header(HttpHeaders.AUTHORIZATION, bearer(owner))
+                .param("offset", Integer.toString(offset))
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .content(Arrays.copyOfRange(content, offset, offset + length)))
+            .andExpect(status().isOk());
+    }
+
+    private void insertDocument(User owner, long fileSize) {
+        jdbcTemplate.update(
+            "INSERT INTO documents (name, file_url, file_type, file_size, description, uploaded_at, is_public, user_id) "
+                + "VALUES ('other.pdf', '/api/files/missing.pdf', 'application/pdf', ?, 'notes', ?, FALSE, ?)",
+            fileSize, Timestamp.valueOf(LocalDateTime.now()), owner.getId());
+    }
+
+    private Path partialFile(String uploadId) {
+        return Paths.get(uploadDir).toAbsolutePath().normalize().resolve(".partial").resolve("upload-" + uploadId + ".tmp");
+    }
+
+    private String bearer(User user) {
+        return "Bearer " + jwtTokenProvider.generateToken(user.getEmail());
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Serves its bytes and then fails, like a request body whose client went away
+     */
+    private static class DroppingInputStream extends InputStream {
+
+        private final InputStream received;
+
+        DroppingInputStream(byte[] received) {
+            this.received = new ByteArrayInputStream(received);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = received.read(b, off, len);
+            if (read < 0) {
+                throw new IOException("Connection reset");
+            }
+            return read;
+        }
+    }
+}
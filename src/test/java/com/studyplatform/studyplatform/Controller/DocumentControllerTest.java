@@ -0,0 +1,114 @@
+package com.studyplatform.studyplatform.Controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.studyplatform.studyplatform.TestData;
+import com.studyplatform.studyplatform.Config.security.JwtTokenProvider;
+import com.studyplatform.studyplatform.Model.DocumentJob;
+import com.studyplatform.studyplatform.Model.User;
+import com.studyplatform.studyplatform.Repository.UserRepository;
+import com.studyplatform.studyplatform.Service.DocumentJobService;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class DocumentControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwtTokenProvider jwtTokenProvider;
+
+    @Autowired
+    private DocumentJobService documentJobService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void summaryNeedsAnAuthenticatedUserAndQueuesNothingOtherwise() throws Exception {
+        User owner = TestData.newUser(userRepository, "Owner");
+        Long documentId = insertDocument(owner, true);
+
+        mockMvc.perform(get("/api/documents/{id}/summary", documentId))
+            .andExpect(status().isForbidden());
+
+        assertTrue(documentJobService.getJobs(documentId).isEmpty());
+    }
+
+    @Test
+    void summaryOfAnotherUsersPrivateDocumentIsRefusedBeforeQueueing() throws Exception {
+        User owner = TestData.newUser(userRepository, "Owner");
+        User stranger = TestData.newUser(userRepository, "Stranger");
+        Long documentId = insertDocument(owner, false);
+
+        mockMvc.perform(get("/api/documents/{id}/summary", documentId).header(HttpHeaders.AUTHORIZATION, bearer(stranger)))
+            .andExpect(status().isForbidden())
+            .andExpect(jsonPath("$.error").exists());
+
+        assertTrue(documentJobService.getJobs(documentId).isEmpty());
+    }
+
+    @Test
+    void summaryOfAPublicDocumentIsQueuedForAnyUser() throws Exception {
+        User owner = TestData.newUser(userRepository, "Owner");
+        User reader = TestData.newUser(userRepository, "Reader");
+        Long documentId = insertDocument(owner, true);
+
+        mockMvc.perform(get("/api/documents/{id}/summary", documentId).header(HttpHeaders.AUTHORIZATION, bearer(reader)))
+            .andExpect(status().isAccepted())
+            .andExpect(jsonPath("$.type").value("SUMMARIZE"));
+
+        assertEquals(1, documentJobService.getJobs(documentId).stream()
+            .filter(job -> job.getType() == DocumentJob.Type.SUMMARIZE)
+            .count());
+    }
+
+    @Test
+    void onlyTheOwnerCanAttachASummary() throws Exception {
+        User owner = TestData.newUser(userRepository, "Owner");
+        User reader = TestData.newUser(userRepository, "Reader");
+        Long documentId = insertDocument(owner, true);
+        String body = "{\"summary\": \"Notes on thermodynamics\"}";
+
+        mockMvc.perform(post("/api/documents/{id}/summary", documentId).header(HttpHeaders.AUTHORIZATION, bearer(reader))
+                .contentType(MediaType.APPLICATION_JSON).content(body))
+            .andExpect(status().isForbidden());
+        mockMvc.perform(post("/api/documents/{id}/summary", documentId).header(HttpHeaders.AUTHORIZATION, bearer(owner))
+                .contentType(MediaType.APPLICATION_JSON).content(body))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.summaryText").value("Notes on thermodynamics"));
+    }
+
+    private String bearer(User user) {
+        return "Bearer " + jwtTokenProvider.generateToken(user.getEmail());
+    }
+
+    private Long insertDocument(User owner, boolean isPublic) {
+        jdbcTemplate.update(
+            "INSERT INTO documents (name, file_url, file_type, file_size, description, uploaded_at, is_public, user_id) "
+                + "VALUES ('notes.pdf', '/api/files/missing.pdf', 'application/pdf', 1000, 'notes', ?, ?, ?)",
+            Timestamp.valueOf(LocalDateTime.now()), isPublic, owner.getId());
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM documents WHERE user_id = ?", Long.class, owner.getId());
+    }
+}
@@ -0,0 +1,157 @@
+package com.studyplatform.studyplatform.Controller;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.head;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.studyplatform.studyplatform.Service.BlobStore;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class FileControllerTest {
+
+    // Set by Tomcat's connector when it can send files itself
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    // Below file.sendfile.min-size-bytes, so always served by Spring
+    private static final int SMALL_FILE_BYTES = 10_000;
+    // Above it, so handed to Tomcat when the connector supports sendfile
+    private static final int LARGE_FILE_BYTES = 2 * 1024 * 1024;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Test
+    void rangeOfASmallFileIsServedAsPartialContent() throws Exception {
+        byte[] content = randomBytes(SMALL_FILE_BYTES);
+        String fileName = store(content, ".pdf");
+
+        MvcResult result = mockMvc.perform(get("/api/files/{fileName}", fileName).header(HttpHeaders.RANGE, "bytes=100-199"))
+            .andExpect(status().isPartialContent())
+            .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 100-199/" + SMALL_FILE_BYTES))
+            .andExpect(header().string(HttpHeaders.ETAG, "\"" + fileName + "\""))
+            .andReturn();
+
+        assertArrayEquals(Arrays.copyOfRange(content, 100, 200), result.getResponse().getContentAsByteArray());
+    }
+
+    @Test
+    void unsatisfiableRangeOfASmallFileIsRefused() throws Exception {
+        String fileName = store(randomBytes(SMALL_FILE_BYTES), ".pdf");
+
+        mockMvc.perform(get("/api/files/{fileName}", fileName).header(HttpHeaders.RANGE, "bytes=99999-"))
+            .andExpect(status().isRequestedRangeNotSatisfiable())
+            .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */" + SMALL_FILE_BYTES));
+    }
+
+    @Test
+    void unchangedFileIsNotSentAgain() throws Exception {
+        String fileName = store(randomBytes(SMALL_FILE_BYTES), ".pdf");
+        MvcResult first = mockMvc.perform(get("/api/files/{fileName}", fileName))
+            .andExpect(status().isOk())
+            .andReturn();
+        String eTag = first.getResponse().getHeader(HttpHeaders.ETAG);
+        String lastModified = first.getResponse().getHeader(HttpHeaders.LAST_MODIFIED);
+
+        MvcResult byETag = mockMvc.perform(get("/api/files/{fileName}", fileName).header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isNotModified())
+            .andReturn();
+        assertEquals(0, byETag.getResponse().getContentAsByteArray().length);
+        mockMvc.perform(get("/api/files/{fileName}", fileName).header(HttpHeaders.IF_MODIFIED_SINCE, lastModified))
+            .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void headDescribesTheFileWithoutItsContent() throws Exception {
+        String fileName = store(randomBytes(SMALL_FILE_BYTES), ".pdf");
+
+        MvcResult result = mockMvc.perform(head("/api/files/{fileName}", fileName))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.CONTENT_LENGTH, Integer.toString(SMALL_FILE_BYTES)))
+            .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "application/pdf"))
+            .andExpect(header().string(HttpHeaders.ETAG, "\"" + fileName + "\""))
+            .andReturn();
+
+        assertEquals(0, result.getResponse().getContentAsByteArray().length);
+    }
+
+    @Test
+    void largeFileIsHandedToTheConnectorWithTheRequestedRange() throws Exception {
+        String fileName = store(randomBytes(LARGE_FILE_BYTES), ".mp4");
+
+        MvcResult result = mockMvc.perform(get("/api/files/{fileName}", fileName)
+                .requestAttr(SENDFILE_SUPPORT_ATTR, Boolean.TRUE)
+                .header(HttpHeaders.RANGE, "bytes=1000-"))
+            .andExpect(status().isPartialContent())
+            .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 1000-" + (LARGE_FILE_BYTES - 1) + "/" + LARGE_FILE_BYTES))
+            .andExpect(header().string(HttpHeaders.CONTENT_LENGTH, Integer.toString(LARGE_FILE_BYTES - 1000)))
+            .andReturn();
+
+        // Tomcat writes the bytes between these offsets once the handler returns
+        assertEquals(1000L, result.getRequest().getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals((long) LARGE_FILE_BYTES, result.getRequest().getAttribute("org.apache.tomcat.sendfile.end"));
+        assertEquals(blobStore.getLocalPath(fileName).toAbsolutePath().toString(),
+            result.getRequest().getAttribute("org.apache.tomcat.sendfile.filename"));
+    }
+
+    @Test
+    void largeFileAnswersUnsatisfiableRangesAndConditionalRequestsItself() throws Exception {
+        String fileName = store(randomBytes(LARGE_FILE_BYTES), ".mp4");
+
+        MvcResult refused = mockMvc.perform(get("/api/files/{fileName}", fileName)
+                .requestAttr(SENDFILE_SUPPORT_ATTR, Boolean.TRUE)
+                .header(HttpHeaders.RANGE, "bytes=" + LARGE_FILE_BYTES + "-"))
+            .andExpect(status().isRequestedRangeNotSatisfiable())
+            .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */" + LARGE_FILE_BYTES))
+            .andReturn();
+        assertNull(refused.getRequest().getAttribute("org.apache.tomcat.sendfile.filename"));
+
+        MvcResult unchanged = mockMvc.perform(get("/api/files/{fileName}", fileName)
+                .requestAttr(SENDFILE_SUPPORT_ATTR, Boolean.TRUE)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"" + fileName + "\""))
+            .andExpect(status().isNotModified())
+            .andReturn();
+        assertNull(unchanged.getRequest().getAttribute("org.apache.tomcat.sendfile.filename"));
+    }
+
+    @Test
+    void missingFileIsNotFound() throws Exception {
+        mockMvc.perform(get("/api/files/{fileName}", UUID.randomUUID() + ".pdf"))
+            .andExpect(status().isNotFound());
+    }
+
+    private String store(byte[] content, String extension) throws IOException {
+        String fileName = UUID.randomUUID() + extension;
+        Path source = blobStore.createTempFile();
+        Files.write(source, content);
+        blobStore.put(fileName, source);
+        return fileName;
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+}
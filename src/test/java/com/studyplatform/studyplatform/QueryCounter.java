@@ -0,0 +1,52 @@
+package com.studyplatform.studyplatform;
+
+import java.util.function.Supplier;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+/**
+ * Counts the JDBC statements Hibernate prepares while a piece of code runs, from the session factory's
+ * statistics. Statements issued through JdbcTemplate are not counted.
+ */
+public class QueryCounter {
+
+    private final Statistics statistics;
+
+    public QueryCounter(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        this.statistics.setStatisticsEnabled(true);
+    }
+
+    public long count(Runnable action) {
+        statistics.clear();
+        action.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    public <T> Counted<T> count(Supplier<T> action) {
+        statistics.clear();
+        T result = action.get();
+        return new Counted<>(result, statistics.getPrepareStatementCount());
+    }
+
+    public static class Counted<T> {
+        private final T result;
+        private final long statements;
+
+        Counted(T result, long statements) {
+            this.result = result;
+            this.statements = statements;
+        }
+
+        public T getResult() {
+            return result;
+        }
+
+        public long getStatements() {
+            return statements;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.studyplatform.studyplatform.Service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.studyplatform.studyplatform.TestData;
+import com.studyplatform.studyplatform.Model.User;
+import com.studyplatform.studyplatform.Repository.UserRepository;
+
+@SpringBootTest
+class ChatMessageBatchWriterTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void everyAcceptedMessageIsStoredWhenShutdownRacesSenders() throws Exception {
+        User sender = TestData.newUser(userRepository, "Sender");
+        Long roomId = createRoom(sender);
+        ChatMessageBatchWriter writer = newWriter(50);
+
+        ConcurrentLinkedQueue<Long> accepted = new ConcurrentLinkedQueue<>();
+        CountDownLatch started = new CountDownLatch(4);
+        List<Thread> senders = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                started.countDown();
+                while (true) {
+                    long id = writer.nextId();
+                    try {
+                        writer.enqueue(id, roomId, sender.getId(), "message " + id, LocalDateTime.now());
+                        accepted.add(id);
+                    } catch (RuntimeException e) {
+                        return;
+                    }
+                }
+            });
+            thread.start();
+            senders.add(thread);
+        }
+        started.await();
+        Thread.sleep(200);
+
+        writer.shutdown();
+        for (Thread thread : senders) {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+
+        assertTrue(accepted.size() > 0);
+        assertEquals(accepted.size(), countStored(roomId));
+        assertEquals(0, writer.getQueueSize());
+    }
+
+    @Test
+    void failingBatchIsParkedWhileLaterMessagesAreStored() throws Exception {
+        User sender = TestData.newUser(userRepository, "Sender");
+        Long roomId = createRoom(sender);
+        ChatMessageBatchWriter writer = newWriter(60_000);
+
+        // No such room: the insert violates the foreign key on every attempt
+        writer.enqueue(writer.nextId(), Long.MAX_VALUE, sender.getId(), "poison", LocalDateTime.now());
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (writer.getParkedCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(1, writer.getParkedCount());
+
+        for (int i = 0; i < 10; i++) {
+            writer.enqueue(writer.nextId(), roomId, sender.getId(), "message " + i, LocalDateTime.now());
+        }
+        writer.shutdown();
+
+        assertEquals(10, countStored(roomId));
+        assertEquals(0, writer.getParkedCount());
+    }
+
+    @Test
+    void onlyTheRefusedRowsOfABatchAreParked() throws Exception {
+        User sender = TestData.newUser(userRepository, "Sender");
+        Long roomId = createRoom(sender);
+        ChatMessageBatchWriter writer = newWriter(60_000);
+
+        // Queued while the writer retries the first poison message, so the rest share batches with the second
+        writer.enqueue(writer.nextId(), Long.MAX_VALUE, sender.getId(), "poison", LocalDateTime.now());
+        for (int i = 0; i < 10; i++) {
+            writer.enqueue(writer.nextId(), roomId, sender.getId(), "message " + i, LocalDateTime.now());
+            if (i == 4) {
+                writer.enqueue(writer.nextId(), Long.MAX_VALUE, sender.getId(), "poison", LocalDateTime.now());
+            }
+        }
+
+        // Stored long before the parked retry, which is a minute away
+        long deadline = System.currentTimeMillis() + 20_000;
+        while ((countStored(roomId) < 10 || writer.getParkedCount() < 2) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(10, countStored(roomId));
+        assertEquals(2, writer.getParkedCount());
+
+        writer.shutdown();
+        assertEquals(0, writer.getParkedCount());
+    }
+
+    private ChatMessageBatchWriter newWriter(long parkedRetryIntervalMs) {
+        return new ChatMessageBatchWriter(jdbcTemplate, transactionManager, "batched", 20, 100, 10, 1000, parkedRetryIntervalMs);
+    }
+
+    private Long createRoom(User creator) {
+        Set<User> participants = new HashSet<>();
+        return chatService.createGroupChat("batched", null, creator, participants).getId();
+    }
+
+    private int countStored(Long roomId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM chat_messages WHERE chat_room_id = ?", Integer.class, roomId);
+    }
+}
@@ -0,0 +1,243 @@
+package com.studyplatform.studyplatform.Service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import com.studyplatform.studyplatform.QueryCounter;
+import com.studyplatform.studyplatform.TestData;
+import com.studyplatform.studyplatform.Controller.ChatWebSocketController;
+import com.studyplatform.studyplatform.Model.User;
+import com.studyplatform.studyplatform.Repository.UserRepository;
+import com.studyplatform.studyplatform.dto.ChatMessageDTO;
+import com.studyplatform.studyplatform.dto.ChatMessagePageDTO;
+import com.studyplatform.studyplatform.dto.ChatRoomDTO;
+import com.studyplatform.studyplatform.dto.SendMessageRequest;
+
+@SpringBootTest
+class ChatServiceTest {
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ChatMembershipCache chatMembershipCache;
+
+    @Autowired
+    private ChatWebSocketController chatWebSocketController;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void inboxQueryCountDoesNotGrowWithRooms() {
+        QueryCounter queryCounter = new QueryCounter(entityManagerFactory);
+        User owner = TestData.newUser(userRepository, "Owner");
+        User reader = TestData.newUser(userRepository, "Reader");
+
+        createRoomsWithMessages(owner, reader, 2);
+        long fewRooms = queryCounter.count(() -> chatService.getUserChatRooms(reader)).getStatements();
+
+        createRoomsWithMessages(owner, reader, 20);
+        QueryCounter.Counted<List<ChatRoomDTO>> manyRooms = queryCounter.count(() -> chatService.getUserChatRooms(reader));
+
+        assertEquals(22, manyRooms.getResult().size());
+        assertEquals(fewRooms, manyRooms.getStatements());
+    }
+
+    @Test
+    void inboxCarriesUnreadCountsAndLatestMessage() {
+        User owner = TestData.newUser(userRepository, "Owner");
+        User reader = TestData.newUser(userRepository, "Reader");
+        Long busyRoom = createRoom(owner, reader, "busy");
+        Long quietRoom = createRoom(owner, reader, "quiet");
+        for (int i = 0; i < 3; i++) {
+            chatService.sendMessage(busyRoom, owner, "message " + i);
+        }
+        chatService.sendMessage(busyRoom, reader, "reply");
+
+        Map<Long, ChatRoomDTO> inbox = chatService.getUserChatRooms(reader).stream()
+            .collect(Collectors.toMap(ChatRoomDTO::getId, Function.identity()));
+
+        assertEquals(3L, inbox.get(busyRoom).getUnreadCount());
+        assertEquals("reply", inbox.get(busyRoom).getLatestMessage().getContent());
+        assertEquals(Set.of(owner.getId(), reader.getId()), inbox.get(busyRoom).getParticipants());
+        assertEquals(0L, inbox.get(quietRoom).getUnreadCount());
+        assertNull(inbox.get(quietRoom).getLatestMessage());
+    }
+
+    @Test
+    void historyPagesWalkBackwardsAndOpeningMarksRoomRead() {
+        User owner = TestData.newUser(userRepository, "Owner");
+        User reader = TestData.newUser(userRepository, "Reader");
+        Long roomId = createRoom(owner, reader, "history");
+        for (int i = 1; i <= 7; i++) {
+            chatService.sendMessage(roomId, owner, "message " + i);
+        }
+
+        ChatMessagePageDTO newest = chatService.getChatMessages(roomId, reader, null, null, 3);
+        assertEquals(List.of("message 5", "message 6", "message 7"), contents(newest));
+        assertTrue(newest.isHasMore());
+        assertEquals(0L, chatService.getUnreadCount(roomId, reader));
+
+        ChatMessagePageDTO middle = chatService.getChatMessages(
+            roomId, reader, newest.getNextBeforeSentAt(), newest.getNextBeforeId(), 3);
+        assertEquals(List.of("message 2", "message 3", "message 4"), contents(middle));
+        assertTrue(middle.isHasMore());
+
+        ChatMessagePageDTO oldest = chatService.getChatMessages(
+            roomId, reader, middle.getNextBeforeSentAt(), middle.getNextBeforeId(), 3);
+        assertEquals(List.of("message 1"), contents(oldest));
+        assertFalse(oldest.isHasMore());
+        assertNull(oldest.getNextBeforeId());
+    }
+
+    @Test
+    void openingRoomQueryCountDoesNotGrowWithHistory() {
+        QueryCounter queryCounter = new QueryCounter(entityManagerFactory);
+        User owner = TestData.newUser(userRepository, "Owner");
+        User reader = TestData.newUser(userRepository, "Reader");
+        Long roomId = createRoom(owner, reader, "long history");
+
+        for (int i = 0; i < 10; i++) {
+            chatService.sendMessage(roomId, owner, "message " + i);
+        }
+        long shortHistory = queryCounter.count(() -> chatService.getChatMessages(roomId, reader, null, null, 5)).getStatements();
+
+        for (int i = 0; i < 200; i++) {
+            chatService.sendMessage(roomId, owner, "message " + i);
+        }
+        long longHistory = queryCounter.count(() -> chatService.getChatMessages(roomId, reader, null, null, 5)).getStatements();
+
+        assertEquals(shortHistory, longHistory);
+        assertEquals(0L, chatService.getUnreadCount(roomId, reader));
+    }
+
+    @Test
+    void unreadCountIsOnlyGivenToParticipants() {
+        User owner = TestData.newUser(userRepository, "Owner");
+        User reader = TestData.newUser(userRepository, "Reader");
+        User outsider = TestData.newUser(userRepository, "Outsider");
+        Long roomId = createRoom(owner, reader, "private");
+        chatService.sendMessage(roomId, owner, "hello");
+
+        assertEquals(1L, chatService.getUnreadCount(roomId, reader));
+        RuntimeException error = assertThrows(RuntimeException.class, () -> chatService.getUnreadCount(roomId, outsider));
+        assertEquals("User is not a participant in this chat room", error.getMessage());
+        assertThrows(RuntimeException.class, () -> chatService.getUnreadCount(Long.MAX_VALUE, reader));
+    }
+
+    @Test
+    void nonMembersCannotSendOrReadHistory() {
+        User owner = TestData.newUser(userRepository, "Owner");
+        User reader = TestData.newUser(userRepository, "Reader");
+        User outsider = TestData.newUser(userRepository, "Outsider");
+        Long roomId = createRoom(owner, reader, "members only");
+
+        RuntimeException sending = assertThrows(RuntimeException.class, () -> chatService.sendMessage(roomId, outsider, "hello"));
+        assertEquals("User is not a participant in this chat room", sending.getMessage());
+        RuntimeException reading = assertThrows(RuntimeException.class,
+            () -> chatService.getChatMessages(roomId, outsider, null, null, 10));
+        assertEquals("User is not a participant in this chat room", reading.getMessage());
+        RuntimeException missing = assertThrows(RuntimeException.class,
+            () -> chatService.getChatMessages(Long.MAX_VALUE, reader, null, null, 10));
+        assertEquals("Chat room not found with id: " + Long.MAX_VALUE, missing.getMessage());
+    }
+
+    @Test
+    void membershipIsLoadedFromTheDatabaseOnAMissAndKeptUntilEvicted() {
+        User owner = TestData.newUser(userRepository, "Owner");
+        User reader = TestData.newUser(userRepository, "Reader");
+        User latecomer = TestData.newUser(userRepository, "Latecomer");
+        Long roomId = createRoom(owner, reader, "cached");
+
+        chatMembershipCache.evict(roomId);
+        assertTrue(chatMembershipCache.isParticipant(roomId, reader.getId()));
+        assertFalse(chatMembershipCache.isParticipant(roomId, latecomer.getId()));
+
+        // Added behind the service's back, so only seen once the room is evicted
+        jdbcTemplate.update("INSERT INTO chat_room_participants (chat_room_id, user_id) VALUES (?, ?)", roomId, latecomer.getId());
+        assertFalse(chatMembershipCache.isParticipant(roomId, latecomer.getId()));
+        chatMembershipCache.evict(roomId);
+        assertTrue(chatMembershipCache.isParticipant(roomId, latecomer.getId()));
+        chatService.sendMessage(roomId, latecomer, "hello");
+        assertEquals(List.of("hello"), contents(chatService.getChatMessages(roomId, latecomer, null, null, 10)));
+    }
+
+    @Test
+    void webSocketSenderIsResolvedOncePerSessionAndAgainForAnotherUser() {
+        User owner = TestData.newUser(userRepository, "Owner");
+        User reader = TestData.newUser(userRepository, "Reader");
+        Long roomId = createRoom(owner, reader, "socket");
+        SimpMessageHeaderAccessor session = SimpMessageHeaderAccessor.create();
+        session.setSessionAttributes(new HashMap<>());
+
+        chatWebSocketController.sendMessage(roomId, messageRequest("from owner"), authentication(owner), session);
+        Object cachedSender = session.getSessionAttributes().values().iterator().next();
+        chatWebSocketController.sendMessage(roomId, messageRequest("owner again"), authentication(owner), session);
+        assertSame(cachedSender, session.getSessionAttributes().values().iterator().next());
+
+        // A different principal on the same session must not be sent as the cached one
+        chatWebSocketController.sendMessage(roomId, messageRequest("from reader"), authentication(reader), session);
+
+        Map<String, Long> senders = chatService.getChatMessages(roomId, owner, null, null, 10).getMessages().stream()
+            .collect(Collectors.toMap(ChatMessageDTO::getContent, ChatMessageDTO::getSenderId));
+        assertEquals(owner.getId(), senders.get("from owner"));
+        assertEquals(owner.getId(), senders.get("owner again"));
+        assertEquals(reader.getId(), senders.get("from reader"));
+    }
+
+    private static Authentication authentication(User user) {
+        return new UsernamePasswordAuthenticationToken(user.getEmail(), null, List.of());
+    }
+
+    private static SendMessageRequest messageRequest(String content) {
+        SendMessageRequest request = new SendMessageRequest();
+        request.setContent(content);
+        return request;
+    }
+
+    private static List<String> contents(ChatMessagePageDTO page) {
+        return page.getMessages().stream().map(ChatMessageDTO::getContent).collect(Collectors.toList());
+    }
+
+    private void createRoomsWithMessages(User owner, User reader, int rooms) {
+        for (int i = 0; i < rooms; i++) {
+            Long roomId = createRoom(owner, reader, "room " + i);
+            chatService.sendMessage(roomId, owner, "hello " + i);
+        }
+    }
+
+    private Long createRoom(User owner, User reader, String name) {
+        Set<User> participants = new HashSet<>();
+        participants.add(reader);
+        return chatService.createGroupChat(name, null, owner, participants).getId();
+    }
+}
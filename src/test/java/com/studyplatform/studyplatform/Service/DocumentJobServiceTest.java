@@ -0,0 +1,132 @@
+package com.studyplatform.studyplatform.Service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.studyplatform.studyplatform.TestData;
+import com.studyplatform.studyplatform.Model.DocumentJob;
+import com.studyplatform.studyplatform.Model.User;
+import com.studyplatform.studyplatform.Repository.DocumentJobRepository;
+import com.studyplatform.studyplatform.Repository.UserRepository;
+
+// The poller is off, so the jobs are only claimed by the test
+@SpringBootTest(properties = "documents.jobs.enabled=false")
+class DocumentJobServiceTest {
+
+    @Autowired
+    private DocumentJobService documentJobService;
+
+    @Autowired
+    private DocumentJobRepository jobRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void concurrentRequestsQueueOneJob() throws Exception {
+        User owner = TestData.newUser(userRepository, "Owner");
+
+        for (int round = 0; round < 10; round++) {
+            Long documentId = insertDocument(owner);
+            List<DocumentJob> requested = requestConcurrently(documentId, 8);
+
+            assertEquals(1, documentJobService.getJobs(documentId).size());
+            for (DocumentJob job : requested) {
+                assertEquals(requested.get(0).getId(), job.getId());
+            }
+        }
+    }
+
+    @Test
+    void aRequeuedJobOnlyRecordsTheResultOfItsCurrentAttempt() {
+        User owner = TestData.newUser(userRepository, "Owner");
+        Long documentId = insertDocument(owner);
+        Long jobId = documentJobService.requestJob(documentId, DocumentJob.Type.SUMMARIZE).getId();
+        LocalDateTime claimedAt = LocalDateTime.now().minusMinutes(30);
+
+        assertEquals(1, jobRepository.claim(jobId, 0, claimedAt));
+        // A second claim of the same attempt loses
+        assertEquals(0, jobRepository.claim(jobId, 0, claimedAt));
+
+        // A renewed claim is not stale
+        assertEquals(1, jobRepository.renewClaim(jobId, 1, claimedAt.plusMinutes(20)));
+        assertEquals(0, jobRepository.requeueStale(claimedAt.plusMinutes(10), LocalDateTime.now()));
+
+        // The first worker stops renewing and the job is taken over
+        assertEquals(1, jobRepository.requeueStale(claimedAt.plusMinutes(21), LocalDateTime.now()));
+        assertEquals(1, jobRepository.claim(jobId, 1, LocalDateTime.now()));
+
+        // The first worker finishes late, and nothing it reports is recorded
+        assertEquals(0, jobRepository.renewClaim(jobId, 1, LocalDateTime.now()));
+        assertEquals(0, jobRepository.markCompleted(jobId, 1, LocalDateTime.now()));
+        assertEquals(0, jobRepository.markFailed(jobId, 1, "late", LocalDateTime.now()));
+        assertEquals(0, jobRepository.markForRetry(jobId, 1, "late", LocalDateTime.now(), LocalDateTime.now()));
+        assertEquals("RUNNING", jobStatus(jobId));
+
+        assertEquals(1, jobRepository.markCompleted(jobId, 2, LocalDateTime.now()));
+        assertEquals("COMPLETED", jobStatus(jobId));
+        assertNull(jdbcTemplate.queryForObject("SELECT active FROM document_jobs WHERE id = ?", Boolean.class, jobId));
+
+        // Finished, so another one may be queued
+        DocumentJob next = documentJobService.requestJob(documentId, DocumentJob.Type.SUMMARIZE);
+        assertNotEquals(jobId, next.getId());
+        assertEquals(DocumentJob.Status.PENDING, next.getStatus());
+    }
+
+    private List<DocumentJob> requestConcurrently(Long documentId, int threads) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<DocumentJob>> futures = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int t = 0; t < threads; t++) {
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return documentJobService.requestJob(documentId, DocumentJob.Type.SUMMARIZE);
+                }, executor));
+            }
+            start.countDown();
+            List<DocumentJob> jobs = new ArrayList<>();
+            for (CompletableFuture<DocumentJob> future : futures) {
+                jobs.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return jobs;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private String jobStatus(Long jobId) {
+        return jdbcTemplate.queryForObject("SELECT status FROM document_jobs WHERE id = ?", String.class, jobId);
+    }
+
+    private Long insertDocument(User owner) {
+        jdbcTemplate.update(
+            "INSERT INTO documents (name, file_url, file_type, file_size, description, uploaded_at, is_public, user_id) "
+                + "VALUES ('notes.pdf', '/api/files/missing.pdf', 'application/pdf', 1000, 'notes', ?, TRUE, ?)",
+            Timestamp.valueOf(LocalDateTime.now()), owner.getId());
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM documents WHERE user_id = ?", Long.class, owner.getId());
+    }
+}
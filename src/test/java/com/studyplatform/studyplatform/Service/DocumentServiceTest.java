@@ -0,0 +1,188 @@
+package com.studyplatform.studyplatform.Service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.studyplatform.studyplatform.QueryCounter;
+import com.studyplatform.studyplatform.TestData;
+import com.studyplatform.studyplatform.Model.Document;
+import com.studyplatform.studyplatform.Model.User;
+import com.studyplatform.studyplatform.Repository.UserRepository;
+import com.studyplatform.studyplatform.dto.DocumentListItemDTO;
+import com.studyplatform.studyplatform.dto.DocumentPageDTO;
+
+@SpringBootTest
+class DocumentServiceTest {
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private DocumentSearchIndex documentSearchIndex;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void userDocumentPagesWalkNewestFirstAcrossEqualUploadTimes() {
+        User owner = TestData.newUser(userRepository, "Owner");
+        LocalDateTime sameTime = LocalDateTime.now().minusDays(1).withNano(0);
+        List<Long> newestFirst = new ArrayList<>();
+        // The first three share an upload time, so the id has to break the tie between pages
+        for (int i = 0; i < 7; i++) {
+            newestFirst.add(0, insertDocument(owner, "doc-" + i, i < 3 ? sameTime : sameTime.plusMinutes(i), i % 2 == 0));
+        }
+
+        List<Long> walked = new ArrayList<>();
+        DocumentPageDTO page = documentService.getDocumentsByUser(owner.getId(), null, null, 2);
+        while (true) {
+            walked.addAll(page.getDocuments().stream().map(DocumentListItemDTO::getId).collect(Collectors.toList()));
+            if (!page.isHasMore()) {
+                break;
+            }
+            page = documentService.getDocumentsByUser(owner.getId(), page.getNextBeforeUploadedAt(), page.getNextBeforeId(), 2);
+        }
+
+        assertEquals(newestFirst, walked);
+        assertNull(page.getNextBeforeId());
+    }
+
+    @Test
+    void publicPagesOnlyListPublicDocumentsWithOwnerNames() {
+        User owner = TestData.newUser(userRepository, "Owner");
+        LocalDateTime future = LocalDateTime.now().plusYears(1);
+        Long publicId = insertDocument(owner, "public", future, true);
+        Long privateId = insertDocument(owner, "private", future.plusSeconds(1), false);
+
+        DocumentPageDTO page = documentService.getPublicDocuments(null, null, 10);
+        List<Long> ids = page.getDocuments().stream().map(DocumentListItemDTO::getId).collect(Collectors.toList());
+
+        assertEquals(publicId, ids.get(0));
+        assertFalse(ids.contains(privateId));
+        assertEquals("Owner Tester", page.getDocuments().get(0).getOwnerName());
+        assertTrue(page.getDocuments().size() <= 10);
+    }
+
+    @Test
+    void listingsRunOneStatementWhateverThePageSize() {
+        QueryCounter queryCounter = new QueryCounter(entityManagerFactory);
+        User owner = TestData.newUser(userRepository, "Owner");
+        for (int i = 0; i < 30; i++) {
+            insertDocument(owner, "doc-" + i, LocalDateTime.now().minusMinutes(i), true);
+        }
+
+        assertEquals(1, queryCounter.count(() -> documentService.getPublicDocuments(null, null, 5)).getStatements());
+        assertEquals(1, queryCounter.count(() -> documentService.getPublicDocuments(null, null, 25)).getStatements());
+        assertEquals(1, queryCounter.count(() -> documentService.getDocumentsByUser(owner.getId(), null, null, 5)).getStatements());
+        assertEquals(1, queryCounter.count(() -> documentService.getDocumentsByUser(owner.getId(), null, null, 25)).getStatements());
+    }
+
+    @Test
+    void searchOnlyFindsPublicDocumentsAndTheUsersOwn() {
+        documentSearchIndex.rebuild();
+        User owner = TestData.newUser(userRepository, "Owner");
+        User reader = TestData.newUser(userRepository, "Reader");
+        String word = uniqueWord();
+        Document shared = saveDocument(owner, "Shared " + word, "notes", true);
+        Document own = saveDocument(owner, "Own " + word, "notes", false);
+
+        assertEquals(List.of(own.getId(), shared.getId()), searchIds(word, owner));
+        assertEquals(List.of(shared.getId()), searchIds(word, reader));
+
+        // Visibility changes are applied to the index with the saved document
+        own.setPublic(true);
+        documentService.saveDocument(own);
+        assertEquals(List.of(own.getId(), shared.getId()), searchIds(word, reader));
+        shared.setPublic(false);
+        documentService.saveDocument(shared);
+        assertEquals(List.of(own.getId()), searchIds(word, reader));
+    }
+
+    @Test
+    void searchRanksNameMatchesFirstAndNewerOnTies() {
+        documentSearchIndex.rebuild();
+        User owner = TestData.newUser(userRepository, "Owner");
+        String word = uniqueWord();
+        Document inDescription = saveDocument(owner, "Lecture", "about " + word, true);
+        Document inName = saveDocument(owner, "The " + word, "notes", true);
+        Document alsoInDescription = saveDocument(owner, "Lecture", "about " + word, true);
+
+        assertEquals(List.of(inName.getId(), alsoInDescription.getId(), inDescription.getId()), searchIds(word, owner));
+    }
+
+    @Test
+    void searchFollowsUploadsAndDeletesAndARebuildReadsTheDatabase() {
+        documentSearchIndex.rebuild();
+        User owner = TestData.newUser(userRepository, "Owner");
+        String word = uniqueWord();
+        Document uploaded = saveDocument(owner, "Uploaded " + word, "notes", true);
+        assertEquals(List.of(uploaded.getId()), searchIds(word, owner));
+
+        documentService.deleteDocument(uploaded.getId());
+        assertEquals(List.of(), searchIds(word, owner));
+
+        // Written without the service, so only found once the index is rebuilt
+        Long inserted = insertDocument(owner, "Inserted " + word, LocalDateTime.now(), true);
+        assertEquals(List.of(), searchIds(word, owner));
+        documentSearchIndex.rebuild();
+        assertTrue(documentSearchIndex.isReady());
+        assertEquals(List.of(inserted), searchIds(word, owner));
+    }
+
+    private Document saveDocument(User owner, String name, String description, boolean isPublic) {
+        Document document = new Document();
+        document.setName(name);
+        document.setFileUrl("/api/files/missing.pdf");
+        document.setFileType("application/pdf");
+        document.setFileSize(1000L);
+        document.setDescription(description);
+        document.setUploadedAt(LocalDateTime.now());
+        document.setPublic(isPublic);
+        document.setUser(owner);
+        return documentService.saveDocument(document);
+    }
+
+    private List<Long> searchIds(String query, User user) {
+        return documentService.searchDocuments(query, user.getId(), 0, 10).getContent().stream()
+            .map(DocumentListItemDTO::getId)
+            .collect(Collectors.toList());
+    }
+
+    // The search index only keeps words of letters and digits, so the keyword is spelled out from a counter
+    private static String uniqueWord() {
+        StringBuilder word = new StringBuilder("kw");
+        for (long n = System.nanoTime(); n > 0; n /= 26) {
+            word.append((char) ('a' + n % 26));
+        }
+        return word.toString();
+    }
+
+    private Long insertDocument(User owner, String name, LocalDateTime uploadedAt, boolean isPublic) {
+        jdbcTemplate.update(
+            "INSERT INTO documents (name, file_url, file_type, file_size, description, uploaded_at, is_public, user_id) "
+                + "VALUES (?, ?, 'application/pdf', 1000, 'notes', ?, ?, ?)",
+            name, "uploads/" + name, Timestamp.valueOf(uploadedAt), isPublic, owner.getId());
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM documents WHERE user_id = ?", Long.class, owner.getId());
+    }
+}
@@ -0,0 +1,118 @@
+package com.studyplatform.studyplatform.Service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@SpringBootTest
+class FileStorageServiceTest {
+
+    private static final int THREADS = 4;
+    private static final int ROUNDS = 50;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void identicalContentIsStoredOnceAndDeletedWithItsLastReference() throws IOException {
+        String content = "identical upload " + UUID.randomUUID();
+        String first = fileStorageService.storeExistingFile(storeLegacyFile(content, ".PDF"));
+        String second = fileStorageService.storeExistingFile(storeLegacyFile(content, ".pdf"));
+
+        assertEquals(first, second);
+        assertTrue(first.matches("[0-9a-f]{64}\\.pdf"), first);
+        assertEquals(2, referenceCount(first));
+
+        fileStorageService.deleteFile("/api/files/" + first);
+        assertEquals(1, referenceCount(first));
+        assertTrue(blobStore.exists(first));
+
+        fileStorageService.deleteFile("/api/files/" + first);
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM stored_files WHERE file_name = ?", Integer.class, first));
+        assertFalse(blobStore.exists(first));
+    }
+
+    @Test
+    void concurrentReferencesNeverLoseTheBlob() throws Exception {
+        String legacyName = storeLegacyFile("shared upload " + UUID.randomUUID(), ".pdf");
+        // Held for the whole run, so the count can be checked at the end
+        String storedName = fileStorageService.storeExistingFile(legacyName);
+
+        storeAndDeleteConcurrently(legacyName);
+
+        assertEquals(1, referenceCount(storedName));
+        assertTrue(blobStore.exists(storedName));
+    }
+
+    @Test
+    void blobIsStoredAgainWhenTheLastReferenceGoesAndComesBack() throws Exception {
+        String legacyName = storeLegacyFile("recycled upload " + UUID.randomUUID(), ".pdf");
+
+        // No reference outlives a round, so the count keeps dropping to zero
+        storeAndDeleteConcurrently(legacyName);
+
+        String storedName = fileStorageService.storeExistingFile(legacyName);
+        assertEquals(1, referenceCount(storedName));
+        assertTrue(blobStore.exists(storedName));
+    }
+
+    /**
+     * Adds and deletes references to the file from several threads, each checking that the blob exists
+     * while it holds a reference. Adding races with other threads deleting what may be the last one.
+     */
+    private void storeAndDeleteConcurrently(String legacyName) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                workers.add(executor.submit(() -> {
+                    for (int i = 0; i < ROUNDS; i++) {
+                        String name = fileStorageService.storeExistingFile(legacyName);
+                        assertTrue(blobStore.exists(name), "Blob gone while referenced");
+                        fileStorageService.deleteFile("/api/files/" + name);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private String storeLegacyFile(String content, String extension) throws IOException {
+        String fileName = UUID.randomUUID() + extension;
+        Path source = blobStore.createTempFile();
+        Files.write(source, content.getBytes(StandardCharsets.UTF_8));
+        blobStore.put(fileName, source);
+        return fileName;
+    }
+
+    private int referenceCount(String fileName) {
+        return jdbcTemplate.queryForObject("SELECT reference_count FROM stored_files WHERE file_name = ?", Integer.class, fileName);
+    }
+}
@@ -0,0 +1,294 @@
+package com.studyplatform.studyplatform.Service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.studyplatform.studyplatform.QueryCounter;
+import com.studyplatform.studyplatform.TestData;
+import com.studyplatform.studyplatform.Model.User;
+import com.studyplatform.studyplatform.Repository.ForumReplyRepository;
+import com.studyplatform.studyplatform.Repository.ForumTopicRepository;
+import com.studyplatform.studyplatform.Repository.UserRepository;
+import com.studyplatform.studyplatform.dto.ForumReplyDTO;
+import com.studyplatform.studyplatform.dto.ForumTopicDTO;
+import com.studyplatform.studyplatform.dto.PagedResponseDTO;
+
+@SpringBootTest
+class ForumServiceTest {
+
+    @Autowired
+    private ForumService forumService;
+
+    @Autowired
+    private ForumViewCounter viewCounter;
+
+    @Autowired
+    private ForumSearchIndex searchIndex;
+
+    @Autowired
+    private ForumTopicRepository topicRepository;
+
+    @Autowired
+    private ForumReplyRepository replyRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void editingATopicLoadedBeforeCounterChangesKeepsTheNewCounts() {
+        User author = TestData.newUser(userRepository, "Author");
+        User voter = TestData.newUser(userRepository, "Voter");
+        Long topicId = forumService.createTopic("Original title", "Original content", List.of("counters"), author).getId();
+
+        // The edit loads the topic first; votes, a reply and views are committed before it saves
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            topicRepository.findById(topicId).orElseThrow();
+            inOtherThread(() -> {
+                forumService.voteTopic(topicId, voter, true);
+                forumService.createReply(topicId, "A reply", voter);
+                viewCounter.recordView(topicId);
+                viewCounter.recordView(topicId);
+                viewCounter.flush();
+                return null;
+            });
+            forumService.updateTopic(topicId, "Edited title", "Edited content", List.of("counters"), author);
+        });
+
+        Map<String, Object> row = jdbcTemplate.queryForMap(
+            "SELECT title, upvotes, downvotes, score, reply_count, view_count FROM forum_topics WHERE id = ?", topicId);
+        assertEquals("Edited title", row.get("title"));
+        assertEquals(1, ((Number) row.get("upvotes")).intValue());
+        assertEquals(0, ((Number) row.get("downvotes")).intValue());
+        assertEquals(1, ((Number) row.get("score")).intValue());
+        assertEquals(1, ((Number) row.get("reply_count")).intValue());
+        assertEquals(2, ((Number) row.get("view_count")).intValue());
+    }
+
+    @Test
+    void editingOrAcceptingAReplyLoadedBeforeAVoteKeepsTheVote() {
+        User author = TestData.newUser(userRepository, "Author");
+        User replier = TestData.newUser(userRepository, "Replier");
+        User voter = TestData.newUser(userRepository, "Voter");
+        Long topicId = forumService.createTopic("Question", "Content", List.of("counters"), author).getId();
+        Long replyId = forumService.createReply(topicId, "Answer", replier).getId();
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            replyRepository.findById(replyId).orElseThrow();
+            inOtherThread(() -> forumService.voteReply(replyId, voter, false));
+            forumService.updateReply(replyId, "Edited answer", replier);
+        });
+        transactionTemplate.executeWithoutResult(status -> {
+            replyRepository.findById(replyId).orElseThrow();
+            inOtherThread(() -> forumService.voteReply(replyId, author, false));
+            forumService.markAsAcceptedAnswer(replyId, author);
+        });
+
+        Map<String, Object> row = jdbcTemplate.queryForMap(
+            "SELECT content, is_accepted_answer, upvotes, downvotes, score FROM forum_replies WHERE id = ?", replyId);
+        assertEquals("Edited answer", row.get("content"));
+        assertEquals(true, row.get("is_accepted_answer"));
+        assertEquals(0, ((Number) row.get("upvotes")).intValue());
+        assertEquals(2, ((Number) row.get("downvotes")).intValue());
+        assertEquals(-2, ((Number) row.get("score")).intValue());
+    }
+
+    @Test
+    void topicListingsRunAFixedNumberOfStatements() {
+        QueryCounter queryCounter = new QueryCounter(entityManagerFactory);
+        User author = TestData.newUser(userRepository, "Author");
+        User reader = TestData.newUser(userRepository, "Reader");
+        String tag = "tag" + System.nanoTime();
+        String keyword = uniqueWord();
+        for (int i = 0; i < 12; i++) {
+            Long topicId = forumService.createTopic("Topic " + keyword + " " + i, "Content " + i, List.of(tag, "shared"), author).getId();
+            forumService.voteTopic(topicId, reader, i % 2 == 0);
+            forumService.createReply(topicId, "Reply " + i, reader);
+        }
+
+        assertFixedStatements(queryCounter, "getAllTopics",
+            size -> forumService.getAllTopics(reader, 0, size));
+        assertFixedStatements(queryCounter, "getTopicsByUser",
+            size -> forumService.getTopicsByUser(author, reader, 0, size));
+        assertFixedStatements(queryCounter, "searchTopics",
+            size -> forumService.searchTopics(reader, keyword, 0, size));
+        assertFixedStatements(queryCounter, "getTopicsByTag",
+            size -> forumService.getTopicsByTag(reader, tag, 0, size));
+        assertFixedStatements(queryCounter, "getTopRatedTopics",
+            size -> forumService.getTopRatedTopics(reader, 0, size));
+        assertFixedStatements(queryCounter, "getMostViewedTopics",
+            size -> forumService.getMostViewedTopics(reader, 0, size));
+    }
+
+    @Test
+    void topicRepliesRunAFixedNumberOfStatements() {
+        QueryCounter queryCounter = new QueryCounter(entityManagerFactory);
+        User author = TestData.newUser(userRepository, "Author");
+        User reader = TestData.newUser(userRepository, "Reader");
+        Long topicId = forumService.createTopic("Busy topic", "Content", List.of("replies"), author).getId();
+
+        addReplies(topicId, reader, 2);
+        long fewReplies = queryCounter.count(() -> forumService.getRepliesByTopic(topicId, reader)).getStatements();
+
+        addReplies(topicId, reader, 18);
+        QueryCounter.Counted<List<ForumReplyDTO>> manyReplies = queryCounter.count(() -> forumService.getRepliesByTopic(topicId, reader));
+
+        assertEquals(20, manyReplies.getResult().size());
+        assertEquals(fewReplies, manyReplies.getStatements());
+    }
+
+    @Test
+    void concurrentVotesBySameUserCountOnce() throws Exception {
+        User author = TestData.newUser(userRepository, "Author");
+        User voter = TestData.newUser(userRepository, "Voter");
+
+        for (int round = 0; round < 20; round++) {
+            Long topicId = forumService.createTopic("Votes " + round, "Content", List.of("votes"), author).getId();
+
+            // First votes race for the unique key
+            runConcurrently(8, i -> forumService.voteTopic(topicId, voter, false));
+            assertVotes(topicId, 0, 1);
+
+            // Switches from downvote to upvote, each deciding from the row it changed
+            runConcurrently(8, i -> forumService.voteTopic(topicId, voter, true));
+            assertVotes(topicId, 1, 0);
+
+            // Alternating sides ends on whichever vote was stored last
+            runConcurrently(8, i -> forumService.voteTopic(topicId, voter, i % 2 == 0));
+            int value = jdbcTemplate.queryForObject(
+                "SELECT value FROM forum_votes WHERE target_type = 'TOPIC' AND target_id = ? AND user_id = ?",
+                Integer.class, topicId, voter.getId());
+            assertVotes(topicId, value == 1 ? 1 : 0, value == 1 ? 0 : 1);
+
+            forumService.voteTopic(topicId, voter, true);
+            runConcurrently(8, i -> forumService.removeVoteTopic(topicId, voter, true));
+            assertVotes(topicId, 0, 0);
+        }
+    }
+
+    @Test
+    void searchFallsBackToTheDatabaseUntilTheIndexIsReadyAndFollowsEdits() {
+        User author = TestData.newUser(userRepository, "Author");
+        searchIndex.rebuild();
+        String word = uniqueWord();
+        String editedWord = uniqueWord();
+        Long topicId = forumService.createTopic("Notes on " + word, "Content", List.of("search"), author).getId();
+        assertEquals(List.of(topicId), searchTopicIds(author, word));
+
+        // Only the LIKE query matches inside a word
+        String inside = word.substring(3);
+        assertEquals(List.of(), searchTopicIds(author, inside));
+        ReflectionTestUtils.setField(searchIndex, "ready", false);
+        try {
+            assertEquals(List.of(topicId), searchTopicIds(author, inside));
+        } finally {
+            ReflectionTestUtils.setField(searchIndex, "ready", true);
+        }
+
+        forumService.updateTopic(topicId, "Notes on " + editedWord, "Content", List.of("search"), author);
+        assertEquals(List.of(), searchTopicIds(author, word));
+        assertEquals(List.of(topicId), searchTopicIds(author, editedWord));
+
+        forumService.deleteTopic(topicId, author);
+        assertEquals(List.of(), searchTopicIds(author, editedWord));
+    }
+
+    private List<Long> searchTopicIds(User user, String query) {
+        return forumService.searchTopics(user, query, 0, 10).getContent().stream()
+            .map(ForumTopicDTO::getId)
+            .collect(Collectors.toList());
+    }
+
+    private void assertVotes(Long topicId, int upvotes, int downvotes) {
+        Map<String, Object> row = jdbcTemplate.queryForMap(
+            "SELECT upvotes, downvotes, score FROM forum_topics WHERE id = ?", topicId);
+        assertEquals(upvotes, ((Number) row.get("upvotes")).intValue());
+        assertEquals(downvotes, ((Number) row.get("downvotes")).intValue());
+        assertEquals(upvotes - downvotes, ((Number) row.get("score")).intValue());
+    }
+
+    // Starts every action at once and fails with the first exception any of them threw
+    private static void runConcurrently(int threads, IntConsumer action) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int t = 0; t < threads; t++) {
+                int i = t;
+                futures.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    action.accept(i);
+                }, executor));
+            }
+            start.countDown();
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void addReplies(Long topicId, User voter, int count) {
+        for (int i = 0; i < count; i++) {
+            ForumReplyDTO reply = forumService.createReply(topicId, "Reply " + i, voter);
+            forumService.voteReply(reply.getId(), voter, true);
+        }
+    }
+
+    private void assertFixedStatements(QueryCounter queryCounter, String endpoint,
+            IntFunction<PagedResponseDTO<ForumTopicDTO>> listing) {
+        QueryCounter.Counted<PagedResponseDTO<ForumTopicDTO>> smallPage = queryCounter.count(() -> listing.apply(2));
+        QueryCounter.Counted<PagedResponseDTO<ForumTopicDTO>> largePage = queryCounter.count(() -> listing.apply(10));
+
+        assertEquals(2, smallPage.getResult().getContent().size(), endpoint);
+        assertEquals(10, largePage.getResult().getContent().size(), endpoint);
+        assertEquals(smallPage.getStatements(), largePage.getStatements(), endpoint);
+    }
+
+    // The search index only keeps words of letters, so the keyword is spelled out from a counter
+    private static String uniqueWord() {
+        StringBuilder word = new StringBuilder("kw");
+        for (long n = System.nanoTime(); n > 0; n /= 26) {
+            word.append((char) ('a' + n % 26));
+        }
+        return word.toString();
+    }
+
+    private static <T> T inOtherThread(Supplier<T> action) {
+        return CompletableFuture.supplyAsync(action).join();
+    }
+}
@@ -0,0 +1,96 @@
+package com.studyplatform.studyplatform.Service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.studyplatform.studyplatform.TestData;
+import com.studyplatform.studyplatform.Model.User;
+import com.studyplatform.studyplatform.Repository.UserRepository;
+
+@SpringBootTest
+class ForumViewCounterTest {
+
+    private static final int RECORDERS = 4;
+    private static final int VIEWS_PER_RECORDER = 20000;
+
+    @Autowired
+    private ForumService forumService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void viewsRecordedWhileFlushingAreNeverLost() throws Exception {
+        User author = TestData.newUser(userRepository, "Author");
+        List<Long> topicIds = new ArrayList<>();
+        for (int i = 0; i < RECORDERS; i++) {
+            topicIds.add(forumService.createTopic("Viewed " + i, "Content", List.of("views"), author).getId());
+        }
+
+        // A separate counter whose schedule never fires, so only this test flushes it
+        ForumViewCounter viewCounter = new ForumViewCounter(jdbcTemplate, transactionManager, 3600000, 500);
+        ExecutorService executor = Executors.newFixedThreadPool(RECORDERS + 1);
+        try {
+            AtomicBoolean recording = new AtomicBoolean(true);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> recorders = new ArrayList<>();
+            for (Long topicId : topicIds) {
+                recorders.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < VIEWS_PER_RECORDER; i++) {
+                        viewCounter.recordView(topicId);
+                        if (i % 100 == 0) {
+                            // Go idle now and then so flushes see zero counts and remove entries
+                            Thread.yield();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            Future<?> flusher = executor.submit(() -> {
+                start.await();
+                while (recording.get()) {
+                    viewCounter.flush();
+                }
+                return null;
+            });
+
+            start.countDown();
+            for (Future<?> recorder : recorders) {
+                recorder.get(2, TimeUnit.MINUTES);
+            }
+            recording.set(false);
+            flusher.get(2, TimeUnit.MINUTES);
+            viewCounter.flush();
+        } finally {
+            executor.shutdownNow();
+            viewCounter.shutdown();
+        }
+
+        for (Long topicId : topicIds) {
+            Integer stored = jdbcTemplate.queryForObject("SELECT view_count FROM forum_topics WHERE id = ?", Integer.class, topicId);
+            assertEquals(VIEWS_PER_RECORDER, stored);
+            assertEquals(0, viewCounter.getPendingViews(topicId));
+        }
+    }
+}
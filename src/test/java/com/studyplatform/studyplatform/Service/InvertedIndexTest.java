@@ -0,0 +1,157 @@
+package com.studyplatform.studyplatform.Service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+class InvertedIndexTest {
+
+    @Test
+    void textIsSplitIntoLowerCaseTermsWithoutAccents() {
+        assertEquals(List.of("cafe", "au", "lait", "ete", "2024", "ete"),
+            InvertedIndex.tokenize("Café au-lait, x ÉTÉ 2024 été"));
+        // Too short or too long to be a word
+        assertEquals(List.of("ok"), InvertedIndex.tokenize("a ok " + "z".repeat(65)));
+        assertTrue(InvertedIndex.tokenize("?! -").isEmpty());
+        assertTrue(InvertedIndex.tokenize(null).isEmpty());
+    }
+
+    @Test
+    void everyTermMustMatchAndTheLastAlsoAsAPrefix() {
+        InvertedIndex index = new InvertedIndex();
+        index.put(1, "Java streams", "");
+        index.put(2, "Java threads", "");
+        index.put(3, "Python streams", "");
+
+        assertEquals(List.of(1L), search(index, "java streams"));
+        assertEquals(List.of(2L, 1L), search(index, "jav"));
+        assertEquals(List.of(3L, 1L), search(index, "stream"));
+        // Typed to the end of the word, so no longer a prefix
+        assertEquals(List.of(), search(index, "stream "));
+        assertEquals(List.of(), search(index, "java rust"));
+        assertEquals(List.of(), search(index, "x"));
+    }
+
+    @Test
+    void aPrefixExpandsToAtMost64Terms() {
+        InvertedIndex index = new InvertedIndex();
+        for (int i = 0; i < 70; i++) {
+            index.put(i, String.format("pre%03d", i), "");
+        }
+
+        Page<Long> page = index.search("pre", PageRequest.of(0, 100));
+
+        // The first terms in alphabetical order
+        assertEquals(64, page.getTotalElements());
+        assertTrue(page.getContent().stream().allMatch(id -> id < 64));
+        assertEquals(List.of(69L), search(index, "pre069"));
+    }
+
+    @Test
+    void bestMatchesComeFirstAndNewerOnTies() {
+        InvertedIndex index = new InvertedIndex();
+        index.put(1, "Notes", "entropy");
+        index.put(2, "Entropy", "notes");
+        index.put(3, "Notes", "entropy entropy entropy");
+        index.put(4, "Notes", "entropy");
+        for (int i = 10; i < 20; i++) {
+            index.put(i, "Other", "unrelated");
+        }
+
+        // A title term counts three times, and ties go to the higher id
+        assertEquals(List.of(2L, 3L, 4L, 1L), search(index, "entropy "));
+    }
+
+    @Test
+    void pagesAreCutFromTheRankedMatches() {
+        InvertedIndex index = new InvertedIndex();
+        for (int i = 1; i <= 25; i++) {
+            index.put(i, "Lecture", "weekly notes");
+        }
+
+        Page<Long> second = index.search("lecture", PageRequest.of(1, 10));
+        assertEquals(List.of(15L, 14L, 13L, 12L, 11L, 10L, 9L, 8L, 7L, 6L), second.getContent());
+        assertEquals(25, second.getTotalElements());
+
+        Page<Long> last = index.search("lecture", PageRequest.of(2, 10));
+        assertEquals(List.of(5L, 4L, 3L, 2L, 1L), last.getContent());
+
+        Page<Long> beyond = index.search("lecture", PageRequest.of(5, 10));
+        assertTrue(beyond.getContent().isEmpty());
+        assertEquals(25, beyond.getTotalElements());
+
+        assertEquals(List.of(24L, 22L, 20L), index.search("lecture", id -> id % 2 == 0, PageRequest.of(0, 3)).getContent());
+    }
+
+    @Test
+    void editedAndRemovedDocumentsNoLongerMatchTheirOldTerms() {
+        InvertedIndex index = new InvertedIndex();
+        index.put(1, "Alpha", "first draft");
+        index.put(2, "Alpha", "second");
+
+        index.put(1, "Beta", "final");
+        assertEquals(List.of(2L), search(index, "alpha"));
+        assertEquals(List.of(1L), search(index, "beta"));
+        assertEquals(List.of(), search(index, "draft"));
+
+        index.remove(2);
+        index.remove(2);
+        assertEquals(List.of(), search(index, "alpha"));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void removingMostDocumentsKeepsTheRestRankedAndFindable() {
+        InvertedIndex index = new InvertedIndex();
+        for (int i = 0; i < 1000; i++) {
+            index.put(i, "Common", "doc" + i);
+        }
+        List<Long> ids = new ArrayList<>();
+        for (long i = 0; i < 1000; i++) {
+            ids.add(i);
+        }
+        Collections.shuffle(ids, new Random(1));
+        List<Long> kept = new ArrayList<>(ids.subList(990, 1000));
+        for (Long id : ids.subList(0, 990)) {
+            index.remove(id);
+        }
+
+        kept.sort(Collections.reverseOrder());
+        assertEquals(kept, search(index, "common"));
+        assertEquals(10, index.size());
+
+        // Added back after its entry was removed
+        long removed = ids.get(0);
+        index.put(removed, "Common", "again");
+        assertEquals(List.of(removed), search(index, "again"));
+        assertEquals(11, index.search("common", PageRequest.of(0, 100)).getTotalElements());
+    }
+
+    @Test
+    void documentsBeyondTheTermLimitKeepTheirMostFrequentTerms() {
+        InvertedIndex index = new InvertedIndex(2);
+        index.put(1, "", "alpha alpha beta gamma gamma gamma");
+        long withTwoTerms = index.estimateHeapBytes();
+
+        assertEquals(List.of(1L), search(index, "alpha"));
+        assertEquals(List.of(1L), search(index, "gamma"));
+        assertEquals(List.of(), search(index, "beta"));
+
+        index.put(2, "", "delta epsilon");
+        assertTrue(index.estimateHeapBytes() > withTwoTerms);
+        index.remove(2);
+        assertEquals(withTwoTerms, index.estimateHeapBytes());
+    }
+
+    private static List<Long> search(InvertedIndex index, String query) {
+        return index.search(query, PageRequest.of(0, 100)).getContent();
+    }
+}
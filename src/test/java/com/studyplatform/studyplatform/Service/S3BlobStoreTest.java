@@ -0,0 +1,188 @@
+package com.studyplatform.studyplatform.Service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+
+import org.apache.commons.io.IOUtils;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.gaul.s3proxy.S3Proxy;
+import org.jclouds.ContextBuilder;
+import org.jclouds.blobstore.BlobStoreContext;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+/**
+ * Runs the S3 backend against S3Proxy serving an in-memory bucket, with parts small enough that a
+ * 12 MB blob is uploaded and downloaded in three parallel parts.
+ */
+@SpringBootTest(properties = {
+    "file.storage.backend=s3",
+    "file.storage.s3.bucket=" + S3BlobStoreTest.BUCKET,
+    "file.storage.s3.path-style-access=true",
+    "file.storage.s3.access-key=access",
+    "file.storage.s3.secret-key=secret",
+    "file.storage.s3.part-size-bytes=5242880",
+    "file.storage.s3.multipart-threshold-bytes=5242880"
+})
+@AutoConfigureMockMvc
+class S3BlobStoreTest {
+
+    static final String BUCKET = "studyplatform";
+    private static final int LARGE_BLOB_BYTES = 12 * 1024 * 1024 + 123;
+
+    private static BlobStoreContext bucketContext;
+    private static S3Proxy s3Proxy;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void startS3() throws Exception {
+        bucketContext = ContextBuilder.newBuilder("transient")
+            .credentials("identity", "credential")
+            .build(BlobStoreContext.class);
+        bucketContext.getBlobStore().createContainerInLocation(null, BUCKET);
+        s3Proxy = S3Proxy.builder()
+            .blobStore(bucketContext.getBlobStore())
+            .endpoint(URI.create("http://127.0.0.1:0"))
+            .build();
+        s3Proxy.start();
+        while (!AbstractLifeCycle.STARTED.equals(s3Proxy.getState())) {
+            Thread.sleep(10);
+        }
+    }
+
+    @AfterAll
+    static void stopS3() throws Exception {
+        if (s3Proxy != null) {
+            s3Proxy.stop();
+        }
+        if (bucketContext != null) {
+            bucketContext.close();
+        }
+    }
+
+    @DynamicPropertySource
+    static void s3Endpoint(DynamicPropertyRegistry registry) {
+        registry.add("file.storage.s3.endpoint", () -> "http://127.0.0.1:" + s3Proxy.getPort());
+    }
+
+    @Test
+    void largeBlobIsTransferredInPartsAndReadFromAnOffset() throws IOException {
+        assertTrue(blobStore instanceof S3BlobStore);
+        byte[] content = randomBytes(LARGE_BLOB_BYTES);
+        String name = UUID.randomUUID() + ".bin";
+
+        blobStore.put(name, write(content));
+
+        BlobStore.BlobAttributes attributes = blobStore.getAttributes(name);
+        assertEquals(LARGE_BLOB_BYTES, attributes.getSize());
+        assertNull(blobStore.getLocalPath(name));
+
+        Path downloaded = tempDir.resolve("downloaded.bin");
+        blobStore.download(name, downloaded);
+        assertArrayEquals(content, Files.readAllBytes(downloaded));
+
+        try (InputStream tail = blobStore.open(name, LARGE_BLOB_BYTES - 1000)) {
+            assertArrayEquals(Arrays.copyOfRange(content, LARGE_BLOB_BYTES - 1000, LARGE_BLOB_BYTES), IOUtils.toByteArray(tail));
+        }
+        try (InputStream end = blobStore.open(name, LARGE_BLOB_BYTES)) {
+            assertEquals(-1, end.read());
+        }
+
+        blobStore.delete(name);
+        assertFalse(blobStore.exists(name));
+    }
+
+    @Test
+    void missingBlobHasNoAttributesAndCannotBeOpened() throws IOException {
+        String name = UUID.randomUUID() + ".pdf";
+
+        assertNull(blobStore.getAttributes(name));
+        assertThrows(NoSuchFileException.class, () -> blobStore.open(name, 0));
+        // Deleting what is not there is not an error
+        blobStore.delete(name);
+    }
+
+    @Test
+    void sharedFileIsServedFromTheBucketAndDeletedWithItsLastReference() throws Exception {
+        byte[] content = randomBytes(200_000);
+        String first = fileStorageService.storeExistingFile(putLegacyBlob(content));
+        String second = fileStorageService.storeExistingFile(putLegacyBlob(content));
+        assertEquals(first, second);
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT reference_count FROM stored_files WHERE file_name = ?", Integer.class, first));
+
+        MvcResult range = mockMvc.perform(get("/api/files/{fileName}", first).header(HttpHeaders.RANGE, "bytes=100000-100999"))
+            .andExpect(status().isPartialContent())
+            .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 100000-100999/200000"))
+            .andReturn();
+        assertArrayEquals(Arrays.copyOfRange(content, 100_000, 101_000), range.getResponse().getContentAsByteArray());
+        mockMvc.perform(get("/api/files/{fileName}", first).header(HttpHeaders.IF_NONE_MATCH, "\"" + first + "\""))
+            .andExpect(status().isNotModified());
+
+        fileStorageService.deleteFile("/api/files/" + first);
+        assertTrue(blobStore.exists(first));
+        fileStorageService.deleteFile("/api/files/" + second);
+        assertFalse(blobStore.exists(first));
+        mockMvc.perform(get("/api/files/{fileName}", first))
+            .andExpect(status().isNotFound());
+    }
+
+    private String putLegacyBlob(byte[] content) throws IOException {
+        String name = UUID.randomUUID() + ".pdf";
+        blobStore.put(name, write(content));
+        return name;
+    }
+
+    private Path write(byte[] content) throws IOException {
+        Path file = blobStore.createTempFile();
+        Files.write(file, content);
+        return file;
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+}
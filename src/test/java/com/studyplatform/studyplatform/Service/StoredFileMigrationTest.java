@@ -0,0 +1,111 @@
+package com.studyplatform.studyplatform.Service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.studyplatform.studyplatform.TestData;
+import com.studyplatform.studyplatform.Model.User;
+import com.studyplatform.studyplatform.Repository.UserRepository;
+
+@SpringBootTest
+class StoredFileMigrationTest {
+
+    // Length of the file_url column
+    private static final int MAX_URL_LENGTH = 255;
+
+    @Autowired
+    private StoredFileMigration storedFileMigration;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void sharedFileIsMovedOnceAndDeletedWithItsLastReference() throws IOException {
+        User owner = TestData.newUser(userRepository, "Owner");
+        String legacyName = storeLegacyFile("shared lecture notes " + UUID.randomUUID());
+        Long first = insertDocument(owner, "/api/files/" + legacyName);
+        Long second = insertDocument(owner, "/api/files/" + legacyName);
+
+        storedFileMigration.migrate();
+
+        String storedName = fileName(first);
+        assertEquals(storedName, fileName(second));
+        assertEquals(2, referenceCount(storedName));
+        assertTrue(blobStore.exists(storedName));
+        assertFalse(blobStore.exists(legacyName));
+    }
+
+    @Test
+    void fileIsKeptWhileAnyReferenceToItFailedToMove() throws IOException {
+        User owner = TestData.newUser(userRepository, "Owner");
+        String legacyName = storeLegacyFile("partly migrated notes " + UUID.randomUUID());
+        Long migrating = insertDocument(owner, "/api/files/" + legacyName);
+        // Fills the column, so the longer content-addressed URL cannot be saved and this reference fails
+        String prefix = "/" + "x".repeat(MAX_URL_LENGTH - legacyName.length() - 2) + "/";
+        Long failing = insertDocument(owner, prefix + legacyName);
+
+        storedFileMigration.migrate();
+
+        String storedName = fileName(migrating);
+        assertEquals(1, referenceCount(storedName));
+        assertEquals(legacyName, fileName(failing));
+        assertTrue(blobStore.exists(legacyName), "The failed reference still points at the old file");
+
+        // Once the failing reference is fixed, a second run moves it and removes the old file
+        jdbcTemplate.update("UPDATE documents SET file_url = ? WHERE id = ?", "/api/files/" + legacyName, failing);
+        storedFileMigration.migrate();
+
+        assertEquals(storedName, fileName(failing));
+        assertEquals(2, referenceCount(storedName));
+        assertFalse(blobStore.exists(legacyName));
+    }
+
+    private String storeLegacyFile(String content) throws IOException {
+        String fileName = UUID.randomUUID() + ".pdf";
+        Path source = blobStore.createTempFile();
+        Files.write(source, content.getBytes(StandardCharsets.UTF_8));
+        blobStore.put(fileName, source);
+        assertFalse(fileStorageService.isStored(fileName));
+        return fileName;
+    }
+
+    private Long insertDocument(User owner, String fileUrl) {
+        jdbcTemplate.update(
+            "INSERT INTO documents (name, file_url, file_type, file_size, description, uploaded_at, is_public, user_id) "
+                + "VALUES ('notes.pdf', ?, 'application/pdf', 100, 'notes', ?, TRUE, ?)",
+            fileUrl, Timestamp.valueOf(LocalDateTime.now()), owner.getId());
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM documents WHERE user_id = ?", Long.class, owner.getId());
+    }
+
+    private String fileName(Long documentId) {
+        String fileUrl = jdbcTemplate.queryForObject("SELECT file_url FROM documents WHERE id = ?", String.class, documentId);
+        return fileUrl.substring(fileUrl.lastIndexOf('/') + 1);
+    }
+
+    private int referenceCount(String fileName) {
+        return jdbcTemplate.queryForObject("SELECT reference_count FROM stored_files WHERE file_name = ?", Integer.class, fileName);
+    }
+}
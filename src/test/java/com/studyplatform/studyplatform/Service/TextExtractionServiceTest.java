@@ -0,0 +1,154 @@
+package com.studyplatform.studyplatform.Service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.studyplatform.studyplatform.TestFiles;
+
+@SpringBootTest
+class TextExtractionServiceTest {
+
+    // Well below the size of the files below, so they can only be read if extraction streams
+    private static final String SMALL_HEAP = "-Xmx48m";
+    // PDFBox memory per worker in the small heap; the rest of a parsed PDF goes to scratch files
+    private static final long PDF_MAIN_MEMORY_BYTES = 4L * 1024 * 1024;
+    private static final int PDF_PAGES = 200;
+    private static final int PDF_BALLAST_BYTES_PER_PAGE = 512 * 1024;
+    private static final int DOCX_PARAGRAPHS = 120_000;
+
+    @Autowired
+    private TextExtractionService textExtractionService;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void docxParagraphsAndTableCellsComeOutInOrder() throws IOException {
+        Path docx = tempDir.resolve("notes.docx");
+        try (XWPFDocument document = new XWPFDocument(); OutputStream out = Files.newOutputStream(docx)) {
+            document.createParagraph().createRun().setText("First paragraph");
+            XWPFRun run = document.createParagraph().createRun();
+            run.setText("Before tab");
+            run.addTab();
+            run.setText("after tab");
+            run.addBreak();
+            run.setText("next line");
+            XWPFTable table = document.createTable(1, 2);
+            table.getRow(0).getCell(0).setText("left cell");
+            table.getRow(0).getCell(1).setText("right cell");
+            document.createParagraph().createRun().setText("Last & final");
+            document.write(out);
+        }
+
+        List<String> chunks = new ArrayList<>();
+        textExtractionService.extractText(docx, "notes.docx", chunk -> chunks.add(chunk));
+
+        assertEquals(List.of("First paragraph\n", "Before tab\tafter tab\nnext line\n", "left cell\n", "right cell\n", "Last & final\n"),
+            chunks);
+    }
+
+    @Test
+    void docxExtractionStopsWhenTheConsumerDoes() throws IOException {
+        Path docx = tempDir.resolve("long.docx");
+        TestFiles.writeDocx(docx, 50, 1);
+
+        List<String> chunks = new ArrayList<>();
+        textExtractionService.extractText(docx, "long.docx", chunk -> {
+            chunks.add(chunk);
+            return chunks.size() < 3;
+        });
+
+        assertEquals(3, chunks.size());
+    }
+
+    @Test
+    void largePdfAndDocxAreExtractedInASmallHeap() throws Exception {
+        Path pdf = tempDir.resolve("textbook.pdf");
+        TestFiles.writePdf(pdf, PDF_PAGES, 2, PDF_BALLAST_BYTES_PER_PAGE);
+        Path docx = tempDir.resolve("thesis.docx");
+        long docxChars = TestFiles.writeDocx(docx, DOCX_PARAGRAPHS, 3);
+
+        assertTrue(Files.size(pdf) > 64L * 1024 * 1024);
+        assertTrue(docxChars > 64L * 1024 * 1024);
+
+        // Roughly 45 lines of 90 characters per page
+        long pdfChars = Long.parseLong(extractInSmallHeap(pdf, PDF_MAIN_MEMORY_BYTES, 0));
+        assertTrue(pdfChars > PDF_PAGES * 45L * 80, "PDF characters: " + pdfChars);
+        // Every paragraph adds a line break
+        assertEquals(docxChars + DOCX_PARAGRAPHS, Long.parseLong(extractInSmallHeap(docx, PDF_MAIN_MEMORY_BYTES, 0)));
+
+        // Without the scratch file limit the same PDF does not fit
+        String unlimited = extractInSmallHeap(pdf, -1, 3);
+        assertTrue(unlimited.contains("OutOfMemoryError"), unlimited);
+    }
+
+    /**
+     * @return The last line of output
+     */
+    private String extractInSmallHeap(Path file, long mainMemoryBytes, int expectedExitValue) throws IOException, InterruptedException {
+        String classPath = System.getProperty("surefire.test.class.path", System.getProperty("java.class.path"));
+        Path output = tempDir.resolve(file.getFileName() + ".out");
+        Process process = new ProcessBuilder(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                SMALL_HEAP, "-XX:+ExitOnOutOfMemoryError",
+                "-cp", classPath, SmallHeapExtraction.class.getName(), file.toString(), Long.toString(mainMemoryBytes))
+            .redirectErrorStream(true)
+            .redirectOutput(output.toFile())
+            .start();
+        assertTrue(process.waitFor(5, TimeUnit.MINUTES), "Extraction of " + file.getFileName() + " did not finish");
+        List<String> lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+        assertEquals(expectedExitValue, process.exitValue(), String.join("\n", lines));
+        return lines.get(lines.size() - 1).trim();
+    }
+
+    /**
+     * Extracts one file with two PDF workers and the given PDFBox main memory limit, -1 for none, and
+     * prints the number of characters it produced. Runs in a separate JVM so the heap limit applies to
+     * extraction alone.
+     */
+    static final class SmallHeapExtraction {
+
+        public static void main(String[] args) throws IOException {
+            TextExtractionService service = new TextExtractionService();
+            ReflectionTestUtils.setField(service, "maxPdfPages", 0);
+            ReflectionTestUtils.setField(service, "maxMainMemoryBytes", Long.parseLong(args[1]));
+            ReflectionTestUtils.setField(service, "tempDir", "");
+            ReflectionTestUtils.setField(service, "pdfWorkers", 2);
+            ReflectionTestUtils.setField(service, "pagesPerTask", 64);
+            ReflectionTestUtils.setField(service, "maxConcurrentDocuments", 1);
+            ReflectionTestUtils.setField(service, "queueTimeoutMs", 1000L);
+            service.start();
+            try {
+                File file = new File(args[0]);
+                AtomicLong chars = new AtomicLong();
+                service.extractText(file.toPath(), file.getName(), chunk -> {
+                    chars.addAndGet(chunk.length());
+                    return true;
+                });
+                System.out.println(chars.get());
+            } finally {
+                service.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.studyplatform.studyplatform.Service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@SpringBootTest
+class UploadLayoutMigrationTest {
+
+    @Autowired
+    private UploadLayoutMigration uploadLayoutMigration;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private LocalBlobStore blobStore;
+
+    @Test
+    void blobsAreStoredUnderTwoShardDirectories() throws IOException {
+        String hash = DigestUtils.sha256Hex(UUID.randomUUID().toString());
+        String contentAddressed = hash + ".pdf";
+        String other = "notes-" + UUID.randomUUID() + ".pdf";
+        put(contentAddressed, "content-addressed");
+        put(other, "other");
+
+        // Named after the content hash, or the hash of the name when it does not start with hex
+        Path uploadPath = blobStore.getUploadPath();
+        assertEquals(uploadPath.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(contentAddressed),
+            blobStore.getFilePath(contentAddressed));
+        String nameHash = DigestUtils.sha256Hex(other);
+        assertEquals(uploadPath.resolve(nameHash.substring(0, 2)).resolve(nameHash.substring(2, 4)).resolve(other),
+            blobStore.getFilePath(other));
+        assertEquals("other", read(other));
+        assertFalse(Files.exists(uploadPath.resolve(other)));
+
+        blobStore.delete(other);
+        assertFalse(blobStore.exists(other));
+    }
+
+    @Test
+    void flatFilesAreFoundUntilMovedAndThenAtTheirShard() throws IOException {
+        String fileName = UUID.randomUUID() + ".pdf";
+        Path flatPath = writeFlat(fileName, "legacy");
+
+        assertEquals(flatPath, blobStore.getFilePath(fileName));
+        assertTrue(blobStore.exists(fileName));
+        assertEquals("legacy", read(fileName));
+
+        assertTrue(uploadLayoutMigration.migrate() >= 1);
+
+        assertFalse(Files.exists(flatPath));
+        assertEquals(blobStore.getShardedPath(fileName), blobStore.getFilePath(fileName));
+        assertEquals("legacy", read(fileName));
+    }
+
+    @Test
+    void anInterruptedRunIsResumedAndARepeatedRunMovesNothing() throws IOException {
+        List<String> fileNames = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            fileNames.add(UUID.randomUUID() + ".pdf");
+            writeFlat(fileNames.get(i), "legacy " + i);
+        }
+        // Stored again after the flat copy was written, so one copy is left over in each layout
+        Path source = Files.createTempFile("upload-layout", ".tmp");
+        Files.write(source, "stored twice".getBytes(StandardCharsets.UTF_8));
+        String storedUrl = fileStorageService.storeLocalFile(source, "twice.pdf");
+        String storedTwice = storedUrl.substring(storedUrl.lastIndexOf('/') + 1);
+        writeFlat(storedTwice, "stored twice");
+        // A different file with the name of a sharded one is left alone
+        String conflicting = "conflict-" + UUID.randomUUID() + ".pdf";
+        put(conflicting, "sharded");
+        Path conflictingFlat = writeFlat(conflicting, "flat");
+
+        // Interrupted in the pause after its first batch of two
+        int batchSize = (int) ReflectionTestUtils.getField(uploadLayoutMigration, "batchSize");
+        ReflectionTestUtils.setField(uploadLayoutMigration, "batchSize", 2);
+        try {
+            Thread.currentThread().interrupt();
+            assertEquals(2, uploadLayoutMigration.migrate());
+            assertTrue(Thread.interrupted());
+        } finally {
+            ReflectionTestUtils.setField(uploadLayoutMigration, "batchSize", batchSize);
+        }
+        for (int i = 0; i < fileNames.size(); i++) {
+            assertEquals("legacy " + i, read(fileNames.get(i)));
+        }
+
+        uploadLayoutMigration.migrate();
+        for (int i = 0; i < fileNames.size(); i++) {
+            assertFalse(Files.exists(blobStore.getUploadPath().resolve(fileNames.get(i))));
+            assertEquals("legacy " + i, read(fileNames.get(i)));
+        }
+        assertFalse(Files.exists(blobStore.getUploadPath().resolve(storedTwice)));
+        assertEquals("stored twice", read(storedTwice));
+        assertArrayEquals("flat".getBytes(StandardCharsets.UTF_8), Files.readAllBytes(conflictingFlat));
+
+        assertEquals(0, uploadLayoutMigration.migrate());
+        assertTrue(Files.exists(conflictingFlat));
+        assertEquals("sharded", read(conflicting));
+
+        // Not left behind for later runs, which would report it again
+        Files.delete(conflictingFlat);
+        blobStore.delete(conflicting);
+    }
+
+    private void put(String fileName, String content) throws IOException {
+        Path source = blobStore.createTempFile();
+        Files.write(source, content.getBytes(StandardCharsets.UTF_8));
+        blobStore.put(fileName, source);
+    }
+
+    // As stored by versions before the sharded layout
+    private Path writeFlat(String fileName, String content) throws IOException {
+        Path flatPath = blobStore.getUploadPath().resolve(fileName);
+        Files.createDirectories(flatPath.getParent());
+        Files.write(flatPath, content.getBytes(StandardCharsets.UTF_8));
+        return flatPath;
+    }
+
+    private String read(String fileName) throws IOException {
+        try (InputStream in = blobStore.open(fileName, 0)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.studyplatform.studyplatform;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.studyplatform.studyplatform.Model.User;
+import com.studyplatform.studyplatform.Repository.UserRepository;
+
+/**
+ * Fixtures shared by the tests. The application context and its in-memory database are reused across
+ * test classes, so every user gets a unique email.
+ */
+public final class TestData {
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private TestData() {
+    }
+
+    public static User newUser(UserRepository userRepository, String firstName) {
+        User user = new User();
+        user.setEmail(firstName.toLowerCase() + "-" + SEQUENCE.incrementAndGet() + "-" + System.nanoTime() + "@test.local");
+        user.setPassword("password");
+        user.setFirstName(firstName);
+        user.setLastName("Tester");
+        return userRepository.save(user);
+    }
+}
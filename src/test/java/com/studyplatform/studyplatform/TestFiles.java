@@ -0,0 +1,154 @@
+package com.studyplatform.studyplatform;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+
+/**
+ * Generates lecture-note-like text and writes it as PDF and DOCX files for extraction and summary
+ * tests. The same seed always gives the same text.
+ */
+public final class TestFiles {
+
+    private static final int VOCABULARY = 3000;
+    private static final int LINES_PER_PAGE = 45;
+    private static final int CHARS_PER_LINE = 90;
+    private static final String[] STOP_WORDS = {"the", "and", "with", "about", "this", "that", "were"};
+    private static final String CONTENT_TYPES = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+        + "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+        + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+        + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+        + "<Override PartName=\"/word/document.xml\" "
+        + "ContentType=\"application/vnd.openxmlformats-officedocument.wordprocessingml.document.main+xml\"/>"
+        + "</Types>";
+    private static final String RELATIONSHIPS = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+        + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+        + "<Relationship Id=\"rId1\" "
+        + "Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" "
+        + "Target=\"word/document.xml\"/>"
+        + "</Relationships>";
+    private static final String[] WORDS = vocabulary();
+
+    private TestFiles() {
+    }
+
+    /**
+     * Sentences of 4 to 24 words from a fixed vocabulary, common words drawn more often than rare ones
+     */
+    public static String text(int chars, long seed) {
+        Random random = new Random(seed);
+        StringBuilder text = new StringBuilder(chars + 200);
+        while (text.length() < chars) {
+            int words = 4 + random.nextInt(21);
+            for (int i = 0; i < words; i++) {
+                text.append(random.nextInt(5) == 0
+                    ? STOP_WORDS[random.nextInt(STOP_WORDS.length)]
+                    : WORDS[(int) Math.abs(random.nextGaussian() * 400) % VOCABULARY]);
+                text.append(' ');
+            }
+            text.setLength(text.length() - 1);
+            text.append(". ");
+        }
+        return text.toString();
+    }
+
+    public static void writePdf(Path file, int pages, long seed) throws IOException {
+        writePdf(file, pages, seed, 0);
+    }
+
+    /**
+     * Writes a PDF whose pages also carry an unused stream of random bytes each, so the file can be made
+     * far larger than its text without slowing down extraction
+     */
+    public static void writePdf(Path file, int pages, long seed, int ballastBytesPerPage) throws IOException {
+        Random random = new Random(seed);
+        String text = text(pages * LINES_PER_PAGE * CHARS_PER_LINE, seed);
+        try (PDDocument document = new PDDocument()) {
+            int offset = 0;
+            for (int p = 0; p < pages; p++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                if (ballastBytesPerPage > 0) {
+                    byte[] ballast = new byte[ballastBytesPerPage];
+                    random.nextBytes(ballast);
+                    page.getCOSObject().setItem(COSName.getPDFName("Ballast"),
+                        new PDStream(document, new ByteArrayInputStream(ballast)));
+                }
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 9);
+                    content.setLeading(15);
+                    content.newLineAtOffset(40, 750);
+                    for (int line = 0; line < LINES_PER_PAGE; line++) {
+                        int end = Math.min(offset + CHARS_PER_LINE, text.length());
+                        content.showText(text.substring(offset, end));
+                        content.newLine();
+                        offset = end;
+                    }
+                    content.endText();
+                }
+            }
+            document.save(file.toFile());
+        }
+    }
+
+    /**
+     * Writes a minimal DOCX package, streaming the document body so any size can be written
+     * @return The number of text characters written, not counting paragraph breaks
+     */
+    public static long writeDocx(Path file, int paragraphs, long seed) throws IOException {
+        Random random = new Random(seed);
+        long chars = 0;
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(file))) {
+            Writer writer = new OutputStreamWriter(zip, StandardCharsets.UTF_8);
+            zip.putNextEntry(new ZipEntry("[Content_Types].xml"));
+            writer.write(CONTENT_TYPES);
+            writer.flush();
+            zip.putNextEntry(new ZipEntry("_rels/.rels"));
+            writer.write(RELATIONSHIPS);
+            writer.flush();
+            zip.putNextEntry(new ZipEntry("word/document.xml"));
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                + "<w:document xmlns:w=\"http://schemas.openxmlformats.org/wordprocessingml/2006/main\"><w:body>");
+            for (int i = 0; i < paragraphs; i++) {
+                String text = text(400 + random.nextInt(800), seed * 31 + i);
+                writer.write("<w:p><w:r><w:t xml:space=\"preserve\">");
+                writer.write(text);
+                writer.write("</w:t></w:r></w:p>");
+                chars += text.length();
+            }
+            writer.write("</w:body></w:document>");
+            writer.flush();
+            zip.closeEntry();
+        }
+        return chars;
+    }
+
+    private static String[] vocabulary() {
+        Random random = new Random(7);
+        String[] vocabulary = new String[VOCABULARY];
+        for (int i = 0; i < VOCABULARY; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 2 + random.nextInt(9);
+            for (int j = 0; j < length; j++) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            vocabulary[i] = word.toString();
+        }
+        return vocabulary;
+    }
+}
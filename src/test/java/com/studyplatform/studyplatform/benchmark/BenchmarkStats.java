@@ -0,0 +1,35 @@
+package com.studyplatform.studyplatform.benchmark;
+
+import java.util.Arrays;
+
+/**
+ * Wall-clock timing helpers for the benchmark classes, which run with {@code mvn test -Pbenchmark}.
+ */
+final class BenchmarkStats {
+
+    private BenchmarkStats() {
+    }
+
+    /**
+     * Runs the action {@code warmup} times untimed, then {@code iterations} times timed.
+     * @return The timings in milliseconds, sorted
+     */
+    static double[] time(int warmup, int iterations, Runnable action) {
+        for (int i = 0; i < warmup; i++) {
+            action.run();
+        }
+        double[] millis = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            action.run();
+            millis[i] = (System.nanoTime() - start) / 1_000_000.0;
+        }
+        Arrays.sort(millis);
+        return millis;
+    }
+
+    static double percentile(double[] sortedMillis, double percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sortedMillis.length) - 1;
+        return sortedMillis[Math.max(0, Math.min(index, sortedMillis.length - 1))];
+    }
+}
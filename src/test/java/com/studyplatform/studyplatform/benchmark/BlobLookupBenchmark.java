@@ -0,0 +1,96 @@
+package com.studyplatform.studyplatform.benchmark;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.studyplatform.studyplatform.Service.LocalBlobStore;
+
+/**
+ * Stores {@code benchmark.blob-lookup.files} empty files (1,000,000 by default) with content-addressed
+ * names in a flat upload directory and in {@link LocalBlobStore}'s sharded layout, and reports the time
+ * to look up the attributes of stored and of missing names in each. Also reports the time to create
+ * them, which in the flat layout is spent growing a single directory. Needs that many free inodes in the
+ * temporary directory.
+ */
+@Tag("benchmark")
+class BlobLookupBenchmark {
+
+    private static final int FILES = Integer.getInteger("benchmark.blob-lookup.files", 1_000_000);
+    private static final int LOOKUPS_PER_ROUND = 10_000;
+
+    @Test
+    void flatVersusSharded() throws IOException {
+        System.out.println("layout    files  create s  hit p50 us  hit p99 us  miss p50 us  miss p99 us");
+        for (boolean sharded : new boolean[] {false, true}) {
+            Path uploadDir = Files.createTempDirectory("blob-lookup-benchmark");
+            try {
+                LocalBlobStore blobStore = new LocalBlobStore();
+                ReflectionTestUtils.setField(blobStore, "uploadDir", uploadDir.toString());
+                ReflectionTestUtils.setField(blobStore, "sharded", sharded);
+
+                long start = System.nanoTime();
+                for (int i = 0; i < FILES; i++) {
+                    Path path = sharded ? blobStore.getShardedPath(name(i)) : uploadDir.resolve(name(i));
+                    Files.createDirectories(path.getParent());
+                    Files.createFile(path);
+                }
+                double createSeconds = (System.nanoTime() - start) / 1e9;
+
+                double[] hits = lookups(blobStore, new Random(1), 0);
+                double[] misses = lookups(blobStore, new Random(2), FILES);
+                System.out.printf("%-7s  %7d  %8.1f  %10.2f  %10.2f  %11.2f  %11.2f%n", sharded ? "sharded" : "flat", FILES,
+                    createSeconds, perLookup(BenchmarkStats.percentile(hits, 50)), perLookup(BenchmarkStats.percentile(hits, 99)),
+                    perLookup(BenchmarkStats.percentile(misses, 50)), perLookup(BenchmarkStats.percentile(misses, 99)));
+            } finally {
+                deleteRecursively(uploadDir);
+            }
+        }
+    }
+
+    /**
+     * Rounds of random lookups among the names from {@code firstIndex}, which are stored below
+     * {@link #FILES} and missing from it on
+     * @return The round timings in milliseconds, sorted
+     */
+    private static double[] lookups(LocalBlobStore blobStore, Random random, int firstIndex) {
+        return BenchmarkStats.time(5, 50, () -> {
+            for (int i = 0; i < LOOKUPS_PER_ROUND; i++) {
+                try {
+                    blobStore.getAttributes(name(firstIndex + random.nextInt(FILES)));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    private static double perLookup(double roundMillis) {
+        return roundMillis * 1000 / LOOKUPS_PER_ROUND;
+    }
+
+    private static String name(int i) {
+        return DigestUtils.sha256Hex(Integer.toString(i)) + ".pdf";
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+}
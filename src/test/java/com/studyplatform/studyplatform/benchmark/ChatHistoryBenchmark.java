@@ -0,0 +1,84 @@
+package com.studyplatform.studyplatform.benchmark;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.studyplatform.studyplatform.TestData;
+import com.studyplatform.studyplatform.Model.User;
+import com.studyplatform.studyplatform.Repository.UserRepository;
+import com.studyplatform.studyplatform.Service.ChatService;
+
+/**
+ * Latency of opening a room (newest page, which also advances the read watermark) and of paging from the
+ * middle of its history, as one room's history grows to a million messages. History rows are inserted
+ * with JDBC batches so seeding stays quick.
+ */
+@Tag("benchmark")
+@SpringBootTest
+class ChatHistoryBenchmark {
+
+    private static final int[] HISTORY_SIZES = {1_000, 10_000, 100_000, 1_000_000};
+    private static final int PAGE_SIZE = 50;
+    private static final int INSERT_BATCH = 10_000;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void pageLatencyByHistorySize() {
+        User owner = TestData.newUser(userRepository, "Owner");
+        User reader = TestData.newUser(userRepository, "Reader");
+        Set<User> participants = new HashSet<>();
+        participants.add(reader);
+        Long roomId = chatService.createGroupChat("history", null, owner, participants).getId();
+        LocalDateTime start = LocalDateTime.now().minusYears(1);
+
+        System.out.println("messages  open median ms  open p95 ms  middle median ms  middle p95 ms");
+        int inserted = 0;
+        for (int target : HISTORY_SIZES) {
+            while (inserted < target) {
+                int batch = Math.min(INSERT_BATCH, target - inserted);
+                List<Object[]> rows = new ArrayList<>(batch);
+                for (int i = 0; i < batch; i++) {
+                    int n = inserted + i;
+                    rows.add(new Object[] {roomId, owner.getId(), "message " + n, Timestamp.valueOf(start.plusSeconds(n))});
+                }
+                jdbcTemplate.batchUpdate(
+                    "INSERT INTO chat_messages (chat_room_id, sender_id, content, sent_at, is_read) VALUES (?, ?, ?, ?, false)",
+                    rows);
+                inserted += batch;
+            }
+
+            Map<String, Object> middle = jdbcTemplate.queryForMap(
+                "SELECT id, sent_at FROM chat_messages WHERE chat_room_id = ? ORDER BY id LIMIT 1 OFFSET ?",
+                roomId, target / 2);
+            Long middleId = ((Number) middle.get("id")).longValue();
+            LocalDateTime middleSentAt = ((Timestamp) middle.get("sent_at")).toLocalDateTime();
+
+            double[] open = BenchmarkStats.time(20, 200,
+                () -> chatService.getChatMessages(roomId, reader, null, null, PAGE_SIZE));
+            double[] paged = BenchmarkStats.time(20, 200,
+                () -> chatService.getChatMessages(roomId, reader, middleSentAt, middleId, PAGE_SIZE));
+            System.out.printf("%8d  %14.2f  %11.2f  %16.2f  %13.2f%n", target,
+                BenchmarkStats.percentile(open, 50), BenchmarkStats.percentile(open, 95),
+                BenchmarkStats.percentile(paged, 50), BenchmarkStats.percentile(paged, 95));
+        }
+    }
+}
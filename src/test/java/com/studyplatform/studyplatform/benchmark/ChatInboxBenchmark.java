@@ -0,0 +1,62 @@
+package com.studyplatform.studyplatform.benchmark;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.studyplatform.studyplatform.QueryCounter;
+import com.studyplatform.studyplatform.TestData;
+import com.studyplatform.studyplatform.Model.User;
+import com.studyplatform.studyplatform.Repository.UserRepository;
+import com.studyplatform.studyplatform.Service.ChatService;
+
+/**
+ * Inbox latency and statement count as the number of rooms a user belongs to grows. Each room is seeded
+ * with a few messages from another member, so every room has unread messages and a latest message.
+ */
+@Tag("benchmark")
+@SpringBootTest
+class ChatInboxBenchmark {
+
+    private static final int[] ROOM_COUNTS = {10, 40, 80, 160, 320};
+    private static final int MESSAGES_PER_ROOM = 20;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void inboxLatencyByRoomCount() {
+        QueryCounter queryCounter = new QueryCounter(entityManagerFactory);
+        User owner = TestData.newUser(userRepository, "Owner");
+        User reader = TestData.newUser(userRepository, "Reader");
+
+        System.out.println("rooms  statements  median ms  p95 ms");
+        int rooms = 0;
+        for (int target : ROOM_COUNTS) {
+            for (; rooms < target; rooms++) {
+                Set<User> participants = new HashSet<>();
+                participants.add(reader);
+                Long roomId = chatService.createGroupChat("room " + rooms, null, owner, participants).getId();
+                for (int i = 0; i < MESSAGES_PER_ROOM; i++) {
+                    chatService.sendMessage(roomId, owner, "message " + i);
+                }
+            }
+            long statements = queryCounter.count(() -> chatService.getUserChatRooms(reader)).getStatements();
+            double[] millis = BenchmarkStats.time(20, 100, () -> chatService.getUserChatRooms(reader));
+            System.out.printf("%5d  %10d  %9.2f  %6.2f%n",
+                target, statements, BenchmarkStats.percentile(millis, 50), BenchmarkStats.percentile(millis, 95));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.studyplatform.studyplatform.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.studyplatform.studyplatform.StudyplatformApplication;
+import com.studyplatform.studyplatform.TestData;
+import com.studyplatform.studyplatform.Model.User;
+import com.studyplatform.studyplatform.Repository.UserRepository;
+import com.studyplatform.studyplatform.Service.ChatService;
+
+/**
+ * Offers chat messages at a fixed rate through {@link ChatService#sendMessage} and compares the sync and
+ * batched persistence modes, each in its own application context and database. Reports the rate
+ * reached, the send latency seen by the caller (which is what delays the broadcast) and, in batched mode,
+ * how long after the last send every message was stored.
+ */
+@Tag("benchmark")
+class ChatSendThroughputBenchmark {
+
+    private static final int[] RATES = {1_000, 10_000};
+    private static final int SENDER_THREADS = 8;
+    private static final long RUN_SECONDS = 5;
+
+    @Test
+    void syncVersusBatchedSends() throws Exception {
+        System.out.println("mode     offered/s  achieved/s  p50 ms  p99 ms  stored after last send ms");
+        for (String mode : new String[] {"sync", "batched"}) {
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(StudyplatformApplication.class)
+                    .properties(
+                        "server.port=0",
+                        "chat.persistence.mode=" + mode,
+                        "spring.datasource.url=jdbc:h2:mem:chat-send-" + mode + ";MODE=MySQL;DB_CLOSE_DELAY=-1")
+                    .run()) {
+                for (int rate : RATES) {
+                    run(context, mode, rate);
+                }
+            }
+        }
+    }
+
+    private void run(ConfigurableApplicationContext context, String mode, int rate) throws InterruptedException {
+        ChatService chatService = context.getBean(ChatService.class);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        User sender = TestData.newUser(context.getBean(UserRepository.class), "Sender");
+        Long roomId = chatService.createGroupChat("throughput", null, sender, new HashSet<>()).getId();
+        String senderName = chatService.getDisplayName(sender);
+
+        // Warm up the send path before measuring
+        for (int i = 0; i < 2_000; i++) {
+            chatService.sendMessage(roomId, sender.getId(), senderName, "warm-up " + i);
+        }
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) * SENDER_THREADS / rate;
+        long perThread = rate * RUN_SECONDS / SENDER_THREADS;
+        AtomicInteger sent = new AtomicInteger();
+        long[][] latencies = new long[SENDER_THREADS][];
+        List<Thread> threads = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < SENDER_THREADS; t++) {
+            int thread = t;
+            latencies[t] = new long[(int) perThread];
+            Thread sending = new Thread(() -> {
+                long next = start + thread * intervalNanos / SENDER_THREADS;
+                for (int i = 0; i < perThread; i++) {
+                    long wait = next - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    long before = System.nanoTime();
+                    chatService.sendMessage(roomId, sender.getId(), senderName, "message " + i);
+                    latencies[thread][i] = System.nanoTime() - before;
+                    sent.incrementAndGet();
+                    next += intervalNanos;
+                }
+            });
+            sending.start();
+            threads.add(sending);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long sendEnd = System.nanoTime();
+
+        long expected = sent.get() + 2_000L;
+        while (count(jdbcTemplate, roomId) < expected) {
+            Thread.sleep(5);
+        }
+        long storedEnd = System.nanoTime();
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        System.out.printf("%-7s  %9d  %10.0f  %6.2f  %6.2f  %26.0f%n", mode, rate,
+            sent.get() / ((sendEnd - start) / 1e9),
+            all[all.length / 2] / 1e6, all[(int) (all.length * 0.99)] / 1e6,
+            (storedEnd - sendEnd) / 1e6);
+    }
+
+    private static long count(JdbcTemplate jdbcTemplate, Long roomId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM chat_messages WHERE chat_room_id = ?", Long.class, roomId);
+    }
+}
@@ -0,0 +1,78 @@
+package com.studyplatform.studyplatform.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Random;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.studyplatform.studyplatform.Service.DocumentSearchIndex;
+import com.studyplatform.studyplatform.Service.InvertedIndex;
+
+/**
+ * Measures the heap an {@link InvertedIndex} takes per document, as {@link DocumentSearchIndex} keeps it,
+ * for typical documents of a few thousand words and for documents with more distinct terms than the
+ * default limit of 20,000. Compares the measurement with {@link InvertedIndex#estimateHeapBytes()}.
+ */
+@Tag("benchmark")
+class DocumentIndexHeapBenchmark {
+
+    private static final int MAX_TERMS_PER_DOCUMENT = 20_000;
+
+    @Test
+    void heapPerDocument() {
+        System.out.println("kind     documents  words/doc  vocabulary  terms/doc  measured B/doc  estimated B/doc  B/term");
+        measure("typical", 5_000, 2_000, 50_000);
+        measure("large", 200, 100_000, 1_000_000);
+    }
+
+    private static void measure(String label, int documents, int wordsPerDocument, int vocabulary) {
+        Random random = new Random(1);
+        String[] words = new String[vocabulary];
+        for (int i = 0; i < vocabulary; i++) {
+            words[i] = word(random);
+        }
+
+        long before = usedHeap();
+        InvertedIndex index = new InvertedIndex(MAX_TERMS_PER_DOCUMENT);
+        long terms = 0;
+        for (int id = 1; id <= documents; id++) {
+            StringBuilder body = new StringBuilder();
+            for (int i = 0; i < wordsPerDocument; i++) {
+                // Skewed towards the start of the vocabulary, like word frequencies in text
+                double skewed = Math.pow(random.nextDouble(), 3);
+                body.append(words[(int) (skewed * vocabulary)]).append(' ');
+            }
+            terms += Math.min(MAX_TERMS_PER_DOCUMENT, InvertedIndex.tokenize(body.toString()).stream().distinct().count());
+            index.put(id, "Document " + id, body.toString());
+        }
+        long measured = usedHeap() - before;
+        // Still reachable, so it is not collected between the two measurements
+        if (words[0].isEmpty()) {
+            throw new IllegalStateException("Empty word");
+        }
+
+        System.out.printf("%-7s  %9d  %9d  %10d  %9d  %14d  %15d  %6.1f%n", label, documents, wordsPerDocument, vocabulary,
+            terms / documents, measured / documents, index.estimateHeapBytes() / documents, (double) measured / terms);
+        if (index.size() != documents) {
+            throw new IllegalStateException("Lost documents");
+        }
+    }
+
+    private static String word(Random random) {
+        char[] letters = new char[4 + random.nextInt(8)];
+        for (int i = 0; i < letters.length; i++) {
+            letters[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(letters);
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
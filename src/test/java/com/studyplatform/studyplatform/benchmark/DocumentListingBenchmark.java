@@ -0,0 +1,128 @@
+package com.studyplatform.studyplatform.benchmark;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.studyplatform.studyplatform.TestData;
+import com.studyplatform.studyplatform.Model.Document;
+import com.studyplatform.studyplatform.Model.User;
+import com.studyplatform.studyplatform.Repository.UserRepository;
+import com.studyplatform.studyplatform.Service.DocumentService;
+import com.studyplatform.studyplatform.dto.DocumentPageDTO;
+
+/**
+ * Response size and latency of the public catalogue at 50k public documents: the keyset-paged
+ * {@link DocumentPageDTO} for the first page and for a page deep into the catalogue, against the
+ * unbounded list of {@link Document} entities the endpoint used to return. Latency includes JSON
+ * serialization with the application's {@link ObjectMapper}.
+ */
+@Tag("benchmark")
+@SpringBootTest
+class DocumentListingBenchmark {
+
+    private static final int DOCUMENTS = 50_000;
+    private static final int OWNERS = 500;
+    private static final int PAGE_SIZE = 20;
+    private static final int INSERT_BATCH = 5_000;
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void publicCatalogueSizeAndLatency() {
+        seedDocuments();
+
+        Map<String, Object> deep = jdbcTemplate.queryForMap(
+            "SELECT uploaded_at, id FROM documents WHERE is_public = true ORDER BY uploaded_at DESC, id DESC LIMIT 1 OFFSET ?",
+            DOCUMENTS * 4 / 5);
+        LocalDateTime deepUploadedAt = ((Timestamp) deep.get("uploaded_at")).toLocalDateTime();
+        Long deepId = ((Number) deep.get("id")).longValue();
+
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        System.out.println("listing                      bytes  median ms  p95 ms");
+        report("first page", 20, 200, () -> documentService.getPublicDocuments(null, null, PAGE_SIZE));
+        report("page at 80%", 20, 200, () -> documentService.getPublicDocuments(deepUploadedAt, deepId, PAGE_SIZE));
+        report("all entities (previous)", 1, 5, () -> readOnly.execute(status -> {
+            List<Document> documents = entityManager
+                .createQuery("SELECT d FROM Document d WHERE d.isPublic = true ORDER BY d.uploadedAt DESC", Document.class)
+                .getResultList();
+            entityManager.clear();
+            return documents;
+        }));
+    }
+
+    private void report(String listing, int warmup, int iterations, Supplier<Object> load) {
+        long[] bytes = new long[1];
+        double[] times = BenchmarkStats.time(warmup, iterations, () -> bytes[0] = toJson(load.get()).length);
+        System.out.printf("%-25s  %9d  %9.2f  %6.2f%n", listing, bytes[0],
+            BenchmarkStats.percentile(times, 50), BenchmarkStats.percentile(times, 95));
+    }
+
+    private byte[] toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void seedDocuments() {
+        // Owners carry the eager academicInterests collection that full entities used to serialize
+        List<Long> ownerIds = new ArrayList<>(OWNERS);
+        for (int i = 0; i < OWNERS; i++) {
+            User owner = TestData.newUser(userRepository, "Owner");
+            owner.setBio("Studies things and uploads notes about them");
+            owner.setAcademicInterests(new HashSet<>(Set.of("mathematics", "physics", "computer science")));
+            ownerIds.add(userRepository.save(owner).getId());
+        }
+
+        LocalDateTime start = LocalDateTime.now().minusYears(1);
+        for (int inserted = 0; inserted < DOCUMENTS; inserted += INSERT_BATCH) {
+            List<Object[]> rows = new ArrayList<>(INSERT_BATCH);
+            for (int i = 0; i < INSERT_BATCH; i++) {
+                int n = inserted + i;
+                rows.add(new Object[] {"Lecture notes " + n + ".pdf", "uploads/notes-" + n + ".pdf", "application/pdf",
+                    100_000L + n, "Notes for lecture " + n, Timestamp.valueOf(start.plusSeconds(n)), ownerIds.get(n % OWNERS)});
+            }
+            jdbcTemplate.batchUpdate(
+                "INSERT INTO documents (name, file_url, file_type, file_size, description, uploaded_at, is_public, user_id) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, true, ?)",
+                rows);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.studyplatform.studyplatform.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.studyplatform.studyplatform.TestData;
+import com.studyplatform.studyplatform.TestFiles;
+import com.studyplatform.studyplatform.Model.Document;
+import com.studyplatform.studyplatform.Model.User;
+import com.studyplatform.studyplatform.Repository.UserRepository;
+import com.studyplatform.studyplatform.Service.DocumentService;
+import com.studyplatform.studyplatform.Service.DocumentSummaryStore;
+import com.studyplatform.studyplatform.Service.FileStorageService;
+import com.studyplatform.studyplatform.Service.TextExtractionService;
+import com.studyplatform.studyplatform.Service.TextSummarizer;
+
+/**
+ * Summary latency for a 200-page PDF: extracting and summarizing the whole file on every request, as
+ * the summary endpoint used to; generating the stored summary for new content; reading it back from
+ * the summary table after the in-memory cache lost it; and a cache hit.
+ */
+@Tag("benchmark")
+@SpringBootTest
+class DocumentSummaryBenchmark {
+
+    private static final int PAGES = 200;
+    private static final int COLD_RUNS = 5;
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private DocumentSummaryStore documentSummaryStore;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private TextExtractionService textExtractionService;
+
+    @Autowired
+    private TextSummarizer textSummarizer;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void coldAgainstWarmSummary() throws IOException {
+        User owner = TestData.newUser(userRepository, "Owner");
+
+        // Every cold run needs content that has no stored summary yet
+        double[] cold = new double[COLD_RUNS];
+        double[] previous = new double[COLD_RUNS];
+        Long documentId = null;
+        for (int run = 0; run < COLD_RUNS; run++) {
+            Path pdf = Files.createTempFile("summary-benchmark", ".pdf");
+            TestFiles.writePdf(pdf, PAGES, System.nanoTime());
+
+            long start = System.nanoTime();
+            textSummarizer.summarize(textExtractionService.extractText(pdf, "lecture.pdf"));
+            previous[run] = (System.nanoTime() - start) / 1_000_000.0;
+
+            documentId = storeDocument(owner, pdf);
+            Long id = documentId;
+            start = System.nanoTime();
+            documentService.generateDocumentSummary(id);
+            documentService.findDocumentSummary(id);
+            cold[run] = (System.nanoTime() - start) / 1_000_000.0;
+        }
+        Arrays.sort(cold);
+        Arrays.sort(previous);
+
+        Long id = documentId;
+        double[] stored = BenchmarkStats.time(20, 200, () -> {
+            documentSummaryStore.evict(id);
+            documentService.findDocumentSummary(id);
+        });
+        double[] warm = BenchmarkStats.time(100, 1000, () -> documentService.findDocumentSummary(id));
+
+        System.out.printf("summary of a %d-page PDF        median ms    p95 ms%n", PAGES);
+        print("extract and summarize (previous)", previous);
+        print("cold: generate and store", cold);
+        print("stored: summary table read", stored);
+        print("warm: cache hit", warm);
+    }
+
+    private Long storeDocument(User owner, Path pdf) throws IOException {
+        Document document = new Document();
+        document.setUser(owner);
+        document.setName("lecture.pdf");
+        document.setFileType("application/pdf");
+        document.setFileSize(Files.size(pdf));
+        document.setFileUrl(fileStorageService.storeLocalFile(pdf, "lecture.pdf"));
+        document.setPublic(true);
+        return documentService.saveDocument(document).getId();
+    }
+
+    private static void print(String label, double[] millis) {
+        System.out.printf("%-32s %9.3f %9.3f%n", label, BenchmarkStats.percentile(millis, 50), BenchmarkStats.percentile(millis, 95));
+    }
+}
@@ -0,0 +1,121 @@
+package com.studyplatform.studyplatform.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.studyplatform.studyplatform.StudyplatformApplication;
+import com.studyplatform.studyplatform.Controller.FileController;
+
+/**
+ * Downloads a 64 MB stored file over HTTP from concurrent clients, once with {@link FileController}
+ * streaming it through Spring and once with the file handed to Tomcat's sendfile support, each in its
+ * own application context. Reports throughput and the CPU time spent per GB sent, by the whole process
+ * since the clients run in it too.
+ */
+@Tag("benchmark")
+class FileServingBenchmark {
+
+    private static final int FILE_MB = 64;
+    private static final int CLIENTS = 8;
+    private static final int DOWNLOADS_PER_CLIENT = 4;
+
+    @Test
+    void springVersusSendfile() throws Exception {
+        Path uploadDir = Files.createTempDirectory("file-serving-benchmark");
+        writeFile(uploadDir.resolve("lecture.mp4"));
+
+        System.out.println("mode      GB sent  seconds    MB/s  CPU s per GB");
+        for (boolean sendfile : new boolean[] {false, true}) {
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(StudyplatformApplication.class)
+                    // Arguments, as the test application.properties overrides default properties
+                    .run(
+                        "--server.port=0",
+                        "--file.upload-dir=" + uploadDir,
+                        "--file.sendfile.enabled=" + sendfile,
+                        "--spring.datasource.url=jdbc:h2:mem:file-serving-" + sendfile + ";MODE=MySQL;DB_CLOSE_DELAY=-1")) {
+                String url = "http://localhost:" + context.getEnvironment().getProperty("local.server.port")
+                    + "/api/files/lecture.mp4";
+                // Warm up both the server and the page cache
+                run(url, 1);
+                long[] result = run(url, DOWNLOADS_PER_CLIENT);
+                double gb = result[0] / 1e9;
+                double seconds = result[1] / 1e9;
+                System.out.printf("%-8s  %7.2f  %7.2f  %6.0f  %12.2f%n", sendfile ? "sendfile" : "spring",
+                    gb, seconds, result[0] / 1e6 / seconds, result[2] / 1e9 / gb);
+            }
+        }
+    }
+
+    /**
+     * @return Bytes received, elapsed nanoseconds and process CPU nanoseconds
+     */
+    private static long[] run(String url, int downloadsPerClient) throws Exception {
+        com.sun.management.OperatingSystemMXBean os =
+            (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            long cpuStart = os.getProcessCpuTime();
+            long start = System.nanoTime();
+            List<Future<Long>> received = new ArrayList<>();
+            for (int c = 0; c < CLIENTS; c++) {
+                received.add(clients.submit(() -> {
+                    long bytes = 0;
+                    for (int i = 0; i < downloadsPerClient; i++) {
+                        bytes += download(url);
+                    }
+                    return bytes;
+                }));
+            }
+            long total = 0;
+            for (Future<Long> bytes : received) {
+                total += bytes.get();
+            }
+            return new long[] {total, System.nanoTime() - start, os.getProcessCpuTime() - cpuStart};
+        } finally {
+            clients.shutdown();
+        }
+    }
+
+    private static long download(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        if (connection.getResponseCode() != 200) {
+            throw new IOException("Download failed with status " + connection.getResponseCode());
+        }
+        long bytes = 0;
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = connection.getInputStream()) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                bytes += read;
+            }
+        }
+        return bytes;
+    }
+
+    private static void writeFile(Path file) throws IOException {
+        byte[] megabyte = new byte[1024 * 1024];
+        new Random(1).nextBytes(megabyte);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (int i = 0; i < FILE_MB; i++) {
+                out.write(megabyte);
+            }
+        }
+    }
+}
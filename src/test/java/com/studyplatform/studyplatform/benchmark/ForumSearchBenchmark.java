@@ -0,0 +1,109 @@
+package com.studyplatform.studyplatform.benchmark;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.studyplatform.studyplatform.TestData;
+import com.studyplatform.studyplatform.Model.User;
+import com.studyplatform.studyplatform.Repository.ForumTopicRepository;
+import com.studyplatform.studyplatform.Repository.UserRepository;
+import com.studyplatform.studyplatform.Service.ForumSearchIndex;
+
+/**
+ * Search latency of the in-process index against the {@code LIKE} query it replaced, at 100k topics.
+ * Topics are written with JDBC batches from a fixed vocabulary with a skewed word distribution, so the
+ * queries cover a very common word, a rare word and a two-word query.
+ */
+@Tag("benchmark")
+@SpringBootTest
+class ForumSearchBenchmark {
+
+    private static final int TOPICS = 100_000;
+    private static final int VOCABULARY = 5_000;
+    private static final int WORDS_PER_TOPIC = 60;
+    private static final int INSERT_BATCH = 5_000;
+    private static final Pageable FIRST_PAGE = PageRequest.of(0, 20);
+
+    @Autowired
+    private ForumSearchIndex searchIndex;
+
+    @Autowired
+    private ForumTopicRepository topicRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void indexAgainstLikeQuery() {
+        User author = TestData.newUser(userRepository, "Author");
+        seedTopics(author);
+
+        long start = System.currentTimeMillis();
+        searchIndex.rebuild();
+        System.out.printf("index rebuilt over %d topics in %d ms%n", TOPICS, System.currentTimeMillis() - start);
+
+        String[] queries = {word(0), word(VOCABULARY - 1), word(3) + " " + word(400)};
+        System.out.println("query                  matches  index median ms  index p95 ms  LIKE median ms  LIKE p95 ms");
+        for (String query : queries) {
+            long matches = searchIndex.search(query, FIRST_PAGE).getTotalElements();
+            double[] indexed = BenchmarkStats.time(20, 200, () -> searchIndex.search(query, FIRST_PAGE));
+            double[] like = BenchmarkStats.time(2, 10, () -> topicRepository.searchTopicIds(query, FIRST_PAGE));
+            System.out.printf("%-21s  %7d  %15.2f  %12.2f  %14.2f  %11.2f%n", query, matches,
+                BenchmarkStats.percentile(indexed, 50), BenchmarkStats.percentile(indexed, 95),
+                BenchmarkStats.percentile(like, 50), BenchmarkStats.percentile(like, 95));
+        }
+    }
+
+    private void seedTopics(User author) {
+        // Zipf-like draw: word n is picked roughly in proportion to 1 / (n + 1)
+        Random random = new Random(42);
+        double[] cumulative = new double[VOCABULARY];
+        double total = 0;
+        for (int n = 0; n < VOCABULARY; n++) {
+            total += 1.0 / (n + 1);
+            cumulative[n] = total;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        for (int inserted = 0; inserted < TOPICS; inserted += INSERT_BATCH) {
+            List<Object[]> rows = new ArrayList<>(INSERT_BATCH);
+            for (int i = 0; i < INSERT_BATCH; i++) {
+                StringBuilder content = new StringBuilder();
+                for (int w = 0; w < WORDS_PER_TOPIC; w++) {
+                    int n = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+                    content.append(word(n < 0 ? -n - 1 : n)).append(' ');
+                }
+                rows.add(new Object[] {"Topic " + (inserted + i), content.toString(), author.getId(), now, now});
+            }
+            jdbcTemplate.batchUpdate(
+                "INSERT INTO forum_topics (title, content, user_id, created_at, updated_at, view_count, reply_count, upvotes, downvotes, score) "
+                    + "VALUES (?, ?, ?, ?, ?, 0, 0, 0, 0, 0)",
+                rows);
+        }
+    }
+
+    // Words of letters only, so the index and the LIKE query see the same terms
+    private static String word(int n) {
+        StringBuilder word = new StringBuilder("w");
+        do {
+            word.append((char) ('a' + n % 26));
+            n /= 26;
+        } while (n > 0);
+        return word.toString();
+    }
+}
@@ -0,0 +1,136 @@
+package com.studyplatform.studyplatform.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.studyplatform.studyplatform.StudyplatformApplication;
+import com.studyplatform.studyplatform.TestData;
+import com.studyplatform.studyplatform.Config.security.JwtTokenProvider;
+import com.studyplatform.studyplatform.Model.User;
+import com.studyplatform.studyplatform.Repository.UserRepository;
+import com.studyplatform.studyplatform.Service.StreamingUploadService;
+
+/**
+ * Uploads 256 MB documents over HTTP to the regular multipart endpoint, which the container buffers to a
+ * temporary file first, and to {@link StreamingUploadService}'s streaming one. Reports the bytes the
+ * process wrote to disk per uploaded byte, from {@code write_bytes} in {@code /proc/self/io}, and how much
+ * of that was cancelled because the file was deleted before it reached the disk. Linux only.
+ */
+@Tag("benchmark")
+class UploadDiskWriteBenchmark {
+
+    private static final Path PROC_IO = Paths.get("/proc/self/io");
+    private static final int FILE_MB = 256;
+    private static final int ROUNDS = 3;
+    private static final String BOUNDARY = "----upload-disk-write-benchmark";
+
+    @Test
+    void bufferedVersusStreamedUploads() throws Exception {
+        Assumptions.assumeTrue(Files.isReadable(PROC_IO), "Needs /proc/self/io");
+        Path uploadDir = Files.createTempDirectory("upload-disk-write-benchmark");
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(StudyplatformApplication.class)
+                // Arguments, as the test application.properties overrides default properties
+                .run(
+                    "--server.port=0",
+                    "--file.upload-dir=" + uploadDir,
+                    "--spring.servlet.multipart.max-file-size=-1",
+                    "--spring.servlet.multipart.max-request-size=-1",
+                    "--documents.jobs.enabled=false",
+                    "--spring.datasource.url=jdbc:h2:mem:upload-disk-write;MODE=MySQL;DB_CLOSE_DELAY=-1")) {
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            User user = TestData.newUser(context.getBean(UserRepository.class), "Uploader");
+            String authorization = "Bearer " + context.getBean(JwtTokenProvider.class).generateToken(user.getEmail());
+            ObjectMapper objectMapper = context.getBean(ObjectMapper.class);
+
+            System.out.println("endpoint                    written/uploaded  cancelled/uploaded  seconds");
+            int seed = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                for (String path : new String[] {"/api/documents", StreamingUploadService.STREAMING_UPLOAD_PATH}) {
+                    long[] before = readProcIo();
+                    long start = System.nanoTime();
+                    String document = upload(baseUrl + path, authorization, seed++);
+                    double seconds = (System.nanoTime() - start) / 1e9;
+                    long[] after = readProcIo();
+                    double uploaded = FILE_MB * 1024.0 * 1024.0;
+                    System.out.printf("%-26s  %16.3f  %18.3f  %7.2f%n", "POST " + path,
+                        (after[0] - before[0]) / uploaded, (after[1] - before[1]) / uploaded, seconds);
+
+                    // Deleted, so every round stores new content into the same amount of space
+                    delete(baseUrl + "/api/documents/" + objectMapper.readTree(document).get("id").asLong(), authorization);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The saved document, as JSON
+     */
+    private static String upload(String url, String authorization, int seed) throws IOException {
+        byte[] megabyte = new byte[1024 * 1024];
+        new Random(seed).nextBytes(megabyte);
+        byte[] head = ("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"description\"\r\n\r\nLecture recording\r\n"
+            + "--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"lecture.mp4\"\r\n"
+            + "Content-Type: video/mp4\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        byte[] tail = ("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Authorization", authorization);
+        connection.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + BOUNDARY);
+        connection.setFixedLengthStreamingMode(head.length + (long) FILE_MB * megabyte.length + tail.length);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(head);
+            for (int i = 0; i < FILE_MB; i++) {
+                out.write(megabyte);
+            }
+            out.write(tail);
+        }
+        if (connection.getResponseCode() != 200) {
+            throw new IOException("Upload failed with status " + connection.getResponseCode());
+        }
+        try (InputStream in = connection.getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void delete(String url, String authorization) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod("DELETE");
+        connection.setRequestProperty("Authorization", authorization);
+        if (connection.getResponseCode() != 200) {
+            throw new IOException("Delete failed with status " + connection.getResponseCode());
+        }
+    }
+
+    /**
+     * @return write_bytes and cancelled_write_bytes of this process
+     */
+    private static long[] readProcIo() throws IOException {
+        long[] bytes = new long[2];
+        for (String line : Files.readAllLines(PROC_IO)) {
+            if (line.startsWith("write_bytes:")) {
+                bytes[0] = Long.parseLong(line.substring("write_bytes:".length()).trim());
+            } else if (line.startsWith("cancelled_write_bytes:")) {
+                bytes[1] = Long.parseLong(line.substring("cancelled_write_bytes:".length()).trim());
+            }
+        }
+        return bytes;
+    }
+}